@@ -0,0 +1,33 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageEventSource;
+
+/**
+ * UsageEventSource backed by UsageStatsManager.queryEvents
+ */
+class AndroidUsageEventSource implements UsageEventSource {
+  private final UsageStatsManager usm;
+  // Reused across queries; only touched from the BoundedEventSource worker thread
+  private final UsageEvents.Event event = new UsageEvents.Event();
+
+  AndroidUsageEventSource(UsageStatsManager usm) {
+    this.usm = usm;
+  }
+
+  @Override
+  public int queryEvents(long begin, long end, Visitor visitor) {
+    UsageEvents events = usm.queryEvents(begin, end);
+    if (events == null) return 0;
+
+    int decoded = 0;
+    while (events.hasNextEvent()) {
+      events.getNextEvent(event);
+      decoded++;
+      visitor.onEvent(event.getPackageName(), event.getEventType(), event.getTimeStamp());
+    }
+    return decoded;
+  }
+}
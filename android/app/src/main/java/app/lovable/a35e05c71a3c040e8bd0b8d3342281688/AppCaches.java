@@ -0,0 +1,67 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ActionSelectionEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.AppThresholds;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CacheRegistry;
+
+/**
+ * Hands the system's memory pressure to CacheRegistry. Installed once per process, from
+ * whichever of the service and the plugin starts first; the callbacks go on the application
+ * context so they outlive both. Caches owned by one instance register themselves when it is
+ * created (the service's label cache, the history store when opened).
+ *
+ * The engine's own state is not a cache and is never trimmed: giving back everything else is
+ * what keeps the foreground service cheap enough to be the last process the system kills.
+ */
+final class AppCaches {
+  private static boolean installed;
+
+  private AppCaches() {}
+
+  static synchronized void install(Context context) {
+    if (installed) return;
+    installed = true;
+    CacheRegistry registry = CacheRegistry.get();
+    registry.register("config", AppThresholds.getConfigCache());
+    registry.register("recentActions", ActionSelectionEngine.getRecentActionsCache());
+    context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+      @Override
+      public void onTrimMemory(int level) {
+        trim(registryLevel(level));
+      }
+
+      @Override
+      public void onLowMemory() {
+        trim(CacheRegistry.TRIM_COMPLETE);
+      }
+
+      @Override
+      public void onConfigurationChanged(Configuration newConfig) {}
+    });
+  }
+
+  // The platform's TRIM_MEMORY_* level as a CacheRegistry level, 0 for none
+  static int registryLevel(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+        || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      return CacheRegistry.TRIM_COMPLETE;
+    }
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+        || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      return CacheRegistry.TRIM_MODERATE;
+    }
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+      return CacheRegistry.TRIM_LIGHT;
+    }
+    return 0;
+  }
+
+  // CacheRegistry traces what was freed
+  private static void trim(int level) {
+    if (level != 0) CacheRegistry.get().trim(level, System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,85 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MappedStore;
+
+/**
+ * The app's one MappedStore (files/flowfocus.kv). Each component keeps its former
+ * SharedPreferences file name as its namespace, and the first open copies those files over in a
+ * single commit and deletes them.
+ */
+final class AppStore {
+  private static final String TAG = "FlowFocus";
+  private static final String FILE = "flowfocus.kv";
+  private static final String MIGRATED_KEY = "meta/migratedPrefs";
+  // Every SharedPreferences file that held native state before the store
+  private static final String[] LEGACY_PREFS = {
+    "FlowFocusNudges",
+    "flowfocus_action_engine",
+    "flowfocus_daily_reminders",
+    "flowfocus_rules",
+    "flowfocus_upload"
+  };
+
+  private static MappedStore store;
+
+  private AppStore() {}
+
+  static synchronized MappedStore get(Context context) {
+    if (store == null) {
+      Context app = context.getApplicationContext();
+      try {
+        store = MappedStore.open(new File(app.getFilesDir(), FILE));
+      } catch (IOException e) {
+        Log.e(TAG, "Could not open " + FILE + ", keeping state in memory", e);
+        store = MappedStore.inMemory();
+        return store;
+      }
+      if (!store.contains(MIGRATED_KEY)) {
+        migrate(app, store);
+      }
+    }
+    return store;
+  }
+
+  static MappedStore.Namespace namespace(Context context, String name) {
+    return get(context).namespace(name);
+  }
+
+  // Only ints and strings were ever stored; anything else is skipped
+  private static void migrate(Context context, MappedStore target) {
+    MappedStore.Batch batch = target.edit();
+    int copied = 0;
+    for (String name : LEGACY_PREFS) {
+      for (Map.Entry<String, ?> entry : context.getSharedPreferences(name, Context.MODE_PRIVATE).getAll().entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Integer) {
+          batch.putInt(name + "/" + entry.getKey(), (Integer) value);
+          copied++;
+        } else if (value instanceof String) {
+          batch.putString(name + "/" + entry.getKey(), (String) value);
+          copied++;
+        }
+      }
+    }
+    batch.putInt(MIGRATED_KEY, 1).commit();
+    target.sync();
+    for (String name : LEGACY_PREFS) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+        context.deleteSharedPreferences(name);
+      } else {
+        SharedPreferences prefs = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        prefs.edit().clear().apply();
+      }
+    }
+    Log.i(TAG, "Migrated " + copied + " SharedPreferences entries into " + FILE);
+  }
+}
@@ -3,36 +3,93 @@ package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
 import androidx.core.content.ContextCompat;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Boot receiver to auto-start SystemMonitoringService after device reboot
+ * Boot receiver to auto-start SystemMonitoringService after device reboot.
+ *
+ * Nothing runs on the main thread: onReceive hands over to a background thread through
+ * goAsync(). The critical path there is the permission check and starting the service; the
+ * alarms that a reboot clears are set once the device has settled, SETTLE_UPTIME_MS after boot,
+ * while the service keeps the process alive. Without the service nothing would, so they are set
+ * straight away before the broadcast finishes.
  */
 public class BootReceiver extends BroadcastReceiver {
-    
+    // Uptime by which the boot storm is usually over
+    static final long SETTLE_UPTIME_MS = 90 * 1000;
+
+    private static ScheduledExecutorService executor;
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            android.util.Log.i("FlowFocus", "BootReceiver: Device boot completed");
-            
-            // Always reschedule daily reminders after reboot (they use AlarmManager which gets cleared on reboot)
-            DailyReminderScheduler.scheduleAllReminders(context);
-            android.util.Log.i("FlowFocus", "BootReceiver: Rescheduled daily reminders via AlarmManager");
-            
-            // Check if Usage Access permission is granted
-            if (UsageStatsHelper.hasUsageStatsPermission(context)) {
-                // Start the monitoring service
-                Intent serviceIntent = new Intent(context, SystemMonitoringService.class);
-                serviceIntent.putExtra("debug", false);
-                ContextCompat.startForegroundService(context, serviceIntent);
-                android.util.Log.i("FlowFocus", "BootReceiver started SystemMonitoringService after reboot");
-                
-                // Reschedule midnight alarm after reboot
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) return;
+        android.util.Log.i("FlowFocus", "BootReceiver: Device boot completed");
+
+        final Context app = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        executor().execute(() -> {
+            try {
+                if (startMonitoring(app)) {
+                    long delayMs = Math.max(0, SETTLE_UPTIME_MS - SystemClock.elapsedRealtime());
+                    executor().schedule(() -> runDeferred(app, true), delayMs, TimeUnit.MILLISECONDS);
+                    android.util.Log.i("FlowFocus", "BootReceiver: Deferred alarms by " + delayMs + "ms");
+                } else {
+                    runDeferred(app, false);
+                }
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    // Critical path: true when the monitoring service was started
+    private static boolean startMonitoring(Context context) {
+        long startMs = SystemClock.elapsedRealtime();
+        // Check if Usage Access permission is granted (may scan recent events, hence off main)
+        if (!UsageStatsHelper.hasUsageStatsPermission(context)) {
+            android.util.Log.i("FlowFocus", "BootReceiver: Usage Access not granted, service not started");
+            return false;
+        }
+        Intent serviceIntent = new Intent(context, SystemMonitoringService.class);
+        serviceIntent.putExtra("debug", false);
+        ContextCompat.startForegroundService(context, serviceIntent);
+        android.util.Log.i("FlowFocus", "BootReceiver started SystemMonitoringService after reboot in "
+            + (SystemClock.elapsedRealtime() - startMs) + "ms");
+        return true;
+    }
+
+    // Alarms cleared by the reboot. A started service schedules the daily reminders itself in
+    // onCreate, so they are only set here when it is not running
+    private static void runDeferred(Context context, boolean serviceStarted) {
+        try {
+            if (serviceStarted) {
                 MidnightScheduler.scheduleMidnightAlarm(context);
                 android.util.Log.i("FlowFocus", "BootReceiver: Rescheduled midnight notification alarm");
             } else {
-                android.util.Log.i("FlowFocus", "BootReceiver: Usage Access not granted, service not started");
+                DailyReminderScheduler.scheduleAllReminders(context);
+                android.util.Log.i("FlowFocus", "BootReceiver: Rescheduled daily reminders via AlarmManager");
             }
+        } catch (RuntimeException e) {
+            android.util.Log.e("FlowFocus", "BootReceiver: Deferred boot work failed", e);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(() -> {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, "flowfocus-boot");
+                t.setDaemon(true);
+                return t;
+            });
         }
+        return executor;
     }
 }
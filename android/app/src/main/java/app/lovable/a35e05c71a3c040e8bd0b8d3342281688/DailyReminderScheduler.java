@@ -8,8 +8,6 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.net.Uri;
 import android.os.Build;
 import android.os.PowerManager;
 import android.util.Log;
@@ -18,6 +16,10 @@ import androidx.core.app.NotificationCompat;
 
 import java.util.Calendar;
 
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.KeyValueStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MappedStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NotificationBudget;
+
 /**
  * Native AlarmManager-based daily reminder scheduler.
  * Schedules 4 daily notifications (morning, afternoon, evening, night) that work even when app is closed.
@@ -33,6 +35,9 @@ public class DailyReminderScheduler extends BroadcastReceiver {
     public static final int AFTERNOON_REQUEST_CODE = 1002;
     public static final int EVENING_REQUEST_CODE = 1003;
     public static final int NIGHT_REQUEST_CODE = 1004;
+    // One retry alarm for a reminder the notification budget held back; a newer one replaces it
+    public static final int RETRY_REQUEST_CODE = 1005;
+    private static final long MIN_RETRY_DELAY_MS = 60 * 1000;
     
     // Notification IDs
     public static final int MORNING_NOTIF_ID = 2001;
@@ -94,9 +99,16 @@ public class DailyReminderScheduler extends BroadcastReceiver {
             wakeLock.acquire(10000);
             
             try {
-                showReminderNotification(context, action);
-                // Reschedule this reminder for tomorrow
-                rescheduleReminder(context, action);
+                NotificationBudget budget = NotificationBudget.get();
+                if (budget.tryAcquire(NotificationBudget.REMINDER, System.currentTimeMillis())) {
+                    showReminderNotification(context, action);
+                } else {
+                    scheduleRetry(context, action, budget.waitMs(NotificationBudget.REMINDER, System.currentTimeMillis()));
+                }
+                // Reschedule this reminder for tomorrow (a retry's daily alarm already was)
+                if (!intent.getBooleanExtra("retry", false)) {
+                    rescheduleReminder(context, action);
+                }
             } finally {
                 if (wakeLock.isHeld()) {
                     wakeLock.release();
@@ -109,7 +121,7 @@ public class DailyReminderScheduler extends BroadcastReceiver {
      * Schedule all 4 daily reminders using native AlarmManager
      */
     public static void scheduleAllReminders(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        KeyValueStore prefs = AppStore.namespace(context, PREFS_NAME);
         
         String morningTime = prefs.getString("morning_time", DEFAULT_MORNING);
         String afternoonTime = prefs.getString("afternoon_time", DEFAULT_AFTERNOON);
@@ -131,15 +143,14 @@ public class DailyReminderScheduler extends BroadcastReceiver {
      * Save user's preferred reminder times
      */
     public static void saveReminderTimes(Context context, String morning, String afternoon, String evening, String night) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
+        MappedStore.Batch editor = AppStore.namespace(context, PREFS_NAME).edit();
         
         if (morning != null) editor.putString("morning_time", morning);
         if (afternoon != null) editor.putString("afternoon_time", afternoon);
         if (evening != null) editor.putString("evening_time", evening);
         if (night != null) editor.putString("night_time", night);
         
-        editor.apply();
+        editor.commit();
         Log.i(TAG, "Saved reminder times - M:" + morning + " A:" + afternoon + " E:" + evening + " N:" + night);
         
         // Reschedule with new times
@@ -156,6 +167,7 @@ public class DailyReminderScheduler extends BroadcastReceiver {
         cancelReminder(context, alarmManager, "afternoon", AFTERNOON_REQUEST_CODE);
         cancelReminder(context, alarmManager, "evening", EVENING_REQUEST_CODE);
         cancelReminder(context, alarmManager, "night", NIGHT_REQUEST_CODE);
+        alarmManager.cancel(retryIntent(context, null));
         
         Log.i(TAG, "Cancelled all daily reminders");
     }
@@ -220,8 +232,32 @@ public class DailyReminderScheduler extends BroadcastReceiver {
         }
     }
     
+    /**
+     * Try a held reminder again once the budget should have a token for it
+     */
+    private static void scheduleRetry(Context context, String type, long waitMs) {
+        long at = System.currentTimeMillis() + Math.max(waitMs, MIN_RETRY_DELAY_MS);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, at, retryIntent(context, type));
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, at, retryIntent(context, type));
+        }
+        Log.i(TAG, "Held " + type + " reminder, retrying in " + (at - System.currentTimeMillis()) / 1000 + "s");
+    }
+    
+    private static PendingIntent retryIntent(Context context, String type) {
+        Intent intent = new Intent(context, DailyReminderScheduler.class);
+        intent.putExtra("reminder_type", type);
+        intent.putExtra("retry", true);
+        return PendingIntent.getBroadcast(
+            context, RETRY_REQUEST_CODE, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+    
     private void rescheduleReminder(Context context, String type) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        KeyValueStore prefs = AppStore.namespace(context, PREFS_NAME);
         
         String timeStr;
         int requestCode;
@@ -324,11 +360,7 @@ public class DailyReminderScheduler extends BroadcastReceiver {
         }
         
         // Create intent to open app at mood check
-        Intent openIntent = new Intent(Intent.ACTION_VIEW);
-        openIntent.setData(Uri.parse("flowfocus://action/mood"));
-        openIntent.setPackage(context.getPackageName());
-        openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        openIntent.setClassName(context, "app.lovable.a35e05c71a3c040e8bd0b8d3342281688.MainActivity");
+        Intent openIntent = DeepLinkRouter.get(context).route("mood").intent();
         
         PendingIntent pendingIntent = PendingIntent.getActivity(
             context, notifId, openIntent,
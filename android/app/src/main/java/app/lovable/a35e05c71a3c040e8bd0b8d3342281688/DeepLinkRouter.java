@@ -0,0 +1,125 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.QuickActions;
+
+/**
+ * Every flowfocus:// link the app opens from native code, in one table: the deep link name,
+ * the NudgeActions broadcast that leads to it, the activity that shows it and its launch flags.
+ * Routes are built once per process with their Uri parsed and intent ready; a tap copies that
+ * intent instead of building and parsing one. A new action needs one line in ROUTES.
+ *
+ * Components are always explicit. QuickActionActivity runs the QuickActions routines, and
+ * naming it avoids a chooser between it and MainActivity's flowfocus intent filter.
+ */
+final class DeepLinkRouter {
+  static final String MAIN_ACTIVITY = "app.lovable.a35e05c71a3c040e8bd0b8d3342281688.MainActivity";
+  private static final String ACTION_PREFIX = "flowfocus://action/";
+  private static final int TAP_FLAGS =
+    Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP;
+
+  // { deep link name, NudgeActions broadcast or null }; the uri is flowfocus://action/<name>
+  private static final String[][] ROUTES = {
+    {"mood", NudgeActions.ACTION_MOOD},
+    {"hydration", NudgeActions.ACTION_HYDRATION},
+    {"eye-rest", NudgeActions.ACTION_EYE_REST},
+    {"breathing", NudgeActions.ACTION_BREATHING},
+    {"stretch", NudgeActions.ACTION_STRETCH},
+    {"walk", NudgeActions.ACTION_WALK},
+    {"standing", NudgeActions.ACTION_STANDING},
+    {"journal", NudgeActions.ACTION_JOURNAL},
+    {"voice", NudgeActions.ACTION_VOICE},
+    {"photo", NudgeActions.ACTION_PHOTO},
+    {"win", NudgeActions.ACTION_WIN},
+    {"intention", NudgeActions.ACTION_INTENTION},
+    {"gratitude", NudgeActions.ACTION_GRATITUDE},
+    {"meditation", NudgeActions.ACTION_MEDITATION},
+    {"power-nap", NudgeActions.ACTION_POWER_NAP},
+    {"eye-yoga", NudgeActions.ACTION_EYE_YOGA},
+    {"box-breathing", NudgeActions.ACTION_BOX_BREATHING},
+    {"focus-reset", NudgeActions.ACTION_FOCUS_RESET},
+    {"micro-movement", NudgeActions.ACTION_MICRO_MOVEMENT},
+    {"mindful-sip", NudgeActions.ACTION_MINDFUL_SIP},
+  };
+
+  /** One destination; intent() hands out a copy, the prototype is never exposed */
+  static final class Route {
+    final String name;
+    final Uri uri;
+    final String activity;
+    private final Intent prototype;
+
+    Route(String packageName, String name, Uri uri, String activity, int flags) {
+      this.name = name;
+      this.uri = uri;
+      this.activity = activity;
+      prototype = new Intent(Intent.ACTION_VIEW, uri);
+      prototype.setClassName(packageName, activity);
+      prototype.setFlags(flags);
+    }
+
+    Intent intent() {
+      return new Intent(prototype);
+    }
+  }
+
+  private static DeepLinkRouter instance;
+
+  private final String packageName;
+  private final Map<String, Route> byName;
+  private final Map<String, Route> byBroadcast;
+  // flowfocus://app, the plain "open FlowFocus" link
+  private final Route app;
+
+  private DeepLinkRouter(String packageName) {
+    this.packageName = packageName;
+    Map<String, Route> names = new HashMap<>();
+    Map<String, Route> broadcasts = new HashMap<>();
+    for (String[] entry : ROUTES) {
+      Route route = build(entry[0]);
+      names.put(route.name, route);
+      if (entry[1] != null) broadcasts.put(entry[1], route);
+    }
+    app = new Route(packageName, "app", Uri.parse("flowfocus://app"), MAIN_ACTIVITY, TAP_FLAGS);
+    broadcasts.put(NudgeActions.ACTION_OPEN_APP, app);
+    byName = Collections.unmodifiableMap(names);
+    byBroadcast = Collections.unmodifiableMap(broadcasts);
+  }
+
+  static synchronized DeepLinkRouter get(Context context) {
+    if (instance == null) {
+      instance = new DeepLinkRouter(context.getApplicationContext().getPackageName());
+    }
+    return instance;
+  }
+
+  /**
+   * The route for a deep link name (an ActionButton's deepLink). A name missing from the table
+   * still opens MainActivity at its link, built on the spot.
+   */
+  Route route(String name) {
+    Route route = byName.get(name);
+    return route != null ? route : build(name);
+  }
+
+  /** The route a NudgeActions broadcast opens; null for ones that open nothing (dismiss) */
+  Route forBroadcast(String action) {
+    return byBroadcast.get(action);
+  }
+
+  Route app() {
+    return app;
+  }
+
+  private Route build(String name) {
+    String activity = QuickActions.handles(name) ? QuickActionActivity.class.getName() : MAIN_ACTIVITY;
+    return new Route(packageName, name, Uri.parse(ACTION_PREFIX + name), activity, TAP_FLAGS);
+  }
+}
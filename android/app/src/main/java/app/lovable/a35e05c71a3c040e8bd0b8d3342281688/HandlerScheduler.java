@@ -0,0 +1,26 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.os.Handler;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Scheduler;
+
+/**
+ * Scheduler backed by an android.os.Handler
+ */
+class HandlerScheduler implements Scheduler {
+  private final Handler handler;
+
+  HandlerScheduler(Handler handler) {
+    this.handler = handler;
+  }
+
+  @Override
+  public void postDelayed(Runnable task, long delayMillis) {
+    handler.postDelayed(task, delayMillis);
+  }
+
+  @Override
+  public void cancel(Runnable task) {
+    handler.removeCallbacks(task);
+  }
+}
@@ -0,0 +1,108 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.SessionRow;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UploadQueue;
+
+/**
+ * Sends a batch of sessions as one PostgREST upsert into app_usage_sessions. Row ids are
+ * derived from user, app and start time, so a batch resent after a lost response updates the
+ * rows it already created instead of duplicating them. baseUrl is the project URL; point it at
+ * a local stub server to test the queue end to end.
+ */
+final class HttpSessionSink implements UploadQueue.Sink {
+  private static final int TIMEOUT_MS = 15_000;
+
+  private final String baseUrl;
+  private final String apiKey;
+  private final String accessToken;
+  private final String userId;
+
+  HttpSessionSink(String baseUrl, String apiKey, String accessToken, String userId) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.apiKey = apiKey;
+    this.accessToken = accessToken;
+    this.userId = userId;
+  }
+
+  @Override
+  public void send(List<SessionRow> rows) throws IOException {
+    byte[] body = toJson(rows).getBytes(StandardCharsets.UTF_8);
+    HttpURLConnection connection =
+      (HttpURLConnection) new URL(baseUrl + "/rest/v1/app_usage_sessions?on_conflict=id").openConnection();
+    try {
+      connection.setRequestMethod("POST");
+      connection.setConnectTimeout(TIMEOUT_MS);
+      connection.setReadTimeout(TIMEOUT_MS);
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setRequestProperty("apikey", apiKey);
+      connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+      connection.setRequestProperty("Prefer", "resolution=merge-duplicates,return=minimal");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+      int status = connection.getResponseCode();
+      if (status / 100 == 2) return;
+      // An expired token (401) holds the queue until JS hands over a fresh one; throttling and
+      // server errors are worth retrying. Anything else, including a 403 from a row-level
+      // security policy, means these rows will never be accepted
+      boolean retryable = status == 408 || status == 429 || status >= 500;
+      throw new UploadQueue.RejectedException(status, retryable, "HTTP " + status + ": " + errorBody(connection));
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private String toJson(List<SessionRow> rows) throws IOException {
+    SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+    JSONArray array = new JSONArray();
+    try {
+      for (SessionRow row : rows) {
+        JSONObject json = new JSONObject();
+        json.put("id", UUID.nameUUIDFromBytes((userId + '|' + row.key()).getBytes(StandardCharsets.UTF_8)).toString());
+        json.put("user_id", userId);
+        json.put("app_package_name", row.packageName);
+        json.put("app_name", row.appName != null ? row.appName : JSONObject.NULL);
+        json.put("session_start", iso.format(new Date(row.startMillis)));
+        json.put("session_end", iso.format(new Date(row.endMillis)));
+        json.put("duration_seconds", row.durationSeconds());
+        json.put("psychological_state", row.psychState != null ? row.psychState : JSONObject.NULL);
+        json.put("intervention_triggered", row.interventionTriggered);
+        array.put(json);
+      }
+    } catch (JSONException e) {
+      throw new IOException(e);
+    }
+    return array.toString();
+  }
+
+  private static String errorBody(HttpURLConnection connection) {
+    try (InputStream in = connection.getErrorStream()) {
+      if (in == null) return "";
+      byte[] buffer = new byte[512];
+      int n = in.read(buffer);
+      return n > 0 ? new String(buffer, 0, n, StandardCharsets.UTF_8) : "";
+    } catch (IOException e) {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Clock;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.PostQueue;
+
+/**
+ * Builds and posts notifications on its own thread, so the ringtone lookup, PendingIntent
+ * binder calls, build() and notify() stay off the service's tracking loop. Posts go through a
+ * PostQueue: a newer post for an id still waiting replaces it, and channels can be rate-limited.
+ */
+final class NotificationDispatcher {
+  /** Everything that goes into a notification; runs on the dispatcher thread */
+  interface Content {
+    Notification build();
+  }
+
+  private final HandlerThread thread;
+  private final PostQueue queue;
+  private final NotificationManager notificationManager;
+
+  NotificationDispatcher(Context context) {
+    thread = new HandlerThread("flowfocus-notify", Process.THREAD_PRIORITY_BACKGROUND);
+    thread.start();
+    queue = new PostQueue(new HandlerScheduler(new Handler(thread.getLooper())), Clock.SYSTEM);
+    notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+  }
+
+  void setMinInterval(String channelId, long intervalMs) {
+    queue.setMinInterval(channelId, intervalMs);
+  }
+
+  /**
+   * Build and post content as notification id once channelId allows; onPosted runs on the
+   * dispatcher thread after notify()
+   */
+  void post(int id, String channelId, Content content, Runnable onPosted) {
+    queue.enqueue(id, channelId, () -> {
+      try {
+        notificationManager.notify(id, content.build());
+        if (onPosted != null) onPosted.run();
+      } catch (RuntimeException e) {
+        // A failed post must not take the dispatcher thread (and later posts) down with it
+        Log.e("FlowFocus", "Failed to post notification " + id, e);
+      }
+    });
+  }
+
+  /** Posts already queued still go out; later ones are dropped */
+  void quit() {
+    thread.quitSafely();
+  }
+}
@@ -41,88 +41,18 @@ public class NudgeActions extends BroadcastReceiver {
 
         // Dismiss the notification first
         NotificationManager nm = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        nm.cancel(98766); // NUDGE_NOTIF_ID
+        nm.cancel(SystemMonitoringService.NUDGE_NOTIF_ID);
 
-        // Map action to deep link
-        String deepLink = null;
-        switch (action) {
-            case ACTION_DISMISS:
-                Intent dismissIntent = new Intent("FLOWFOCUS_NUDGE_DISMISSED");
-                context.sendBroadcast(dismissIntent);
-                break;
-            case ACTION_MOOD:
-                deepLink = "flowfocus://action/mood";
-                break;
-            case ACTION_HYDRATION:
-                deepLink = "flowfocus://action/hydration";
-                break;
-            case ACTION_EYE_REST:
-                deepLink = "flowfocus://action/eye-rest";
-                break;
-            case ACTION_BREATHING:
-                deepLink = "flowfocus://action/breathing";
-                break;
-            case ACTION_STRETCH:
-                deepLink = "flowfocus://action/stretch";
-                break;
-            case ACTION_WALK:
-                deepLink = "flowfocus://action/walk";
-                break;
-            case ACTION_STANDING:
-                deepLink = "flowfocus://action/standing";
-                break;
-            case ACTION_JOURNAL:
-                deepLink = "flowfocus://action/journal";
-                break;
-            case ACTION_VOICE:
-                deepLink = "flowfocus://action/voice";
-                break;
-            case ACTION_PHOTO:
-                deepLink = "flowfocus://action/photo";
-                break;
-            case ACTION_WIN:
-                deepLink = "flowfocus://action/win";
-                break;
-            case ACTION_INTENTION:
-                deepLink = "flowfocus://action/intention";
-                break;
-            case ACTION_GRATITUDE:
-                deepLink = "flowfocus://action/gratitude";
-                break;
-            // New actions
-            case ACTION_MEDITATION:
-                deepLink = "flowfocus://action/meditation";
-                break;
-            case ACTION_POWER_NAP:
-                deepLink = "flowfocus://action/power-nap";
-                break;
-            case ACTION_EYE_YOGA:
-                deepLink = "flowfocus://action/eye-yoga";
-                break;
-            case ACTION_BOX_BREATHING:
-                deepLink = "flowfocus://action/box-breathing";
-                break;
-            case ACTION_FOCUS_RESET:
-                deepLink = "flowfocus://action/focus-reset";
-                break;
-            case ACTION_MICRO_MOVEMENT:
-                deepLink = "flowfocus://action/micro-movement";
-                break;
-            case ACTION_MINDFUL_SIP:
-                deepLink = "flowfocus://action/mindful-sip";
-                break;
-            case ACTION_OPEN_APP:
-                deepLink = "flowfocus://app";
-                break;
+        if (ACTION_DISMISS.equals(action)) {
+            Intent dismissIntent = new Intent("FLOWFOCUS_NUDGE_DISMISSED");
+            context.sendBroadcast(dismissIntent);
+            return;
         }
-        
-        // Open FlowFocus with deep link
-        if (deepLink != null) {
-            Intent openIntent = new Intent(Intent.ACTION_VIEW);
-            openIntent.setData(android.net.Uri.parse(deepLink));
-            openIntent.setPackage(context.getPackageName());
-            openIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(openIntent);
+
+        // Open FlowFocus at the action's deep link (see DeepLinkRouter for the table)
+        DeepLinkRouter.Route route = DeepLinkRouter.get(context).forBroadcast(action);
+        if (route != null) {
+            context.startActivity(route.intent());
         }
     }
 }
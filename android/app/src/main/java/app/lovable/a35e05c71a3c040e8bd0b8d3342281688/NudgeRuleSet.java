@@ -0,0 +1,198 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.Locale;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.KeyValueStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NudgeRules;
+
+/**
+ * The user's nudge rules as pushed from JS: the JSON document is kept in the "flowfocus_rules"
+ * store and compiled once per change; the service and the plugin share the compiled table.
+ *
+ * {
+ *   "groups": {"social": ["com.instagram.android", ...]},
+ *   "rules": [{"id": "social-weekday", "groups": ["social"], "apps": [...], "budget": true,
+ *              "label": "social apps", "thresholdsMinutes": [20, 40], "debugThresholdsSeconds": [20, 40],
+ *              "psychState": "avoidance", "cooldownMinutes": 10, "days": "weekdays" | ["sat", "sun"],
+ *              "quietHours": {"start": "22:00", "end": "07:00"}},
+ *            {"id": "social-week", "groups": ["social"], "categories": ["avoidance"], "windowHours": 168,
+ *              "thresholdsMinutes": [300, 420]}],
+ *   "quietHours": [{"start": "23:00", "end": "07:00", "days": "all"}],
+ *   "meta": {"thresholdsMinutes": [60, 120, 180], "cooldownMinutes": 30},
+ *   "adaptiveThresholds": true
+ * }
+ */
+final class NudgeRuleSet {
+  private static final String STORE = "flowfocus_rules";
+  private static final String KEY_DOCUMENT = "document";
+  private static final String[] DAY_NAMES = {"mon", "tue", "wed", "thu", "fri", "sat", "sun"};
+
+  private static boolean loaded;
+  private static NudgeRules rules;
+
+  private NudgeRuleSet() {}
+
+  /**
+   * Compiled rules, or null when none are set (built-in thresholds)
+   */
+  static synchronized NudgeRules get(Context context) {
+    if (!loaded) {
+      loaded = true;
+      String document = store(context).getString(KEY_DOCUMENT, null);
+      if (document != null) {
+        try {
+          rules = parse(document);
+        } catch (JSONException | IllegalArgumentException e) {
+          Log.w("FlowFocus", "Stored nudge rules are invalid, using built-in thresholds", e);
+        }
+      }
+    }
+    return rules;
+  }
+
+  static String getDocument(Context context) {
+    return store(context).getString(KEY_DOCUMENT, null);
+  }
+
+  /**
+   * Compile and keep document; nothing changes when it does not compile
+   */
+  static synchronized NudgeRules save(Context context, String document) throws JSONException {
+    NudgeRules compiled = parse(document);
+    store(context).putString(KEY_DOCUMENT, document);
+    rules = compiled;
+    loaded = true;
+    return compiled;
+  }
+
+  static synchronized void clear(Context context) {
+    store(context).remove(KEY_DOCUMENT);
+    rules = null;
+    loaded = true;
+  }
+
+  static NudgeRules parse(String document) throws JSONException {
+    JSONObject root = new JSONObject(document);
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+
+    JSONObject groups = root.optJSONObject("groups");
+    if (groups != null) {
+      Iterator<String> names = groups.keys();
+      while (names.hasNext()) {
+        String name = names.next();
+        builder.group(name, strings(groups.getJSONArray(name)));
+      }
+    }
+
+    JSONArray rules = root.optJSONArray("rules");
+    for (int i = 0; rules != null && i < rules.length(); i++) {
+      JSONObject json = rules.getJSONObject(i);
+      NudgeRules.Rule rule = builder.rule(json.optString("id", "#" + i));
+      JSONArray apps = json.optJSONArray("apps");
+      if (apps != null) rule.apps(strings(apps));
+      JSONArray ruleGroups = json.optJSONArray("groups");
+      if (ruleGroups != null) rule.groups(strings(ruleGroups));
+      JSONArray categories = json.optJSONArray("categories");
+      if (categories != null) rule.categories(strings(categories));
+      rule.sharedBudget(json.optBoolean("budget", false));
+      if (json.has("windowHours")) rule.windowHours(json.getInt("windowHours"));
+      if (json.has("label")) rule.label(json.getString("label"));
+      JSONArray minutes = json.optJSONArray("thresholdsMinutes");
+      if (minutes != null) rule.thresholds(ints(minutes, 60));
+      JSONArray debugSeconds = json.optJSONArray("debugThresholdsSeconds");
+      if (debugSeconds != null) rule.debugThresholds(ints(debugSeconds, 1));
+      if (json.has("psychState")) rule.psychState(json.getString("psychState"));
+      rule.cooldownMs(json.optLong("cooldownMinutes", 0) * 60 * 1000);
+      if (json.has("days")) rule.days(days(json.opt("days")));
+      JSONObject quiet = json.optJSONObject("quietHours");
+      if (quiet != null) rule.quietHours(minuteOfDay(quiet.getString("start")), minuteOfDay(quiet.getString("end")));
+    }
+
+    JSONArray quietHours = root.optJSONArray("quietHours");
+    for (int i = 0; quietHours != null && i < quietHours.length(); i++) {
+      JSONObject quiet = quietHours.getJSONObject(i);
+      builder.quietHours(minuteOfDay(quiet.getString("start")), minuteOfDay(quiet.getString("end")),
+        quiet.has("days") ? days(quiet.opt("days")) : NudgeRules.ALL_DAYS);
+    }
+
+    JSONObject meta = root.optJSONObject("meta");
+    if (meta != null) {
+      JSONArray minutes = meta.optJSONArray("thresholdsMinutes");
+      if (minutes != null) builder.metaThresholds(ints(minutes, 60));
+      builder.metaCooldownMs(meta.optLong("cooldownMinutes", 0) * 60 * 1000);
+    }
+    builder.adaptiveThresholds(root.optBoolean("adaptiveThresholds", false));
+    return builder.compile();
+  }
+
+  private static KeyValueStore store(Context context) {
+    return AppStore.namespace(context, STORE);
+  }
+
+  private static String[] strings(JSONArray array) throws JSONException {
+    String[] values = new String[array.length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = array.getString(i);
+    }
+    return values;
+  }
+
+  private static int[] ints(JSONArray array, int scale) throws JSONException {
+    int[] values = new int[array.length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = array.getInt(i) * scale;
+    }
+    return values;
+  }
+
+  // "all", "weekdays", "weekend" or a list of day names
+  private static int days(Object value) throws JSONException {
+    if (value instanceof JSONArray) {
+      JSONArray names = (JSONArray) value;
+      int mask = 0;
+      for (int i = 0; i < names.length(); i++) {
+        mask |= dayBit(names.getString(i));
+      }
+      return mask;
+    }
+    switch (String.valueOf(value)) {
+      case "all":
+        return NudgeRules.ALL_DAYS;
+      case "weekdays":
+        return NudgeRules.WEEKDAYS;
+      case "weekend":
+        return NudgeRules.WEEKEND;
+      default:
+        return dayBit(String.valueOf(value));
+    }
+  }
+
+  private static int dayBit(String name) throws JSONException {
+    String prefix = name.length() >= 3 ? name.substring(0, 3).toLowerCase(Locale.ROOT) : name;
+    for (int d = 0; d < DAY_NAMES.length; d++) {
+      if (DAY_NAMES[d].equals(prefix)) return 1 << d;
+    }
+    throw new JSONException("Unknown day: " + name);
+  }
+
+  // "HH:mm" -> minutes since midnight
+  private static int minuteOfDay(String time) throws JSONException {
+    int colon = time.indexOf(':');
+    try {
+      int hour = Integer.parseInt(colon < 0 ? time : time.substring(0, colon));
+      int minute = colon < 0 ? 0 : Integer.parseInt(time.substring(colon + 1));
+      if (hour < 0 || hour > 23 || minute < 0 || minute > 59) throw new NumberFormatException();
+      return hour * 60 + minute;
+    } catch (NumberFormatException e) {
+      throw new JSONException("Bad time of day: " + time);
+    }
+  }
+}
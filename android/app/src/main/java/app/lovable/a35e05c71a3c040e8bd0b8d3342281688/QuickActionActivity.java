@@ -0,0 +1,174 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.app.Activity;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.QuickActions;
+
+/**
+ * Runs the simple nudge actions (breathing, box breathing, eye rest, hydration) natively, so a
+ * tap on the notification shows content without starting the WebView. A plain Activity with
+ * views built in code: nothing to inflate and no bridge. Completions go to QuickActionLog for JS
+ * to pick up later; anything else is handed to MainActivity.
+ */
+public class QuickActionActivity extends Activity {
+  private static final long TICK_MS = 200;
+
+  private QuickActions.Routine routine;
+  private long startedAt;
+  private long startedElapsed;
+  private int taps;
+  private boolean completed;
+
+  private TextView phaseView;
+  private TextView countView;
+  private TextView roundView;
+  private Button primaryButton;
+
+  private final Runnable tick = new Runnable() {
+    @Override
+    public void run() {
+      render();
+      if (!completed) phaseView.postDelayed(this, TICK_MS);
+    }
+  };
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    Uri data = getIntent() != null ? getIntent().getData() : null;
+    String action = data != null ? data.getLastPathSegment() : null;
+    routine = action != null ? QuickActions.get(action) : null;
+    if (routine == null) {
+      // Not one of ours after all: the full app handles it
+      Intent fallback = new Intent(Intent.ACTION_VIEW, data);
+      fallback.setClassName(this, DeepLinkRouter.MAIN_ACTIVITY);
+      fallback.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+      startActivity(fallback);
+      finish();
+      return;
+    }
+    NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+    nm.cancel(SystemMonitoringService.NUDGE_NOTIF_ID);
+    setContentView(buildLayout());
+    startedAt = System.currentTimeMillis();
+    render();
+  }
+
+  @Override
+  protected void onNewIntent(Intent intent) {
+    super.onNewIntent(intent);
+    // Routes launch single-top: another action tapped while this one shows starts afresh
+    setIntent(intent);
+    recreate();
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    if (phaseView != null) phaseView.removeCallbacks(tick);
+  }
+
+  private View buildLayout() {
+    float density = getResources().getDisplayMetrics().density;
+    int padding = (int) (24 * density);
+    LinearLayout root = new LinearLayout(this);
+    root.setOrientation(LinearLayout.VERTICAL);
+    root.setGravity(Gravity.CENTER);
+    root.setPadding(padding, padding, padding, padding);
+
+    TextView title = text(routine.title, 28);
+    TextView prompt = text(routine.prompt, 16);
+    phaseView = text("", 24);
+    countView = text("", 56);
+    roundView = text("", 14);
+    primaryButton = new Button(this);
+    primaryButton.setOnClickListener(v -> onPrimary());
+    Button close = new Button(this);
+    close.setText("Close");
+    close.setOnClickListener(v -> finish());
+
+    View[] views = {title, prompt, phaseView, countView, roundView, primaryButton, close};
+    for (View view : views) {
+      LinearLayout.LayoutParams params =
+        new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+      params.setMargins(0, (int) (8 * density), 0, (int) (8 * density));
+      root.addView(view, params);
+    }
+    return root;
+  }
+
+  private TextView text(String value, float sizeSp) {
+    TextView view = new TextView(this);
+    view.setText(value);
+    view.setTextSize(sizeSp);
+    view.setGravity(Gravity.CENTER);
+    return view;
+  }
+
+  private void onPrimary() {
+    if (completed) {
+      finish();
+    } else if (!routine.isTimed()) {
+      taps++;
+      if (taps >= routine.taps) complete();
+      render();
+    } else if (startedElapsed == 0) {
+      startedAt = System.currentTimeMillis();
+      startedElapsed = SystemClock.elapsedRealtime();
+      tick.run();
+    }
+  }
+
+  private void render() {
+    if (completed) {
+      phaseView.setText("Complete! Well done 🌟");
+      countView.setText("✓");
+      roundView.setText("");
+      primaryButton.setText("Done");
+      primaryButton.setVisibility(View.VISIBLE);
+      return;
+    }
+    if (!routine.isTimed()) {
+      countView.setText(taps + " / " + routine.taps);
+      primaryButton.setText(routine.tapLabel);
+      return;
+    }
+    if (startedElapsed == 0) {
+      phaseView.setText("Ready when you are");
+      countView.setText(formatSeconds(routine.totalSeconds()));
+      primaryButton.setText("Start");
+      return;
+    }
+    QuickActions.Progress progress = routine.progressAt(SystemClock.elapsedRealtime() - startedElapsed);
+    if (progress.done) {
+      complete();
+      render();
+      return;
+    }
+    phaseView.setText(routine.steps[progress.step].label);
+    countView.setText(String.valueOf(progress.secondsLeft));
+    roundView.setText(routine.rounds > 1 ? "Round " + (progress.round + 1) + " of " + routine.rounds : "");
+    primaryButton.setVisibility(View.INVISIBLE);
+  }
+
+  private void complete() {
+    completed = true;
+    QuickActionLog.record(this, routine.action, startedAt, System.currentTimeMillis());
+  }
+
+  private static String formatSeconds(int seconds) {
+    return seconds >= 60 ? (seconds / 60) + ":" + String.format(java.util.Locale.US, "%02d", seconds % 60) : seconds + "s";
+  }
+}
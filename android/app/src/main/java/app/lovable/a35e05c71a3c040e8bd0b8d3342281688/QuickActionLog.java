@@ -0,0 +1,75 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MappedStore;
+
+/**
+ * Completions of native quick actions, kept until JS reads and acknowledges them (it records
+ * them with the user's other nudge responses). Each has an increasing id, so JS clears exactly
+ * what it stored even if more arrived meanwhile.
+ */
+final class QuickActionLog {
+  private static final String STORE = "flowfocus_quick_actions";
+  private static final String KEY_NEXT_ID = "nextId";
+  private static final String KEY_EVENTS = "events";
+  // Oldest completions go first if JS never comes to collect them
+  private static final int MAX_EVENTS = 200;
+
+  private QuickActionLog() {}
+
+  static synchronized void record(Context context, String action, long startedAt, long completedAt) {
+    MappedStore.Namespace store = AppStore.namespace(context, STORE);
+    JSONArray events = events(store);
+    int id = store.getInt(KEY_NEXT_ID, 1);
+    try {
+      JSONObject event = new JSONObject();
+      event.put("id", id);
+      event.put("action", action);
+      event.put("startedAt", startedAt);
+      event.put("completedAt", completedAt);
+      event.put("durationSeconds", (completedAt - startedAt) / 1000);
+      events.put(event);
+    } catch (JSONException e) {
+      Log.e("FlowFocus", "Failed to record quick action " + action, e);
+      return;
+    }
+    JSONArray kept = events;
+    if (events.length() > MAX_EVENTS) {
+      kept = new JSONArray();
+      for (int i = events.length() - MAX_EVENTS; i < events.length(); i++) {
+        kept.put(events.opt(i));
+      }
+    }
+    store.edit().putInt(KEY_NEXT_ID, id + 1).putString(KEY_EVENTS, kept.toString()).commit();
+  }
+
+  static synchronized JSONArray list(Context context) {
+    return events(AppStore.namespace(context, STORE));
+  }
+
+  /** Forget completions up to and including id */
+  static synchronized void acknowledge(Context context, int upToId) {
+    MappedStore.Namespace store = AppStore.namespace(context, STORE);
+    JSONArray events = events(store);
+    JSONArray kept = new JSONArray();
+    for (int i = 0; i < events.length(); i++) {
+      JSONObject event = events.optJSONObject(i);
+      if (event != null && event.optInt("id") > upToId) kept.put(event);
+    }
+    store.putString(KEY_EVENTS, kept.toString());
+  }
+
+  private static JSONArray events(MappedStore.Namespace store) {
+    try {
+      return new JSONArray(store.getString(KEY_EVENTS, "[]"));
+    } catch (JSONException e) {
+      return new JSONArray();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.io.File;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Clock;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.KeyValueStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MappedStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UploadQueue;
+
+/**
+ * Process-wide session upload queue: the service submits every committed session, and the
+ * rows go to app_usage_sessions from a background thread whether or not the WebView is alive.
+ * JS hands over the backend URL, key and the signed-in user's token (kept in the
+ * "flowfocus_upload" namespace so a restarted service can keep sending); without them nothing is
+ * queued, and signing out drops whatever is still pending.
+ *
+ * Only the access token is handed over, never the refresh token: refreshing here would rotate
+ * it under the WebView's session. Once the token expires (about an hour) the queue holds its
+ * rows and reports needsToken until JS next runs and passes a fresh one on its auth change.
+ */
+final class SessionUploader {
+  private static final String STORE = "flowfocus_upload";
+  private static final String KEY_URL = "url";
+  private static final String KEY_API_KEY = "apiKey";
+  private static final String KEY_TOKEN = "accessToken";
+  private static final String KEY_USER = "userId";
+
+  private static UploadQueue queue;
+
+  private SessionUploader() {}
+
+  static synchronized UploadQueue get(Context context) {
+    if (queue == null) {
+      HandlerThread thread = new HandlerThread("flowfocus-upload", Process.THREAD_PRIORITY_BACKGROUND);
+      thread.start();
+      Context app = context.getApplicationContext();
+      queue = new UploadQueue(new File(app.getFilesDir(), "upload_queue.bin"),
+        new HandlerScheduler(new Handler(thread.getLooper())), Clock.SYSTEM);
+      queue.setSink(sink(store(app)));
+    }
+    return queue;
+  }
+
+  /**
+   * Whether a signed-in user handed over credentials; sessions before that are not queued
+   */
+  static boolean isEnabled(Context context) {
+    return store(context).getString(KEY_USER, null) != null;
+  }
+
+  /**
+   * Send as userId from now on; a different user than before starts from an empty queue
+   */
+  static synchronized void setCredentials(Context context, String url, String apiKey, String accessToken,
+                                          String userId) {
+    MappedStore.Namespace store = store(context);
+    boolean otherUser = !userId.equals(store.getString(KEY_USER, userId));
+    store.edit()
+      .putString(KEY_URL, url)
+      .putString(KEY_API_KEY, apiKey)
+      .putString(KEY_TOKEN, accessToken)
+      .putString(KEY_USER, userId)
+      .commit();
+    UploadQueue uploads = get(context);
+    if (otherUser) uploads.clear();
+    uploads.setSink(sink(store));
+  }
+
+  static synchronized void clearCredentials(Context context) {
+    store(context).edit()
+      .remove(KEY_URL)
+      .remove(KEY_API_KEY)
+      .remove(KEY_TOKEN)
+      .remove(KEY_USER)
+      .commit();
+    UploadQueue uploads = get(context);
+    uploads.setSink(null);
+    uploads.clear();
+  }
+
+  private static UploadQueue.Sink sink(KeyValueStore store) {
+    String url = store.getString(KEY_URL, null);
+    String apiKey = store.getString(KEY_API_KEY, null);
+    String token = store.getString(KEY_TOKEN, null);
+    String userId = store.getString(KEY_USER, null);
+    if (url == null || apiKey == null || token == null || userId == null) return null;
+    return new HttpSessionSink(url, apiKey, token, userId);
+  }
+
+  private static MappedStore.Namespace store(Context context) {
+    return AppStore.namespace(context, STORE);
+  }
+}
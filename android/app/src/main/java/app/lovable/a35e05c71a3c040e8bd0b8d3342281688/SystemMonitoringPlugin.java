@@ -5,20 +5,54 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.app.usage.UsageStatsManager;
 import android.os.Build;
 import android.provider.Settings;
 import android.net.Uri;
+import android.util.Base64;
 
 import androidx.core.content.ContextCompat;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CacheRegistry;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CircuitBreaker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringMetrics;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NudgeRules;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ScreenTimeSummary;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.SessionSketches;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.TraceLog;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UploadQueue;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageHeatmap;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageHistoryStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageTrace;
+
 @CapacitorPlugin(name = "SystemMonitoring")
 public class SystemMonitoringPlugin extends Plugin {
+  // Longest range getUsageHistory answers in one call
+  private static final int MAX_HISTORY_DAYS = 400;
+  // Late-night window for getUsageHeatmap, as minutes of the day: 23:00 until 06:00
+  private static final int LATE_NIGHT_START = 23 * 60;
+  private static final int LATE_NIGHT_END = 6 * 60;
+
   private BroadcastReceiver appChangeReceiver;
 
   @Override
@@ -27,6 +61,7 @@ public class SystemMonitoringPlugin extends Plugin {
     try {
       super.load();
       android.util.Log.w("FlowFocus", ">>> SystemMonitoringPlugin.load() - super.load() completed on API " + Build.VERSION.SDK_INT + " <<<");
+      AppCaches.install(getContext());
       
       // Register receiver for app change events
       appChangeReceiver = new BroadcastReceiver() {
@@ -235,9 +270,22 @@ public class SystemMonitoringPlugin extends Plugin {
     // Check if service is running
     boolean serviceRunning = SystemMonitoringService.isRunning;
     ret.put("serviceRunning", serviceRunning);
+
+    // Usage-stats service health: degraded while queries are slow/failing and polls are backed off
+    CircuitBreaker health = UsageStatsHelper.getQueryHealth();
+    boolean degraded = health.isDegraded();
+    ret.put("degraded", degraded);
+    JSObject usageService = new JSObject();
+    usageService.put("state", health.getStateName());
+    usageService.put("pollIntervalMs", health.nextDelay(MonitoringEngine.POLL_INTERVAL_MS));
+    usageService.put("consecutiveFailures", health.getConsecutiveFailures());
+    usageService.put("lastLatencyMs", health.getLastLatencyNanos() / 1_000_000L);
+    usageService.put("degradedSince", health.getDegradedSinceMillis());
+    ret.put("usageService", usageService);
     
     android.util.Log.i("FlowFocus", "Plugin.getStatus -> usageAccess=" + usageAccess + 
-                       ", notifications=" + notificationsEnabled + ", serviceRunning=" + serviceRunning);
+                       ", notifications=" + notificationsEnabled + ", serviceRunning=" + serviceRunning +
+                       ", degraded=" + degraded);
     call.resolve(ret);
   }
 
@@ -340,4 +388,413 @@ public class SystemMonitoringPlugin extends Plugin {
     call.resolve();
   }
 
+  @PluginMethod
+  public void getMetrics(PluginCall call) {
+    MonitoringMetrics metrics = MonitoringMetrics.get();
+    JSObject ret = new JSObject();
+    ret.put("serviceRunning", SystemMonitoringService.isRunning);
+    ret.put("windowMs", System.currentTimeMillis() - metrics.getResetAtMillis());
+
+    JSObject counters = new JSObject();
+    for (int i = 0; i < MonitoringMetrics.counterCount(); i++) {
+      counters.put(MonitoringMetrics.counterName(i), metrics.count(i));
+    }
+    ret.put("counters", counters);
+
+    // Latencies are reported in microseconds
+    JSObject latencies = new JSObject();
+    for (int i = 0; i < MonitoringMetrics.histogramCount(); i++) {
+      MonitoringMetrics.Histogram h = metrics.histogram(i);
+      JSObject entry = new JSObject();
+      entry.put("count", h.count());
+      entry.put("meanUs", h.mean() / 1000);
+      entry.put("p50Us", h.percentile(50) / 1000);
+      entry.put("p90Us", h.percentile(90) / 1000);
+      entry.put("p99Us", h.percentile(99) / 1000);
+      entry.put("maxUs", h.max() / 1000);
+      latencies.put(MonitoringMetrics.histogramName(i), entry);
+    }
+    ret.put("latencies", latencies);
+
+    if (call.getBoolean("includeDump", false)) {
+      StringWriter text = new StringWriter();
+      metrics.dump(new PrintWriter(text));
+      ret.put("dump", text.toString());
+    }
+    if (call.getBoolean("reset", false)) {
+      metrics.reset();
+    }
+    call.resolve(ret);
+  }
+
+  @PluginMethod
+  public void getTraceLog(PluginCall call) {
+    int limit = call.getInt("limit", 200);
+    JSArray lines = new JSArray();
+    for (String line : TraceLog.dump(limit)) {
+      lines.put(line);
+    }
+    JSObject ret = new JSObject();
+    ret.put("written", TraceLog.getWrittenCount());
+    ret.put("lines", lines);
+    if (call.getBoolean("clear", false)) {
+      TraceLog.clear();
+    }
+    call.resolve(ret);
+  }
+
+  // Estimated heap bytes; caches of a service that has not started yet are absent
+  @PluginMethod
+  public void getCacheFootprint(PluginCall call) {
+    CacheRegistry registry = CacheRegistry.get();
+    JSArray caches = new JSArray();
+    long total = 0;
+    for (CacheRegistry.Footprint footprint : registry.footprint()) {
+      JSObject entry = new JSObject();
+      entry.put("name", footprint.name);
+      entry.put("entries", footprint.entries);
+      entry.put("bytes", footprint.bytes);
+      entry.put("trims", footprint.trims);
+      caches.put(entry);
+      total += footprint.bytes;
+    }
+    JSObject ret = new JSObject();
+    ret.put("caches", caches);
+    ret.put("totalBytes", total);
+    ret.put("lastTrimLevel", registry.getLastTrimLevel());
+    ret.put("lastTrimAt", registry.getLastTrimAt());
+    call.resolve(ret);
+  }
+
+  // Dump the raw UsageEvents stream for offline replay:
+  // adb exec-out run-as app.lovable.a35e05c71a3c040e8bd0b8d3342281688 cat files/traces/<name> > usage.fftrace
+  @PluginMethod
+  public void exportUsageTrace(PluginCall call) {
+    if (!UsageStatsHelper.hasUsageStatsPermission(getContext())) {
+      call.reject("usage_access_denied");
+      return;
+    }
+    double hours = call.getDouble("hours", 24.0);
+    long end = System.currentTimeMillis();
+    long begin = end - (long) (hours * 60 * 60 * 1000);
+
+    File dir = new File(getContext().getFilesDir(), "traces");
+    dir.mkdirs();
+    File file = new File(dir, "usage-" + end + ".fftrace");
+    UsageStatsManager usm = (UsageStatsManager) getContext().getSystemService(Context.USAGE_STATS_SERVICE);
+    try (OutputStream out = new FileOutputStream(file)) {
+      UsageTrace.Writer writer = new UsageTrace.Writer(out);
+      new AndroidUsageEventSource(usm).queryEvents(begin, end, writer);
+      writer.flush();
+
+      JSObject ret = new JSObject();
+      ret.put("path", file.getAbsolutePath());
+      ret.put("events", writer.getCount());
+      ret.put("bytes", file.length());
+      ret.put("fromMs", begin);
+      ret.put("toMs", end);
+      call.resolve(ret);
+    } catch (Exception e) {
+      file.delete();
+      call.reject("trace_export_failed", e);
+    }
+  }
+
+  /**
+   * Completed days from the local history store, oldest first. Today is not included; it is
+   * archived at the next rollover.
+   */
+  @PluginMethod
+  public void getUsageHistory(PluginCall call) {
+    try {
+      UsageHistoryStore store = UsageHistory.get(getContext());
+      int today = UsageHistoryStore.epochDay(System.currentTimeMillis());
+      String toArg = call.getString("to");
+      String fromArg = call.getString("from");
+      int to = toArg != null ? UsageHistoryStore.epochDay(toArg) : today - 1;
+      int from = fromArg != null ? UsageHistoryStore.epochDay(fromArg) : to - call.getInt("days", 7) + 1;
+      if (to - from > MAX_HISTORY_DAYS) {
+        from = to - MAX_HISTORY_DAYS;
+      }
+      final boolean hourly = call.getBoolean("hourly", false);
+      final Set<String> packages = new HashSet<>();
+      JSArray filter = call.getArray("packages");
+      if (filter != null) {
+        for (int i = 0; i < filter.length(); i++) {
+          packages.add(filter.optString(i));
+        }
+      }
+
+      final JSArray days = new JSArray();
+      final JSObject[] day = new JSObject[1];
+      final JSArray[] apps = new JSArray[1];
+      final int[] dayNumber = {Integer.MIN_VALUE};
+      final long[] dayTotal = new long[1];
+      store.query(from, to, (epochDay, packageName, hourSeconds) -> {
+        if (epochDay != dayNumber[0]) {
+          if (day[0] != null) {
+            day[0].put("totalSeconds", dayTotal[0]);
+          }
+          day[0] = new JSObject();
+          apps[0] = new JSArray();
+          day[0].put("date", UsageHistoryStore.formatDay(epochDay));
+          day[0].put("apps", apps[0]);
+          days.put(day[0]);
+          dayNumber[0] = epochDay;
+          dayTotal[0] = 0;
+        }
+        int seconds = 0;
+        for (int s : hourSeconds) seconds += s;
+        dayTotal[0] += seconds;
+        if (!packages.isEmpty() && !packages.contains(packageName)) return;
+        JSObject app = new JSObject();
+        app.put("package", packageName);
+        app.put("seconds", seconds);
+        if (hourly) {
+          JSArray hours = new JSArray();
+          for (int s : hourSeconds) hours.put(s);
+          app.put("hours", hours);
+        }
+        apps[0].put(app);
+      });
+      if (day[0] != null) {
+        day[0].put("totalSeconds", dayTotal[0]);
+      }
+
+      JSObject ret = new JSObject();
+      ret.put("from", UsageHistoryStore.formatDay(from));
+      ret.put("to", UsageHistoryStore.formatDay(to));
+      ret.put("days", days);
+      ret.put("storedDays", store.getDayCount());
+      ret.put("bytes", store.getSizeBytes());
+      call.resolve(ret);
+    } catch (Exception e) {
+      call.reject("history_unavailable", e);
+    }
+  }
+
+  @PluginMethod
+  public void getUsageHeatmap(PluginCall call) {
+    UsageHeatmap heatmap = UsageHistory.getHeatmap();
+    long now = System.currentTimeMillis();
+    int window = call.getInt("windowMinutes", 30);
+    byte[] global = heatmap.snapshot(null, now);
+    byte[] switches = heatmap.snapshotSwitches();
+    int[] peak = UsageHeatmap.peakWindow(switches, Math.max(1, window));
+
+    JSObject ret = new JSObject();
+    ret.put("date", UsageHistoryStore.formatDay(UsageHistoryStore.epochDay(heatmap.getDayStartMillis())));
+    ret.put("slots", UsageHeatmap.SLOTS);
+    ret.put("global", Base64.encodeToString(global, Base64.NO_WRAP));
+    ret.put("switches", Base64.encodeToString(switches, Base64.NO_WRAP));
+    ret.put("totalSeconds", UsageHeatmap.sum(global, 0, UsageHeatmap.SLOTS));
+    ret.put("lateNightSeconds", UsageHeatmap.sum(global, 0, LATE_NIGHT_END)
+      + UsageHeatmap.sum(global, LATE_NIGHT_START, UsageHeatmap.SLOTS));
+    JSObject peakSwitches = new JSObject();
+    peakSwitches.put("startMinute", peak[0]);
+    peakSwitches.put("windowMinutes", window);
+    peakSwitches.put("count", peak[1]);
+    ret.put("peakSwitches", peakSwitches);
+
+    if (call.getBoolean("apps", true)) {
+      Set<String> packages = new HashSet<>();
+      JSArray filter = call.getArray("packages");
+      if (filter != null) {
+        for (int i = 0; i < filter.length(); i++) {
+          packages.add(filter.optString(i));
+        }
+      }
+      JSArray apps = new JSArray();
+      for (String packageName : heatmap.getPackages()) {
+        if (!packages.isEmpty() && !packages.contains(packageName)) continue;
+        byte[] slots = heatmap.snapshot(packageName, now);
+        JSObject app = new JSObject();
+        app.put("package", packageName);
+        app.put("seconds", UsageHeatmap.sum(slots, 0, UsageHeatmap.SLOTS));
+        app.put("minutes", Base64.encodeToString(slots, Base64.NO_WRAP));
+        apps.put(app);
+      }
+      ret.put("apps", apps);
+    }
+    call.resolve(ret);
+  }
+
+  /**
+   * Session-length percentiles per app (all hours and the current hour) and the adaptive levels
+   * the service would use for a session starting now; see SessionSketches
+   */
+  @PluginMethod
+  public void getSessionLengths(PluginCall call) {
+    SessionSketches sketches = UsageHistory.getSessionSketches(getContext());
+    NudgeRules rules = NudgeRuleSet.get(getContext());
+    int hour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
+    Set<String> packages = new HashSet<>();
+    JSArray filter = call.getArray("packages");
+    if (filter != null) {
+      for (int i = 0; i < filter.length(); i++) {
+        packages.add(filter.optString(i));
+      }
+    }
+
+    JSObject ret = new JSObject();
+    ret.put("adaptive", rules != null && rules.isAdaptive());
+    ret.put("minSessions", SessionSketches.MIN_SAMPLES);
+    ret.put("hour", hour);
+    JSArray quantiles = new JSArray();
+    for (double q : SessionSketches.QUANTILES) {
+      quantiles.put(Double.valueOf(q));
+    }
+    ret.put("quantiles", quantiles);
+    JSArray apps = new JSArray();
+    for (String packageName : sketches.getPackages()) {
+      if (!packages.isEmpty() && !packages.contains(packageName)) continue;
+      JSObject app = new JSObject();
+      app.put("package", packageName);
+      app.put("sessions", sketches.count(packageName, SessionSketches.ALL_HOURS));
+      app.put("seconds", (Object) toJSArray(sketches.quantiles(packageName, SessionSketches.ALL_HOURS)));
+      app.put("hourSessions", sketches.count(packageName, hour));
+      app.put("hourSeconds", (Object) toJSArray(sketches.quantiles(packageName, hour)));
+      app.put("thresholdSeconds", (Object) toJSArray(sketches.thresholds(packageName, hour)));
+      apps.put(app);
+    }
+    ret.put("apps", apps);
+    call.resolve(ret);
+  }
+
+  private static JSArray toJSArray(int[] values) {
+    if (values == null) return null;
+    JSArray array = new JSArray();
+    for (int value : values) {
+      array.put(value);
+    }
+    return array;
+  }
+
+  /**
+   * This week, last week, baseline and reclaimed time from the service's running aggregates;
+   * a fixed amount of work however long the app has been in use. The session still running
+   * is counted once it ends.
+   */
+  @PluginMethod
+  public void getScreenTimeSummary(PluginCall call) {
+    int today = UsageHistoryStore.epochDay(System.currentTimeMillis());
+    ScreenTimeSummary.Snapshot summary = UsageHistory.getScreenTimeSummary(getContext()).snapshot(today);
+    JSObject ret = new JSObject();
+    ret.put("weekStart", UsageHistoryStore.formatDay(ScreenTimeSummary.weekStart(today)));
+    ret.put("thisWeekMinutes", Math.round(summary.thisWeekSeconds / 60f));
+    ret.put("lastWeekMinutes", Math.round(summary.lastWeekSeconds / 60f));
+    ret.put("baselineMinutes", Math.round(summary.baselineDailySeconds / 60f));
+    ret.put("baselineComplete", summary.baselineComplete);
+    if (summary.firstDay != Integer.MIN_VALUE) {
+      ret.put("firstDay", UsageHistoryStore.formatDay(summary.firstDay));
+    }
+    ret.put("totalReclaimedMinutes", Math.round(summary.reclaimedSeconds / 60f));
+    call.resolve(ret);
+  }
+
+  @PluginMethod
+  public void setUploadCredentials(PluginCall call) {
+    String url = call.getString("url");
+    String apiKey = call.getString("apiKey");
+    String accessToken = call.getString("accessToken");
+    String userId = call.getString("userId");
+    if (url == null && apiKey == null && accessToken == null && userId == null) {
+      SessionUploader.clearCredentials(getContext());
+    } else if (url == null || apiKey == null || accessToken == null || userId == null) {
+      call.reject("url, apiKey, accessToken and userId are required together");
+      return;
+    } else {
+      SessionUploader.setCredentials(getContext(), url, apiKey, accessToken, userId);
+    }
+    call.resolve();
+  }
+
+  @PluginMethod
+  public void getUploadStatus(PluginCall call) {
+    UploadQueue.Stats stats = SessionUploader.get(getContext()).stats();
+    JSObject ret = new JSObject();
+    ret.put("enabled", SessionUploader.isEnabled(getContext()));
+    ret.put("pending", stats.pending);
+    ret.put("sentRows", stats.sentRows);
+    ret.put("sentBatches", stats.sentBatches);
+    ret.put("coalesced", stats.coalesced);
+    ret.put("dropped", stats.dropped);
+    ret.put("failures", stats.failures);
+    if (stats.pending > 0 && stats.nextFlushAt > 0) {
+      ret.put("nextFlushInMs", Math.max(0, stats.nextFlushAt - System.currentTimeMillis()));
+    } else {
+      ret.put("nextFlushInMs", (Object) null);
+    }
+    ret.put("lastError", stats.lastError != null ? stats.lastError : (Object) null);
+    ret.put("needsToken", stats.needsToken);
+    call.resolve(ret);
+  }
+
+  @PluginMethod
+  public void getQuickActionCompletions(PluginCall call) {
+    JSONArray events = QuickActionLog.list(getContext());
+    JSArray completions = new JSArray();
+    for (int i = 0; i < events.length(); i++) {
+      completions.put(events.opt(i));
+    }
+    JSObject ret = new JSObject();
+    ret.put("completions", completions);
+    call.resolve(ret);
+  }
+
+  @PluginMethod
+  public void acknowledgeQuickActionCompletions(PluginCall call) {
+    Integer upToId = call.getInt("upToId");
+    if (upToId == null) {
+      call.reject("upToId is required");
+      return;
+    }
+    QuickActionLog.acknowledge(getContext(), upToId);
+    call.resolve();
+  }
+
+  @PluginMethod
+  public void setNudgeRules(PluginCall call) {
+    JSObject document = call.getObject("rules");
+    NudgeRules rules;
+    try {
+      if (document == null) {
+        NudgeRuleSet.clear(getContext());
+        rules = null;
+      } else {
+        rules = NudgeRuleSet.save(getContext(), document.toString());
+      }
+    } catch (JSONException | IllegalArgumentException e) {
+      call.reject("invalid_rules: " + e.getMessage());
+      return;
+    }
+    // The running service recompiles nothing; it picks up the shared table on its own thread
+    Intent changed = new Intent("FLOWFOCUS_RULES_CHANGED");
+    changed.setPackage(getContext().getPackageName());
+    getContext().sendBroadcast(changed);
+    call.resolve(describeRules(rules));
+  }
+
+  @PluginMethod
+  public void getNudgeRules(PluginCall call) {
+    JSObject ret = describeRules(NudgeRuleSet.get(getContext()));
+    String document = NudgeRuleSet.getDocument(getContext());
+    try {
+      ret.put("rules", document != null ? new JSObject(document) : null);
+    } catch (JSONException e) {
+      ret.put("rules", (Object) null);
+    }
+    call.resolve(ret);
+  }
+
+  private static JSObject describeRules(NudgeRules rules) {
+    JSObject ret = new JSObject();
+    ret.put("active", rules != null);
+    ret.put("policies", rules != null ? rules.getPolicyCount() : 0);
+    ret.put("budgets", rules != null ? rules.getBudgetCount() : 0);
+    ret.put("rolling", rules != null ? rules.getRollingCount() : 0);
+    ret.put("adaptive", rules != null && rules.isAdaptive());
+    ret.put("packages", rules != null ? rules.getPackageCount() : 0);
+    return ret;
+  }
 }
@@ -4,7 +4,6 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
-import android.app.usage.UsageEvents;
 import android.app.usage.UsageStatsManager;
 import android.content.Context;
 import android.content.Intent;
@@ -17,103 +16,138 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.IntentFilter;
 import android.os.PowerManager;
-import android.net.Uri;
 import android.util.Log;
-import android.content.SharedPreferences;
-import java.util.Calendar;
-import java.util.HashSet;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
-// Daily usage tracking class
-class DailyAppUsage {
-  int totalSeconds = 0;
-  int lastNudgeLevel = 0;
-  long lastSessionStart = 0;
-  String date = "";
-  
-  DailyAppUsage(String date) {
-    this.date = date;
-  }
-}
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ActionSelectionEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.AppNameResolver;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.AppThresholds;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CacheRegistry;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Clock;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundTracker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringMetrics;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NotificationBudget;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Nudge;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NudgeComposer;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NudgeRules;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.RollingUsage;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ScreenTimeSummary;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.SessionRow;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.SnapshotFile;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.TraceLog;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageBackfill;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageHistoryStore;
 
+/**
+ * Android host for the monitoring core: owns the foreground notification, receivers and
+ * nudge rendering, and feeds UsageStatsManager/Handler/SharedPreferences into MonitoringEngine.
+ */
 public class SystemMonitoringService extends Service {
-  // Excluded launcher and system UI packages
-  private static final Set<String> EXCLUDED_PACKAGES = new HashSet<String>() {{
-    add("com.oneplus.launcher");
-    add("com.sec.android.app.launcher");
-    add("com.samsung.android.oneui.home");
-    add("com.miui.home");
-    add("com.huawei.android.launcher");
-    add("com.oppo.launcher");
-    add("com.google.android.apps.nexuslauncher");
-    add("com.teslacoilsw.launcher");
-    add("com.android.systemui");
-    add("com.android.launcher");
-    add("com.android.launcher3");
-  }};
   private static final String CHANNEL_ID = "flowfocus_monitor";
   private static final String NUDGE_CHANNEL_ID = "flowfocus_nudge";
+  // Nudges and meta-nudges share the channel; a burst of them is spread out this far
+  private static final long NUDGE_MIN_INTERVAL_MS = 2000;
+  private static final String ENGINE_STATE_FILE = "engine.state";
+  // The low-memory killer skips onDestroy: save sketches and summary this often while sessions
+  // end, and at once after this many
+  private static final long STATE_SAVE_INTERVAL_MS = 10 * 60 * 1000;
+  private static final int STATE_SAVE_SESSIONS = 20;
   private static final int NOTIF_ID = 98765;
-  private static final int NUDGE_NOTIF_ID = 98766;
+  static final int NUDGE_NOTIF_ID = 98766;
   private static final int META_NUDGE_NOTIF_ID = 98767;
   
   // Guard against double-start (Samsung stability fix)
   public static volatile boolean isRunning = false;
 
   private Handler handler;
-  private Runnable pollTask;
-  private Runnable durationTask;
-  private String lastPackage;
-  private long sessionStartTime;
-  private String currentAppName;
-  private boolean debugMode = false;
-  private String userName = "friend";
+  private MonitoringEngine engine;
+  // Loaded off the main thread by startBackfill(); sessions ending before then wait in
+  // pendingScreenTime as {epochDay, seconds}
+  private ScreenTimeSummary screenTime;
+  private final List<int[]> pendingScreenTime = new ArrayList<>();
+  // Sessions recorded since sketches and summary were last saved
+  private int unsavedSessions;
   private PowerManager powerManager;
-  private boolean isScreenOn = true;
-  
-  // Daily cumulative usage tracking
-  private Map<String, DailyAppUsage> dailyUsageMap = new HashMap<>();
-  private String currentDate = getTodayDate();
-  
-  // Per-session nudge state
-  private int lastNudgeLevel = 0;
-  private long nextAllowedNudgeTime = 0;
-  private int dismissalCount = 0;
+  private NotificationDispatcher notifications;
+  private SnapshotFile engineState;
+  private final MonitoringMetrics metrics = MonitoringMetrics.get();
   
-  // Total daily screen time tracking for meta-nudges
-  private int totalDailyScreenTimeSeconds = 0;
-  private int lastMetaNudgeLevel = 0;
-  private long lastMetaNudgeTime = 0;
-  private static final int[] META_THRESHOLDS = {
-    60 * 60,      // 1 hour total
-    2 * 60 * 60,  // 2 hours total
-    3 * 60 * 60   // 3 hours total
+  private final MonitoringEngine.Listener engineListener = new MonitoringEngine.Listener() {
+    // The session in front: its name and whether it got a nudge, for the uploaded row
+    private String sessionAppName;
+    private boolean sessionNudged;
+
+    @Override
+    public void onAppChanged(String packageName, String appName) {
+      sessionAppName = appName;
+      sessionNudged = false;
+      Intent i = new Intent("FLOWFOCUS_APP_CHANGED");
+      i.putExtra("package", packageName);
+      i.putExtra("appName", appName);
+      sendBroadcast(i);
+    }
+
+    @Override
+    public void onSessionEnded(String packageName, long startMillis, long endMillis) {
+      // Sessions are split at midnight, so the start names the day
+      int day = UsageHistoryStore.epochDay(startMillis);
+      int seconds = (int) ((endMillis - startMillis) / 1000);
+      if (screenTime != null) {
+        screenTime.add(day, seconds);
+      } else {
+        pendingScreenTime.add(new int[] {day, seconds});
+      }
+      if (++unsavedSessions >= STATE_SAVE_SESSIONS) saveHistoryState();
+      if (endMillis - startMillis >= 1000 && SessionUploader.isEnabled(SystemMonitoringService.this)) {
+        SessionUploader.get(SystemMonitoringService.this).submit(new SessionRow(packageName, sessionAppName,
+          AppThresholds.getAppConfig(packageName).psychState, startMillis, endMillis, sessionNudged));
+      }
+    }
+
+    @Override
+    public void onDurationUpdate(String packageName, String appName, int durationSeconds) {
+      Intent i = new Intent("FLOWFOCUS_DURATION_UPDATE");
+      i.putExtra("package", packageName);
+      i.putExtra("appName", appName);
+      i.putExtra("durationSeconds", durationSeconds);
+      sendBroadcast(i);
+    }
+
+    @Override
+    public void onNudge(String packageName, String appName, Nudge nudge, long crossedAtMillis) {
+      sessionNudged = true;
+      showNudgeNotification(packageName, appName, nudge, crossedAtMillis);
+    }
+
+    @Override
+    public void onMetaNudge(Nudge nudge, int totalSeconds, long crossedAtMillis) {
+      showMetaNudgeNotification(nudge, totalSeconds, crossedAtMillis);
+    }
   };
   
-  private static String getTodayDate() {
-    Calendar cal = Calendar.getInstance();
-    return String.format("%04d-%02d-%02d", 
-      cal.get(Calendar.YEAR), 
-      cal.get(Calendar.MONTH) + 1, 
-      cal.get(Calendar.DAY_OF_MONTH));
-  }
-  
   private BroadcastReceiver nudgeActionReceiver = new BroadcastReceiver() {
     @Override
     public void onReceive(Context context, Intent intent) {
       String action = intent.getAction();
       if ("FLOWFOCUS_NUDGE_SNOOZED".equals(action)) {
-        // Snooze for 5 minutes
-        nextAllowedNudgeTime = System.currentTimeMillis() + (5 * 60 * 1000);
+        engine.onNudgeSnoozed();
       } else if ("FLOWFOCUS_NUDGE_DISMISSED".equals(action)) {
-        // Increase dismissal count and reduce future cooldowns
-        dismissalCount++;
+        engine.onNudgeDismissed();
+      } else if ("FLOWFOCUS_RULES_CHANGED".equals(action)) {
+        engine.setRules(NudgeRuleSet.get(context));
+        loadRollingHistory();
       }
     }
   };
@@ -123,23 +157,11 @@ public class SystemMonitoringService extends Service {
     public void onReceive(Context context, Intent intent) {
       String action = intent.getAction();
       if (Intent.ACTION_SCREEN_OFF.equals(action)) {
-        isScreenOn = false;
-        
-        // Save current session before terminating
-        if (lastPackage != null && sessionStartTime > 0) {
-          long sessionDuration = (System.currentTimeMillis() - sessionStartTime) / 1000;
-          saveDailyUsage(lastPackage, (int) sessionDuration, lastNudgeLevel);
-          Log.d("FlowFocus", "Screen OFF - saved session: " + sessionDuration + "s");
-        }
-        
-        // Terminate active session when screen goes off
-        lastPackage = null;
-        sessionStartTime = 0;
-        currentAppName = null;
-        Log.d("FlowFocus", "Screen OFF - session terminated");
+        engine.onScreenOff();
+        // The screen-off session has just been recorded
+        saveHistoryState();
       } else if (Intent.ACTION_SCREEN_ON.equals(action)) {
-        isScreenOn = true;
-        Log.d("FlowFocus", "Screen ON - resuming tracking");
+        engine.onScreenOn();
       }
     }
   };
@@ -149,10 +171,21 @@ public class SystemMonitoringService extends Service {
     super.onCreate();
     isRunning = true;
     Log.i("FlowFocus", "SystemMonitoringService.onCreate called (isRunning=true)");
+    // Mirror trace records to logcat only in debuggable builds; release builds keep them in the ring buffer
+    if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+      TraceLog.setSink((level, message) -> Log.println(level, "FlowFocus", message));
+    }
     createNotificationChannel();
     createNudgeNotificationChannel();
     
     powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+    notifications = new NotificationDispatcher(this);
+    notifications.setMinInterval(NUDGE_CHANNEL_ID, NUDGE_MIN_INTERVAL_MS);
+    
+    handler = new Handler();
+    AppCaches.install(this);
+    engine = createEngine();
+    restoreEngineState();
     
     // Register receiver for screen state changes
     IntentFilter screenFilter = new IntentFilter();
@@ -171,6 +204,7 @@ public class SystemMonitoringService extends Service {
     IntentFilter actionFilter = new IntentFilter();
     actionFilter.addAction("FLOWFOCUS_NUDGE_SNOOZED");
     actionFilter.addAction("FLOWFOCUS_NUDGE_DISMISSED");
+    actionFilter.addAction("FLOWFOCUS_RULES_CHANGED");
     
     ContextCompat.registerReceiver(
       this,
@@ -194,121 +228,152 @@ public class SystemMonitoringService extends Service {
       Log.e("FlowFocus", "startForeground FAILED", e);
     }
 
-    handler = new Handler();
+    engine.start();
+    handler.postDelayed(stateSaveTask, STATE_SAVE_INTERVAL_MS);
+    startBackfill();
+    loadRollingHistory();
     
-    // Poll for app changes every 5 seconds
-    pollTask = new Runnable() {
-      @Override
-      public void run() {
+    // Schedule native daily reminders using AlarmManager
+    DailyReminderScheduler.scheduleAllReminders(this);
+    Log.i("FlowFocus", "Scheduled native daily reminders via AlarmManager");
+  }
+
+  // Timer side of saveHistoryState(); skips when nothing ended since the last save
+  private final Runnable stateSaveTask = new Runnable() {
+    @Override
+    public void run() {
+      if (unsavedSessions > 0) saveHistoryState();
+      handler.postDelayed(this, STATE_SAVE_INTERVAL_MS);
+    }
+  };
+
+  // Sketches and summary to disk on the history thread (temp file, then rename)
+  private void saveHistoryState() {
+    unsavedSessions = 0;
+    UsageHistory.saveState(this);
+  }
+
+  // Rebuild today's totals from UsageEvents, and load the screen-time summary (rebuilt from
+  // the usage history when it was never saved), on a background thread; monitoring is already
+  // running and gets corrected when both land on the handler thread
+  private void startBackfill() {
+    final MonitoringEngine target = engine;
+    final long from = target.getBackfillFromMillis();
+    final long until = target.getBackfillUntilMillis();
+    final UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
+    final String ownPackage = getPackageName();
+    final Context app = getApplicationContext();
+    new Thread(() -> {
+      android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+      UsageBackfill.Result backfill = null;
+      if (until > from) {
         try {
-          // Check if date changed (midnight reset)
-          String today = getTodayDate();
-          if (!today.equals(currentDate)) {
-            Log.d("FlowFocus", "Date changed - clearing daily usage map and resetting meta-nudge tracking");
-            dailyUsageMap.clear();
-            totalDailyScreenTimeSeconds = 0;
-            lastMetaNudgeLevel = 0;
-            lastMetaNudgeTime = 0;
-            currentDate = today;
-          }
-          
-          String current = getForegroundAppPackage();
-          // Skip if launcher/system UI or null
-          if (current != null && !current.equals(lastPackage)) {
-            // Stabilization: wait 750ms and re-check to ensure app is truly in foreground
-            final String detectedPackage = current;
-            handler.postDelayed(new Runnable() {
-              @Override
-              public void run() {
-                String recheck = getForegroundAppPackage();
-                if (recheck != null && recheck.equals(detectedPackage)) {
-                  // App is stable, commit the change
-                  // Save previous app's session time to daily map
-                  if (lastPackage != null && sessionStartTime > 0) {
-                    long sessionDuration = (System.currentTimeMillis() - sessionStartTime) / 1000;
-                    saveDailyUsage(lastPackage, (int) sessionDuration, lastNudgeLevel);
-                    Log.d("FlowFocus", "Saved " + lastPackage + " session: " + sessionDuration + "s, level: " + lastNudgeLevel);
-                  }
-                  
-                  lastPackage = detectedPackage;
-                  String appName = getAppName(detectedPackage);
-                  currentAppName = appName;
-                  sessionStartTime = System.currentTimeMillis();
-                  
-                  // Restore nudge state from daily map
-                  DailyAppUsage usage = dailyUsageMap.get(detectedPackage);
-                  if (usage != null) {
-                    lastNudgeLevel = usage.lastNudgeLevel;
-                    Log.d("FlowFocus", "Restored nudge level " + lastNudgeLevel + " for " + detectedPackage + " (total: " + usage.totalSeconds + "s)");
-                  } else {
-                    lastNudgeLevel = 0;
-                  }
-                  nextAllowedNudgeTime = 0;
-                  dismissalCount = 0;
-                  
-                  Log.d("FlowFocus", "App changed to (verified): " + detectedPackage + " -> " + appName);
-                  
-                  Intent i = new Intent("FLOWFOCUS_APP_CHANGED");
-                  i.putExtra("package", detectedPackage);
-                  i.putExtra("appName", appName);
-                  sendBroadcast(i);
-                } else {
-                  Log.d("FlowFocus", "App change from " + detectedPackage + " to " + recheck + " - unstable, ignoring");
-                }
-              }
-            }, 750);
-          }
-        } catch (Exception ignored) {}
-        handler.postDelayed(this, 5000); // poll every 5s
+          // Direct source: a whole day is one long streaming query, not a deadline-bounded poll
+          backfill = UsageBackfill.run(
+            new AndroidUsageEventSource(usm), ownPackage, ForegroundTracker.DEFAULT_DWELL_MS, from, until);
+        } catch (Exception e) {
+          Log.w("FlowFocus", "Usage backfill failed", e);
+        }
       }
-    };
-    
-    // Broadcast duration updates every 30 seconds for current app
-    durationTask = new Runnable() {
-      @Override
-      public void run() {
-        try {
-          if (lastPackage != null && sessionStartTime > 0) {
-            long currentTime = System.currentTimeMillis();
-            int durationSeconds = (int) ((currentTime - sessionStartTime) / 1000);
-            
-            Intent i = new Intent("FLOWFOCUS_DURATION_UPDATE");
-            i.putExtra("package", lastPackage);
-            i.putExtra("appName", currentAppName);
-            i.putExtra("durationSeconds", durationSeconds);
-            sendBroadcast(i);
-            
-            // Track total daily screen time
-            totalDailyScreenTimeSeconds += 30; // Add 30 seconds for each interval
-            
-            // Check for meta-nudges based on overall usage
-            checkForMetaNudge();
-            
-            // Check for per-app nudge intervention
-            checkForNudge(lastPackage, currentAppName, durationSeconds);
+      final UsageBackfill.Result result = backfill;
+      final ScreenTimeSummary summary = UsageHistory.getScreenTimeSummary(app);
+      handler.post(() -> {
+        if (engine != target) return;
+        if (result != null) target.applyBackfill(result);
+        screenTime = summary;
+        for (int[] session : pendingScreenTime) {
+          summary.add(session[0], session[1]);
+        }
+        pendingScreenTime.clear();
+        if (result != null) {
+          // Today recounted from UsageEvents replaces whatever the summary carried over
+          summary.setDay(UsageHistoryStore.epochDay(from), target.getTodaySeconds());
+        }
+      });
+    }, "flowfocus-backfill").start();
+  }
+
+  // Rolling budgets reach back up to a week: read the days before today from the usage
+  // history off the handler thread; the engine ignores it if the rules changed meanwhile
+  private void loadRollingHistory() {
+    final MonitoringEngine target = engine;
+    final NudgeRules rules = target.getRules();
+    if (rules == null || rules.getRollingCount() == 0) return;
+    final Context app = getApplicationContext();
+    new Thread(() -> {
+      android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+      try {
+        int today = UsageHistoryStore.epochDay(System.currentTimeMillis());
+        final RollingUsage history = RollingUsage.fromHistory(rules, UsageHistory.get(app), today);
+        handler.post(() -> {
+          if (engine == target) {
+            target.applyRollingHistory(rules, history);
           }
-        } catch (Exception ignored) {}
-        handler.postDelayed(this, 30000); // broadcast every 30s
+        });
+      } catch (Exception e) {
+        Log.w("FlowFocus", "Loading rolling usage history failed", e);
       }
-    };
-    
-    handler.post(pollTask);
-    handler.post(durationTask);
-    
-    // Schedule native daily reminders using AlarmManager
-    DailyReminderScheduler.scheduleAllReminders(this);
-    Log.i("FlowFocus", "Scheduled native daily reminders via AlarmManager");
+    }, "flowfocus-rolling").start();
+  }
+
+  private MonitoringEngine createEngine() {
+    final PackageManager pm = getPackageManager();
+    ForegroundTracker tracker =
+      new ForegroundTracker(UsageStatsHelper.getUsageEventSource(this), Clock.SYSTEM, getPackageName());
+    tracker.publishTo(UsageStatsHelper.getForegroundResolver(this));
+    AppNameResolver appNames = new AppNameResolver(pkg -> {
+      ApplicationInfo ai = pm.getApplicationInfo(pkg, 0);
+      CharSequence label = pm.getApplicationLabel(ai);
+      return label != null ? label.toString() : null;
+    });
+    CacheRegistry.get().register("labels", appNames.getCache());
+    MonitoringEngine monitoringEngine = new MonitoringEngine(
+      Clock.SYSTEM,
+      new HandlerScheduler(handler),
+      tracker,
+      appNames,
+      new NudgeComposer(
+        AppStore.namespace(this, "FlowFocusNudges"),
+        AppStore.namespace(this, "flowfocus_action_engine")
+      ),
+      engineListener
+    );
+    monitoringEngine.setQueryHealth(UsageStatsHelper.getQueryHealth());
+    monitoringEngine.setDayArchive(UsageHistory.archiver(this));
+    monitoringEngine.setHeatmap(UsageHistory.getHeatmap());
+    monitoringEngine.setSessionSketches(UsageHistory.getSessionSketches(this));
+    monitoringEngine.setNotificationBudget(NotificationBudget.get());
+    monitoringEngine.setRules(NudgeRuleSet.get(this));
+    return monitoringEngine;
+  }
+
+  // Pick up where a killed instance left off (levels shown, cooldowns, the session in front),
+  // then save every transition from here on
+  private void restoreEngineState() {
+    long startNanos = System.nanoTime();
+    try {
+      engineState = SnapshotFile.open(new File(getFilesDir(), ENGINE_STATE_FILE));
+      byte[] saved = engineState.read();
+      if (saved != null) {
+        boolean today = engine.restoreState(new DataInputStream(new ByteArrayInputStream(saved)));
+        TraceLog.d(TraceLog.STATE_RESTORED, today ? "today" : "earlier day", saved.length,
+          (System.nanoTime() - startNanos) / 1000);
+      }
+      engine.setSnapshot(engineState);
+    } catch (IOException e) {
+      TraceLog.w(TraceLog.STATE_FAILED, e.getMessage());
+    }
   }
 
   @Override
   public int onStartCommand(Intent intent, int flags, int startId) {
     if (intent != null) {
-      debugMode = intent.getBooleanExtra("debug", false);
-      userName = intent.getStringExtra("userName");
-      if (userName == null || userName.isEmpty()) {
-        userName = "friend";
+      engine.setDebugMode(intent.getBooleanExtra("debug", false));
+      // The boot receiver sends no name; keep the one restored from the saved state
+      if (intent.hasExtra("userName")) {
+        engine.setUserName(intent.getStringExtra("userName"));
       }
-      Log.d("FlowFocus", "Service started with userName: " + userName + ", debug: " + debugMode);
+      Log.d("FlowFocus", "Service started with userName: " + engine.getUserName() + ", debug: " + engine.isDebugMode());
     }
     return START_STICKY;
   }
@@ -318,13 +383,18 @@ public class SystemMonitoringService extends Service {
     super.onDestroy();
     isRunning = false;
     Log.i("FlowFocus", "SystemMonitoringService.onDestroy called (isRunning=false)");
-    if (handler != null) {
-      if (pollTask != null) {
-        handler.removeCallbacks(pollTask);
-      }
-      if (durationTask != null) {
-        handler.removeCallbacks(durationTask);
-      }
+    if (engine != null) {
+      engine.stop();
+    }
+    handler.removeCallbacks(stateSaveTask);
+    saveHistoryState();
+    AppStore.get(this).sync();
+    if (engineState != null) {
+      engineState.sync();
+    }
+    // Rows are journaled either way; this just sends them before the process may go
+    if (SessionUploader.isEnabled(this)) {
+      SessionUploader.get(this).flushSoon();
     }
     try {
       unregisterReceiver(nudgeActionReceiver);
@@ -332,6 +402,7 @@ public class SystemMonitoringService extends Service {
     try {
       unregisterReceiver(screenStateReceiver);
     } catch (Exception ignored) {}
+    notifications.quit();
   }
 
   @Nullable
@@ -340,6 +411,20 @@ public class SystemMonitoringService extends Service {
     return null;
   }
 
+  // adb shell dumpsys activity service app.lovable.a35e05c71a3c040e8bd0b8d3342281688/.SystemMonitoringService
+  @Override
+  protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+    writer.println("SystemMonitoringService (running=" + isRunning + ")");
+    if (engine != null) {
+      engine.dump(writer);
+    }
+    metrics.dump(writer);
+    writer.println("  Recent trace:");
+    for (String line : TraceLog.dump(100)) {
+      writer.println("    " + line);
+    }
+  }
+
   private void createNotificationChannel() {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
       NotificationChannel channel = new NotificationChannel(
@@ -390,209 +475,33 @@ public class SystemMonitoringService extends Service {
     }
   }
 
-  private String getForegroundAppPackage() {
-    UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-    long end = System.currentTimeMillis();
-    long begin = end - 10000; // last 10s
-    UsageEvents events = usm.queryEvents(begin, end);
-    UsageEvents.Event event = new UsageEvents.Event();
-
-    String lastPkg = null;
-    long lastTime = 0;
-    while (events.hasNextEvent()) {
-      events.getNextEvent(event);
-      int type = event.getEventType();
-      if (type == UsageEvents.Event.MOVE_TO_FOREGROUND || (Build.VERSION.SDK_INT >= 29 && type == UsageEvents.Event.ACTIVITY_RESUMED)) {
-        if (event.getTimeStamp() > lastTime) {
-          lastTime = event.getTimeStamp();
-          lastPkg = event.getPackageName();
-        }
-      }
-    }
-    
-    // Exclude launcher and system UI packages
-    if (lastPkg != null) {
-      if (EXCLUDED_PACKAGES.contains(lastPkg) || 
-          lastPkg.toLowerCase().contains("launcher") ||
-          lastPkg.equals(getPackageName())) {
-        Log.d("FlowFocus", "Excluding package from tracking: " + lastPkg);
-        return null;
-      }
-    }
-    
-    return lastPkg;
-  }
-
-  // Helper to save daily usage
-  private void saveDailyUsage(String packageName, int sessionSeconds, int nudgeLevel) {
-    DailyAppUsage usage = dailyUsageMap.get(packageName);
-    if (usage == null) {
-      usage = new DailyAppUsage(currentDate);
-      dailyUsageMap.put(packageName, usage);
-    }
-    usage.totalSeconds += sessionSeconds;
-    usage.lastNudgeLevel = nudgeLevel;
-  }
-
-  private String getAppName(String pkg) {
-    Log.d("FlowFocus", "Getting app name for package: " + pkg);
-    
-    // 1. Check hardcoded map first for common apps
-    java.util.Map<String, String> knownApps = new java.util.HashMap<>();
-    knownApps.put("com.google.android.youtube", "YouTube");
-    knownApps.put("com.google.android.apps.youtube.music", "YouTube Music");
-    knownApps.put("com.google.android.youtube.tv", "YouTube TV");
-    knownApps.put("com.android.youtube", "YouTube");
-    knownApps.put("com.android.youtube.com", "YouTube");
-    knownApps.put("com.instagram.android", "Instagram");
-    knownApps.put("com.zhiliaoapp.musically", "TikTok");
-    knownApps.put("com.facebook.katana", "Facebook");
-    knownApps.put("com.facebook.orca", "Messenger");
-    knownApps.put("com.twitter.android", "Twitter");
-    knownApps.put("com.snapchat.android", "Snapchat");
-    knownApps.put("com.reddit.frontpage", "Reddit");
-    knownApps.put("com.pinterest", "Pinterest");
-    knownApps.put("com.linkedin.android", "LinkedIn");
-    knownApps.put("com.whatsapp", "WhatsApp");
-    knownApps.put("com.telegram.messenger", "Telegram");
-    knownApps.put("com.netflix.mediaclient", "Netflix");
-    knownApps.put("com.spotify.music", "Spotify");
-    knownApps.put("com.amazon.mShop.android.shopping", "Amazon");
-    knownApps.put("com.android.chrome", "Chrome");
-    knownApps.put("com.discord", "Discord");
-    knownApps.put("com.twitch.android.app", "Twitch");
-    
-    if (knownApps.containsKey(pkg)) {
-      String name = knownApps.get(pkg);
-      Log.d("FlowFocus", "Got app name from map: " + name + " for package: " + pkg);
-      return name;
-    }
-    
-    // 2. Try PackageManager
-    try {
-      PackageManager pm = getPackageManager();
-      ApplicationInfo ai = pm.getApplicationInfo(pkg, 0);
-      CharSequence label = pm.getApplicationLabel(ai);
-      String name = label != null ? label.toString() : null;
-      if (name != null && !name.isEmpty()) {
-        Log.d("FlowFocus", "Got app name from PM: " + name + " for package: " + pkg);
-        return name;
-      }
-    } catch (Exception e) {
-      Log.e("FlowFocus", "Failed to get app name from PM for: " + pkg, e);
-    }
-    
-    // 3. Smart fallback: search for keywords in package name
-    String lower = pkg.toLowerCase();
-    if (lower.contains("youtube")) return "YouTube";
-    if (lower.contains("instagram")) return "Instagram";
-    if (lower.contains("tiktok") || lower.contains("musically")) return "TikTok";
-    if (lower.contains("facebook")) return "Facebook";
-    if (lower.contains("twitter")) return "Twitter";
-    if (lower.contains("snapchat")) return "Snapchat";
-    if (lower.contains("reddit")) return "Reddit";
-    if (lower.contains("pinterest")) return "Pinterest";
-    if (lower.contains("linkedin")) return "LinkedIn";
-    if (lower.contains("whatsapp")) return "WhatsApp";
-    if (lower.contains("telegram")) return "Telegram";
-    if (lower.contains("netflix")) return "Netflix";
-    if (lower.contains("spotify")) return "Spotify";
-    if (lower.contains("amazon")) return "Amazon";
-    if (lower.contains("chrome")) return "Chrome";
-    if (lower.contains("discord")) return "Discord";
-    if (lower.contains("twitch")) return "Twitch";
-    
-    // 4. Last resort: capitalize middle part
-    return extractSimpleName(pkg);
-  }
-  
-  private String extractSimpleName(String packageName) {
-    // "com.instagram.android" -> "Instagram"
-    String[] parts = packageName.split("\\.");
-    String name = parts[parts.length - 1];
-    if (name.equals("android") && parts.length > 1) {
-      name = parts[parts.length - 2];
-    }
-    // Capitalize first letter
-    return name.substring(0, 1).toUpperCase() + name.substring(1);
-  }
-
-  private void checkForNudge(String packageName, String appName, int durationSeconds) {
-    // Only check nudges when screen is on
-    if (!isScreenOn) {
-      Log.d("FlowFocus", "Skipping nudge check - screen is off");
-      return;
-    }
-    
-    AppThresholds.AppConfig config = AppThresholds.getAppConfig(packageName);
-    int[] thresholds = debugMode ? config.debugThresholds : config.thresholds;
-    
-    // Calculate cumulative duration (daily total + current session)
-    DailyAppUsage usage = dailyUsageMap.get(packageName);
-    int cumulativeDuration = durationSeconds;
-    if (usage != null) {
-      cumulativeDuration = usage.totalSeconds + durationSeconds;
-    }
-    
-    Log.d("FlowFocus", "Nudge check for " + appName + " - session: " + durationSeconds + "s, cumulative: " + cumulativeDuration + "s, lastLevel: " + lastNudgeLevel);
-    
-    // Find current level based on CUMULATIVE duration
-    int newLevel = 0;
-    for (int i = 0; i < thresholds.length; i++) {
-      if (cumulativeDuration >= thresholds[i]) {
-        newLevel = i + 1;
-      }
-    }
-
-    long now = System.currentTimeMillis();
-    
-    if (newLevel > lastNudgeLevel && now >= nextAllowedNudgeTime) {
-      Log.d("FlowFocus", "Showing level " + newLevel + " nudge (cumulative: " + cumulativeDuration + "s)");
-      showNudgeNotification(packageName, appName, newLevel, cumulativeDuration, config.psychState);
-      lastNudgeLevel = newLevel;
-      
-      // Set next allowed nudge time based on dismissal count
-      long cooldownMs = Math.max(60000, 300000 / (dismissalCount + 1));
-      nextAllowedNudgeTime = now + cooldownMs;
-    }
+  // crossedAtMillis..notify(): queueing, rate limiting and build() included
+  private void showNudgeNotification(String packageName, String appName, Nudge nudge, long crossedAtMillis) {
+    String userName = engine.getUserName();
+    int actionCount = Math.min(2, nudge.actions.size());
+    notifications.post(NUDGE_NOTIF_ID, NUDGE_CHANNEL_ID, () -> buildNudgeNotification(nudge), () -> {
+      metrics.recordMillis(MonitoringMetrics.LATENCY_CROSSING_TO_POST, System.currentTimeMillis() - crossedAtMillis);
+      metrics.increment(MonitoringMetrics.NUDGES_POSTED);
+      TraceLog.d(TraceLog.NUDGE_POSTED, nudge.title, userName, nudge.level, actionCount);
+    });
   }
 
-  private void showNudgeNotification(String packageName, String appName, int level, int durationSeconds, String psychState) {
+  // Runs on the dispatcher thread
+  private Notification buildNudgeNotification(Nudge nudge) {
     // Acquire wake lock to ensure screen turns on and stays on for notification
     PowerManager.WakeLock wakeLock = powerManager.newWakeLock(
       PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
       "FlowFocus::NudgeWakeLock"
     );
     wakeLock.acquire(10000); // Hold for 10 seconds to ensure notification is seen
-    Log.d("FlowFocus", "Acquired wake lock for nudge notification");
-    
-    // Get message with rotation (pass context for SharedPreferences)
-    String[] messageData = AppThresholds.getNudgeMessage(this, level);
-    String title = messageData[0];
-    String messageTemplate = messageData[1];
-    // Get suggested actions from message (3rd element if present)
-    String suggestedActions = messageData.length > 2 ? messageData[2] : "";
-    
-    // Get contextual actions from ActionSelectionEngine
-    Calendar cal = Calendar.getInstance();
-    int hour = cal.get(Calendar.HOUR_OF_DAY);
-    int minutes = durationSeconds / 60;
-    
-    // Get action suggestions based on context AND message's suggested actions
-    // Pass Context for SharedPreferences persistence of recent actions
-    java.util.List<ActionSelectionEngine.ActionButton> actions = 
-        ActionSelectionEngine.getContextualActions(this, level, psychState, minutes, hour, new String[]{}, suggestedActions);
-    
-    // Personalize message with placeholders
-    String durationStr = minutes + " minute" + (minutes == 1 ? "" : "s");
-    String personalizedMessage = messageTemplate
-      .replace("{name}", userName)
-      .replace("{app}", appName)
-      .replace("{duration}", durationStr);
+    metrics.increment(MonitoringMetrics.WAKE_LOCKS_ACQUIRED);
+    metrics.add(MonitoringMetrics.WAKE_LOCK_MS, 10000);
+    TraceLog.d(TraceLog.WAKE_LOCK_ACQUIRED, "nudge notification");
+    long buildStartNanos = System.nanoTime();
     
     // Create full-screen intent for maximum prominence (like alarms/calls)
-    Intent fullScreenIntent = new Intent(Intent.ACTION_VIEW, Uri.parse("flowfocus://action/breathing"));
-    fullScreenIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+    // The breathing routine runs natively, so this shows without starting the WebView
+    Intent fullScreenIntent = DeepLinkRouter.get(this).route("breathing").intent();
     PendingIntent fullScreenPendingIntent = PendingIntent.getActivity(
       this, 999, fullScreenIntent,
       PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -603,9 +512,9 @@ public class SystemMonitoringService extends Service {
     android.net.Uri soundUri = android.media.RingtoneManager.getDefaultUri(android.media.RingtoneManager.TYPE_RINGTONE);
     
     NotificationCompat.Builder builder = new NotificationCompat.Builder(this, NUDGE_CHANNEL_ID)
-      .setContentTitle(title)
-      .setContentText(personalizedMessage)
-      .setStyle(new NotificationCompat.BigTextStyle().bigText(personalizedMessage))
+      .setContentTitle(nudge.title)
+      .setContentText(nudge.message)
+      .setStyle(new NotificationCompat.BigTextStyle().bigText(nudge.bigText))
       .setSmallIcon(getApplicationInfo().icon)
       .setPriority(NotificationCompat.PRIORITY_MAX)  // Maximum priority for heads-up
       .setCategory(NotificationCompat.CATEGORY_ALARM)  // ALARM category for maximum prominence
@@ -621,17 +530,12 @@ public class SystemMonitoringService extends Service {
     // Add action buttons (limit to 2 for better visibility)
     // Use PendingIntent.getActivity() DIRECTLY instead of going through BroadcastReceiver
     // This fixes the issue where deep links don't open the app on Android 10+
-    int actionCount = Math.min(2, actions.size());
+    int actionCount = Math.min(2, nudge.actions.size());
     for (int i = 0; i < actionCount; i++) {
-      ActionSelectionEngine.ActionButton action = actions.get(i);
+      ActionSelectionEngine.ActionButton action = nudge.actions.get(i);
       
       // Create direct activity intent with deep link - bypasses BroadcastReceiver entirely
-      Intent directIntent = new Intent(Intent.ACTION_VIEW);
-      directIntent.setData(Uri.parse("flowfocus://action/" + action.deepLink));
-      directIntent.setPackage(getPackageName());
-      directIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-      // Explicitly set the component to MainActivity
-      directIntent.setClassName(this, "app.lovable.a35e05c71a3c040e8bd0b8d3342281688.MainActivity");
+      Intent directIntent = DeepLinkRouter.get(this).route(action.deepLink).intent();
       
       PendingIntent actionPendingIntent = PendingIntent.getActivity(
         this, 100 + i, directIntent,
@@ -639,66 +543,39 @@ public class SystemMonitoringService extends Service {
       );
       
       builder.addAction(0, action.label, actionPendingIntent);
-      Log.d("FlowFocus", "Added action button: " + action.label + " -> flowfocus://action/" + action.deepLink);
+      TraceLog.d(TraceLog.ACTION_BUTTON_ADDED, action.label, action.deepLink);
     }
     
     // Note: Dismiss button removed to keep notification action count minimal
     // Users can swipe to dismiss the notification instead
     
-    NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-    nm.notify(NUDGE_NOTIF_ID, builder.build());
-    
-    Log.d("FlowFocus", "Showed Level " + level + " nudge with DIRECT activity intents for " + actionCount + " actions: " + title + " | User: " + userName);
+    Notification notification = builder.build();
+    metrics.recordNanos(MonitoringMetrics.LATENCY_NOTIFICATION_BUILD, System.nanoTime() - buildStartNanos);
+    return notification;
   }
   
-  private void checkForMetaNudge() {
-    long now = System.currentTimeMillis();
-    
-    // Don't spam meta-nudges (minimum 30 min between)
-    if (now - lastMetaNudgeTime < 30 * 60 * 1000) {
-      return;
-    }
-    
-    // Check which meta-threshold we've crossed
-    int newMetaLevel = 0;
-    for (int i = 0; i < META_THRESHOLDS.length; i++) {
-      if (totalDailyScreenTimeSeconds >= META_THRESHOLDS[i]) {
-        newMetaLevel = i + 1;
-      }
-    }
-    
-    // Show meta-nudge if we've reached a new level
-    if (newMetaLevel > lastMetaNudgeLevel) {
-      showMetaNudgeNotification(newMetaLevel, totalDailyScreenTimeSeconds);
-      lastMetaNudgeLevel = newMetaLevel;
-      lastMetaNudgeTime = now;
-    }
+  private void showMetaNudgeNotification(Nudge nudge, int totalSeconds, long crossedAtMillis) {
+    notifications.post(META_NUDGE_NOTIF_ID, NUDGE_CHANNEL_ID, () -> buildMetaNudgeNotification(nudge), () -> {
+      metrics.recordMillis(MonitoringMetrics.LATENCY_CROSSING_TO_POST, System.currentTimeMillis() - crossedAtMillis);
+      metrics.increment(MonitoringMetrics.META_NUDGES_POSTED);
+      TraceLog.d(TraceLog.META_NUDGE_POSTED, nudge.level, totalSeconds);
+    });
   }
-  
-  private void showMetaNudgeNotification(int level, int totalSeconds) {
+
+  // Runs on the dispatcher thread
+  private Notification buildMetaNudgeNotification(Nudge nudge) {
     // Acquire wake lock for meta-nudge too
     PowerManager.WakeLock wakeLock = powerManager.newWakeLock(
       PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
       "FlowFocus::MetaNudgeWakeLock"
     );
     wakeLock.acquire(10000);
+    metrics.increment(MonitoringMetrics.WAKE_LOCKS_ACQUIRED);
+    metrics.add(MonitoringMetrics.WAKE_LOCK_MS, 10000);
+    long buildStartNanos = System.nanoTime();
     
-    String[] metaMessages = {
-      "You've been on your phone for 1 hour today. Time for a real-world check-in? 🌍",
-      "2 hours of screen time today, " + userName + ". Your eyes and mind might need a longer break 👀💭",
-      "3 hours on your phone today. Let's talk about what you're really avoiding... 💜"
-    };
-    
-    String message = metaMessages[Math.min(level - 1, metaMessages.length - 1)];
-    int hours = totalSeconds / 3600;
-    int minutes = (totalSeconds % 3600) / 60;
-    
-    // Create intent for opening the app
-    Intent openIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
-    if (openIntent != null) {
-      openIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-      openIntent.setData(Uri.parse("flowfocus://action/journal"));
-    }
+    // Create intent for opening the app at the journal
+    Intent openIntent = DeepLinkRouter.get(this).route("journal").intent();
     
     PendingIntent pendingIntent = PendingIntent.getActivity(
       this, 0, openIntent,
@@ -706,22 +583,20 @@ public class SystemMonitoringService extends Service {
     );
     
     // Create full-screen intent for meta-nudge too
-    Intent fullScreenIntent = new Intent(Intent.ACTION_VIEW, Uri.parse("flowfocus://action/journal"));
-    fullScreenIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+    Intent fullScreenIntent = DeepLinkRouter.get(this).route("journal").intent();
     PendingIntent fullScreenPendingIntent = PendingIntent.getActivity(
       this, 998, fullScreenIntent,
       PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
     );
     
     // Build meta-nudge notification
-    String detailMessage = message + "\n\nTotal today: " + hours + "h " + minutes + "m";
     // Use RINGTONE type for louder, more attention-grabbing sound
     android.net.Uri soundUri = android.media.RingtoneManager.getDefaultUri(android.media.RingtoneManager.TYPE_RINGTONE);
     
     NotificationCompat.Builder builder = new NotificationCompat.Builder(this, NUDGE_CHANNEL_ID)
-      .setContentTitle("Daily Screen Time Alert 📱")
-      .setContentText(message)
-      .setStyle(new NotificationCompat.BigTextStyle().bigText(detailMessage))
+      .setContentTitle(nudge.title)
+      .setContentText(nudge.message)
+      .setStyle(new NotificationCompat.BigTextStyle().bigText(nudge.bigText))
       .setSmallIcon(getApplicationInfo().icon)
       .setPriority(NotificationCompat.PRIORITY_MAX)
       .setCategory(NotificationCompat.CATEGORY_ALARM)
@@ -732,9 +607,8 @@ public class SystemMonitoringService extends Service {
       .setFullScreenIntent(fullScreenPendingIntent, true)
       .setContentIntent(pendingIntent);
     
-    NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-    nm.notify(META_NUDGE_NOTIF_ID, builder.build());
-    
-    Log.d("FlowFocus", "Showed meta-nudge level " + level + " with full-screen intent - Total screen time: " + hours + "h " + minutes + "m");
+    Notification notification = builder.build();
+    metrics.recordNanos(MonitoringMetrics.LATENCY_NOTIFICATION_BUILD, System.nanoTime() - buildStartNanos);
+    return notification;
   }
 }
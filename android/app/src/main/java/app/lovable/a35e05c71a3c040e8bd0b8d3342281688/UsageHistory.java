@@ -0,0 +1,170 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CacheRegistry;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ScreenTimeSummary;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.SessionSketches;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageHeatmap;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageHistoryStore;
+
+/**
+ * Process-wide usage history in filesDir/history: the service appends each completed day at
+ * rollover (on a background thread) and the plugin answers range queries from it. Today's
+ * per-minute heatmap lives here too, filled by the service's engine and read by the plugin,
+ * as do the session-length sketches and the screen-time summary, saved by saveState() to
+ * filesDir/session_sketches.bin and filesDir/screen_time.bin on the same thread.
+ */
+final class UsageHistory {
+  private static final String SKETCH_FILE = "session_sketches.bin";
+  private static final String SUMMARY_FILE = "screen_time.bin";
+
+  private static UsageHistoryStore store;
+  private static ExecutorService writer;
+  private static UsageHeatmap heatmap;
+  private static SessionSketches sketches;
+  private static ScreenTimeSummary summary;
+
+  // Serializes one piece of state for saveState()
+  private interface StateWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private UsageHistory() {}
+
+  static synchronized UsageHistoryStore get(Context context) throws IOException {
+    if (store == null) {
+      store = UsageHistoryStore.open(new File(context.getApplicationContext().getFilesDir(), "history"));
+      CacheRegistry.get().register("history", store);
+    }
+    return store;
+  }
+
+  static synchronized UsageHeatmap getHeatmap() {
+    if (heatmap == null) {
+      heatmap = new UsageHeatmap();
+    }
+    return heatmap;
+  }
+
+  /**
+   * Session-length sketches, read from disk on first use (a few KB); empty if missing or corrupt
+   */
+  static synchronized SessionSketches getSessionSketches(Context context) {
+    if (sketches == null) {
+      File file = stateFile(context, SKETCH_FILE);
+      if (file.exists()) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+          sketches = SessionSketches.read(in);
+        } catch (IOException e) {
+          Log.w("FlowFocus", "Discarding unreadable session sketches", e);
+        }
+      }
+      if (sketches == null) {
+        sketches = new SessionSketches();
+      }
+    }
+    return sketches;
+  }
+
+  /**
+   * Week, last week, baseline and reclaimed totals, read from disk on first use. Without a
+   * saved file it is rebuilt once from the stored days before today, a scan of the history
+   * file, so the first call belongs off the main thread.
+   */
+  static synchronized ScreenTimeSummary getScreenTimeSummary(Context context) {
+    if (summary == null) {
+      File file = stateFile(context, SUMMARY_FILE);
+      if (file.exists()) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+          summary = ScreenTimeSummary.read(in);
+        } catch (IOException e) {
+          Log.w("FlowFocus", "Rebuilding unreadable screen time summary", e);
+        }
+      }
+      if (summary == null) {
+        try {
+          summary = ScreenTimeSummary.fromHistory(get(context), UsageHistoryStore.epochDay(System.currentTimeMillis()));
+        } catch (IOException e) {
+          Log.w("FlowFocus", "Usage history unreadable, starting an empty screen time summary", e);
+          summary = new ScreenTimeSummary();
+        }
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * Write the sketches and the summary in the background (temp file, then rename); state not
+   * loaded yet is skipped
+   */
+  static void saveState(Context context) {
+    final SessionSketches currentSketches;
+    final ScreenTimeSummary currentSummary;
+    synchronized (UsageHistory.class) {
+      currentSketches = sketches;
+      currentSummary = summary;
+    }
+    final Context app = context.getApplicationContext();
+    writer().execute(() -> {
+      if (currentSketches != null) writeState(stateFile(app, SKETCH_FILE), currentSketches::write);
+      if (currentSummary != null) writeState(stateFile(app, SUMMARY_FILE), currentSummary::write);
+    });
+  }
+
+  /**
+   * Archive hook for the engine; the file write never runs on the monitoring thread
+   */
+  static MonitoringEngine.DayArchive archiver(Context context) {
+    final Context app = context.getApplicationContext();
+    return (epochDay, hourSecondsByPackage) -> writer().execute(() -> {
+      try {
+        get(app).append(epochDay, hourSecondsByPackage);
+      } catch (IOException e) {
+        Log.w("FlowFocus", "Failed to archive usage for " + UsageHistoryStore.formatDay(epochDay), e);
+      }
+      saveState(app);
+    });
+  }
+
+  private static File stateFile(Context context, String name) {
+    return new File(context.getApplicationContext().getFilesDir(), name);
+  }
+
+  private static void writeState(File file, StateWriter state) {
+    File tmp = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      state.write(out);
+    } catch (IOException e) {
+      Log.w("FlowFocus", "Failed to save " + file.getName(), e);
+      return;
+    }
+    if (!tmp.renameTo(file)) {
+      Log.w("FlowFocus", "Failed to replace " + file);
+    }
+  }
+
+  private static synchronized ExecutorService writer() {
+    if (writer == null) {
+      writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "flowfocus-history");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return writer;
+  }
+}
@@ -10,6 +10,12 @@ import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
 
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.BoundedEventSource;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.CircuitBreaker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Clock;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundResolver;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageEventSource;
+
 public class UsageStatsHelper {
   
   /**
@@ -138,28 +144,51 @@ public class UsageStatsHelper {
     }
   }
 
+  private static CircuitBreaker queryHealth;
+  private static BoundedEventSource usageEvents;
+  private static ForegroundResolver foregroundResolver;
+
+  /**
+   * Health of the usage-stats system service as seen by every query in this process
+   */
+  public static synchronized CircuitBreaker getQueryHealth() {
+    if (queryHealth == null) {
+      queryHealth = new CircuitBreaker(Clock.SYSTEM);
+    }
+    return queryHealth;
+  }
+
+  /**
+   * Process-wide queryEvents source: one background thread, a per-call deadline and no
+   * overlapping queries, so a slow system service cannot stall the caller
+   */
+  public static synchronized UsageEventSource getUsageEventSource(Context context) {
+    if (usageEvents == null) {
+      UsageStatsManager usm =
+        (UsageStatsManager) context.getApplicationContext().getSystemService(Context.USAGE_STATS_SERVICE);
+      usageEvents = new BoundedEventSource(
+        new AndroidUsageEventSource(usm), getQueryHealth(), BoundedEventSource.DEFAULT_DEADLINE_MS);
+    }
+    return usageEvents;
+  }
+
+  /**
+   * Process-wide foreground resolver shared by the monitoring service and on-demand callers
+   */
+  public static synchronized ForegroundResolver getForegroundResolver(Context context) {
+    if (foregroundResolver == null) {
+      foregroundResolver = new ForegroundResolver(
+        getUsageEventSource(context), Clock.SYSTEM, context.getApplicationContext().getPackageName());
+    }
+    return foregroundResolver;
+  }
+
   /**
-   * Get the currently foreground app package using UsageStatsManager
+   * Get the currently foreground app package (null for launchers, system UI or nothing in front)
    */
   public static String getForegroundAppPackage(Context context) {
     try {
-      UsageStatsManager usageStatsManager = 
-        (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
-      long endTime = System.currentTimeMillis();
-      long startTime = endTime - 5000; // Last 5 seconds
-
-      UsageEvents events = usageStatsManager.queryEvents(startTime, endTime);
-      UsageEvents.Event event = new UsageEvents.Event();
-      String foregroundApp = null;
-
-      while (events.hasNextEvent()) {
-        events.getNextEvent(event);
-        if (event.getEventType() == UsageEvents.Event.MOVE_TO_FOREGROUND) {
-          foregroundApp = event.getPackageName();
-        }
-      }
-
-      return foregroundApp;
+      return getForegroundResolver(context).getForegroundAppPackage();
     } catch (Exception e) {
       return null;
     }
@@ -0,0 +1,161 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compares a JMH CSV result (run with -prof gc) against the committed baseline.
+ * A benchmark regresses when its ns/op grows by more than the tolerance beyond both error
+ * bars, or when its normalized allocation (B/op) grows at all beyond a few bytes of noise.
+ *
+ * Usage: BaselineCheck <baseline.csv> <results.csv> [tolerance]
+ */
+public final class BaselineCheck {
+  private static final String ALLOC_SUFFIX = "gc.alloc.rate.norm";
+  private static final double ALLOC_SLACK_BYTES = 8;
+
+  static final class Score {
+    final double value;
+    final double error;
+    final String unit;
+
+    Score(double value, double error, String unit) {
+      this.value = value;
+      this.error = error;
+      this.unit = unit;
+    }
+  }
+
+  private BaselineCheck() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: BaselineCheck <baseline.csv> <results.csv> [tolerance]");
+      System.exit(2);
+    }
+    Path baselinePath = Paths.get(args[0]);
+    Path resultsPath = Paths.get(args[1]);
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+    if (!Files.exists(baselinePath)) {
+      System.out.println("No baseline at " + baselinePath + "; record one with :benchmarks:jmhSaveBaseline");
+      return;
+    }
+    if (!Files.exists(resultsPath)) {
+      System.err.println("No results at " + resultsPath + "; run :benchmarks:jmh first");
+      System.exit(2);
+    }
+    printRecordedOn(baselinePath);
+
+    Map<String, Score> baseline = read(baselinePath);
+    Map<String, Score> results = read(resultsPath);
+    List<String> regressions = new ArrayList<>();
+
+    System.out.println(String.format(Locale.ROOT, "%-72s %14s %14s %8s", "benchmark", "baseline", "current", "delta"));
+    for (Map.Entry<String, Score> entry : results.entrySet()) {
+      String key = entry.getKey();
+      Score current = entry.getValue();
+      Score base = baseline.get(key);
+      if (base == null) {
+        System.out.println(String.format(Locale.ROOT, "%-72s %14s %14.1f %8s  (new)", key, "-", current.value, ""));
+        continue;
+      }
+      double delta = base.value == 0 ? 0 : (current.value - base.value) / base.value;
+      boolean regressed;
+      if (key.endsWith(ALLOC_SUFFIX)) {
+        regressed = current.value > base.value + ALLOC_SLACK_BYTES;
+      } else if (key.contains(":")) {
+        continue; // other profiler counters (gc.count, gc.time, ...) are informational only
+      } else {
+        double allowed = base.value * (1 + tolerance) + base.error + current.error;
+        regressed = current.value > allowed;
+      }
+      System.out.println(String.format(Locale.ROOT, "%-72s %14.1f %14.1f %+7.1f%% %s%s",
+        key, base.value, current.value, delta * 100, current.unit, regressed ? "  REGRESSION" : ""));
+      if (regressed) regressions.add(key);
+    }
+
+    if (!regressions.isEmpty()) {
+      System.err.println(regressions.size() + " benchmark(s) regressed against " + baselinePath);
+      System.exit(1);
+    }
+  }
+
+  // Where the baseline came from, saved next to it by jmhSaveBaseline; scores from another
+  // machine or JDK are not comparable
+  private static void printRecordedOn(Path baselinePath) throws IOException {
+    String name = baselinePath.getFileName().toString().replaceFirst("\\.csv$", "") + ".properties";
+    Path infoPath = baselinePath.resolveSibling(name);
+    if (!Files.exists(infoPath)) return;
+    Properties info = new Properties();
+    try (BufferedReader reader = Files.newBufferedReader(infoPath, StandardCharsets.UTF_8)) {
+      info.load(reader);
+    }
+    System.out.println(String.format(Locale.ROOT, "Baseline recorded %s on %s %s, %s cpus, %s %s",
+      info.getProperty("recorded", "?"), info.getProperty("os.name", "?"), info.getProperty("os.arch", "?"),
+      info.getProperty("cpus", "?"), info.getProperty("java.vm.name", "?"), info.getProperty("java.version", "?")));
+  }
+
+  // Benchmark name (plus params) -> primary or secondary score
+  static Map<String, Score> read(Path path) throws IOException {
+    Map<String, Score> scores = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String headerLine = reader.readLine();
+      if (headerLine == null) return scores;
+      List<String> header = splitCsv(headerLine);
+      int scoreCol = header.indexOf("Score");
+      int errorCol = header.indexOf("Score Error (99.9%)");
+      int unitCol = header.indexOf("Unit");
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) continue;
+        List<String> row = splitCsv(line);
+        // JMH names secondary results "benchmark:gc.alloc.rate.norm" (older releases use a middle dot)
+        StringBuilder key = new StringBuilder(row.get(0).replace('·', ':'));
+        for (int i = unitCol + 1; i < row.size() && i < header.size(); i++) {
+          if (!row.get(i).isEmpty()) {
+            key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(row.get(i));
+          }
+        }
+        double error = errorCol >= 0 ? parse(row.get(errorCol)) : 0;
+        scores.put(key.toString(), new Score(parse(row.get(scoreCol)), Double.isNaN(error) ? 0 : error, row.get(unitCol)));
+      }
+    }
+    return scores;
+  }
+
+  private static double parse(String value) {
+    if (value.isEmpty() || value.equals("NaN")) return Double.NaN;
+    return Double.parseDouble(value.replace(',', '.'));
+  }
+
+  private static List<String> splitCsv(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ',' && !quoted) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
@@ -0,0 +1,98 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Locale;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundTracker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringMetrics;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageEventSource;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageTrace;
+
+/**
+ * Drives the monitoring core with synthetic heavy-user days and reports how it scales:
+ * per-task CPU, tracked-app map growth and heap, notification volume and wake-lock time.
+ *
+ *   LoadMain [--seed=n] [--days=n] [--packages=n] [--dwell=minMs,maxMs]
+ *            [--poll=ms] [--debounce=ms] [--save=file.fftrace]
+ */
+public final class LoadMain {
+  private LoadMain() {}
+
+  public static void main(String[] args) throws IOException {
+    SyntheticUsage.Profile profile = new SyntheticUsage.Profile();
+    long seed = 1;
+    int days = 1;
+    long poll = MonitoringEngine.POLL_INTERVAL_MS;
+    long debounce = ForegroundTracker.DEFAULT_DWELL_MS;
+    String save = null;
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--seed=")) {
+        seed = Long.parseLong(value);
+      } else if (arg.startsWith("--days=")) {
+        days = Integer.parseInt(value);
+      } else if (arg.startsWith("--packages=")) {
+        profile.distinctPackages = Integer.parseInt(value);
+      } else if (arg.startsWith("--dwell=")) {
+        String[] range = value.split(",");
+        profile.minSwitchDwellMs = Long.parseLong(range[0]);
+        profile.maxSwitchDwellMs = Long.parseLong(range[1]);
+      } else if (arg.startsWith("--poll=")) {
+        poll = Long.parseLong(value);
+      } else if (arg.startsWith("--debounce=")) {
+        debounce = Long.parseLong(value);
+      } else if (arg.startsWith("--save=")) {
+        save = value;
+      } else {
+        System.err.println("unknown argument " + arg);
+        System.exit(2);
+      }
+    }
+
+    // Days start at 07:00 local time so the engine's midnight rollover falls in the screen-off gap
+    Calendar cal = Calendar.getInstance();
+    cal.set(2025, Calendar.MARCH, 3, 7, 0, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    UsageTrace trace = new SyntheticUsage(profile, seed).generate(cal.getTimeInMillis(), days);
+    if (save != null) {
+      try (OutputStream out = new FileOutputStream(save)) {
+        trace.writeTo(out);
+      }
+    }
+
+    int resumes = 0;
+    for (int i = 0; i < trace.size(); i++) {
+      if (trace.type(i) == UsageEventSource.MOVE_TO_FOREGROUND) resumes++;
+    }
+    System.out.println(String.format(Locale.ROOT, "synthetic: %d day(s), %d events, %d resumes, %d packages, seed %d",
+      days, trace.size(), resumes, trace.packageCount(), seed));
+
+    TraceReplay.Result r = new TraceReplay(trace).withLoadProbes().run(poll, debounce);
+    MonitoringMetrics.Histogram cpu = r.taskCpuNanos;
+    double simulatedHours = (trace.endTime() - trace.startTime()) / 3600000.0;
+    long cpuTotal = cpu.mean() * cpu.count();
+
+    System.out.println(String.format(Locale.ROOT, "strategy: poll=%dms debounce=%dms", poll, debounce));
+    System.out.println(String.format(Locale.ROOT,
+      "ticks: %d tasks, cpu/tick mean %s p50 %s p90 %s p99 %s max %s, total %.1fms (%.2fms per simulated hour)",
+      cpu.count(), MonitoringMetrics.formatNanos(cpu.mean()), MonitoringMetrics.formatNanos(cpu.percentile(50)),
+      MonitoringMetrics.formatNanos(cpu.percentile(90)), MonitoringMetrics.formatNanos(cpu.percentile(99)),
+      MonitoringMetrics.formatNanos(cpu.max()), cpuTotal / 1e6, cpuTotal / 1e6 / simulatedHours));
+    System.out.println(String.format(Locale.ROOT, "queries: %d usage queries, %d events decoded (%.1f per query)",
+      r.usageQueries, r.eventsDecoded, r.usageQueries == 0 ? 0 : (double) r.eventsDecoded / r.usageQueries));
+    System.out.println(String.format(Locale.ROOT,
+      "notifications: %d nudges, %d meta-nudges, wake lock %ds; attribution error %.2f%%, missed %d/%d sessions",
+      r.nudgesPosted, r.metaNudgesPosted, r.wakeLockMs / 1000, r.attributionError() * 100,
+      r.missedSessions, r.observableSessions));
+    System.out.println("dailyUsageMap by simulated hour (tracked apps, used heap after GC):");
+    long baseHeap = r.hourlySamples.isEmpty() ? 0 : r.hourlySamples.get(0)[2];
+    for (long[] sample : r.hourlySamples) {
+      System.out.println(String.format(Locale.ROOT, "  h%-3d %5d apps  %+8.1f KiB",
+        sample[0], sample[1], (sample[2] - baseHeap) / 1024.0));
+    }
+  }
+}
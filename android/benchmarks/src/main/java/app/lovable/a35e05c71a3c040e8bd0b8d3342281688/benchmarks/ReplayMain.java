@@ -0,0 +1,118 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundTracker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageTrace;
+
+/**
+ * Replays a recorded usage trace (see the plugin's exportUsageTrace) and reports sessions,
+ * per-app totals against ground truth and nudge decisions.
+ *
+ *   ReplayMain <trace> [--poll=ms] [--dwell=ms] [--sessions] [--compare]
+ *
+ * --compare runs a fixed set of poll/dwell strategies over the same trace.
+ */
+public final class ReplayMain {
+  private static final long[][] STRATEGIES = {
+    {MonitoringEngine.POLL_INTERVAL_MS, ForegroundTracker.DEFAULT_DWELL_MS}, // current
+    {MonitoringEngine.POLL_INTERVAL_MS, 0},
+    {MonitoringEngine.POLL_INTERVAL_MS, 1500},
+    {MonitoringEngine.POLL_INTERVAL_MS, 3000},
+    {2000, ForegroundTracker.DEFAULT_DWELL_MS},
+    {10000, ForegroundTracker.DEFAULT_DWELL_MS},
+    {30000, ForegroundTracker.DEFAULT_DWELL_MS},
+  };
+
+  private ReplayMain() {}
+
+  public static void main(String[] args) throws IOException {
+    String path = null;
+    long poll = MonitoringEngine.POLL_INTERVAL_MS;
+    long dwell = ForegroundTracker.DEFAULT_DWELL_MS;
+    boolean sessions = false;
+    boolean compare = false;
+    for (String arg : args) {
+      if (arg.startsWith("--poll=")) {
+        poll = Long.parseLong(arg.substring("--poll=".length()));
+      } else if (arg.startsWith("--dwell=")) {
+        dwell = Long.parseLong(arg.substring("--dwell=".length()));
+      } else if (arg.equals("--sessions")) {
+        sessions = true;
+      } else if (arg.equals("--compare")) {
+        compare = true;
+      } else {
+        path = arg;
+      }
+    }
+    if (path == null) {
+      System.err.println("usage: ReplayMain <trace> [--poll=ms] [--dwell=ms] [--sessions] [--compare]");
+      System.exit(2);
+    }
+
+    UsageTrace trace;
+    try (InputStream in = new FileInputStream(path)) {
+      trace = UsageTrace.read(in);
+    }
+    System.out.println(String.format(Locale.ROOT, "trace: %d events, %d packages, %.1f h",
+      trace.size(), trace.packageCount(), (trace.endTime() - trace.startTime()) / 3600000.0));
+
+    TraceReplay replay = new TraceReplay(trace);
+    if (compare) {
+      replay.run(poll, dwell); // warm up the JIT so the first row's timing is comparable
+      System.out.println(String.format(Locale.ROOT, "%8s %8s %9s %11s %9s %8s %10s %7s %9s",
+        "poll", "dwell", "queries", "events", "error", "missed", "lag(ms)", "nudges", "wall(ms)"));
+      for (long[] strategy : STRATEGIES) {
+        printSummaryRow(replay.run(strategy[0], strategy[1]));
+      }
+      return;
+    }
+
+    TraceReplay.Result result = replay.run(poll, dwell);
+    if (sessions) {
+      System.out.println("sessions (engine):");
+      for (TraceReplay.Session s : result.sessions) {
+        System.out.println("  " + time(s.start) + " - " + time(s.end) + "  " + s.seconds() + "s  " + s.packageName);
+      }
+    }
+    System.out.println("totals (engine vs truth):");
+    for (Map.Entry<String, Long> entry : result.truthSeconds.entrySet()) {
+      long tracked = result.trackedSeconds.getOrDefault(entry.getKey(), 0L);
+      System.out.println(String.format(Locale.ROOT, "  %-48s %7ds %7ds %+6ds",
+        entry.getKey(), tracked, entry.getValue(), tracked - entry.getValue()));
+    }
+    for (Map.Entry<String, Long> entry : result.trackedSeconds.entrySet()) {
+      if (!result.truthSeconds.containsKey(entry.getKey())) {
+        System.out.println(String.format(Locale.ROOT, "  %-48s %7ds %7ds", entry.getKey(), entry.getValue(), 0));
+      }
+    }
+    System.out.println("nudges:");
+    for (TraceReplay.NudgeDecision n : result.nudges) {
+      System.out.println("  " + time(n.time) + "  L" + n.level + "  "
+        + (n.packageName != null ? n.packageName : "(meta)") + "  " + n.title);
+    }
+    System.out.println(String.format(Locale.ROOT,
+      "poll=%dms dwell=%dms: %d queries, %d events decoded, %d tasks, attribution error %.2f%%,"
+        + " missed %d/%d sessions, mean switch lag %.0fms, replayed in %.1fms (%.0f events/s)",
+      result.pollIntervalMs, result.dwellMs, result.usageQueries, result.eventsDecoded,
+      result.tasksRun, result.attributionError() * 100, result.missedSessions, result.observableSessions,
+      result.meanSwitchLagMs, result.wallNanos / 1e6, trace.size() / (result.wallNanos / 1e9)));
+  }
+
+  private static void printSummaryRow(TraceReplay.Result r) {
+    System.out.println(String.format(Locale.ROOT, "%8d %8d %9d %11d %8.2f%% %8s %10.0f %7d %9.1f",
+      r.pollIntervalMs, r.dwellMs, r.usageQueries, r.eventsDecoded, r.attributionError() * 100,
+      r.missedSessions + "/" + r.observableSessions, r.meanSwitchLagMs, r.nudges.size(), r.wallNanos / 1e6));
+  }
+
+  private static String time(long millis) {
+    return new SimpleDateFormat("HH:mm:ss", Locale.ROOT).format(new Date(millis));
+  }
+}
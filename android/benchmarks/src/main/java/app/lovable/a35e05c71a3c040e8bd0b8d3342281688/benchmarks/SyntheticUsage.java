@@ -0,0 +1,153 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.util.Random;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageEventSource;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageTrace;
+
+/**
+ * Generates synthetic usage days shaped like our heaviest users: bursts of switching every
+ * few seconds, split-screen flapping between two resumed apps, long single sessions,
+ * launcher hops and screen-off gaps, spread over hundreds of distinct packages.
+ */
+public final class SyntheticUsage {
+  private static final String[] HOT_APPS = {
+    "com.instagram.android",
+    "com.google.android.youtube",
+    "com.zhiliaoapp.musically",
+    "com.whatsapp",
+    "com.android.chrome",
+    "com.twitter.android",
+    "com.reddit.frontpage",
+    "com.snapchat.android",
+    "com.facebook.katana",
+    "com.google.android.gm",
+    "com.spotify.music",
+    "com.discord",
+  };
+  private static final String LAUNCHER = "com.sec.android.app.launcher";
+
+  public static final class Profile {
+    public int distinctPackages = 300;
+    public double awakeHours = 16;
+    // Segment weights; a segment is one stretch of behaviour between decisions
+    public int rapidSwitchWeight = 45;
+    public int splitScreenWeight = 10;
+    public int longSessionWeight = 8;
+    public int normalSessionWeight = 30;
+    public int screenOffWeight = 7;
+    public long minSwitchDwellMs = 1000;
+    public long maxSwitchDwellMs = 6000;
+  }
+
+  private final Profile profile;
+  private final Random random;
+  private final String[] packages;
+  private final UsageTrace.Builder out = new UsageTrace.Builder();
+  private long now;
+  private String foreground;
+
+  public SyntheticUsage(Profile profile, long seed) {
+    this.profile = profile;
+    this.random = new Random(seed);
+    this.packages = new String[Math.max(profile.distinctPackages, HOT_APPS.length)];
+    System.arraycopy(HOT_APPS, 0, packages, 0, HOT_APPS.length);
+    for (int i = HOT_APPS.length; i < packages.length; i++) {
+      packages[i] = "com.vendor" + (i % 37) + ".app" + i;
+    }
+  }
+
+  /** Consecutive waking days, each starting 24h after the previous one */
+  public UsageTrace generate(long firstDayStartMillis, int days) {
+    for (int d = 0; d < days; d++) {
+      generateDay(firstDayStartMillis + d * 24L * 3600 * 1000);
+    }
+    return out.build();
+  }
+
+  private void generateDay(long startMillis) {
+    now = startMillis;
+    foreground = null;
+    long end = startMillis + (long) (profile.awakeHours * 3600 * 1000);
+    out.add(null, UsageEventSource.SCREEN_INTERACTIVE, now);
+    int totalWeight = profile.rapidSwitchWeight + profile.splitScreenWeight + profile.longSessionWeight
+      + profile.normalSessionWeight + profile.screenOffWeight;
+    while (now < end) {
+      int pick = random.nextInt(totalWeight);
+      if ((pick -= profile.rapidSwitchWeight) < 0) {
+        rapidSwitching(20 + random.nextInt(180));
+      } else if ((pick -= profile.splitScreenWeight) < 0) {
+        splitScreen(60_000 + random.nextInt(9 * 60_000));
+      } else if ((pick -= profile.longSessionWeight) < 0) {
+        switchTo(hotApp());
+        now += 30 * 60_000 + random.nextInt(150 * 60_000);
+      } else if ((pick -= profile.normalSessionWeight) < 0) {
+        switchTo(random.nextInt(3) == 0 ? LAUNCHER : anyApp());
+        now += 30_000 + random.nextInt(10 * 60_000);
+      } else {
+        screenOff(5 * 60_000 + random.nextInt(55 * 60_000));
+      }
+    }
+    leave(foreground);
+    out.add(null, UsageEventSource.SCREEN_NON_INTERACTIVE, now + 1);
+  }
+
+  private void rapidSwitching(int switches) {
+    long range = profile.maxSwitchDwellMs - profile.minSwitchDwellMs;
+    for (int i = 0; i < switches; i++) {
+      switchTo(i % 5 == 4 ? LAUNCHER : (random.nextInt(4) == 0 ? anyApp() : hotApp()));
+      now += profile.minSwitchDwellMs + (long) (random.nextDouble() * range);
+    }
+  }
+
+  // Two resumed activities: focus flips between them without either pausing
+  private void splitScreen(long durationMs) {
+    String a = hotApp();
+    String b = anyApp();
+    switchTo(a);
+    long end = now + durationMs;
+    boolean onA = true;
+    while (now < end) {
+      now += 200 + random.nextInt(1300);
+      onA = !onA;
+      out.add(onA ? a : b, UsageEventSource.MOVE_TO_FOREGROUND, now);
+      foreground = onA ? a : b;
+    }
+  }
+
+  private void screenOff(long durationMs) {
+    leave(foreground);
+    foreground = null;
+    out.add(null, UsageEventSource.SCREEN_NON_INTERACTIVE, now + 100);
+    now += durationMs;
+    out.add(null, UsageEventSource.SCREEN_INTERACTIVE, now);
+    now += 300;
+  }
+
+  // Same ordering as UsageStatsManager: old app pauses, new app resumes, old app stops
+  private void switchTo(String pkg) {
+    String previous = foreground;
+    if (pkg.equals(previous)) return;
+    if (previous != null) out.add(previous, UsageEventSource.MOVE_TO_BACKGROUND, now);
+    now += 30 + random.nextInt(120);
+    out.add(pkg, UsageEventSource.MOVE_TO_FOREGROUND, now);
+    if (previous != null) out.add(previous, UsageEventSource.ACTIVITY_STOPPED, now + 350 + random.nextInt(300));
+    foreground = pkg;
+  }
+
+  private void leave(String pkg) {
+    if (pkg == null) return;
+    out.add(pkg, UsageEventSource.MOVE_TO_BACKGROUND, now);
+    out.add(pkg, UsageEventSource.ACTIVITY_STOPPED, now + 400);
+  }
+
+  // Skewed towards the first few hot apps
+  private String hotApp() {
+    double u = random.nextDouble();
+    return HOT_APPS[(int) (u * u * HOT_APPS.length)];
+  }
+
+  private String anyApp() {
+    return packages[random.nextInt(packages.length)];
+  }
+}
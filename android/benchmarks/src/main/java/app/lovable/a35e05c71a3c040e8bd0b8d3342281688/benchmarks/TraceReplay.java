@@ -0,0 +1,302 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.AppNameResolver;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundResolver;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.ForegroundTracker;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.InMemoryKeyValueStore;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringEngine;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringMetrics;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Nudge;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.NudgeComposer;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageEventSource;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.UsageTrace;
+
+/**
+ * Replays a UsageTrace through MonitoringEngine on a virtual clock and compares the sessions
+ * the engine tracked with the ground truth derived directly from the event stream.
+ */
+public final class TraceReplay {
+  public static final String OWN_PACKAGE = "app.lovable.a35e05c71a3c040e8bd0b8d3342281688";
+  // SystemMonitoringService holds a 10s wake lock for every nudge it posts
+  public static final long NUDGE_WAKE_LOCK_MS = 10000;
+  private static final long SAMPLE_INTERVAL_MS = 60 * 60 * 1000;
+
+  public static final class Session {
+    public final String packageName;
+    public final long start;
+    public long end;
+
+    Session(String packageName, long start) {
+      this.packageName = packageName;
+      this.start = start;
+    }
+
+    public long seconds() {
+      return (end - start) / 1000;
+    }
+  }
+
+  public static final class NudgeDecision {
+    public final long time;
+    public final String packageName; // null for meta-nudges
+    public final int level;
+    public final String title;
+
+    NudgeDecision(long time, String packageName, int level, String title) {
+      this.time = time;
+      this.packageName = packageName;
+      this.level = level;
+      this.title = title;
+    }
+  }
+
+  public static final class Result {
+    public final long pollIntervalMs;
+    public final long dwellMs;
+    // Sessions as the engine accounted them, and when each switch was reported (start only)
+    public final List<Session> sessions = new ArrayList<>();
+    public final List<Session> switches = new ArrayList<>();
+    public final List<Session> truth = new ArrayList<>();
+    public final List<NudgeDecision> nudges = new ArrayList<>();
+    public final Map<String, Long> trackedSeconds = new TreeMap<>();
+    public final Map<String, Long> truthSeconds = new TreeMap<>();
+    public long usageQueries;
+    public long eventsDecoded;
+    public long tasksRun;
+    public long wallNanos;
+    // Truth sessions of at least MIN_OBSERVABLE_MS the engine never attributed to the right app
+    public int missedSessions;
+    public int observableSessions;
+    public double meanSwitchLagMs;
+    public long nudgesPosted;
+    public long metaNudgesPosted;
+    public long wakeLockMs;
+    // Load probes (null/empty unless enabled)
+    public MonitoringMetrics.Histogram taskCpuNanos;
+    public final List<long[]> hourlySamples = new ArrayList<>(); // {hour, trackedApps, usedHeapBytes}
+
+    Result(long pollIntervalMs, long dwellMs) {
+      this.pollIntervalMs = pollIntervalMs;
+      this.dwellMs = dwellMs;
+    }
+
+    public long totalTrackedSeconds() {
+      long total = 0;
+      for (long s : trackedSeconds.values()) total += s;
+      return total;
+    }
+
+    public long totalTruthSeconds() {
+      long total = 0;
+      for (long s : truthSeconds.values()) total += s;
+      return total;
+    }
+
+    // Sum over apps of |tracked - truth|, as a fraction of true foreground time
+    public double attributionError() {
+      long diff = 0;
+      for (Map.Entry<String, Long> entry : truthSeconds.entrySet()) {
+        diff += Math.abs(trackedSeconds.getOrDefault(entry.getKey(), 0L) - entry.getValue());
+      }
+      for (Map.Entry<String, Long> entry : trackedSeconds.entrySet()) {
+        if (!truthSeconds.containsKey(entry.getKey())) diff += entry.getValue();
+      }
+      long total = totalTruthSeconds();
+      return total == 0 ? 0 : (double) diff / total;
+    }
+  }
+
+  static final long MIN_OBSERVABLE_MS = 10000;
+
+  private final UsageTrace trace;
+  private boolean loadProbes;
+
+  public TraceReplay(UsageTrace trace) {
+    this.trace = trace;
+  }
+
+  /**
+   * Also time every scheduled task on the thread CPU clock and sample the engine's
+   * tracked-app count and used heap (after GC) once per simulated hour.
+   */
+  public TraceReplay withLoadProbes() {
+    loadProbes = true;
+    return this;
+  }
+
+  public Result run(long pollIntervalMs, long dwellMs) {
+    final Result result = new Result(pollIntervalMs, dwellMs);
+    final VirtualScheduler scheduler = new VirtualScheduler(trace.startTime());
+
+    MonitoringEngine.Listener listener = new MonitoringEngine.Listener() {
+      @Override
+      public void onAppChanged(String packageName, String appName) {
+        result.switches.add(new Session(packageName, scheduler.currentTimeMillis()));
+      }
+
+      @Override
+      public void onSessionEnded(String packageName, long startMillis, long endMillis) {
+        Session session = new Session(packageName, startMillis);
+        session.end = endMillis;
+        result.sessions.add(session);
+      }
+
+      @Override
+      public void onDurationUpdate(String packageName, String appName, int durationSeconds) {}
+
+      @Override
+      public void onNudge(String packageName, String appName, Nudge nudge, long crossedAtMillis) {
+        result.nudges.add(new NudgeDecision(scheduler.currentTimeMillis(), packageName, nudge.level, nudge.title));
+        result.nudgesPosted++;
+        result.wakeLockMs += NUDGE_WAKE_LOCK_MS;
+      }
+
+      @Override
+      public void onMetaNudge(Nudge nudge, int totalSeconds, long crossedAtMillis) {
+        result.nudges.add(new NudgeDecision(scheduler.currentTimeMillis(), null, nudge.level, nudge.title));
+        result.metaNudgesPosted++;
+        result.wakeLockMs += NUDGE_WAKE_LOCK_MS;
+      }
+    };
+
+    MonitoringEngine engine = new MonitoringEngine(
+      scheduler,
+      scheduler,
+      new ForegroundTracker(trace, scheduler, OWN_PACKAGE),
+      new AppNameResolver(null),
+      new NudgeComposer(new InMemoryKeyValueStore(), new InMemoryKeyValueStore()),
+      listener
+    );
+    engine.setPollingStrategy(pollIntervalMs, dwellMs);
+    if (loadProbes) {
+      scheduler.enableCpuTiming();
+      sample(engine, result, 0);
+    }
+    long nextSample = trace.startTime() + SAMPLE_INTERVAL_MS;
+
+    MonitoringMetrics metrics = MonitoringMetrics.get();
+    metrics.reset();
+    long startNanos = System.nanoTime();
+    long probeNanos = 0;
+
+    engine.start();
+    // Screen state reaches the service as broadcasts, not through the polled query
+    for (int i = 0; i <= trace.size(); i++) {
+      boolean last = i == trace.size();
+      int type = last ? 0 : trace.type(i);
+      if (!last && type != UsageEventSource.SCREEN_NON_INTERACTIVE && type != UsageEventSource.SCREEN_INTERACTIVE) continue;
+      long until = last ? trace.endTime() : trace.time(i);
+      while (loadProbes && nextSample <= until) {
+        scheduler.runUntil(nextSample);
+        long probeStart = System.nanoTime();
+        sample(engine, result, (nextSample - trace.startTime()) / SAMPLE_INTERVAL_MS);
+        probeNanos += System.nanoTime() - probeStart;
+        nextSample += SAMPLE_INTERVAL_MS;
+      }
+      scheduler.runUntil(until);
+      if (last) break;
+      if (type == UsageEventSource.SCREEN_NON_INTERACTIVE) {
+        engine.onScreenOff();
+      } else {
+        engine.onScreenOn();
+      }
+    }
+    engine.stop();
+    engine.onScreenOff(); // flush the running session
+
+    result.wallNanos = System.nanoTime() - startNanos - probeNanos;
+    result.usageQueries = metrics.count(MonitoringMetrics.USAGE_QUERIES);
+    result.eventsDecoded = metrics.count(MonitoringMetrics.EVENTS_DECODED);
+    result.tasksRun = scheduler.getTasksRun();
+    result.taskCpuNanos = scheduler.getTaskCpu();
+
+    groundTruth(result.truth);
+    for (Session s : result.sessions) result.trackedSeconds.merge(s.packageName, s.seconds(), Long::sum);
+    for (Session s : result.truth) result.truthSeconds.merge(s.packageName, s.seconds(), Long::sum);
+    scoreSwitches(result);
+    return result;
+  }
+
+  private static void sample(MonitoringEngine engine, Result result, long hour) {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    result.hourlySamples.add(new long[]{hour, engine.getTrackedAppCount(), runtime.totalMemory() - runtime.freeMemory()});
+  }
+
+  private static void closeSession(List<Session> sessions, Session[] current, long now) {
+    if (current[0] == null) return;
+    current[0].end = now;
+    sessions.add(current[0]);
+    current[0] = null;
+  }
+
+  /**
+   * What the user actually had in front of them: a resumed app stays foreground until it
+   * pauses/stops, another app (or a launcher) resumes, or the screen turns off.
+   */
+  private void groundTruth(List<Session> out) {
+    Session[] current = new Session[1];
+    for (int i = 0; i < trace.size(); i++) {
+      String pkg = trace.packageName(i);
+      long time = trace.time(i);
+      switch (trace.type(i)) {
+        case UsageEventSource.MOVE_TO_FOREGROUND:
+          if (current[0] != null && current[0].packageName.equals(pkg)) break;
+          closeSession(out, current, time);
+          if (pkg != null && !ForegroundResolver.isExcluded(pkg, OWN_PACKAGE)) current[0] = new Session(pkg, time);
+          break;
+        case UsageEventSource.MOVE_TO_BACKGROUND:
+        case UsageEventSource.ACTIVITY_STOPPED:
+          if (current[0] != null && current[0].packageName.equals(pkg)) closeSession(out, current, time);
+          break;
+        case UsageEventSource.SCREEN_NON_INTERACTIVE:
+          closeSession(out, current, time);
+          break;
+        default:
+          break;
+      }
+    }
+    closeSession(out, current, trace.endTime());
+  }
+
+  // Match each observable truth session to the first overlapping engine session of the same app;
+  // lag is how long after the real switch the engine reported it
+  private static void scoreSwitches(Result result) {
+    List<Session> tracked = result.sessions;
+    List<Session> reported = result.switches;
+    int j = 0;
+    int r = 0;
+    long lagTotal = 0;
+    int lagCount = 0;
+    for (Session truth : result.truth) {
+      if (truth.end - truth.start < MIN_OBSERVABLE_MS) continue;
+      result.observableSessions++;
+      while (j < tracked.size() && tracked.get(j).end <= truth.start) j++;
+      boolean found = false;
+      for (int k = j; k < tracked.size() && tracked.get(k).start < truth.end; k++) {
+        if (tracked.get(k).packageName.equals(truth.packageName)) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        result.missedSessions++;
+        continue;
+      }
+      while (r < reported.size() && reported.get(r).start < truth.start) r++;
+      for (int k = r; k < reported.size() && reported.get(k).start < truth.end + result.pollIntervalMs; k++) {
+        if (reported.get(k).packageName.equals(truth.packageName)) {
+          lagTotal += reported.get(k).start - truth.start;
+          lagCount++;
+          break;
+        }
+      }
+    }
+    result.meanSwitchLagMs = lagCount == 0 ? 0 : (double) lagTotal / lagCount;
+  }
+}
@@ -0,0 +1,98 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.PriorityQueue;
+
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Clock;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.MonitoringMetrics;
+import app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core.Scheduler;
+
+/**
+ * Single-threaded scheduler over a virtual clock: time only moves when runUntil() pops the
+ * next task, so a day of monitoring runs as fast as the engine can execute.
+ */
+public final class VirtualScheduler implements Scheduler, Clock {
+  private static final class Task implements Comparable<Task> {
+    final long when;
+    final long seq;
+    final Runnable runnable;
+    boolean cancelled;
+
+    Task(long when, long seq, Runnable runnable) {
+      this.when = when;
+      this.seq = seq;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if (when != other.when) return Long.compare(when, other.when);
+      return Long.compare(seq, other.seq);
+    }
+  }
+
+  private final PriorityQueue<Task> queue = new PriorityQueue<>();
+  private long now;
+  private long seq;
+  private long tasksRun;
+  private ThreadMXBean cpuClock;
+  private MonitoringMetrics.Histogram taskCpu;
+
+  public VirtualScheduler(long startMillis) {
+    this.now = startMillis;
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return now;
+  }
+
+  @Override
+  public void postDelayed(Runnable task, long delayMillis) {
+    queue.add(new Task(now + Math.max(0, delayMillis), seq++, task));
+  }
+
+  @Override
+  public void cancel(Runnable task) {
+    for (Task t : queue) {
+      if (t.runnable == task) t.cancelled = true;
+    }
+  }
+
+  /** Record the thread CPU time of every task run from now on */
+  public void enableCpuTiming() {
+    cpuClock = ManagementFactory.getThreadMXBean();
+    if (cpuClock.isCurrentThreadCpuTimeSupported()) {
+      cpuClock.setThreadCpuTimeEnabled(true);
+    }
+    taskCpu = new MonitoringMetrics.Histogram();
+  }
+
+  /** Per-task CPU nanoseconds, or null if timing is off */
+  public MonitoringMetrics.Histogram getTaskCpu() {
+    return taskCpu;
+  }
+
+  /** Run every task due at or before the given time, then leave the clock there */
+  public void runUntil(long timeMillis) {
+    while (!queue.isEmpty() && queue.peek().when <= timeMillis) {
+      Task task = queue.poll();
+      if (task.cancelled) continue;
+      now = task.when;
+      if (taskCpu != null) {
+        long cpuStart = cpuClock.getCurrentThreadCpuTime();
+        task.runnable.run();
+        taskCpu.record(cpuClock.getCurrentThreadCpuTime() - cpuStart);
+      } else {
+        task.runnable.run();
+      }
+      tasksRun++;
+    }
+    if (timeMillis > now) now = timeMillis;
+  }
+
+  public long getTasksRun() {
+    return tasksRun;
+  }
+}
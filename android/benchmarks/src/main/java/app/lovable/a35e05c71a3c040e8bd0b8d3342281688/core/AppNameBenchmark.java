@@ -0,0 +1,62 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * App name resolution on every committed app switch, including the keyword and
+ * package-name fallbacks taken when PackageManager has no label.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AppNameBenchmark {
+  // PackageManager lookups that fail (uninstalled or hidden apps)
+  private final AppNameResolver failingLabels = new AppNameResolver(pkg -> {
+    throw new IllegalStateException("NameNotFoundException");
+  });
+  // PackageManager lookups that return no label
+  private final AppNameResolver emptyLabels = new AppNameResolver(pkg -> null);
+  private int cursor;
+
+  private String next() {
+    return Packages.UNTRACKED[(cursor++ & 0x7fffffff) % Packages.UNTRACKED.length];
+  }
+
+  @Benchmark
+  public String extractSimpleName() {
+    return AppNameResolver.extractSimpleName(next());
+  }
+
+  @Benchmark
+  public String matchKeyword() {
+    return AppNameResolver.matchKeyword(next());
+  }
+
+  @Benchmark
+  public String getAppNameKnown() {
+    return emptyLabels.getAppName(Packages.TRACKED[(cursor++ & 0x7fffffff) % Packages.TRACKED.length]);
+  }
+
+  @Benchmark
+  public String getAppNameFallback() {
+    return emptyLabels.getAppName(next());
+  }
+
+  @Benchmark
+  public String getAppNameLabelFailure() {
+    return failingLabels.getAppName(next());
+  }
+}
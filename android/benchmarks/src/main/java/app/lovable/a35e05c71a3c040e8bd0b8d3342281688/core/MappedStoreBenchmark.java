@@ -0,0 +1,79 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The store's startup replay and the per-nudge operations on it (a message rotation read and
+ * write, and the recent-actions string) with a growing number of keys. Writes include their
+ * share of compactions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappedStoreBenchmark {
+  @Param({"10", "100", "1000"})
+  public int keyCount;
+
+  private File file;
+  private MappedStore store;
+  private KeyValueStore nudges;
+  private KeyValueStore actions;
+  private int cursor;
+
+  @Setup
+  public void setup() throws IOException {
+    file = Files.createTempFile("flowfocus", ".kv").toFile();
+    file.delete();
+    store = MappedStore.open(file);
+    nudges = store.namespace("FlowFocusNudges");
+    actions = store.namespace("flowfocus_action_engine");
+    for (int i = 0; i < keyCount; i++) {
+      nudges.putInt("msg_index_" + i, i);
+    }
+    actions.putString("recent_actions", "flowfocus://breathing,flowfocus://walk,flowfocus://journal");
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public MappedStore open() throws IOException {
+    return MappedStore.open(file);
+  }
+
+  @Benchmark
+  public int rotateMessage() {
+    String key = "msg_index_" + (cursor++ % keyCount);
+    int index = nudges.getInt(key, 0);
+    nudges.putInt(key, index + 1);
+    return index;
+  }
+
+  @Benchmark
+  public String trackAction() {
+    String recent = actions.getString("recent_actions", "");
+    actions.putString("recent_actions", recent);
+    return recent;
+  }
+}
@@ -0,0 +1,142 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the engine's scheduled work on a virtual clock: the 5s poll, the 30s duration
+ * tick (which includes nudge evaluation), app switches and the daily-usage map update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MonitoringLoopBenchmark {
+  private long now = 1_700_000_000_000L;
+  private String foreground;
+  private String previous;
+  private long switchedAt;
+  private MonitoringEngine engine;
+  private int cursor;
+
+  @Setup
+  public void setup() {
+    Clock clock = () -> now;
+    Scheduler scheduler = new Scheduler() {
+      @Override
+      public void postDelayed(Runnable task, long delayMillis) {}
+
+      @Override
+      public void cancel(Runnable task) {}
+    };
+    // Only the latest switch is in the store; the tracker's cursor asks for new events only
+    UsageEventSource source = (begin, end, visitor) -> {
+      if (switchedAt < begin || switchedAt >= end) return 0;
+      int count = 0;
+      if (previous != null) {
+        visitor.onEvent(previous, UsageEventSource.MOVE_TO_BACKGROUND, switchedAt);
+        count++;
+      }
+      visitor.onEvent(foreground, UsageEventSource.MOVE_TO_FOREGROUND, switchedAt + 50);
+      return count + 1;
+    };
+    MonitoringEngine.Listener listener = new MonitoringEngine.Listener() {
+      @Override
+      public void onAppChanged(String packageName, String appName) {}
+
+      @Override
+      public void onSessionEnded(String packageName, long startMillis, long endMillis) {}
+
+      @Override
+      public void onDurationUpdate(String packageName, String appName, int durationSeconds) {}
+
+      @Override
+      public void onNudge(String packageName, String appName, Nudge nudge, long crossedAtMillis) {}
+
+      @Override
+      public void onMetaNudge(Nudge nudge, int totalSeconds, long crossedAtMillis) {}
+    };
+    engine = new MonitoringEngine(
+      clock,
+      scheduler,
+      new ForegroundTracker(source, clock, "app.lovable.a35e05c71a3c040e8bd0b8d3342281688"),
+      new AppNameResolver(pkg -> null),
+      new NudgeComposer(new InMemoryKeyValueStore(), new InMemoryKeyValueStore()),
+      listener
+    );
+    switchTo(Packages.TRACKED[0]);
+    engine.poll();
+  }
+
+  // The user switched apps a few seconds before the next poll
+  private void switchTo(String packageName) {
+    previous = foreground;
+    foreground = packageName;
+    switchedAt = now - 3000;
+  }
+
+  private String nextPackage() {
+    return Packages.MIXED[(cursor++ & 0x7fffffff) % Packages.MIXED.length];
+  }
+
+  // Steady state: the foreground app has not changed since the last poll
+  @Benchmark
+  public void pollUnchanged() {
+    now += MonitoringEngine.POLL_INTERVAL_MS;
+    engine.poll();
+  }
+
+  // Poll that sees a new app which has already held past the dwell time
+  @Benchmark
+  public void pollAndSwitch() {
+    now += MonitoringEngine.POLL_INTERVAL_MS;
+    switchTo(nextPackage());
+    engine.poll();
+  }
+
+  // Duration broadcast, screen-time accounting and nudge evaluation
+  @Benchmark
+  public void durationTick() {
+    now += MonitoringEngine.DURATION_TICK_MS;
+    engine.onDurationTick();
+  }
+
+  // One 30s period of a heavy user: six polls, a duration tick and an occasional switch
+  @Benchmark
+  public void monitoringPeriod() {
+    for (int i = 0; i < 6; i++) {
+      now += MonitoringEngine.POLL_INTERVAL_MS;
+      engine.poll();
+    }
+    if ((cursor & 7) == 0) {
+      now += MonitoringEngine.POLL_INTERVAL_MS;
+      switchTo(nextPackage());
+      engine.poll();
+    }
+    cursor++;
+    engine.onDurationTick();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(32)
+  public void dailyUsageUpdate() {
+    String[] packages = Packages.MIXED;
+    for (int i = 0; i < 32; i++) {
+      engine.saveDailyUsage(packages[(cursor + i) % packages.length], 30, i & 3);
+    }
+    cursor++;
+  }
+}
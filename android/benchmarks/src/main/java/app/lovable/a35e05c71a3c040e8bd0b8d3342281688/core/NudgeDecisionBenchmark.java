@@ -0,0 +1,71 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-nudge work: threshold lookup, message rotation/rendering and action selection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NudgeDecisionBenchmark {
+  private final KeyValueStore messageStore = new InMemoryKeyValueStore();
+  private final KeyValueStore actionStore = new InMemoryKeyValueStore();
+  private NudgeComposer composer;
+  private int cursor;
+
+  @Setup
+  public void setup() {
+    composer = new NudgeComposer(messageStore, actionStore);
+    TraceLog.clear();
+  }
+
+  private int next() {
+    return cursor++ & 0x7fffffff;
+  }
+
+  @Benchmark
+  public AppThresholds.AppConfig getAppConfig() {
+    return AppThresholds.getAppConfig(Packages.MIXED[next() % Packages.MIXED.length]);
+  }
+
+  @Benchmark
+  public String[] getNudgeMessage() {
+    return AppThresholds.getNudgeMessage(messageStore, 1 + next() % 4);
+  }
+
+  @Benchmark
+  public List<ActionSelectionEngine.ActionButton> getContextualActions() {
+    int i = next();
+    int level = 1 + i % 4;
+    return ActionSelectionEngine.getContextualActions(
+      actionStore, level, i % 2 == 0 ? "avoidance" : "seeking_stimulation", 10 * level, i % 24, new String[]{}, "");
+  }
+
+  // Full nudge content as the engine builds it: message + placeholders + actions
+  @Benchmark
+  public Nudge composeNudge() {
+    int i = next();
+    return composer.compose(1 + i % 4, "Instagram", "friend", 900 + i % 1800, "seeking_stimulation", i % 24);
+  }
+
+  @Benchmark
+  public Nudge composeMetaNudge() {
+    return composer.composeMeta(1 + next() % 3, 3 * 3600, "friend");
+  }
+}
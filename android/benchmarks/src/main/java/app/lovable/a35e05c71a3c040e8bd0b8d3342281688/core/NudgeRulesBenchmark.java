@@ -0,0 +1,74 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-tick rule decision (app policy, budget, quiet hours) against rule sets of growing size;
+ * the cost should stay flat. Compilation is measured separately since it runs once per change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NudgeRulesBenchmark {
+  @Param({"1", "10", "100", "1000"})
+  public int ruleCount;
+
+  private NudgeRules rules;
+  private int cursor;
+
+  @Setup
+  public void setup() {
+    rules = build(ruleCount).compile();
+  }
+
+  private static NudgeRules.Builder build(int ruleCount) {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.group("mixed", Packages.MIXED);
+    builder.quietHours(23 * 60, 7 * 60, NudgeRules.ALL_DAYS);
+    builder.rule("budget").groups("mixed").sharedBudget(true).thresholds(3600, 7200);
+    for (int i = 0; i < ruleCount; i++) {
+      builder.rule("r" + i)
+        .apps(Packages.MIXED[i % Packages.MIXED.length], "com.example.app" + i)
+        .thresholds(600 + i, 1200 + i)
+        .days(i % 2 == 0 ? NudgeRules.WEEKDAYS : NudgeRules.WEEKEND)
+        .quietHours(i % (24 * 60), (i + 30) % (24 * 60))
+        .cooldownMs(60000);
+    }
+    return builder;
+  }
+
+  private int next() {
+    return cursor++ & 0x7fffffff;
+  }
+
+  @Benchmark
+  public int decide() {
+    int i = next();
+    String packageName = Packages.MIXED[i % Packages.MIXED.length];
+    int day = i % 7;
+    NudgeRules.Policy policy = rules.appPolicy(packageName, day);
+    NudgeRules.Policy budget = rules.budgetPolicy(packageName, day);
+    boolean quiet = rules.isQuiet(policy, day, i % (24 * 60));
+    return (policy != null ? policy.id : -1) + (budget != null ? budget.budget : 0) + (quiet ? 1 : 0);
+  }
+
+  @Benchmark
+  public NudgeRules compile() {
+    return build(ruleCount).compile();
+  }
+}
@@ -0,0 +1,61 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Package sets seen on real devices: tracked social/video apps, apps that only resolve
+ * through the label or keyword fallback, and launcher/system packages the detector drops.
+ */
+final class Packages {
+  static final String[] TRACKED = {
+    "com.google.android.youtube",
+    "com.instagram.android",
+    "com.zhiliaoapp.musically",
+    "com.facebook.katana",
+    "com.twitter.android",
+    "com.snapchat.android",
+    "com.reddit.frontpage",
+    "com.netflix.mediaclient",
+  };
+
+  static final String[] UNTRACKED = {
+    "com.whatsapp",
+    "org.telegram.messenger",
+    "com.spotify.music",
+    "com.google.android.gm",
+    "com.google.android.apps.maps",
+    "com.android.chrome",
+    "com.microsoft.teams",
+    "com.slack",
+    "com.duolingo",
+    "com.ubercab",
+    "in.swiggy.android",
+    "com.phonepe.app",
+    "net.one97.paytm",
+    "com.google.android.apps.photos",
+    "com.amazon.mShop.android.shopping",
+    "com.discord",
+  };
+
+  static final String[] SYSTEM = {
+    "com.sec.android.app.launcher",
+    "com.google.android.apps.nexuslauncher",
+    "com.android.systemui",
+    "com.miui.home",
+  };
+
+  // Weighted towards tracked apps, like the foreground history of a heavy user
+  static final String[] MIXED = concat(TRACKED, TRACKED, UNTRACKED, SYSTEM);
+
+  private Packages() {}
+
+  private static String[] concat(String[]... sets) {
+    int n = 0;
+    for (String[] set : sets) n += set.length;
+    String[] out = new String[n];
+    int i = 0;
+    for (String[] set : sets) {
+      System.arraycopy(set, 0, out, i, set.length);
+      i += set.length;
+    }
+    return out;
+  }
+}
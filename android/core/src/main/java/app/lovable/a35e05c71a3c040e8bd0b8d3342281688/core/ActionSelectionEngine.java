@@ -1,8 +1,4 @@
-package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
-
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.util.Log;
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,8 +8,7 @@ import java.util.Random;
 import java.util.Set;
 
 public class ActionSelectionEngine {
-    private static final String TAG = "FlowFocus";
-    private static final String PREFS_NAME = "flowfocus_action_engine";
+    // Persisted in the "flowfocus_action_engine" store on device
     private static final String RECENT_ACTIONS_KEY = "recent_actions";
     
     public static class ActionButton {
@@ -28,60 +23,99 @@ public class ActionSelectionEngine {
         }
     }
     
-    // Track recent actions to prevent repetition (persisted to SharedPreferences)
+    // Track recent actions to prevent repetition (persisted to the action store). Guarded by
+    // the class lock: the public entry points are synchronized
     private static List<String> recentActions = new ArrayList<>();
     private static final int MAX_RECENT_ACTIONS = 10; // Increased from 5 for better variety
     private static boolean isInitialized = false;
     
+    // Recent actions are saved on every change, so under TRIM_COMPLETE the list can be dropped
+    // and read back from the store on the next nudge. Called from any thread, so under the
+    // class lock like everything else that touches the list.
+    private static final CacheRegistry.Cache RECENT_ACTIONS_CACHE = new CacheRegistry.Cache() {
+        @Override
+        public int entries() {
+            synchronized (ActionSelectionEngine.class) {
+                return recentActions.size();
+            }
+        }
+
+        @Override
+        public long sizeBytes() {
+            synchronized (ActionSelectionEngine.class) {
+                long bytes = 0;
+                for (String action : recentActions) {
+                    bytes += CacheRegistry.stringBytes(action) + 8;
+                }
+                return bytes;
+            }
+        }
+
+        @Override
+        public void trim(int level) {
+            synchronized (ActionSelectionEngine.class) {
+                // A list never loaded from a store exists nowhere else
+                if (level < CacheRegistry.TRIM_COMPLETE || !isInitialized) return;
+                recentActions = new ArrayList<>();
+                isInitialized = false;
+            }
+        }
+    };
+    
+    /**
+     * The recent actions list, for CacheRegistry
+     */
+    public static CacheRegistry.Cache getRecentActionsCache() {
+        return RECENT_ACTIONS_CACHE;
+    }
+    
     /**
-     * Initialize recent actions from SharedPreferences
+     * Initialize recent actions from the store
      */
-    private static void initializeFromStorage(Context context) {
-        if (isInitialized || context == null) return;
+    private static void initializeFromStorage(KeyValueStore store) {
+        if (isInitialized || store == null) return;
         
         try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String stored = prefs.getString(RECENT_ACTIONS_KEY, "");
+            String stored = store.getString(RECENT_ACTIONS_KEY, "");
             
             if (!stored.isEmpty()) {
                 String[] actions = stored.split(",");
                 recentActions = new ArrayList<>(Arrays.asList(actions));
-                Log.i(TAG, "Loaded " + recentActions.size() + " recent actions from storage: " + stored);
+                TraceLog.i(TraceLog.RECENT_ACTIONS_LOADED, stored, recentActions.size());
             } else {
                 recentActions = new ArrayList<>();
-                Log.i(TAG, "No recent actions in storage, starting fresh");
+                TraceLog.i(TraceLog.RECENT_ACTIONS_EMPTY);
             }
             
             isInitialized = true;
         } catch (Exception e) {
-            Log.e(TAG, "Failed to load recent actions from storage", e);
+            TraceLog.w(TraceLog.RECENT_ACTIONS_LOAD_FAILED, e.toString());
             recentActions = new ArrayList<>();
             isInitialized = true;
         }
     }
     
     /**
-     * Save recent actions to SharedPreferences
+     * Save recent actions to the store
      */
-    private static void saveToStorage(Context context) {
-        if (context == null) return;
+    private static void saveToStorage(KeyValueStore store) {
+        if (store == null) return;
         
         try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
             String stored = String.join(",", recentActions);
-            prefs.edit().putString(RECENT_ACTIONS_KEY, stored).apply();
-            Log.d(TAG, "Saved " + recentActions.size() + " recent actions to storage");
+            store.putString(RECENT_ACTIONS_KEY, stored);
+            TraceLog.d(TraceLog.RECENT_ACTIONS_SAVED, recentActions.size());
         } catch (Exception e) {
-            Log.e(TAG, "Failed to save recent actions to storage", e);
+            TraceLog.w(TraceLog.RECENT_ACTIONS_SAVE_FAILED, e.toString());
         }
     }
     
     /**
      * Get contextually appropriate actions based on usage patterns
-     * Now accepts Context for SharedPreferences persistence
+     * Accepts a KeyValueStore for persistence of recent actions
      */
-    public static List<ActionButton> getContextualActions(
-        Context context,
+    public static synchronized List<ActionButton> getContextualActions(
+        KeyValueStore store,
         int level,
         String appCategory,
         int durationMinutes,
@@ -90,7 +124,7 @@ public class ActionSelectionEngine {
         String suggestedActions
     ) {
         // Initialize from storage if needed
-        initializeFromStorage(context);
+        initializeFromStorage(store);
         
         // Update recent actions tracking from external source if provided
         if (existingRecentActions != null && existingRecentActions.length > 0) {
@@ -103,7 +137,7 @@ public class ActionSelectionEngine {
             while (recentActions.size() > MAX_RECENT_ACTIONS) {
                 recentActions.remove(0);
             }
-            saveToStorage(context);
+            saveToStorage(store);
         }
         
         List<ActionButton> allActions = getAllActions();
@@ -116,16 +150,16 @@ public class ActionSelectionEngine {
         
         // If we have suggested actions from the message, prioritize those
         if (suggestedActions != null && !suggestedActions.isEmpty()) {
-            selectedActions = selectSuggestedActions(context, allActions, suggestedActions, numActions);
+            selectedActions = selectSuggestedActions(store, allActions, suggestedActions, numActions);
         } else {
             // Fallback to original logic
             int physicalWeight = getPhysicalWeight(durationMinutes, level);
             
             // For Level 3, require physical actions (no dismiss, must act)
             if (level >= 3) {
-                selectedActions = selectPhysicalActions(context, allActions, numActions, hourOfDay, appCategory);
+                selectedActions = selectPhysicalActions(store, allActions, numActions, hourOfDay, appCategory);
             } else {
-                selectedActions = selectBalancedActions(context, allActions, numActions, physicalWeight, hourOfDay, appCategory);
+                selectedActions = selectBalancedActions(store, allActions, numActions, physicalWeight, hourOfDay, appCategory);
             }
         }
         
@@ -143,7 +177,7 @@ public class ActionSelectionEngine {
     }
     
     /**
-     * Backward-compatible overload without Context (for legacy calls)
+     * Backward-compatible overload without a store (for legacy calls)
      */
     public static List<ActionButton> getContextualActions(
         int level,
@@ -173,7 +207,7 @@ public class ActionSelectionEngine {
      * Select actions based on suggested actions from the nudge message
      */
     private static List<ActionButton> selectSuggestedActions(
-        Context context,
+        KeyValueStore store,
         List<ActionButton> allActions,
         String suggestedActions,
         int count
@@ -187,7 +221,7 @@ public class ActionSelectionEngine {
             for (ActionButton action : allActions) {
                 if (action.deepLink.equals(trimmed) && !containsAction(selected, action.deepLink)) {
                     selected.add(action);
-                    trackAction(context, action.deepLink);
+                    trackAction(store, action.deepLink);
                     if (selected.size() >= count) {
                         return selected;
                     }
@@ -200,7 +234,7 @@ public class ActionSelectionEngine {
             for (ActionButton action : allActions) {
                 if (!containsAction(selected, action.deepLink) && !wasRecentlyUsed(action.deepLink)) {
                     selected.add(action);
-                    trackAction(context, action.deepLink);
+                    trackAction(store, action.deepLink);
                     if (selected.size() >= count) {
                         break;
                     }
@@ -237,7 +271,7 @@ public class ActionSelectionEngine {
      * Select only physical actions (for Level 3)
      */
     private static List<ActionButton> selectPhysicalActions(
-        Context context,
+        KeyValueStore store,
         List<ActionButton> allActions,
         int count,
         int hourOfDay,
@@ -252,7 +286,7 @@ public class ActionSelectionEngine {
         
         // If all physical actions were recently used, include them anyway
         if (physical.isEmpty()) {
-            Log.d(TAG, "All physical actions recently used, resetting for variety");
+            TraceLog.d(TraceLog.PHYSICAL_ACTIONS_RESET);
             for (ActionButton action : allActions) {
                 if (action.isPhysical) {
                     physical.add(action);
@@ -266,7 +300,7 @@ public class ActionSelectionEngine {
         List<ActionButton> selected = new ArrayList<>();
         for (int i = 0; i < Math.min(count, physical.size()); i++) {
             selected.add(physical.get(i));
-            trackAction(context, physical.get(i).deepLink);
+            trackAction(store, physical.get(i).deepLink);
         }
         
         return selected;
@@ -276,7 +310,7 @@ public class ActionSelectionEngine {
      * Select balanced mix of physical and digital actions
      */
     private static List<ActionButton> selectBalancedActions(
-        Context context,
+        KeyValueStore store,
         List<ActionButton> allActions,
         int count,
         int physicalWeight,
@@ -298,7 +332,7 @@ public class ActionSelectionEngine {
         
         // If all actions of a type were recently used, include some anyway
         if (physical.isEmpty()) {
-            Log.d(TAG, "All physical actions recently used, adding some back");
+            TraceLog.d(TraceLog.PHYSICAL_ACTIONS_READDED);
             for (ActionButton action : allActions) {
                 if (action.isPhysical) {
                     physical.add(action);
@@ -307,7 +341,7 @@ public class ActionSelectionEngine {
             }
         }
         if (digital.isEmpty()) {
-            Log.d(TAG, "All digital actions recently used, adding some back");
+            TraceLog.d(TraceLog.DIGITAL_ACTIONS_READDED);
             for (ActionButton action : allActions) {
                 if (!action.isPhysical) {
                     digital.add(action);
@@ -333,13 +367,13 @@ public class ActionSelectionEngine {
         // Add physical actions
         for (int i = 0; i < Math.min(numPhysical, physical.size()); i++) {
             selected.add(physical.get(i));
-            trackAction(context, physical.get(i).deepLink);
+            trackAction(store, physical.get(i).deepLink);
         }
         
         // Add digital actions
         for (int i = 0; i < Math.min(numDigital, digital.size()); i++) {
             selected.add(digital.get(i));
-            trackAction(context, digital.get(i).deepLink);
+            trackAction(store, digital.get(i).deepLink);
         }
         
         return selected;
@@ -404,7 +438,7 @@ public class ActionSelectionEngine {
     /**
      * Track action usage and persist to storage
      */
-    private static void trackAction(Context context, String deepLink) {
+    private static void trackAction(KeyValueStore store, String deepLink) {
         // Remove if already exists to move to end
         recentActions.remove(deepLink);
         recentActions.add(deepLink);
@@ -415,9 +449,9 @@ public class ActionSelectionEngine {
         }
         
         // Persist to storage
-        saveToStorage(context);
+        saveToStorage(store);
         
-        Log.d(TAG, "Tracked action: " + deepLink + ", recent list size: " + recentActions.size());
+        TraceLog.d(TraceLog.ACTION_TRACKED, deepLink, recentActions.size(), 0);
     }
     
     /**
@@ -457,19 +491,18 @@ public class ActionSelectionEngine {
     /**
      * Get recent actions array for persistence
      */
-    public static String[] getRecentActions() {
+    public static synchronized String[] getRecentActions() {
         return recentActions.toArray(new String[0]);
     }
     
     /**
      * Clear recent actions (useful for testing or reset)
      */
-    public static void clearRecentActions(Context context) {
+    public static synchronized void clearRecentActions(KeyValueStore store) {
         recentActions.clear();
-        if (context != null) {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            prefs.edit().remove(RECENT_ACTIONS_KEY).apply();
+        if (store != null) {
+            store.remove(RECENT_ACTIONS_KEY);
         }
-        Log.i(TAG, "Cleared recent actions");
+        TraceLog.i(TraceLog.RECENT_ACTIONS_CLEARED);
     }
 }
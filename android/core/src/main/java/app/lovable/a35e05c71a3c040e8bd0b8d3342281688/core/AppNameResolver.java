@@ -0,0 +1,139 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps package names to display names: known-app table, then the platform label, then keyword
+ * matching, then a capitalized segment of the package name. Names past the table are kept in a
+ * bounded label cache, so an app switch does not go back to the platform.
+ */
+public class AppNameResolver {
+  /**
+   * Platform label lookup (PackageManager on device). May return null or throw.
+   */
+  public interface LabelSource {
+    String loadLabel(String packageName) throws Exception;
+  }
+
+  // Hardcoded map for common apps (built once, not per lookup)
+  private static final Map<String, String> KNOWN_APPS = new HashMap<>();
+  static {
+    KNOWN_APPS.put("com.google.android.youtube", "YouTube");
+    KNOWN_APPS.put("com.google.android.apps.youtube.music", "YouTube Music");
+    KNOWN_APPS.put("com.google.android.youtube.tv", "YouTube TV");
+    KNOWN_APPS.put("com.android.youtube", "YouTube");
+    KNOWN_APPS.put("com.android.youtube.com", "YouTube");
+    KNOWN_APPS.put("com.instagram.android", "Instagram");
+    KNOWN_APPS.put("com.zhiliaoapp.musically", "TikTok");
+    KNOWN_APPS.put("com.facebook.katana", "Facebook");
+    KNOWN_APPS.put("com.facebook.orca", "Messenger");
+    KNOWN_APPS.put("com.twitter.android", "Twitter");
+    KNOWN_APPS.put("com.snapchat.android", "Snapchat");
+    KNOWN_APPS.put("com.reddit.frontpage", "Reddit");
+    KNOWN_APPS.put("com.pinterest", "Pinterest");
+    KNOWN_APPS.put("com.linkedin.android", "LinkedIn");
+    KNOWN_APPS.put("com.whatsapp", "WhatsApp");
+    KNOWN_APPS.put("com.telegram.messenger", "Telegram");
+    KNOWN_APPS.put("com.netflix.mediaclient", "Netflix");
+    KNOWN_APPS.put("com.spotify.music", "Spotify");
+    KNOWN_APPS.put("com.amazon.mShop.android.shopping", "Amazon");
+    KNOWN_APPS.put("com.android.chrome", "Chrome");
+    KNOWN_APPS.put("com.discord", "Discord");
+    KNOWN_APPS.put("com.twitch.android.app", "Twitch");
+  }
+
+  // Smart fallback: {keyword, name} pairs checked in order
+  private static final String[][] KEYWORDS = {
+    {"youtube", "YouTube"},
+    {"instagram", "Instagram"},
+    {"tiktok", "TikTok"},
+    {"musically", "TikTok"},
+    {"facebook", "Facebook"},
+    {"twitter", "Twitter"},
+    {"snapchat", "Snapchat"},
+    {"reddit", "Reddit"},
+    {"pinterest", "Pinterest"},
+    {"linkedin", "LinkedIn"},
+    {"whatsapp", "WhatsApp"},
+    {"telegram", "Telegram"},
+    {"netflix", "Netflix"},
+    {"spotify", "Spotify"},
+    {"amazon", "Amazon"},
+    {"chrome", "Chrome"},
+    {"discord", "Discord"},
+    {"twitch", "Twitch"}
+  };
+
+  static final int LABEL_CACHE_SIZE = 128;
+
+  private final LabelSource labels;
+  private final BoundedCache<String, String> cache = new BoundedCache<>(
+    LABEL_CACHE_SIZE, (pkg, name) -> CacheRegistry.stringBytes(pkg) + CacheRegistry.stringBytes(name));
+
+  public AppNameResolver(LabelSource labels) {
+    this.labels = labels;
+  }
+
+  /** The label cache, for CacheRegistry */
+  public BoundedCache<String, String> getCache() {
+    return cache;
+  }
+
+  public String getAppName(String pkg) {
+    // 1. Check hardcoded map first for common apps
+    String known = KNOWN_APPS.get(pkg);
+    if (known != null) {
+      TraceLog.d(TraceLog.APP_NAME_FROM_MAP, pkg, known);
+      return known;
+    }
+
+    String cached = cache.get(pkg);
+    if (cached != null) return cached;
+    String name = resolve(pkg);
+    cache.put(pkg, name);
+    return name;
+  }
+
+  private String resolve(String pkg) {
+    // 2. Try the platform label
+    if (labels != null) {
+      try {
+        String name = labels.loadLabel(pkg);
+        if (name != null && !name.isEmpty()) {
+          TraceLog.d(TraceLog.APP_NAME_FROM_PM, pkg, name);
+          return name;
+        }
+      } catch (Exception e) {
+        TraceLog.w(TraceLog.APP_NAME_PM_FAILED, pkg);
+      }
+    }
+
+    // 3. Smart fallback: search for keywords in package name
+    String keyword = matchKeyword(pkg);
+    if (keyword != null) return keyword;
+
+    // 4. Last resort: capitalize middle part
+    return extractSimpleName(pkg);
+  }
+
+  public static String matchKeyword(String pkg) {
+    for (String[] entry : KEYWORDS) {
+      if (ForegroundResolver.containsIgnoreCase(pkg, entry[0])) {
+        return entry[1];
+      }
+    }
+    return null;
+  }
+
+  public static String extractSimpleName(String packageName) {
+    // "com.instagram.android" -> "Instagram"
+    String[] parts = packageName.split("\\.");
+    String name = parts[parts.length - 1];
+    if (name.equals("android") && parts.length > 1) {
+      name = parts[parts.length - 2];
+    }
+    // Capitalize first letter
+    return name.substring(0, 1).toUpperCase() + name.substring(1);
+  }
+}
@@ -1,4 +1,4 @@
-package app.lovable.a35e05c71a3c040e8bd0b8d3342281688;
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
 
 public class AppThresholds {
     public static class AppConfig {
@@ -13,8 +13,26 @@ public class AppThresholds {
         }
     }
 
-    // Hardcoded app configurations
+    // Per-package configs already built; every unknown package gets its own default, so bounded
+    static final BoundedCache<String, AppConfig> CONFIG_CACHE = new BoundedCache<>(
+        64, (pkg, config) -> CacheRegistry.stringBytes(pkg) + 112);
+
     public static AppConfig getAppConfig(String packageName) {
+        AppConfig config = CONFIG_CACHE.get(packageName);
+        if (config == null) {
+            config = buildAppConfig(packageName);
+            CONFIG_CACHE.put(packageName, config);
+        }
+        return config;
+    }
+
+    /** The config cache, for CacheRegistry */
+    public static BoundedCache<String, AppConfig> getConfigCache() {
+        return CONFIG_CACHE;
+    }
+
+    // Hardcoded app configurations
+    private static AppConfig buildAppConfig(String packageName) {
         switch (packageName) {
             case "com.google.android.youtube":
                 return new AppConfig(
@@ -126,19 +144,19 @@ public class AppThresholds {
         return allMessages[0];
     }
     
-    public static String[] getNudgeMessage(android.content.Context context, int level) {
-        android.content.SharedPreferences prefs = context.getSharedPreferences("FlowFocusNudges", android.content.Context.MODE_PRIVATE);
+    // Rotation state lives in the "FlowFocusNudges" store on device
+    public static String[] getNudgeMessage(KeyValueStore store, int level) {
         String key = "nudge_message_index_level_" + level;
         
         // Get current index for this level
-        int currentIndex = prefs.getInt(key, 0);
+        int currentIndex = store.getInt(key, 0);
         
         // Get variants
         String[][] variants = getNudgeMessageVariants(level);
         int index = currentIndex % variants.length;
         
         // Save next index for this level
-        prefs.edit().putInt(key, currentIndex + 1).apply();
+        store.putInt(key, currentIndex + 1);
         
         return variants[index];
     }
@@ -0,0 +1,78 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU map of at most maxEntries values that are cheap to compute again, with a running size
+ * estimate. Under memory pressure it keeps the most recently used half (TRIM_LIGHT), quarter
+ * (TRIM_MODERATE) or nothing (TRIM_COMPLETE). Thread-safe.
+ */
+public final class BoundedCache<K, V> implements CacheRegistry.Cache {
+  /** Estimated heap bytes of one entry */
+  public interface Weigher<K, V> {
+    long weigh(K key, V value);
+  }
+
+  // HashMap entry, LinkedHashMap links and the boxed sizes of both
+  private static final long ENTRY_OVERHEAD = 56;
+
+  private final int maxEntries;
+  private final Weigher<K, V> weigher;
+  private final LinkedHashMap<K, V> map;
+  private long bytes;
+
+  public BoundedCache(int maxEntries, Weigher<K, V> weigher) {
+    this.maxEntries = maxEntries;
+    this.weigher = weigher;
+    this.map = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  public synchronized V get(K key) {
+    return map.get(key);
+  }
+
+  public synchronized void put(K key, V value) {
+    V previous = map.put(key, value);
+    if (previous != null) bytes -= weight(key, previous);
+    bytes += weight(key, value);
+    shrinkTo(maxEntries);
+  }
+
+  @Override
+  public synchronized int entries() {
+    return map.size();
+  }
+
+  @Override
+  public synchronized long sizeBytes() {
+    return bytes;
+  }
+
+  @Override
+  public synchronized void trim(int level) {
+    if (level >= CacheRegistry.TRIM_COMPLETE) {
+      map.clear();
+      bytes = 0;
+    } else if (level >= CacheRegistry.TRIM_MODERATE) {
+      shrinkTo(map.size() / 4);
+    } else if (level >= CacheRegistry.TRIM_LIGHT) {
+      shrinkTo(map.size() / 2);
+    }
+  }
+
+  // Drop least recently used entries until at most size are left
+  private void shrinkTo(int size) {
+    Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+    while (map.size() > size && it.hasNext()) {
+      Map.Entry<K, V> eldest = it.next();
+      bytes -= weight(eldest.getKey(), eldest.getValue());
+      it.remove();
+    }
+  }
+
+  private long weight(K key, V value) {
+    return ENTRY_OVERHEAD + weigher.weigh(key, value);
+  }
+}
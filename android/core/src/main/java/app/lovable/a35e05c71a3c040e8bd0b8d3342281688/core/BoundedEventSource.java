@@ -0,0 +1,261 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs another UsageEventSource on a single background thread with a per-call deadline.
+ *
+ * The monitoring loop uses queryAsync: the query runs on the worker and its events are replayed
+ * on the loop's own thread once it completes, so a slow system service never blocks that thread.
+ * queryEvents blocks for at most the deadline, for callers that may wait.
+ *
+ * Either way, events are buffered on the worker and replayed to the visitor on the caller's
+ * thread, so a query that is still running can never touch the caller's state. At most one
+ * query is in flight. While a query is still stuck in the system service, later calls fail
+ * fast instead of queueing behind it. Outcomes and latencies feed the shared CircuitBreaker.
+ */
+public class BoundedEventSource implements UsageEventSource.Async {
+  public static final long DEFAULT_DEADLINE_MS = 1500;
+  // The worker thread exits after this long without queries
+  private static final long WORKER_KEEP_ALIVE_S = 30;
+
+  /** The query timed out, failed or was skipped; the caller should retry on its next poll */
+  public static class QueryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    QueryException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  private final UsageEventSource delegate;
+  private final CircuitBreaker health;
+  private final long deadlineMs;
+  private final ThreadPoolExecutor executor;
+  private final MonitoringMetrics metrics = MonitoringMetrics.get();
+
+  // Filled by the worker, replayed by the caller once the query has completed
+  private final EventBuffer buffer = new EventBuffer();
+  // The query that owns the worker and the buffer, until its events are replayed. A blocking
+  // caller that gave up waiting abandons it, and it is released once it is done.
+  private Future<?> inFlight;
+  private boolean abandoned;
+
+  public BoundedEventSource(UsageEventSource delegate, CircuitBreaker health, long deadlineMs) {
+    this.delegate = delegate;
+    this.health = health;
+    this.deadlineMs = deadlineMs;
+    this.executor = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_S, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), r -> {
+        Thread t = new Thread(r, "flowfocus-usage-query");
+        t.setDaemon(true);
+        return t;
+      });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public boolean queryAsync(long begin, long end, Scheduler scheduler, Visitor visitor, Completion done) {
+    AsyncQuery query = new AsyncQuery(begin, end, scheduler, visitor, done);
+    synchronized (this) {
+      if (!acquire()) return false;
+      try {
+        inFlight = executor.submit(query);
+      } catch (RejectedExecutionException e) {
+        fail(e.toString(), e);
+        return false;
+      }
+    }
+    scheduler.postDelayed(query.deadline, deadlineMs);
+    return true;
+  }
+
+  @Override
+  public int queryEvents(final long begin, final long end, Visitor visitor) {
+    long startNanos = System.nanoTime();
+    Future<Integer> future;
+    synchronized (this) {
+      if (!acquire()) throw new QueryException("previous query still running", null);
+      try {
+        future = executor.submit(() -> {
+          long workerStart = System.nanoTime();
+          try {
+            return delegate.queryEvents(begin, end, buffer);
+          } finally {
+            metrics.recordNanos(MonitoringMetrics.LATENCY_USAGE_SERVICE, System.nanoTime() - workerStart);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        throw fail(e.toString(), e);
+      }
+      inFlight = future;
+    }
+
+    // Wait outside the lock, so another caller fails fast instead of queueing behind us
+    int decoded;
+    try {
+      decoded = future.get(deadlineMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      abandon();
+      timedOut();
+      throw new QueryException("query exceeded " + deadlineMs + "ms", e);
+    } catch (ExecutionException e) {
+      release();
+      throw fail(String.valueOf(e.getCause()), e.getCause());
+    } catch (InterruptedException e) {
+      abandon();
+      Thread.currentThread().interrupt();
+      throw new QueryException("interrupted", e);
+    }
+    try {
+      health.onSuccess(System.nanoTime() - startNanos);
+      buffer.replay(visitor);
+    } finally {
+      release();
+    }
+    return decoded;
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  // Caller holds the lock. Claims the worker and buffer, or counts a skip while a query owns them
+  private boolean acquire() {
+    if (inFlight != null && !(abandoned && inFlight.isDone())) {
+      // The previous query is still stuck in the system service
+      metrics.increment(MonitoringMetrics.USAGE_QUERIES_SKIPPED);
+      health.onFailure();
+      return false;
+    }
+    inFlight = null;
+    abandoned = false;
+    buffer.clear();
+    return true;
+  }
+
+  private synchronized void release() {
+    inFlight = null;
+    abandoned = false;
+  }
+
+  private synchronized void abandon() {
+    abandoned = true;
+  }
+
+  private void timedOut() {
+    metrics.increment(MonitoringMetrics.USAGE_QUERY_TIMEOUTS);
+    health.onFailure();
+    TraceLog.w(TraceLog.USAGE_QUERY_TIMEOUT, deadlineMs);
+  }
+
+  private QueryException fail(String reason, Throwable cause) {
+    metrics.increment(MonitoringMetrics.USAGE_QUERY_FAILURES);
+    health.onFailure();
+    TraceLog.w(TraceLog.USAGE_QUERY_FAILED, reason);
+    return new QueryException(reason, cause);
+  }
+
+  // One queryAsync call: run() on the worker, deadline and deliver on the caller's scheduler
+  private final class AsyncQuery implements Runnable {
+    private final long begin;
+    private final long end;
+    private final Scheduler scheduler;
+    private final Visitor visitor;
+    private final Completion done;
+    private final long startNanos = System.nanoTime();
+    // Written by the worker before it posts deliver
+    private int decoded;
+    private RuntimeException error;
+    private long latencyNanos;
+    // Scheduler thread only
+    private boolean late;
+    final Runnable deadline = this::onDeadline;
+    private final Runnable deliver = this::deliver;
+
+    AsyncQuery(long begin, long end, Scheduler scheduler, Visitor visitor, Completion done) {
+      this.begin = begin;
+      this.end = end;
+      this.scheduler = scheduler;
+      this.visitor = visitor;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      long workerStart = System.nanoTime();
+      try {
+        decoded = delegate.queryEvents(begin, end, buffer);
+      } catch (RuntimeException e) {
+        error = e;
+      } finally {
+        metrics.recordNanos(MonitoringMetrics.LATENCY_USAGE_SERVICE, System.nanoTime() - workerStart);
+      }
+      latencyNanos = System.nanoTime() - startNanos;
+      scheduler.postDelayed(deliver, 0);
+    }
+
+    // Still running at the deadline: the breaker hears about it now, the events come when they come
+    private void onDeadline() {
+      late = true;
+      timedOut();
+    }
+
+    private void deliver() {
+      scheduler.cancel(deadline);
+      QueryException failure = null;
+      try {
+        if (error != null) {
+          failure = fail(String.valueOf(error), error);
+        } else {
+          // A late query was already counted as a failure
+          if (!late) health.onSuccess(latencyNanos);
+          buffer.replay(visitor);
+        }
+      } finally {
+        release();
+      }
+      done.onComplete(decoded, failure);
+    }
+  }
+
+  // Growable columnar event buffer, reused across queries
+  private static final class EventBuffer implements Visitor {
+    private String[] packages = new String[64];
+    private int[] types = new int[64];
+    private long[] times = new long[64];
+    private int size;
+
+    void clear() {
+      for (int i = 0; i < size; i++) packages[i] = null;
+      size = 0;
+    }
+
+    @Override
+    public void onEvent(String packageName, int eventType, long timestamp) {
+      if (size == times.length) {
+        int capacity = size * 2;
+        packages = Arrays.copyOf(packages, capacity);
+        types = Arrays.copyOf(types, capacity);
+        times = Arrays.copyOf(times, capacity);
+      }
+      packages[size] = packageName;
+      types[size] = eventType;
+      times[size] = timestamp;
+      size++;
+    }
+
+    void replay(Visitor visitor) {
+      for (int i = 0; i < size; i++) {
+        visitor.onEvent(packages[i], types[i], times[i]);
+      }
+    }
+  }
+}
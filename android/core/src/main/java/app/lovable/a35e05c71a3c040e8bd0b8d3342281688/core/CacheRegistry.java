@@ -0,0 +1,121 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every in-process cache that can give memory back, by name, so memory pressure reaches all of
+ * them from one place. The platform maps its trim callbacks onto the three levels here; each
+ * cache decides what a level costs it (see BoundedCache for the usual policy). Whatever is
+ * dropped can be rebuilt, from the platform or from disk, so the process stays small enough to
+ * be the last one the system kills.
+ *
+ * Caches report an estimate of their heap footprint; the plugin shows it. Thread-safe.
+ */
+public final class CacheRegistry {
+  /** The process went to the background: let go of what is cheap to rebuild */
+  public static final int TRIM_LIGHT = 1;
+  /** The system is running low: keep only what is hot */
+  public static final int TRIM_MODERATE = 2;
+  /** Next in line to be killed, or low memory: drop everything that can be rebuilt */
+  public static final int TRIM_COMPLETE = 3;
+
+  /** A cache the registry can measure and shrink */
+  public interface Cache {
+    int entries();
+
+    /** Estimated heap bytes held */
+    long sizeBytes();
+
+    /** Shrink for level (TRIM_*); called from any thread */
+    void trim(int level);
+  }
+
+  /** One cache as reported to the plugin */
+  public static final class Footprint {
+    public final String name;
+    public final int entries;
+    public final long bytes;
+    public final int trims;
+
+    Footprint(String name, int entries, long bytes, int trims) {
+      this.name = name;
+      this.entries = entries;
+      this.bytes = bytes;
+      this.trims = trims;
+    }
+  }
+
+  private static final CacheRegistry INSTANCE = new CacheRegistry();
+
+  private final Map<String, Cache> caches = new LinkedHashMap<>();
+  private final Map<String, Integer> trims = new LinkedHashMap<>();
+  private int lastTrimLevel;
+  private long lastTrimAt;
+
+  private CacheRegistry() {}
+
+  public static CacheRegistry get() {
+    return INSTANCE;
+  }
+
+  /** Add cache under name, replacing one registered before (e.g. by a previous service instance) */
+  public synchronized void register(String name, Cache cache) {
+    caches.put(name, cache);
+    if (!trims.containsKey(name)) trims.put(name, 0);
+  }
+
+  /**
+   * Shrink every cache for level; returns the estimated bytes freed
+   */
+  public long trim(int level, long nowMillis) {
+    List<Map.Entry<String, Cache>> targets;
+    synchronized (this) {
+      targets = new ArrayList<>(caches.entrySet());
+      lastTrimLevel = level;
+      lastTrimAt = nowMillis;
+    }
+    long before = 0;
+    long after = 0;
+    for (Map.Entry<String, Cache> entry : targets) {
+      Cache cache = entry.getValue();
+      long size = cache.sizeBytes();
+      cache.trim(level);
+      long left = cache.sizeBytes();
+      before += size;
+      after += left;
+      if (left < size) {
+        synchronized (this) {
+          trims.put(entry.getKey(), trims.get(entry.getKey()) + 1);
+        }
+      }
+    }
+    TraceLog.i(TraceLog.CACHES_TRIMMED, level, before - after, after);
+    return before - after;
+  }
+
+  public synchronized List<Footprint> footprint() {
+    List<Footprint> result = new ArrayList<>(caches.size());
+    for (Map.Entry<String, Cache> entry : caches.entrySet()) {
+      Cache cache = entry.getValue();
+      result.add(new Footprint(entry.getKey(), cache.entries(), cache.sizeBytes(), trims.get(entry.getKey())));
+    }
+    return result;
+  }
+
+  /** Level of the last trim (0: none yet) and when it happened */
+  public synchronized int getLastTrimLevel() {
+    return lastTrimLevel;
+  }
+
+  public synchronized long getLastTrimAt() {
+    return lastTrimAt;
+  }
+
+  /** Rough heap cost of a String: object, array header and two bytes a char */
+  public static long stringBytes(String value) {
+    return value == null ? 0 : 40 + 2L * value.length();
+  }
+}
@@ -0,0 +1,112 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Health of the usage-stats system service, judged from recent query outcomes. A run of slow
+ * or failed queries opens the breaker and the poll period backs off exponentially; queries
+ * that come back fast again step it down until the breaker closes.
+ *
+ * Fed from the query path and read by the plugin, so every method is synchronized.
+ */
+public class CircuitBreaker {
+  public static final int CLOSED = 0;    // healthy, normal poll rate
+  public static final int OPEN = 1;      // slow or failing, polls backed off
+  public static final int HALF_OPEN = 2; // recovering, poll rate stepping back down
+
+  private static final String[] STATE_NAMES = {"closed", "open", "halfOpen"};
+
+  // Queries slower than this count as failures
+  public static final long DEFAULT_SLOW_MS = 250;
+  static final int FAILURES_TO_OPEN = 3;
+  static final int SUCCESSES_TO_CLOSE = 3;
+  static final int MAX_BACKOFF_SHIFT = 4; // 5s poll backs off to 80s, capped at MAX_DELAY_MS
+  public static final long MAX_DELAY_MS = 60_000;
+
+  private final Clock clock;
+  private final long slowNanos;
+
+  private int state = CLOSED;
+  private int consecutiveFailures;
+  private int consecutiveSuccesses;
+  private int backoffShift;
+  private long degradedSince;
+  private long lastLatencyNanos;
+
+  public CircuitBreaker(Clock clock) {
+    this(clock, DEFAULT_SLOW_MS);
+  }
+
+  public CircuitBreaker(Clock clock, long slowMs) {
+    this.clock = clock;
+    this.slowNanos = slowMs * 1_000_000L;
+  }
+
+  public synchronized void onSuccess(long latencyNanos) {
+    lastLatencyNanos = latencyNanos;
+    if (latencyNanos > slowNanos) {
+      onFailure();
+      return;
+    }
+    consecutiveFailures = 0;
+    if (state == CLOSED) return;
+    consecutiveSuccesses++;
+    if (consecutiveSuccesses >= SUCCESSES_TO_CLOSE) {
+      backoffShift = 0;
+      setState(CLOSED);
+    } else {
+      backoffShift = Math.max(0, backoffShift - 1);
+      setState(HALF_OPEN);
+    }
+  }
+
+  public synchronized void onFailure() {
+    consecutiveSuccesses = 0;
+    consecutiveFailures++;
+    if (state == CLOSED) {
+      if (consecutiveFailures < FAILURES_TO_OPEN) return;
+      degradedSince = clock.currentTimeMillis();
+      backoffShift = 1;
+    } else {
+      backoffShift = Math.min(backoffShift + 1, MAX_BACKOFF_SHIFT);
+    }
+    setState(OPEN);
+  }
+
+  /**
+   * Delay before the next poll given the normal period
+   */
+  public synchronized long nextDelay(long baseMs) {
+    if (state == CLOSED) return baseMs;
+    return Math.max(baseMs, Math.min(baseMs << backoffShift, MAX_DELAY_MS));
+  }
+
+  public synchronized boolean isDegraded() {
+    return state != CLOSED;
+  }
+
+  public synchronized int getState() {
+    return state;
+  }
+
+  public synchronized String getStateName() {
+    return STATE_NAMES[state];
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  public synchronized long getLastLatencyNanos() {
+    return lastLatencyNanos;
+  }
+
+  // When the breaker last opened from closed; 0 while healthy
+  public synchronized long getDegradedSinceMillis() {
+    return state == CLOSED ? 0 : degradedSince;
+  }
+
+  private void setState(int next) {
+    if (next == state) return;
+    state = next;
+    TraceLog.i(TraceLog.QUERY_HEALTH_CHANGED, STATE_NAMES[next], 1L << backoffShift);
+  }
+}
@@ -0,0 +1,10 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Wall-clock time source for the monitoring core. Replays and tests inject a virtual clock.
+ */
+public interface Clock {
+  Clock SYSTEM = System::currentTimeMillis;
+
+  long currentTimeMillis();
+}
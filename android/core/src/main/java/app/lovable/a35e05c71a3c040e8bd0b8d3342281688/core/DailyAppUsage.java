@@ -0,0 +1,15 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+// Daily usage tracking class
+class DailyAppUsage {
+  int totalSeconds = 0;
+  int lastNudgeLevel = 0;
+  long lastSessionStart = 0;
+  // Foreground seconds per local hour of the day
+  final int[] hourSeconds = new int[24];
+  String date = "";
+  
+  DailyAppUsage(String date) {
+    this.date = date;
+  }
+}
@@ -0,0 +1,145 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Answers "which app is in front right now" for every caller in the process (the monitoring
+ * loop, the plugin, helpers). The last answer is cached for a short TTL, and the monitoring
+ * tracker publishes what it already knows after each poll, so lookups between polls cost no
+ * query and all callers see the same app.
+ * Launchers, system UI and our own package are reported as null.
+ */
+public class ForegroundResolver implements UsageEventSource.Visitor {
+  public static final long WINDOW_MS = 10000; // last 10s
+  // Same as the service's poll period: a published answer stays valid until the next poll
+  public static final long DEFAULT_TTL_MS = 5000;
+
+  // Excluded launcher and system UI packages
+  private static final Set<String> EXCLUDED_PACKAGES = new HashSet<String>() {{
+    add("com.oneplus.launcher");
+    add("com.sec.android.app.launcher");
+    add("com.samsung.android.oneui.home");
+    add("com.miui.home");
+    add("com.huawei.android.launcher");
+    add("com.oppo.launcher");
+    add("com.google.android.apps.nexuslauncher");
+    add("com.teslacoilsw.launcher");
+    add("com.android.systemui");
+    add("com.android.launcher");
+    add("com.android.launcher3");
+  }};
+
+  private final UsageEventSource source;
+  private final Clock clock;
+  private final String ownPackage;
+  private final MonitoringMetrics metrics = MonitoringMetrics.get();
+  private long ttlMs = DEFAULT_TTL_MS;
+
+  // Cached answer (null package is a valid answer: nothing tracked in front)
+  private boolean cached;
+  private String cachedPackage;
+  private long resolvedAt;
+
+  // Scratch state for the visitor callback
+  private String lastPkg;
+
+  public ForegroundResolver(UsageEventSource source, Clock clock, String ownPackage) {
+    this.source = source;
+    this.clock = clock;
+    this.ownPackage = ownPackage;
+  }
+
+  public synchronized void setTtlMs(long ttlMs) {
+    this.ttlMs = ttlMs;
+  }
+
+  public synchronized String getForegroundAppPackage() {
+    long now = clock.currentTimeMillis();
+    if (cached && now >= resolvedAt && now - resolvedAt < ttlMs) {
+      metrics.increment(MonitoringMetrics.FOREGROUND_CACHE_HITS);
+      return cachedPackage;
+    }
+    String pkg = query(now);
+    cached = true;
+    cachedPackage = pkg;
+    resolvedAt = now;
+    return pkg;
+  }
+
+  /**
+   * A caller that already tracks the foreground (the monitoring loop) refreshes the shared answer
+   */
+  public synchronized void publish(String packageName, long atMillis) {
+    cached = true;
+    cachedPackage = packageName;
+    resolvedAt = atMillis;
+  }
+
+  public synchronized void invalidate() {
+    cached = false;
+    cachedPackage = null;
+  }
+
+  private String query(long end) {
+    long startNanos = System.nanoTime();
+    try {
+      lastPkg = null;
+      int decoded = source.queryEvents(end - WINDOW_MS, end, this);
+      metrics.increment(MonitoringMetrics.USAGE_QUERIES);
+      metrics.add(MonitoringMetrics.EVENTS_DECODED, decoded);
+
+      String pkg = lastPkg;
+      lastPkg = null;
+      if (pkg != null && isExcluded(pkg)) {
+        TraceLog.v(TraceLog.EXCLUDED_PACKAGE, pkg);
+        return null;
+      }
+      return pkg;
+    } finally {
+      metrics.recordNanos(MonitoringMetrics.LATENCY_FOREGROUND_QUERY, System.nanoTime() - startNanos);
+    }
+  }
+
+  // Same rules as ForegroundTracker without the dwell: latest resume wins, and the app
+  // pausing/stopping or the screen going off leaves nothing in front
+  @Override
+  public void onEvent(String packageName, int eventType, long timestamp) {
+    switch (eventType) {
+      case UsageEventSource.MOVE_TO_FOREGROUND:
+        if (packageName != null) lastPkg = packageName;
+        break;
+      case UsageEventSource.MOVE_TO_BACKGROUND:
+      case UsageEventSource.ACTIVITY_STOPPED:
+        if (packageName != null && packageName.equals(lastPkg)) lastPkg = null;
+        break;
+      case UsageEventSource.SCREEN_NON_INTERACTIVE:
+        lastPkg = null;
+        break;
+      default:
+        break;
+    }
+  }
+
+  public boolean isExcluded(String pkg) {
+    return isExcluded(pkg, ownPackage);
+  }
+
+  // Launchers, system UI and our own app never count as a tracked foreground app
+  public static boolean isExcluded(String pkg, String ownPackage) {
+    return EXCLUDED_PACKAGES.contains(pkg)
+      || containsIgnoreCase(pkg, "launcher")
+      || pkg.equals(ownPackage);
+  }
+
+  // Allocation-free equivalent of pkg.toLowerCase().contains(needle) for a lowercase needle
+  static boolean containsIgnoreCase(String haystack, String needle) {
+    int max = haystack.length() - needle.length();
+    for (int i = 0; i <= max; i++) {
+      if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
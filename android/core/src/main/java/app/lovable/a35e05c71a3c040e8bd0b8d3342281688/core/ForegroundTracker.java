@@ -0,0 +1,254 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Follows the foreground app from the usage event stream and decides app switches from the
+ * event timestamps themselves. A candidate (an app, or "no app" after a pause, a launcher or
+ * screen off) becomes the foreground once it has held for the dwell time; shorter flips are
+ * dropped. Switches are reported at the timestamp they actually happened.
+ *
+ * Each poll only reads events newer than the previous one, so steady-state polls decode
+ * nothing and a switch costs no extra query.
+ */
+public class ForegroundTracker implements UsageEventSource.Visitor {
+  public static final long DEFAULT_DWELL_MS = 750;
+  // First poll looks back this far to find the current app
+  public static final long INITIAL_WINDOW_MS = ForegroundResolver.WINDOW_MS;
+  // Re-read a little before the cursor in case events land in the store late
+  static final long OVERLAP_MS = 2000;
+  // Upper bound on a single catch-up query after the poll loop was held off (doze, restart)
+  static final long MAX_LOOKBACK_MS = 10 * 60 * 1000;
+
+  public interface Listener {
+    /** The stable foreground changed to packageName (null: launcher or no app) at atMillis */
+    void onSwitch(String packageName, long atMillis);
+  }
+
+  private final UsageEventSource source;
+  private final Clock clock;
+  private final String ownPackage;
+  private final MonitoringMetrics metrics = MonitoringMetrics.get();
+  private long dwellMs = DEFAULT_DWELL_MS;
+
+  // Last reported foreground (null = none)
+  private String committed;
+  // Latest foreground seen in the stream and when it took over
+  private boolean hasCandidate;
+  private String candidate;
+  private long candidateSince;
+
+  // Event cursor: the newest timestamp processed and how many events carried it
+  private long queriedUntil;
+  private long lastEventTime = Long.MIN_VALUE;
+  private int eventsAtLastTime;
+  // Duplicates still to skip in the current query (events at the previous cursor timestamp)
+  private long skipTime;
+  private int skipRemaining;
+
+  private Listener listener;
+  private ForegroundResolver resolver;
+
+  public ForegroundTracker(UsageEventSource source, Clock clock, String ownPackage) {
+    this.source = source;
+    this.clock = clock;
+    this.ownPackage = ownPackage;
+  }
+
+  public void setDwellMs(long dwellMs) {
+    this.dwellMs = dwellMs;
+  }
+
+  public long getDwellMs() {
+    return dwellMs;
+  }
+
+  /**
+   * Share what this tracker knows with on-demand callers after every poll
+   */
+  public void publishTo(ForegroundResolver resolver) {
+    this.resolver = resolver;
+  }
+
+  public String getCommitted() {
+    return committed;
+  }
+
+  /**
+   * Read new events and report every switch that became stable, in order
+   */
+  public void poll(Listener listener) {
+    long now = clock.currentTimeMillis();
+    read(pollBegin(now), now, listener);
+    if (resolver != null) {
+      resolver.publish(committed, now);
+    }
+  }
+
+  /** True when the source can query off the caller's thread (see pollAsync) */
+  public boolean isAsync() {
+    return source instanceof UsageEventSource.Async;
+  }
+
+  /**
+   * poll() without blocking: the query runs in the background and its events are read, and
+   * switches reported, on scheduler's thread once it completes. Returns false, doing nothing,
+   * while the previous poll is still in flight.
+   */
+  public boolean pollAsync(Scheduler scheduler, Listener listener) {
+    final long now = clock.currentTimeMillis();
+    final long startNanos = System.nanoTime();
+    // Only this tracker reads the cursor, so it can be set up now for when the events arrive
+    begin(listener);
+    boolean started = ((UsageEventSource.Async) source).queryAsync(pollBegin(now), now, scheduler, this,
+      (decoded, error) -> {
+        try {
+          if (error == null) {
+            finish(now, decoded);
+            if (resolver != null) {
+              resolver.publish(committed, now);
+            }
+          }
+        } finally {
+          this.listener = null;
+          metrics.recordNanos(MonitoringMetrics.LATENCY_FOREGROUND_QUERY, System.nanoTime() - startNanos);
+        }
+      });
+    if (!started) this.listener = null;
+    return started;
+  }
+
+  /**
+   * Stream [begin, end) in one query, e.g. to rebuild today's sessions on a fresh tracker at
+   * startup. Memory stays constant however many events the range holds.
+   */
+  public void replay(long begin, long end, Listener listener) {
+    read(begin, end, listener);
+  }
+
+  /**
+   * Hand the foreground over from a replay: if nothing has been seen since, packageName is
+   * the candidate from sinceMillis and the next poll commits it
+   */
+  public void adopt(String packageName, long sinceMillis) {
+    if (hasCandidate || committed != null || packageName == null) return;
+    hasCandidate = true;
+    candidate = packageName;
+    candidateSince = sinceMillis;
+  }
+
+  private long pollBegin(long now) {
+    return queriedUntil == 0
+      ? now - INITIAL_WINDOW_MS
+      : Math.max(queriedUntil - OVERLAP_MS, now - MAX_LOOKBACK_MS);
+  }
+
+  private void read(long begin, long end, Listener listener) {
+    long startNanos = System.nanoTime();
+    begin(listener);
+    try {
+      finish(end, source.queryEvents(begin, end, this));
+    } finally {
+      this.listener = null;
+      metrics.recordNanos(MonitoringMetrics.LATENCY_FOREGROUND_QUERY, System.nanoTime() - startNanos);
+    }
+  }
+
+  private void begin(Listener listener) {
+    this.listener = listener;
+    skipTime = lastEventTime;
+    skipRemaining = eventsAtLastTime;
+  }
+
+  // The events up to end have been read
+  private void finish(long end, int decoded) {
+    metrics.increment(MonitoringMetrics.USAGE_QUERIES);
+    metrics.add(MonitoringMetrics.EVENTS_DECODED, decoded);
+    queriedUntil = end;
+    // Nothing newer arrived: whatever is current has now held until the end of the range
+    if (hasCandidate && end - candidateSince >= dwellMs) {
+      commit(candidate, candidateSince);
+    }
+  }
+
+  /**
+   * The screen went off (reported by broadcast): nothing is in the foreground any more
+   */
+  public void onScreenOff() {
+    committed = null;
+    hasCandidate = false;
+    candidate = null;
+    if (resolver != null) {
+      resolver.publish(null, clock.currentTimeMillis());
+    }
+  }
+
+  @Override
+  public void onEvent(String packageName, int eventType, long timestamp) {
+    // Skip what the previous query already processed
+    if (timestamp < skipTime) return;
+    if (timestamp == skipTime && skipRemaining > 0) {
+      skipRemaining--;
+      return;
+    }
+    if (timestamp == lastEventTime) {
+      eventsAtLastTime++;
+    } else {
+      lastEventTime = timestamp;
+      eventsAtLastTime = 1;
+    }
+
+    switch (eventType) {
+      case UsageEventSource.MOVE_TO_FOREGROUND:
+        if (packageName == null) return;
+        if (ForegroundResolver.isExcluded(packageName, ownPackage)) {
+          TraceLog.v(TraceLog.EXCLUDED_PACKAGE, packageName);
+          transition(null, timestamp);
+        } else {
+          transition(packageName, timestamp);
+        }
+        break;
+      case UsageEventSource.MOVE_TO_BACKGROUND:
+      case UsageEventSource.ACTIVITY_STOPPED:
+        // Only the current app leaving matters; the previous app stops after the next one resumed
+        if (hasCandidate && packageName != null && packageName.equals(candidate)) {
+          transition(null, timestamp);
+        }
+        break;
+      case UsageEventSource.SCREEN_NON_INTERACTIVE:
+        transition(null, timestamp);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void transition(String next, long timestamp) {
+    if (hasCandidate && same(next, candidate)) return;
+    if (hasCandidate) {
+      long held = timestamp - candidateSince;
+      if (held >= dwellMs) {
+        commit(candidate, candidateSince);
+      } else if (candidate != null && !same(candidate, committed)) {
+        metrics.increment(MonitoringMetrics.STABILIZATION_REJECTED);
+        TraceLog.d(TraceLog.STABILIZATION_REJECTED, candidate, held, dwellMs);
+      }
+    }
+    hasCandidate = true;
+    candidate = next;
+    candidateSince = timestamp;
+  }
+
+  private void commit(String packageName, long atMillis) {
+    if (same(packageName, committed)) return;
+    committed = packageName;
+    if (packageName != null) {
+      metrics.increment(MonitoringMetrics.STABILIZATION_ACCEPTED);
+    }
+    if (listener != null) {
+      listener.onSwitch(packageName, atMillis);
+    }
+  }
+
+  private static boolean same(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,38 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-persistent KeyValueStore for running the core on a workstation.
+ */
+public class InMemoryKeyValueStore implements KeyValueStore {
+  private final Map<String, Object> values = new HashMap<>();
+
+  @Override
+  public int getInt(String key, int defaultValue) {
+    Object value = values.get(key);
+    return value instanceof Integer ? (Integer) value : defaultValue;
+  }
+
+  @Override
+  public void putInt(String key, int value) {
+    values.put(key, value);
+  }
+
+  @Override
+  public String getString(String key, String defaultValue) {
+    Object value = values.get(key);
+    return value instanceof String ? (String) value : defaultValue;
+  }
+
+  @Override
+  public void putString(String key, String value) {
+    values.put(key, value);
+  }
+
+  @Override
+  public void remove(String key) {
+    values.remove(key);
+  }
+}
@@ -0,0 +1,16 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Small persistent key-value store (a MappedStore namespace on device).
+ */
+public interface KeyValueStore {
+  int getInt(String key, int defaultValue);
+
+  void putInt(String key, int value);
+
+  String getString(String key, String defaultValue);
+
+  void putString(String key, String value);
+
+  void remove(String key);
+}
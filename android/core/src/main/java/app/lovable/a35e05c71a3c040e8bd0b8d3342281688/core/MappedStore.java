@@ -0,0 +1,394 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One file of small persistent state for the whole app, in place of a SharedPreferences XML file
+ * per component. Values are typed (int or string) and live in a HashMap; every commit appends
+ * one checksummed record of its changes to a memory-mapped log, so a write costs a few hundred
+ * bytes copied into the page cache instead of rewriting a whole file, and opening is one pass
+ * over the log. A record cut short by process death fails its checksum and is dropped whole,
+ * which makes each commit atomic however many keys it changes.
+ *
+ * When the log fills its mapping it is compacted: the live entries are written to a new file
+ * as a single record and renamed over the old one (the mapping grows if they take over half).
+ * Components see their own namespace() as a KeyValueStore. Thread-safe.
+ *
+ * Layout: "FFKV", version, 3 reserved bytes, then records of [length][crc32][ops] up to the
+ * first zero length. An op is a type byte, the key (UTF-8, short length) and for puts the value.
+ */
+public final class MappedStore {
+  static final int INITIAL_CAPACITY = 64 * 1024;
+  private static final byte[] MAGIC = {'F', 'F', 'K', 'V'};
+  private static final int VERSION = 1;
+  private static final int HEADER = 8;
+  private static final int RECORD_HEADER = 8;
+  private static final byte OP_INT = 1;
+  private static final byte OP_STRING = 2;
+  private static final byte OP_REMOVE = 3;
+  private static final char SEPARATOR = '/';
+
+  // null for a store that only lives in memory
+  private final File file;
+  private final Map<String, Object> values = new HashMap<>();
+  private MappedByteBuffer log;
+  private int capacity;
+  private int position;
+  private long compactions;
+
+  private MappedStore(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Open or create the store at file. An unreadable file is set aside as file.corrupt and
+   * replaced by an empty store rather than failing startup.
+   */
+  public static MappedStore open(File file) throws IOException {
+    long started = System.nanoTime();
+    MappedStore store = new MappedStore(file);
+    if (!file.exists() || file.length() < HEADER) {
+      store.rewrite(INITIAL_CAPACITY);
+    } else {
+      store.map((int) Math.min(file.length(), Integer.MAX_VALUE));
+      if (!store.replay()) {
+        // The tail holds a torn record; start the next append on clean zeroes
+        store.rewrite(store.capacity);
+      }
+    }
+    TraceLog.d(TraceLog.STORE_OPENED, file.getName(), store.values.size(), store.position,
+      (System.nanoTime() - started) / 1000);
+    return store;
+  }
+
+  /**
+   * A store that keeps nothing on disk, for when the file cannot be opened: the app keeps
+   * working for this process as it would with a failed SharedPreferences write
+   */
+  public static MappedStore inMemory() {
+    return new MappedStore(null);
+  }
+
+  /**
+   * Keys under name/ as a KeyValueStore, e.g. one per former SharedPreferences file
+   */
+  public Namespace namespace(String name) {
+    return new Namespace(name + SEPARATOR);
+  }
+
+  /** Start a batch over full keys ("namespace/key"); nothing is visible until commit() */
+  public Batch edit() {
+    return new Batch("");
+  }
+
+  public synchronized boolean contains(String key) {
+    return values.containsKey(key);
+  }
+
+  public synchronized int size() {
+    return values.size();
+  }
+
+  /** Bytes of log in use, and the mapping they live in */
+  public synchronized int logBytes() {
+    return position;
+  }
+
+  public synchronized int capacity() {
+    return capacity;
+  }
+
+  public synchronized long compactions() {
+    return compactions;
+  }
+
+  /**
+   * Flush the mapping to disk. Commits already survive process death through the page cache;
+   * this only matters for the device going down right after.
+   */
+  public synchronized void sync() {
+    if (log != null) log.force();
+  }
+
+  private synchronized Object get(String key) {
+    return values.get(key);
+  }
+
+  /** A view of one namespace; single puts and removes are one-op commits */
+  public final class Namespace implements KeyValueStore {
+    private final String prefix;
+
+    Namespace(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+      Object value = get(prefix + key);
+      return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+      edit().putInt(key, value).commit();
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+      Object value = get(prefix + key);
+      return value instanceof String ? (String) value : defaultValue;
+    }
+
+    @Override
+    public void putString(String key, String value) {
+      edit().putString(key, value).commit();
+    }
+
+    @Override
+    public void remove(String key) {
+      edit().remove(key).commit();
+    }
+
+    public Batch edit() {
+      return new Batch(prefix);
+    }
+  }
+
+  /** Changes applied together: after a crash either all of them are there or none */
+  public final class Batch {
+    private final String prefix;
+    private final List<String> keys = new ArrayList<>();
+    // Integer, String, or null for a removal
+    private final List<Object> changes = new ArrayList<>();
+
+    Batch(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public Batch putInt(String key, int value) {
+      keys.add(prefix + key);
+      changes.add(value);
+      return this;
+    }
+
+    /** A null value removes the key, as with SharedPreferences */
+    public Batch putString(String key, String value) {
+      keys.add(prefix + key);
+      changes.add(value);
+      return this;
+    }
+
+    public Batch remove(String key) {
+      keys.add(prefix + key);
+      changes.add(null);
+      return this;
+    }
+
+    public void commit() {
+      if (!keys.isEmpty()) MappedStore.this.commit(keys, changes);
+    }
+  }
+
+  private synchronized void commit(List<String> keys, List<Object> changes) {
+    byte[] ops;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      for (int i = 0; i < keys.size(); i++) {
+        writeOp(out, keys.get(i), changes.get(i));
+      }
+      ops = bytes.toByteArray();
+    } catch (IOException e) {
+      // A key over 64KB of UTF-8; the caller's bug, not the disk's
+      throw new IllegalArgumentException(e);
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      apply(keys.get(i), changes.get(i));
+    }
+    if (file == null) return;
+    try {
+      if (position + RECORD_HEADER + ops.length > capacity) {
+        // The record is already applied in memory, so compaction writes it too
+        compact();
+      } else {
+        append(ops);
+      }
+    } catch (IOException e) {
+      // Kept in memory for this process, like a failed SharedPreferences apply()
+      TraceLog.w(TraceLog.STORE_FAILED, e.getMessage());
+    }
+  }
+
+  private void apply(String key, Object value) {
+    if (value == null) {
+      values.remove(key);
+    } else {
+      values.put(key, value);
+    }
+  }
+
+  private void append(byte[] ops) {
+    CRC32 crc = new CRC32();
+    crc.update(ops);
+    // Length last, so a reader never sees a length before the bytes it covers
+    log.position(position + 4);
+    log.putInt((int) crc.getValue());
+    log.put(ops);
+    log.putInt(position, ops.length);
+    position += RECORD_HEADER + ops.length;
+  }
+
+  private void compact() throws IOException {
+    compactions++;
+    rewrite(capacity);
+  }
+
+  // Write the live entries as one record to a fresh file, then map it. The file is at least
+  // minCapacity and doubled until they fill no more than half of it.
+  private void rewrite(int minCapacity) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      writeOp(out, entry.getKey(), entry.getValue());
+    }
+    byte[] ops = bytes.toByteArray();
+    int newCapacity = minCapacity;
+    while (HEADER + RECORD_HEADER + ops.length > newCapacity / 2) {
+      newCapacity *= 2;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(ops);
+    File tmp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(tmp)) {
+      ByteBuffer head = ByteBuffer.allocate(HEADER + RECORD_HEADER);
+      head.put(MAGIC).put((byte) VERSION).put(new byte[3]);
+      head.putInt(values.isEmpty() ? 0 : ops.length).putInt((int) crc.getValue());
+      stream.write(head.array(), 0, values.isEmpty() ? HEADER : head.capacity());
+      if (!values.isEmpty()) stream.write(ops);
+      // Zero-fill to capacity so the log ends at the first zero length
+      stream.getChannel().position(newCapacity - 1);
+      stream.write(0);
+      stream.getFD().sync();
+    }
+    if (!tmp.renameTo(file)) throw new IOException("Could not replace " + file.getName());
+    map(newCapacity);
+    position = HEADER + (values.isEmpty() ? 0 : RECORD_HEADER + ops.length);
+  }
+
+  private void map(int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      // The mapping stays valid after the channel closes
+      log = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    capacity = size;
+  }
+
+  // Apply every intact record; false when something other than zeroes follows the last one
+  private boolean replay() throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    log.position(0);
+    log.get(magic);
+    if (!Arrays.equals(magic, MAGIC) || log.get() != VERSION) {
+      setAside();
+      return true;
+    }
+    position = HEADER;
+    CRC32 crc = new CRC32();
+    while (position + RECORD_HEADER <= capacity) {
+      int length = log.getInt(position);
+      if (length == 0) return true;
+      if (length < 0 || position + RECORD_HEADER + length > capacity) return false;
+      byte[] ops = new byte[length];
+      log.position(position + RECORD_HEADER);
+      log.get(ops);
+      crc.reset();
+      crc.update(ops);
+      if ((int) crc.getValue() != log.getInt(position + 4) || !applyOps(ops)) return false;
+      position += RECORD_HEADER + length;
+    }
+    return true;
+  }
+
+  private boolean applyOps(byte[] ops) {
+    ByteBuffer in = ByteBuffer.wrap(ops);
+    Map<String, Object> changes = new HashMap<>();
+    try {
+      while (in.hasRemaining()) {
+        byte op = in.get();
+        String key = readString(in, in.getShort() & 0xffff);
+        switch (op) {
+          case OP_INT:
+            changes.put(key, in.getInt());
+            break;
+          case OP_STRING:
+            changes.put(key, readString(in, in.getInt()));
+            break;
+          case OP_REMOVE:
+            changes.put(key, null);
+            break;
+          default:
+            return false;
+        }
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      return false;
+    }
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      apply(change.getKey(), change.getValue());
+    }
+    return true;
+  }
+
+  // Not a store (or a newer version): keep the bytes for inspection and start empty
+  private void setAside() throws IOException {
+    TraceLog.w(TraceLog.STORE_FAILED, "unreadable " + file.getName() + ", starting empty");
+    File corrupt = new File(file.getPath() + ".corrupt");
+    corrupt.delete();
+    if (!file.renameTo(corrupt)) throw new IOException("Could not set aside " + file.getName());
+    rewrite(INITIAL_CAPACITY);
+  }
+
+  private static void writeOp(DataOutputStream out, String key, Object value) throws IOException {
+    byte[] name = key.getBytes(StandardCharsets.UTF_8);
+    if (name.length > 0xffff) throw new IOException("Key too long: " + key.substring(0, 64));
+    if (value instanceof Integer) {
+      out.writeByte(OP_INT);
+    } else if (value instanceof String) {
+      out.writeByte(OP_STRING);
+    } else {
+      out.writeByte(OP_REMOVE);
+    }
+    out.writeShort(name.length);
+    out.write(name);
+    if (value instanceof Integer) {
+      out.writeInt((Integer) value);
+    } else if (value instanceof String) {
+      byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+      out.writeInt(text.length);
+      out.write(text);
+    }
+  }
+
+  private static String readString(ByteBuffer in, int length) {
+    if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("length " + length);
+    String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+}
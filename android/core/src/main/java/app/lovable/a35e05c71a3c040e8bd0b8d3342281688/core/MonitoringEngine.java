@@ -0,0 +1,1051 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Platform-independent monitoring loop: polls the foreground app, debounces app switches,
+ * accumulates daily per-app usage and decides when per-app nudges and meta-nudges fire.
+ * Everything runs on the Scheduler's thread; the platform layer only renders what the Listener receives.
+ */
+public class MonitoringEngine {
+  public static final long POLL_INTERVAL_MS = 5000;
+  public static final long DURATION_TICK_MS = 30000;
+  public static final long SNOOZE_MS = 5 * 60 * 1000;
+  private static final long META_NUDGE_MIN_GAP_MS = 30 * 60 * 1000;
+  private static final long HOUR_MS = 60 * 60 * 1000;
+  private static final long MINUTE_MS = 60 * 1000;
+  private static final int STATE_MAGIC = 0x46464553; // "FFES"
+  private static final int STATE_VERSION = 1;
+
+  static final int[] META_THRESHOLDS = {
+    60 * 60,      // 1 hour total
+    2 * 60 * 60,  // 2 hours total
+    3 * 60 * 60   // 3 hours total
+  };
+
+  /**
+   * Decisions and state changes for the platform layer
+   */
+  public interface Listener {
+    void onAppChanged(String packageName, String appName);
+
+    /** A foreground session was saved: startMillis..endMillis as accounted to packageName */
+    void onSessionEnded(String packageName, long startMillis, long endMillis);
+
+    void onDurationUpdate(String packageName, String appName, int durationSeconds);
+
+    /**
+     * crossedAtMillis is when the threshold behind the nudge was crossed; the platform records
+     * LATENCY_CROSSING_TO_POST from it once the notification is actually posted
+     */
+    void onNudge(String packageName, String appName, Nudge nudge, long crossedAtMillis);
+
+    void onMetaNudge(Nudge nudge, int totalSeconds, long crossedAtMillis);
+  }
+
+  /**
+   * Receives each completed day at rollover, before the daily map is cleared
+   */
+  public interface DayArchive {
+    void archive(int epochDay, Map<String, int[]> hourSecondsByPackage);
+  }
+
+  private final Clock clock;
+  private final Scheduler scheduler;
+  private final ForegroundTracker tracker;
+  private final AppNameResolver appNames;
+  private final NudgeComposer composer;
+  private final Listener listener;
+  private final MonitoringMetrics metrics = MonitoringMetrics.get();
+
+  private String lastPackage;
+  private long sessionStartTime;
+  private String currentAppName;
+  private boolean debugMode = false;
+  private String userName = "friend";
+  private boolean isScreenOn = true;
+  private long pollIntervalMs = POLL_INTERVAL_MS;
+  private CircuitBreaker queryHealth;
+  private long startedAt;
+  private DayArchive dayArchive;
+  private UsageHeatmap heatmap;
+  private SessionSketches sessionSketches;
+
+  // User nudge rules (null: AppThresholds and META_THRESHOLDS) with per-policy cooldowns and
+  // today's time and shown level per budget
+  private NudgeRules rules;
+  private long[] policyNextAllowed = new long[0];
+  private int[] budgetSeconds = new int[0];
+  private int[] budgetLevels = new int[0];
+  // Rolling-window budgets: hourly totals, the rings each app feeds (cached per day) and the
+  // level shown per ring, which drops again as time leaves the window
+  private NotificationBudget notificationBudget;
+  private RollingUsage rolling;
+  private final Map<String, int[]> rollingMembers = new HashMap<>();
+  private int[] rollingLevels = new int[0];
+
+  // Daily cumulative usage tracking
+  private final Map<String, DailyAppUsage> dailyUsageMap = new HashMap<>();
+  private String currentDate;
+  private long dayStartMillis;
+  private long dayEndMillis;
+  // Today's calendar, for hours the cached bounds can't answer (DST days, other days)
+  private Calendar calendar;
+  // 0 = Monday, as in NudgeRules
+  private int dayOfWeek;
+
+  // Per-session nudge state
+  private int lastNudgeLevel = 0;
+  // Adaptive levels count per session, from when the app came to the front (sessionStartTime
+  // restarts at midnight)
+  private long sessionOrigin;
+  private int sessionNudgeLevel = 0;
+  private long nextAllowedNudgeTime = 0;
+  private int dismissalCount = 0;
+
+  // Total daily screen time tracking for meta-nudges
+  private int totalDailyScreenTimeSeconds = 0;
+  private int lastMetaNudgeLevel = 0;
+  private long lastMetaNudgeTime = 0;
+
+  private boolean running;
+
+  // Saved on every transition so a restarted service resumes where it was (see restoreState)
+  private SnapshotFile snapshot;
+  private final StateBuffer stateBytes = new StateBuffer();
+  // The session in front when the state was saved; it goes on if that app is committed first
+  private String restoredPackage;
+  private long restoredOrigin;
+  private int restoredSessionLevel;
+  private long restoredNextAllowed;
+  private int restoredDismissals;
+
+  // Poll for app changes every 5 seconds, backing off while the usage service is unhealthy
+  private final Runnable pollTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        poll();
+      } catch (Exception e) {
+        TraceLog.w(TraceLog.POLL_FAILED, e.getMessage());
+      }
+      scheduler.postDelayed(this, queryHealth.nextDelay(pollIntervalMs));
+    }
+  };
+
+  // Stable switches from the tracker, committed at the time they happened
+  private final ForegroundTracker.Listener switchListener = new ForegroundTracker.Listener() {
+    @Override
+    public void onSwitch(String packageName, long atMillis) {
+      if (packageName != null) {
+        commitAppSwitch(packageName, atMillis);
+      } else {
+        endSession(atMillis);
+      }
+    }
+  };
+
+  // Switches from a query that completes after stop() belong to no session
+  private final ForegroundTracker.Listener asyncSwitchListener = new ForegroundTracker.Listener() {
+    @Override
+    public void onSwitch(String packageName, long atMillis) {
+      if (running) switchListener.onSwitch(packageName, atMillis);
+    }
+  };
+
+  // Duration updates, screen-time accounting and nudge checks every 30 seconds
+  private final Runnable durationTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        onDurationTick();
+      } catch (Exception e) {
+        // The next tick tries again; the cause stays in the trace
+        TraceLog.w(TraceLog.DURATION_TICK_FAILED, e.toString());
+      }
+      scheduler.postDelayed(this, DURATION_TICK_MS);
+    }
+  };
+
+  public MonitoringEngine(
+    Clock clock,
+    Scheduler scheduler,
+    ForegroundTracker tracker,
+    AppNameResolver appNames,
+    NudgeComposer composer,
+    Listener listener
+  ) {
+    this.clock = clock;
+    this.scheduler = scheduler;
+    this.tracker = tracker;
+    this.appNames = appNames;
+    this.composer = composer;
+    this.listener = listener;
+    this.queryHealth = new CircuitBreaker(clock);
+    refreshDate(clock.currentTimeMillis());
+  }
+
+  public void start() {
+    running = true;
+    startedAt = clock.currentTimeMillis();
+    scheduler.postDelayed(pollTask, 0);
+    scheduler.postDelayed(durationTask, 0);
+  }
+
+  public void stop() {
+    running = false;
+    scheduler.cancel(pollTask);
+    scheduler.cancel(durationTask);
+  }
+
+  public void setDebugMode(boolean debugMode) {
+    this.debugMode = debugMode;
+  }
+
+  /**
+   * Override the poll period and the dwell an app must hold before a switch counts (0 takes
+   * every switch). The service keeps the defaults; the replay harness compares strategies.
+   */
+  public void setPollingStrategy(long pollIntervalMs, long dwellMs) {
+    this.pollIntervalMs = pollIntervalMs;
+    tracker.setDwellMs(dwellMs);
+  }
+
+  /**
+   * Share the breaker fed by the usage query path so polls back off when queries are slow
+   */
+  public void setQueryHealth(CircuitBreaker queryHealth) {
+    this.queryHealth = queryHealth;
+  }
+
+  public CircuitBreaker getQueryHealth() {
+    return queryHealth;
+  }
+
+  public void setDayArchive(DayArchive dayArchive) {
+    this.dayArchive = dayArchive;
+  }
+
+  /**
+   * Keep today's per-minute foreground in heatmap (cleared now and at every rollover)
+   */
+  public void setHeatmap(UsageHeatmap heatmap) {
+    this.heatmap = heatmap;
+    heatmap.reset(dayStartMillis, dayEndMillis);
+  }
+
+  /**
+   * Replace the user's nudge rules (null: the built-in thresholds). Budgets are recounted from
+   * today's totals and per-rule cooldowns start over.
+   */
+  public void setRules(NudgeRules rules) {
+    this.rules = rules;
+    int budgets = rules != null ? rules.getBudgetCount() : 0;
+    policyNextAllowed = new long[rules != null ? rules.getPolicyCount() : 0];
+    budgetSeconds = new int[budgets];
+    budgetLevels = new int[budgets];
+    recountBudgets();
+    int windows = rules != null ? rules.getRollingCount() : 0;
+    rolling = windows > 0 ? new RollingUsage(windows) : null;
+    rollingLevels = new int[windows];
+    rollingMembers.clear();
+    // Today so far; earlier days arrive through applyRollingHistory
+    for (Map.Entry<String, DailyAppUsage> entry : dailyUsageMap.entrySet()) {
+      addRollingDay(entry.getKey(), entry.getValue().hourSeconds);
+    }
+    if (rules != null) {
+      TraceLog.i(TraceLog.RULES_APPLIED, rules.getPolicyCount(), budgets, rules.getPackageCount());
+    }
+    saveState();
+  }
+
+  /**
+   * Record every finished session's length in sketches; with adaptive rules they also set the
+   * nudge levels of apps that have enough history
+   */
+  public void setSessionSketches(SessionSketches sketches) {
+    this.sessionSketches = sketches;
+  }
+
+  /**
+   * Make every nudge and meta-nudge take a token from budget first; a refused one stays due and
+   * is tried again on later ticks. Without a budget only the engine's own cooldowns apply.
+   */
+  public void setNotificationBudget(NotificationBudget budget) {
+    this.notificationBudget = budget;
+  }
+
+  public NudgeRules getRules() {
+    return rules;
+  }
+
+  /**
+   * Merge the days before today into the rolling budgets (see RollingUsage.fromHistory).
+   * Levels already crossed are marked as shown, as after a backfill; ignored when the rules
+   * changed since history was read for forRules.
+   */
+  public void applyRollingHistory(NudgeRules forRules, RollingUsage history) {
+    if (forRules != rules || rolling == null) return;
+    rolling.merge(history);
+    long now = clock.currentTimeMillis();
+    for (int r = 0; r < rollingLevels.length; r++) {
+      NudgeRules.Policy window = rules.getRolling(r);
+      int crossed = levelFor(window.thresholds(debugMode), rolling.sum(r, now, window.windowHours));
+      rollingLevels[r] = Math.max(rollingLevels[r], crossed);
+    }
+  }
+
+  public void setUserName(String userName) {
+    this.userName = userName == null || userName.isEmpty() ? "friend" : userName;
+    saveState();
+  }
+
+  public String getUserName() {
+    return userName;
+  }
+
+  public boolean isDebugMode() {
+    return debugMode;
+  }
+
+  /**
+   * Start of the range a startup backfill should cover (today's midnight)
+   */
+  public long getBackfillFromMillis() {
+    return dayStartMillis;
+  }
+
+  /**
+   * End of the backfill range: where the live tracker's first look-back window begins, so
+   * the backfill and live tracking never count the same time
+   */
+  public long getBackfillUntilMillis() {
+    return Math.max(dayStartMillis, startedAt - ForegroundTracker.INITIAL_WINDOW_MS);
+  }
+
+  /**
+   * Merge a startup backfill into today's totals. Levels the user already crossed before the
+   * restart are marked as shown so nudges and meta-nudges do not fire again from level 1.
+   */
+  public void applyBackfill(UsageBackfill.Result result) {
+    // The day rolled over while the pass ran: its totals belong to yesterday
+    if (result.fromMillis != dayStartMillis) return;
+
+    for (Map.Entry<String, Integer> entry : result.secondsByPackage.entrySet()) {
+      String packageName = entry.getKey();
+      DailyAppUsage usage = dailyUsageMap.get(packageName);
+      if (usage == null) {
+        usage = new DailyAppUsage(currentDate);
+        dailyUsageMap.put(packageName, usage);
+      }
+      usage.totalSeconds += entry.getValue();
+      int[] hours = result.hourSecondsByPackage.get(packageName);
+      if (hours != null) {
+        for (int h = 0; h < hours.length && h < usage.hourSeconds.length; h++) {
+          usage.hourSeconds[h] += hours[h];
+        }
+        addRollingDay(packageName, hours);
+      }
+      int crossed = levelFor(thresholdsFor(packageName), usage.totalSeconds);
+      usage.lastNudgeLevel = Math.max(usage.lastNudgeLevel, crossed);
+      if (packageName.equals(lastPackage)) {
+        lastNudgeLevel = Math.max(lastNudgeLevel, crossed);
+      }
+    }
+    totalDailyScreenTimeSeconds += result.totalSeconds;
+    if (heatmap != null) {
+      heatmap.merge(result.minutes);
+    }
+    recountBudgets();
+    for (int b = 0; b < budgetLevels.length; b++) {
+      int crossed = levelFor(rules.getBudget(b).thresholds(debugMode), budgetSeconds[b]);
+      budgetLevels[b] = Math.max(budgetLevels[b], crossed);
+    }
+    lastMetaNudgeLevel = Math.max(lastMetaNudgeLevel, levelFor(metaThresholds(), totalDailyScreenTimeSeconds));
+
+    // The app that was already in front when monitoring started has produced no event since
+    if (lastPackage == null) {
+      tracker.adopt(result.openPackage, result.untilMillis);
+    }
+    TraceLog.i(TraceLog.BACKFILL_APPLIED, result.secondsByPackage.size(), totalDailyScreenTimeSeconds, lastMetaNudgeLevel);
+    saveState();
+  }
+
+  /**
+   * Save the state to snapshot on every transition from now on: app switches, nudges shown,
+   * snoozes and dismissals, screen off, rollover. Each save is a few hundred bytes copied into
+   * a mapping.
+   */
+  public void setSnapshot(SnapshotFile snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Resume from a state saved by an earlier instance, e.g. after START_STICKY restarted the
+   * service: the user name and debug mode, and when it was saved today the nudge levels already
+   * shown, cooldowns, dismissals and rule levels, so nothing is shown twice. The session that
+   * was in front goes on if its app is the first committed and was in front at start(). Totals
+   * are not part of it; the startup backfill recounts them. Call after setRules() and before
+   * start(); rule state only applies while the rules have the same shape.
+   *
+   * @return false when the state is from another day and only name and debug mode applied
+   */
+  public boolean restoreState(DataInputStream in) throws IOException {
+    if (in.readInt() != STATE_MAGIC) throw new IOException("Not an engine state");
+    int version = in.readUnsignedByte();
+    if (version != STATE_VERSION) throw new IOException("Unsupported engine state version " + version);
+    long savedDayStart = in.readLong();
+    userName = in.readUTF();
+    debugMode = in.readBoolean();
+    String packageName = in.readBoolean() ? in.readUTF() : null;
+    int nudgeLevel = in.readInt();
+    long origin = in.readLong();
+    int sessionLevel = in.readInt();
+    long nextAllowed = in.readLong();
+    int dismissals = in.readInt();
+    int metaLevel = in.readInt();
+    long metaTime = in.readLong();
+    long[] policies = new long[in.readInt()];
+    for (int i = 0; i < policies.length; i++) {
+      policies[i] = in.readLong();
+    }
+    int[] budgets = readInts(in);
+    int[] windows = readInts(in);
+    if (savedDayStart != dayStartMillis) return false;
+
+    int apps = in.readInt();
+    for (int i = 0; i < apps; i++) {
+      restoreLevel(in.readUTF(), in.readUnsignedByte());
+    }
+    if (packageName != null) {
+      // The level shown in the running session had not reached the daily map yet
+      restoreLevel(packageName, nudgeLevel);
+      restoredPackage = packageName;
+      restoredOrigin = origin;
+      restoredSessionLevel = sessionLevel;
+      restoredNextAllowed = nextAllowed;
+      restoredDismissals = dismissals;
+    }
+    lastMetaNudgeLevel = Math.max(lastMetaNudgeLevel, metaLevel);
+    lastMetaNudgeTime = Math.max(lastMetaNudgeTime, metaTime);
+    if (policies.length == policyNextAllowed.length && budgets.length == budgetLevels.length
+        && windows.length == rollingLevels.length) {
+      policyNextAllowed = policies;
+      budgetLevels = budgets;
+      rollingLevels = windows;
+    }
+    return true;
+  }
+
+  // Everything restoreState reads, in the same order
+  void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(STATE_MAGIC);
+    out.writeByte(STATE_VERSION);
+    out.writeLong(dayStartMillis);
+    out.writeUTF(userName);
+    out.writeBoolean(debugMode);
+    boolean inSession = lastPackage != null && sessionStartTime > 0;
+    out.writeBoolean(inSession);
+    if (inSession) out.writeUTF(lastPackage);
+    out.writeInt(lastNudgeLevel);
+    out.writeLong(sessionOrigin);
+    out.writeInt(sessionNudgeLevel);
+    out.writeLong(nextAllowedNudgeTime);
+    out.writeInt(dismissalCount);
+    out.writeInt(lastMetaNudgeLevel);
+    out.writeLong(lastMetaNudgeTime);
+    out.writeInt(policyNextAllowed.length);
+    for (long next : policyNextAllowed) {
+      out.writeLong(next);
+    }
+    writeInts(out, budgetLevels);
+    writeInts(out, rollingLevels);
+    out.writeInt(dailyUsageMap.size());
+    for (Map.Entry<String, DailyAppUsage> entry : dailyUsageMap.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeByte(entry.getValue().lastNudgeLevel);
+    }
+  }
+
+  private void saveState() {
+    if (snapshot == null) return;
+    try {
+      stateBytes.reset();
+      writeState(new DataOutputStream(stateBytes));
+      snapshot.write(stateBytes.bytes(), stateBytes.size());
+    } catch (IOException e) {
+      TraceLog.w(TraceLog.STATE_FAILED, e.getMessage());
+    }
+  }
+
+  // A level already shown today for packageName; the backfill adds its totals to the entry
+  private void restoreLevel(String packageName, int level) {
+    DailyAppUsage usage = dailyUsageMap.get(packageName);
+    if (usage == null) {
+      usage = new DailyAppUsage(currentDate);
+      dailyUsageMap.put(packageName, usage);
+    }
+    usage.lastNudgeLevel = Math.max(usage.lastNudgeLevel, level);
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  // Number of apps with a dailyUsageMap entry today
+  public int getTrackedAppCount() {
+    return dailyUsageMap.size();
+  }
+
+  // Saved foreground seconds today across apps (the running session is added when it ends)
+  public int getTodaySeconds() {
+    int total = 0;
+    for (DailyAppUsage usage : dailyUsageMap.values()) {
+      total += usage.totalSeconds;
+    }
+    return total;
+  }
+
+  void poll() {
+    metrics.increment(MonitoringMetrics.POLLS);
+    checkDateRollover(clock.currentTimeMillis());
+    if (tracker.isAsync()) {
+      // Skipped while the previous query is in flight; the source counts it
+      tracker.pollAsync(scheduler, asyncSwitchListener);
+    } else {
+      tracker.poll(switchListener);
+    }
+  }
+
+  /**
+   * App is stable: close the previous session and start tracking the new one, both at the
+   * moment the switch happened
+   */
+  void commitAppSwitch(String packageName, long atMillis) {
+    // Save previous app's session time to daily map
+    long sessionDuration = saveSession(atMillis);
+    if (sessionDuration >= 0) {
+      TraceLog.d(TraceLog.SESSION_SAVED, lastPackage, sessionDuration, lastNudgeLevel);
+    }
+
+    lastPackage = packageName;
+    String appName = appNames.getAppName(packageName);
+    currentAppName = appName;
+    sessionStartTime = atMillis;
+    sessionOrigin = atMillis;
+    sessionNudgeLevel = 0;
+    if (heatmap != null) {
+      heatmap.open(packageName, atMillis, true);
+    }
+
+    // Restore nudge state from daily map
+    DailyAppUsage usage = dailyUsageMap.get(packageName);
+    if (usage != null) {
+      lastNudgeLevel = usage.lastNudgeLevel;
+      TraceLog.d(TraceLog.NUDGE_LEVEL_RESTORED, packageName, lastNudgeLevel, usage.totalSeconds);
+    } else {
+      lastNudgeLevel = 0;
+    }
+    nextAllowedNudgeTime = 0;
+    dismissalCount = 0;
+    if (restoredPackage != null) {
+      // First switch since a restart: the app that was in front before it keeps its session
+      if (restoredPackage.equals(packageName) && atMillis <= startedAt) {
+        sessionOrigin = restoredOrigin;
+        sessionNudgeLevel = restoredSessionLevel;
+        nextAllowedNudgeTime = restoredNextAllowed;
+        dismissalCount = restoredDismissals;
+      }
+      restoredPackage = null;
+    }
+
+    TraceLog.d(TraceLog.APP_CHANGED, packageName, appName);
+    listener.onAppChanged(packageName, appName);
+    saveState();
+  }
+
+  /**
+   * The user left for the launcher or paused the app without another one taking over
+   */
+  void endSession(long atMillis) {
+    long sessionDuration = saveSession(atMillis);
+    if (sessionDuration >= 0) {
+      TraceLog.d(TraceLog.FOREGROUND_CLEARED, lastPackage, sessionDuration, 0);
+    }
+    lastPackage = null;
+    sessionStartTime = 0;
+    currentAppName = null;
+    saveState();
+  }
+
+  // Add the running session up to endMillis to the daily map; -1 when nothing was running
+  private long saveSession(long endMillis) {
+    return saveSession(endMillis, true);
+  }
+
+  // ended is false when the session only splits at midnight and keeps running
+  private long saveSession(long endMillis, boolean ended) {
+    if (lastPackage == null || sessionStartTime <= 0) return -1;
+    long end = Math.max(endMillis, sessionStartTime);
+    long sessionDuration = (end - sessionStartTime) / 1000;
+    saveDailyUsage(lastPackage, (int) sessionDuration, lastNudgeLevel);
+    addHours(dailyUsageMap.get(lastPackage).hourSeconds, sessionStartTime, end);
+    if (heatmap != null) {
+      heatmap.add(lastPackage, sessionStartTime, end);
+    }
+    if (rolling != null) {
+      for (int ring : rollingMembersOf(lastPackage)) {
+        rolling.add(ring, sessionStartTime, end);
+      }
+    }
+    if (ended && sessionSketches != null && sessionOrigin > 0) {
+      sessionSketches.record(lastPackage, hourOfDay(sessionOrigin), (int) ((end - sessionOrigin) / 1000));
+    }
+    listener.onSessionEnded(lastPackage, sessionStartTime, end);
+    return sessionDuration;
+  }
+
+  void onDurationTick() {
+    if (lastPackage != null && sessionStartTime > 0) {
+      int durationSeconds = (int) ((clock.currentTimeMillis() - sessionStartTime) / 1000);
+      listener.onDurationUpdate(lastPackage, currentAppName, durationSeconds);
+
+      // Track total daily screen time
+      totalDailyScreenTimeSeconds += (int) (DURATION_TICK_MS / 1000); // Add 30 seconds for each interval
+
+      // Check for meta-nudges based on overall usage
+      checkForMetaNudge();
+
+      // Check for per-app nudge intervention
+      checkForNudge(lastPackage, currentAppName, durationSeconds);
+    }
+  }
+
+  public void onScreenOff() {
+    isScreenOn = false;
+    tracker.onScreenOff();
+
+    // Save current session before terminating
+    long sessionDuration = saveSession(clock.currentTimeMillis());
+    if (sessionDuration >= 0) {
+      TraceLog.d(TraceLog.SCREEN_OFF_SESSION_SAVED, sessionDuration);
+    }
+
+    // Terminate active session when screen goes off
+    lastPackage = null;
+    sessionStartTime = 0;
+    currentAppName = null;
+    TraceLog.d(TraceLog.SCREEN_OFF);
+    saveState();
+  }
+
+  public void onScreenOn() {
+    isScreenOn = true;
+    TraceLog.d(TraceLog.SCREEN_ON);
+  }
+
+  public void onNudgeSnoozed() {
+    // Snooze for 5 minutes
+    nextAllowedNudgeTime = clock.currentTimeMillis() + SNOOZE_MS;
+    saveState();
+  }
+
+  public void onNudgeDismissed() {
+    // Increase dismissal count and reduce future cooldowns
+    dismissalCount++;
+    saveState();
+  }
+
+  private void checkDateRollover(long now) {
+    if (now >= dayStartMillis && now < dayEndMillis) return;
+    String previousDate = currentDate;
+    long previousDayStart = dayStartMillis;
+    boolean forward = now >= dayEndMillis;
+    // A session running across midnight: its part before midnight belongs to the old day
+    if (forward && lastPackage != null && sessionStartTime > 0) {
+      saveSession(dayEndMillis, false);
+      sessionStartTime = dayEndMillis;
+    }
+    refreshDate(now);
+    if (!currentDate.equals(previousDate)) {
+      if (forward) {
+        archiveDay(previousDayStart);
+      }
+      onDayRollover();
+      // The session carried over midnight keeps running on the new day's map
+      if (heatmap != null && lastPackage != null && sessionStartTime > 0) {
+        heatmap.open(lastPackage, sessionStartTime, false);
+      }
+    }
+  }
+
+  private void archiveDay(long dayStart) {
+    if (dayArchive == null || dailyUsageMap.isEmpty()) return;
+    // The map is cleared right after, so the hour arrays can be handed over as they are
+    Map<String, int[]> hours = new HashMap<>();
+    for (Map.Entry<String, DailyAppUsage> entry : dailyUsageMap.entrySet()) {
+      hours.put(entry.getKey(), entry.getValue().hourSeconds);
+    }
+    dayArchive.archive(UsageHistoryStore.epochDay(dayStart), hours);
+  }
+
+  private void onDayRollover() {
+    TraceLog.d(TraceLog.DATE_CHANGED);
+    dailyUsageMap.clear();
+    totalDailyScreenTimeSeconds = 0;
+    lastMetaNudgeLevel = 0;
+    lastMetaNudgeTime = 0;
+    Arrays.fill(policyNextAllowed, 0);
+    Arrays.fill(budgetSeconds, 0);
+    Arrays.fill(budgetLevels, 0);
+    // Rolling totals span days; only the day-dependent membership is recomputed
+    rollingMembers.clear();
+    if (heatmap != null) {
+      heatmap.reset(dayStartMillis, dayEndMillis);
+    }
+    saveState();
+  }
+
+  // Cache today's bounds so the poll loop only formats a date string at midnight
+  private void refreshDate(long now) {
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(now);
+    currentDate = String.format("%04d-%02d-%02d",
+      cal.get(Calendar.YEAR),
+      cal.get(Calendar.MONTH) + 1,
+      cal.get(Calendar.DAY_OF_MONTH));
+    dayOfWeek = (cal.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+    cal.set(Calendar.HOUR_OF_DAY, 0);
+    cal.set(Calendar.MINUTE, 0);
+    cal.set(Calendar.SECOND, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    dayStartMillis = cal.getTimeInMillis();
+    cal.add(Calendar.DAY_OF_YEAR, 1);
+    dayEndMillis = cal.getTimeInMillis();
+    calendar = cal;
+  }
+
+  // Spread [start, end) over today's local hours (a DST day's extra hour folds into 23:00)
+  private void addHours(int[] hourSeconds, long start, long end) {
+    long from = Math.max(start, dayStartMillis);
+    long to = Math.min(end, dayEndMillis);
+    while (from < to) {
+      int hour = (int) Math.min((from - dayStartMillis) / HOUR_MS, hourSeconds.length - 1);
+      long hourEnd = hour == hourSeconds.length - 1 ? to : Math.min(to, dayStartMillis + (hour + 1) * HOUR_MS);
+      hourSeconds[hour] += (int) ((hourEnd - from) / 1000);
+      from = hourEnd;
+    }
+  }
+
+  // Helper to save daily usage
+  void saveDailyUsage(String packageName, int sessionSeconds, int nudgeLevel) {
+    DailyAppUsage usage = dailyUsageMap.get(packageName);
+    if (usage == null) {
+      usage = new DailyAppUsage(currentDate);
+      dailyUsageMap.put(packageName, usage);
+    }
+    usage.totalSeconds += sessionSeconds;
+    usage.lastNudgeLevel = nudgeLevel;
+    if (rules != null && budgetSeconds.length > 0) {
+      NudgeRules.Policy budget = rules.budgetPolicy(packageName, dayOfWeek);
+      if (budget != null) {
+        budgetSeconds[budget.budget] += sessionSeconds;
+      }
+    }
+  }
+
+  // Budget totals from scratch (rules changed, backfill merged); O(apps), never per tick
+  private void recountBudgets() {
+    Arrays.fill(budgetSeconds, 0);
+    if (rules == null || budgetSeconds.length == 0) return;
+    for (Map.Entry<String, DailyAppUsage> entry : dailyUsageMap.entrySet()) {
+      NudgeRules.Policy budget = rules.budgetPolicy(entry.getKey(), dayOfWeek);
+      if (budget != null) {
+        budgetSeconds[budget.budget] += entry.getValue().totalSeconds;
+      }
+    }
+  }
+
+  void checkForNudge(String packageName, String appName, int durationSeconds) {
+    long startNanos = System.nanoTime();
+    try {
+      evaluateNudge(packageName, appName, durationSeconds);
+    } finally {
+      metrics.recordNanos(MonitoringMetrics.LATENCY_CHECK_NUDGE, System.nanoTime() - startNanos);
+    }
+  }
+
+  private void evaluateNudge(String packageName, String appName, int durationSeconds) {
+    // Only check nudges when screen is on
+    if (!isScreenOn) {
+      TraceLog.d(TraceLog.NUDGE_SKIPPED_SCREEN_OFF);
+      return;
+    }
+
+    long now = clock.currentTimeMillis();
+    NudgeRules.Policy policy = rules != null ? rules.appPolicy(packageName, dayOfWeek) : null;
+    // Quiet hours hold back the app's own nudge only; it stays due and posts once they end.
+    // Budgets and rolling windows are still evaluated, each against its own quiet hours.
+    boolean quiet = rules != null && rules.isQuiet(policy, dayOfWeek, minuteOfDay(now));
+    boolean ruled = policy != null && policy.hasThresholds();
+    AppThresholds.AppConfig config =
+      ruled && policy.psychState != null ? null : AppThresholds.getAppConfig(packageName);
+    int[] thresholds = ruled ? policy.thresholds(debugMode) : debugMode ? config.debugThresholds : config.thresholds;
+    String psychState = policy != null && policy.psychState != null ? policy.psychState : config.psychState;
+    int[] adaptive = ruled ? null : adaptiveThresholds(packageName);
+    if (adaptive != null) {
+      checkAdaptive(packageName, appName, durationSeconds, adaptive, psychState, quiet, now);
+      return;
+    }
+
+    // Calculate cumulative duration (daily total + current session)
+    DailyAppUsage usage = dailyUsageMap.get(packageName);
+    int cumulativeDuration = durationSeconds;
+    if (usage != null) {
+      cumulativeDuration = usage.totalSeconds + durationSeconds;
+    }
+
+    TraceLog.d(TraceLog.NUDGE_CHECK, appName, durationSeconds, cumulativeDuration, lastNudgeLevel);
+
+    // Find current level based on CUMULATIVE duration
+    int newLevel = levelFor(thresholds, cumulativeDuration);
+    if (quiet && newLevel > lastNudgeLevel) {
+      TraceLog.d(TraceLog.NUDGE_QUIET, appName, policy != null ? policy.ruleId : "all apps");
+    }
+
+    if (!quiet && newLevel > lastNudgeLevel && now >= nextAllowedNudgeTime
+        && (policy == null || now >= policyNextAllowed[policy.id]) && admit(NotificationBudget.NUDGE, now)) {
+      TraceLog.d(TraceLog.NUDGE_SHOWN, newLevel, cumulativeDuration);
+      Nudge nudge = composer.compose(newLevel, appName, userName, cumulativeDuration, psychState, hourOfDay(now));
+      listener.onNudge(packageName, appName, nudge, crossedAt(now, cumulativeDuration, thresholds[newLevel - 1]));
+      lastNudgeLevel = newLevel;
+
+      // Set next allowed nudge time based on dismissal count
+      long cooldownMs = Math.max(60000, 300000 / (dismissalCount + 1));
+      nextAllowedNudgeTime = now + cooldownMs;
+      if (policy != null) {
+        policyNextAllowed[policy.id] = now + policy.cooldownMs;
+      }
+      saveState();
+      return;
+    }
+    if (rules != null && budgetSeconds.length > 0 && checkBudget(packageName, durationSeconds, now)) {
+      return;
+    }
+    if (rolling != null) {
+      checkRolling(packageName, durationSeconds, now);
+    }
+  }
+
+  // Adaptive mode: this session against the app's usual session lengths at this hour, one
+  // level per percentile; budgets and rolling budgets still apply
+  private void checkAdaptive(String packageName, String appName, int durationSeconds, int[] thresholds,
+                             String psychState, boolean quiet, long now) {
+    int sessionSeconds = (int) ((now - sessionOrigin) / 1000);
+    int level = levelFor(thresholds, sessionSeconds);
+    if (quiet && level > sessionNudgeLevel) {
+      TraceLog.d(TraceLog.NUDGE_QUIET, appName, "adaptive");
+    }
+    if (!quiet && level > sessionNudgeLevel && now >= nextAllowedNudgeTime && admit(NotificationBudget.NUDGE, now)) {
+      TraceLog.d(TraceLog.ADAPTIVE_NUDGE, appName, level, sessionSeconds, thresholds[level - 1]);
+      Nudge nudge = composer.compose(level, appName, userName, sessionSeconds, psychState, hourOfDay(now));
+      listener.onNudge(packageName, appName, nudge, crossedAt(now, sessionSeconds, thresholds[level - 1]));
+      sessionNudgeLevel = level;
+      nextAllowedNudgeTime = now + Math.max(60000, 300000 / (dismissalCount + 1));
+      saveState();
+      return;
+    }
+    if (rules != null && budgetSeconds.length > 0 && checkBudget(packageName, durationSeconds, now)) {
+      return;
+    }
+    if (rolling != null) {
+      checkRolling(packageName, durationSeconds, now);
+    }
+  }
+
+  // Session-length levels for packageName at this hour, or null: not adaptive, debug mode (its
+  // thresholds are seconds) or not enough history yet
+  private int[] adaptiveThresholds(String packageName) {
+    if (rules == null || !rules.isAdaptive() || sessionSketches == null || debugMode) return null;
+    return sessionSketches.thresholds(packageName, hourOfDay(sessionOrigin));
+  }
+
+  // Category budget the current app counts towards: its apps' time today plus this session
+  private boolean checkBudget(String packageName, int durationSeconds, long now) {
+    NudgeRules.Policy budget = rules.budgetPolicy(packageName, dayOfWeek);
+    if (budget == null || now < nextAllowedNudgeTime || now < policyNextAllowed[budget.id]) return false;
+    int seconds = budgetSeconds[budget.budget] + durationSeconds;
+    int level = levelFor(budget.thresholds(debugMode), seconds);
+    if (level <= budgetLevels[budget.budget]) return false;
+    if (rules.isQuiet(budget, dayOfWeek, minuteOfDay(now))) {
+      TraceLog.d(TraceLog.NUDGE_QUIET, budget.label, budget.ruleId);
+      return false;
+    }
+    if (!admit(NotificationBudget.NUDGE, now)) return false;
+    TraceLog.d(TraceLog.BUDGET_NUDGE, budget.label, level, seconds);
+    String psychState = budget.psychState != null ? budget.psychState : AppThresholds.getAppConfig(packageName).psychState;
+    Nudge nudge = composer.compose(level, budget.label, userName, seconds, psychState, hourOfDay(now));
+    listener.onNudge(packageName, budget.label, nudge, crossedAt(now, seconds, budget.thresholds(debugMode)[level - 1]));
+    budgetLevels[budget.budget] = level;
+    policyNextAllowed[budget.id] = now + budget.cooldownMs;
+    saveState();
+    return true;
+  }
+
+  // Rolling budgets the current app feeds: one subtraction per window, whatever its length
+  private void checkRolling(String packageName, int durationSeconds, long now) {
+    for (int ring : rollingMembersOf(packageName)) {
+      NudgeRules.Policy window = rules.getRolling(ring);
+      int seconds = rolling.sum(ring, now, window.windowHours) + durationSeconds;
+      int level = levelFor(window.thresholds(debugMode), seconds);
+      if (level < rollingLevels[ring]) {
+        // Time left the window: lower levels may fire again when it fills back up
+        rollingLevels[ring] = level;
+      }
+      if (level <= rollingLevels[ring] || !window.isActiveOn(dayOfWeek)
+          || now < nextAllowedNudgeTime || now < policyNextAllowed[window.id]) continue;
+      if (rules.isQuiet(window, dayOfWeek, minuteOfDay(now))) {
+        TraceLog.d(TraceLog.NUDGE_QUIET, window.label, window.ruleId);
+        continue;
+      }
+      if (!admit(NotificationBudget.NUDGE, now)) return;
+      TraceLog.d(TraceLog.ROLLING_NUDGE, window.label, level, seconds, window.windowHours);
+      String psychState = window.psychState != null ? window.psychState : AppThresholds.getAppConfig(packageName).psychState;
+      Nudge nudge = composer.compose(level, window.label, userName, seconds, psychState, hourOfDay(now));
+      listener.onNudge(packageName, window.label, nudge, crossedAt(now, seconds, window.thresholds(debugMode)[level - 1]));
+      rollingLevels[ring] = level;
+      policyNextAllowed[window.id] = now + window.cooldownMs;
+      saveState();
+      return;
+    }
+  }
+
+  private int[] rollingMembersOf(String packageName) {
+    int[] members = rollingMembers.get(packageName);
+    if (members == null) {
+      members = rules.rollingMembers(packageName, dayOfWeek);
+      rollingMembers.put(packageName, members);
+    }
+    return members;
+  }
+
+  private void addRollingDay(String packageName, int[] hourSeconds) {
+    if (rolling == null) return;
+    for (int ring : rollingMembersOf(packageName)) {
+      rolling.addDay(ring, dayStartMillis, hourSeconds);
+    }
+  }
+
+  // Built-in or rule thresholds for packageName today (daily totals; adaptive levels are per session)
+  private int[] thresholdsFor(String packageName) {
+    NudgeRules.Policy policy = rules != null ? rules.appPolicy(packageName, dayOfWeek) : null;
+    if (policy != null && policy.hasThresholds()) {
+      return policy.thresholds(debugMode);
+    }
+    AppThresholds.AppConfig config = AppThresholds.getAppConfig(packageName);
+    return debugMode ? config.debugThresholds : config.thresholds;
+  }
+
+  private int[] metaThresholds() {
+    return rules != null && rules.getMetaThresholds() != null ? rules.getMetaThresholds() : META_THRESHOLDS;
+  }
+
+  private void checkForMetaNudge() {
+    long now = clock.currentTimeMillis();
+
+    // Don't spam meta-nudges (minimum 30 min between unless the rules say otherwise)
+    long gap = rules != null && rules.getMetaCooldownMs() > 0 ? rules.getMetaCooldownMs() : META_NUDGE_MIN_GAP_MS;
+    if (now - lastMetaNudgeTime < gap) {
+      return;
+    }
+
+    // Check which meta-threshold we've crossed
+    int[] thresholds = metaThresholds();
+    int newMetaLevel = levelFor(thresholds, totalDailyScreenTimeSeconds);
+
+    // Show meta-nudge if we've reached a new level
+    if (newMetaLevel > lastMetaNudgeLevel) {
+      if (rules != null && rules.isQuiet(null, dayOfWeek, minuteOfDay(now))) {
+        TraceLog.d(TraceLog.NUDGE_QUIET, "meta", "all apps");
+        return;
+      }
+      if (!admit(NotificationBudget.META, now)) return;
+      listener.onMetaNudge(composer.composeMeta(newMetaLevel, totalDailyScreenTimeSeconds, userName),
+        totalDailyScreenTimeSeconds, crossedAt(now, totalDailyScreenTimeSeconds, thresholds[newMetaLevel - 1]));
+      lastMetaNudgeLevel = newMetaLevel;
+      lastMetaNudgeTime = now;
+      saveState();
+    }
+  }
+
+  // The threshold was actually crossed (seconds - threshold) seconds before this tick
+  private static long crossedAt(long now, int seconds, int threshold) {
+    return now - (seconds - threshold) * 1000L;
+  }
+
+  // Last gate before a post: a token from the shared budget, if there is one
+  private boolean admit(int channel, long now) {
+    return notificationBudget == null || notificationBudget.tryAcquire(channel, now);
+  }
+
+  // Number of thresholds at or below seconds
+  private static int levelFor(int[] thresholds, int seconds) {
+    int level = 0;
+    for (int i = 0; i < thresholds.length; i++) {
+      if (seconds >= thresholds[i]) {
+        level = i + 1;
+      }
+    }
+    return level;
+  }
+
+  private int minuteOfDay(long now) {
+    return (int) Math.max(0, Math.min((now - dayStartMillis) / MINUTE_MS, 24 * 60 - 1));
+  }
+
+  // Local hour of now: arithmetic on a 24-hour today, the calendar otherwise
+  private int hourOfDay(long now) {
+    if (now >= dayStartMillis && now < dayEndMillis && dayEndMillis - dayStartMillis == 24 * HOUR_MS) {
+      return (int) ((now - dayStartMillis) / HOUR_MS);
+    }
+    calendar.setTimeInMillis(now);
+    return calendar.get(Calendar.HOUR_OF_DAY);
+  }
+
+  public void dump(PrintWriter writer) {
+    writer.println("  date=" + currentDate + " trackedApps=" + dailyUsageMap.size()
+      + " totalScreenTime=" + totalDailyScreenTimeSeconds + "s metaLevel=" + lastMetaNudgeLevel
+      + " screenOn=" + isScreenOn);
+    writer.println("  current=" + lastPackage + " nudgeLevel=" + lastNudgeLevel + " dismissals=" + dismissalCount);
+  }
+
+  // Serializes without copying the buffer out
+  private static final class StateBuffer extends ByteArrayOutputStream {
+    StateBuffer() {
+      super(1024);
+    }
+
+    byte[] bytes() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide metrics registry for the monitoring pipeline.
+ * The service records on its handler thread while the plugin reads from the bridge thread,
+ * so everything is backed by atomics and never allocates on the recording path.
+ */
+public final class MonitoringMetrics {
+  // Counters
+  public static final int POLLS = 0;
+  public static final int USAGE_QUERIES = 1;
+  public static final int EVENTS_DECODED = 2;
+  public static final int STABILIZATION_ACCEPTED = 3;
+  public static final int STABILIZATION_REJECTED = 4;
+  public static final int NUDGES_POSTED = 5;
+  public static final int META_NUDGES_POSTED = 6;
+  public static final int WAKE_LOCKS_ACQUIRED = 7;
+  public static final int WAKE_LOCK_MS = 8;
+  public static final int FOREGROUND_CACHE_HITS = 9;
+  public static final int USAGE_QUERY_TIMEOUTS = 10;
+  public static final int USAGE_QUERY_FAILURES = 11;
+  public static final int USAGE_QUERIES_SKIPPED = 12;
+  public static final int NOTIFICATIONS_REPLACED = 13;
+  public static final int NOTIFICATIONS_DEFERRED = 14;
+  public static final int NOTIFICATIONS_HELD = 15;
+
+  private static final String[] COUNTER_NAMES = {
+    "polls",
+    "usageQueries",
+    "eventsDecoded",
+    "stabilizationAccepted",
+    "stabilizationRejected",
+    "nudgesPosted",
+    "metaNudgesPosted",
+    "wakeLocksAcquired",
+    "wakeLockMs",
+    "foregroundCacheHits",
+    "usageQueryTimeouts",
+    "usageQueryFailures",
+    "usageQueriesSkipped",
+    "notificationsReplaced",
+    "notificationsDeferred",
+    "notificationsHeld"
+  };
+
+  // Latency histograms (recorded in nanoseconds)
+  public static final int LATENCY_FOREGROUND_QUERY = 0;
+  public static final int LATENCY_CHECK_NUDGE = 1;
+  public static final int LATENCY_NOTIFICATION_BUILD = 2;
+  public static final int LATENCY_CROSSING_TO_POST = 3;
+  public static final int LATENCY_USAGE_SERVICE = 4;
+
+  private static final String[] HISTOGRAM_NAMES = {
+    "foregroundQuery",
+    "checkForNudge",
+    "notificationBuild",
+    "crossingToPost",
+    "usageService"
+  };
+
+  private static final MonitoringMetrics INSTANCE = new MonitoringMetrics();
+
+  private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+  private final Histogram[] histograms = new Histogram[HISTOGRAM_NAMES.length];
+  private volatile long resetAtMillis = System.currentTimeMillis();
+
+  private MonitoringMetrics() {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new Histogram();
+    }
+  }
+
+  public static MonitoringMetrics get() {
+    return INSTANCE;
+  }
+
+  public void increment(int counter) {
+    counters.incrementAndGet(counter);
+  }
+
+  public void add(int counter, long delta) {
+    counters.addAndGet(counter, delta);
+  }
+
+  public long count(int counter) {
+    return counters.get(counter);
+  }
+
+  public void recordNanos(int histogram, long nanos) {
+    histograms[histogram].record(nanos);
+  }
+
+  public void recordMillis(int histogram, long millis) {
+    histograms[histogram].record(millis * 1_000_000L);
+  }
+
+  public Histogram histogram(int histogram) {
+    return histograms[histogram];
+  }
+
+  public static int counterCount() {
+    return COUNTER_NAMES.length;
+  }
+
+  public static String counterName(int counter) {
+    return COUNTER_NAMES[counter];
+  }
+
+  public static int histogramCount() {
+    return HISTOGRAM_NAMES.length;
+  }
+
+  public static String histogramName(int histogram) {
+    return HISTOGRAM_NAMES[histogram];
+  }
+
+  public long getResetAtMillis() {
+    return resetAtMillis;
+  }
+
+  /**
+   * Clear all counters and histograms (e.g. before an A/B measurement on a device)
+   */
+  public void reset() {
+    for (int i = 0; i < COUNTER_NAMES.length; i++) {
+      counters.set(i, 0);
+    }
+    for (Histogram h : histograms) {
+      h.reset();
+    }
+    resetAtMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * dumpsys-style text dump, used by SystemMonitoringService.dump() and the plugin
+   */
+  public void dump(PrintWriter pw) {
+    long windowMs = System.currentTimeMillis() - resetAtMillis;
+    pw.println("FlowFocus monitoring metrics (window " + formatNanos(windowMs * 1_000_000L) + ")");
+    pw.println("  Counters:");
+    for (int i = 0; i < COUNTER_NAMES.length; i++) {
+      pw.println("    " + COUNTER_NAMES[i] + ": " + counters.get(i));
+    }
+    pw.println("  Latencies:");
+    for (int i = 0; i < HISTOGRAM_NAMES.length; i++) {
+      Histogram h = histograms[i];
+      long n = h.count();
+      if (n == 0) {
+        pw.println("    " + HISTOGRAM_NAMES[i] + ": n=0");
+        continue;
+      }
+      pw.println("    " + HISTOGRAM_NAMES[i]
+        + ": n=" + n
+        + " mean=" + formatNanos(h.mean())
+        + " p50=" + formatNanos(h.percentile(50))
+        + " p90=" + formatNanos(h.percentile(90))
+        + " p99=" + formatNanos(h.percentile(99))
+        + " max=" + formatNanos(h.max()));
+    }
+  }
+
+  public static String formatNanos(long nanos) {
+    if (nanos < 10_000L) return nanos + "ns";
+    if (nanos < 10_000_000L) return (nanos / 1_000L) + "us";
+    if (nanos < 10_000_000_000L) return (nanos / 1_000_000L) + "ms";
+    return (nanos / 1_000_000_000L) + "s";
+  }
+
+  /**
+   * Log-linear histogram: every power of two is split into 8 linear sub-buckets,
+   * which bounds the relative error of any reported percentile to ~12.5%.
+   */
+  public static final class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+      if (value < 0) value = 0;
+      buckets.incrementAndGet(bucketFor(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long prev;
+      while (value > (prev = max.get())) {
+        if (max.compareAndSet(prev, value)) break;
+      }
+    }
+
+    public long count() {
+      return count.get();
+    }
+
+    public long max() {
+      return max.get();
+    }
+
+    public long mean() {
+      long n = count.get();
+      return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Upper bound of the bucket containing the given percentile (0-100)
+     */
+    public long percentile(double p) {
+      long n = count.get();
+      if (n == 0) return 0;
+      long rank = (long) Math.ceil(n * (p / 100.0));
+      if (rank < 1) rank = 1;
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank) {
+          return Math.min(upperBound(i), max.get());
+        }
+      }
+      return max.get();
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets.set(i, 0);
+      }
+      count.set(0);
+      sum.set(0);
+      max.set(0);
+    }
+
+    static int bucketFor(long value) {
+      if (value < SUB_BUCKETS) return (int) value;
+      int exp = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) ((value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+      return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+      if (bucket < SUB_BUCKETS) return bucket;
+      int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+      int sub = bucket % SUB_BUCKETS;
+      return (1L << exp) | ((long) sub << (exp - SUB_BITS));
+    }
+
+    static long upperBound(int bucket) {
+      return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * One rate limit for every attention-grabbing notification: per-app and rule nudges,
+ * meta-nudges and daily reminders. Each channel has a token bucket and all of them share a
+ * global one, so however many paths fire at once the user gets a short burst and then at most
+ * one post per GLOBAL_INTERVAL_MS.
+ *
+ * Channels are in priority order. A channel that was refused recently holds back the ones after
+ * it, and a reminder only takes a global token when one would be left for a nudge. Refused
+ * callers keep their notification pending and ask again (the engine on its next tick, reminders
+ * through a retry alarm); whatever they post then is their newest content, so held
+ * notifications merge instead of queueing up. tryAcquire() is a handful of arithmetic and
+ * allocation-free, fine to call every tick. Shared by the service and the reminder receiver,
+ * so synchronized.
+ */
+public final class NotificationBudget {
+  public static final int NUDGE = 0;
+  public static final int META = 1;
+  public static final int REMINDER = 2;
+  private static final String[] CHANNEL_NAMES = {"nudge", "meta", "reminder"};
+
+  static final int GLOBAL_CAPACITY = 3;
+  static final long GLOBAL_INTERVAL_MS = 10 * 60 * 1000;
+  // Per channel: burst size and time to earn one token back
+  private static final int[] CAPACITY = {2, 1, 1};
+  private static final long[] INTERVAL_MS = {2 * 60 * 1000, 30 * 60 * 1000, 60 * 60 * 1000};
+  // Global tokens a channel leaves for the ones before it
+  private static final int[] RESERVE = {0, 0, 1};
+  // A refused channel that has not asked again for this long no longer holds others back
+  // (the engine asks every duration tick while a nudge is due)
+  static final long PENDING_MS = 2 * MonitoringEngine.DURATION_TICK_MS + 5000;
+
+  private static final NotificationBudget INSTANCE = new NotificationBudget();
+
+  private final Bucket global = new Bucket(GLOBAL_CAPACITY, GLOBAL_INTERVAL_MS);
+  private final Bucket[] channels = new Bucket[CHANNEL_NAMES.length];
+  // Last refusal per channel, 0 when nothing is pending; competingAt only when the refusal was
+  // for want of a global token, which is what holds back the channels after it
+  private final long[] refusedAt = new long[CHANNEL_NAMES.length];
+  private final long[] competingAt = new long[CHANNEL_NAMES.length];
+
+  private static final class Bucket {
+    final int capacity;
+    final long intervalMs;
+    double tokens;
+    long refilledAt = Long.MIN_VALUE;
+
+    Bucket(int capacity, long intervalMs) {
+      this.capacity = capacity;
+      this.intervalMs = intervalMs;
+      this.tokens = capacity;
+    }
+
+    void refill(long now) {
+      if (refilledAt != Long.MIN_VALUE && now > refilledAt) {
+        tokens = Math.min(capacity, tokens + (double) (now - refilledAt) / intervalMs);
+      }
+      refilledAt = now;
+    }
+
+    // Until the bucket holds at least `needed` tokens
+    long waitMs(double needed) {
+      return tokens >= needed ? 0 : (long) Math.ceil((needed - tokens) * intervalMs);
+    }
+  }
+
+  public NotificationBudget() {
+    for (int c = 0; c < channels.length; c++) {
+      channels[c] = new Bucket(CAPACITY[c], INTERVAL_MS[c]);
+    }
+  }
+
+  /** The process-wide budget the service and the reminder receiver share */
+  public static NotificationBudget get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Take a token for a post on channel now; false means hold the notification and ask again
+   */
+  public synchronized boolean tryAcquire(int channel, long now) {
+    long wait = waitMs(channel, now);
+    if (wait > 0) {
+      if (!isPending(refusedAt[channel], now)) {
+        TraceLog.i(TraceLog.NOTIFICATION_HELD, CHANNEL_NAMES[channel], wait / 1000);
+        MonitoringMetrics.get().increment(MonitoringMetrics.NOTIFICATIONS_HELD);
+      }
+      refusedAt[channel] = now;
+      competingAt[channel] = global.waitMs(1 + RESERVE[channel]) > 0 ? now : 0;
+      return false;
+    }
+    channels[channel].tokens -= 1;
+    global.tokens -= 1;
+    refusedAt[channel] = 0;
+    competingAt[channel] = 0;
+    return true;
+  }
+
+  /**
+   * How long until tryAcquire(channel) could succeed, assuming the channels before it stop
+   * asking; 0 if it would now
+   */
+  public synchronized long waitMs(int channel, long now) {
+    global.refill(now);
+    Bucket own = channels[channel];
+    own.refill(now);
+    long wait = Math.max(own.waitMs(1), global.waitMs(1 + RESERVE[channel]));
+    for (int c = 0; c < channel; c++) {
+      if (isPending(competingAt[c], now)) {
+        wait = Math.max(wait, competingAt[c] + PENDING_MS - now);
+      }
+    }
+    return wait;
+  }
+
+  private static boolean isPending(long refusedAt, long now) {
+    return refusedAt != 0 && now - refusedAt < PENDING_MS;
+  }
+}
@@ -0,0 +1,22 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.List;
+
+/**
+ * Fully composed nudge, ready for the platform layer to render as a notification.
+ */
+public final class Nudge {
+  public final int level;
+  public final String title;
+  public final String message;
+  public final String bigText;
+  public final List<ActionSelectionEngine.ActionButton> actions;
+
+  public Nudge(int level, String title, String message, String bigText, List<ActionSelectionEngine.ActionButton> actions) {
+    this.level = level;
+    this.title = title;
+    this.message = message;
+    this.bigText = bigText;
+    this.actions = actions;
+  }
+}
@@ -0,0 +1,57 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds nudge content: rotating message variants, placeholder personalization and
+ * contextual action buttons. Message rotation and recent actions persist through KeyValueStores.
+ */
+public class NudgeComposer {
+  private final KeyValueStore messageStore;
+  private final KeyValueStore actionStore;
+
+  public NudgeComposer(KeyValueStore messageStore, KeyValueStore actionStore) {
+    this.messageStore = messageStore;
+    this.actionStore = actionStore;
+  }
+
+  public Nudge compose(int level, String appName, String userName, int durationSeconds, String psychState, int hourOfDay) {
+    // Get message with rotation
+    String[] messageData = AppThresholds.getNudgeMessage(messageStore, level);
+    String title = messageData[0];
+    String messageTemplate = messageData[1];
+    // Get suggested actions from message (3rd element if present)
+    String suggestedActions = messageData.length > 2 ? messageData[2] : "";
+    
+    int minutes = durationSeconds / 60;
+    
+    // Get action suggestions based on context AND message's suggested actions
+    List<ActionSelectionEngine.ActionButton> actions =
+        ActionSelectionEngine.getContextualActions(actionStore, level, psychState, minutes, hourOfDay, new String[]{}, suggestedActions);
+    
+    // Personalize message with placeholders
+    String durationStr = minutes + " minute" + (minutes == 1 ? "" : "s");
+    String personalizedMessage = messageTemplate
+      .replace("{name}", userName)
+      .replace("{app}", appName)
+      .replace("{duration}", durationStr);
+    
+    return new Nudge(level, title, personalizedMessage, personalizedMessage, actions);
+  }
+
+  public Nudge composeMeta(int level, int totalSeconds, String userName) {
+    String[] metaMessages = {
+      "You've been on your phone for 1 hour today. Time for a real-world check-in? 🌍",
+      "2 hours of screen time today, " + userName + ". Your eyes and mind might need a longer break 👀💭",
+      "3 hours on your phone today. Let's talk about what you're really avoiding... 💜"
+    };
+    
+    String message = metaMessages[Math.min(level - 1, metaMessages.length - 1)];
+    int hours = totalSeconds / 3600;
+    int minutes = (totalSeconds % 3600) / 60;
+    String detailMessage = message + "\n\nTotal today: " + hours + "h " + minutes + "m";
+    
+    return new Nudge(level, "Daily Screen Time Alert 📱", message, detailMessage, Collections.emptyList());
+  }
+}
@@ -0,0 +1,568 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * User-defined nudge policy compiled into a decision table: for every named package and day
+ * of the week the winning per-app rule and the budget it counts towards are resolved up front,
+ * and quiet hours become minute-of-day bitmasks. A tick costs one map lookup and a few array
+ * reads however many rules there are; the table is rebuilt only when the rules change.
+ *
+ * Apps no rule names use the catch-all rule for the day, or AppThresholds when there is none.
+ * Among matching rules an app rule beats a group rule beats a catch-all, and later rules beat
+ * earlier ones. An app counts towards at most one budget per day (the last matching one).
+ *
+ * Rules with a window (1 hour to a week) are rolling budgets over their apps, groups and
+ * psychState categories instead; an app counts towards every rolling budget it matches.
+ */
+public final class NudgeRules {
+  public static final int MAX_LEVELS = 4;
+  // Day masks, bit 0 = Monday
+  public static final int WEEKDAYS = 0x1f;
+  public static final int WEEKEND = 0x60;
+  public static final int ALL_DAYS = 0x7f;
+
+  private static final int DAYS = 7;
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int MASK_WORDS = (MINUTES_PER_DAY + 63) / 64;
+
+  /**
+   * What one rule holds an app (or a budget of apps) to on the days it is active
+   */
+  public static final class Policy {
+    // Index for per-policy engine state (cooldowns)
+    public final int id;
+    public final String ruleId;
+    // Shown as {app} in budget nudges
+    public final String label;
+    // Null: the app's built-in thresholds
+    final int[] thresholds;
+    final int[] debugThresholds;
+    // Null: the app's built-in state
+    public final String psychState;
+    public final long cooldownMs;
+    // Shared budget index, -1 for a per-app rule
+    public final int budget;
+    // Rolling budget index and window, -1/0 for a calendar-day rule
+    public final int rolling;
+    public final int windowHours;
+    private final int days;
+    private final long[] quiet;
+
+    Policy(int id, Rule rule, int budget, int rolling) {
+      this.id = id;
+      this.ruleId = rule.id;
+      this.label = rule.label;
+      this.thresholds = rule.thresholds;
+      this.debugThresholds = rule.debugThresholds;
+      this.psychState = rule.psychState;
+      this.cooldownMs = rule.cooldownMs;
+      this.budget = budget;
+      this.rolling = rolling;
+      this.windowHours = rule.windowHours;
+      this.days = rule.days;
+      this.quiet = rule.quietStart >= 0 ? minuteMask(rule.quietStart, rule.quietEnd) : null;
+    }
+
+    public int[] thresholds(boolean debug) {
+      return debug ? debugThresholds : thresholds;
+    }
+
+    public boolean hasThresholds() {
+      return thresholds != null;
+    }
+
+    public boolean isActiveOn(int dayOfWeek) {
+      return (days & (1 << dayOfWeek)) != 0;
+    }
+
+    boolean isQuiet(int minuteOfDay) {
+      return quiet != null && isSet(quiet, minuteOfDay);
+    }
+  }
+
+  // Package -> policy per day of week (entries may be null)
+  private final Map<String, Policy[]> appPolicies;
+  private final Map<String, Policy[]> budgetPolicies;
+  private final Policy[] anyAppPolicies;
+  // Budget index -> its policy
+  private final Policy[] budgets;
+  // Rolling budgets and which apps and categories feed them
+  private final Policy[] rolling;
+  private final Map<String, int[]> rollingByPackage;
+  private final Map<String, int[]> rollingByCategory;
+  private final int[] rollingForAll;
+  // Global quiet hours per day of week (entries may be null)
+  private final long[][] quietByDay;
+  private final int[] metaThresholds;
+  private final long metaCooldownMs;
+  private final boolean adaptiveThresholds;
+  private final int policyCount;
+
+  private NudgeRules(Map<String, Policy[]> appPolicies, Map<String, Policy[]> budgetPolicies,
+                     Policy[] anyAppPolicies, Policy[] budgets, Policy[] rolling,
+                     Map<String, int[]> rollingByPackage, Map<String, int[]> rollingByCategory,
+                     int[] rollingForAll, long[][] quietByDay, int[] metaThresholds,
+                     long metaCooldownMs, boolean adaptiveThresholds, int policyCount) {
+    this.appPolicies = appPolicies;
+    this.budgetPolicies = budgetPolicies;
+    this.anyAppPolicies = anyAppPolicies;
+    this.budgets = budgets;
+    this.rolling = rolling;
+    this.rollingByPackage = rollingByPackage;
+    this.rollingByCategory = rollingByCategory;
+    this.rollingForAll = rollingForAll;
+    this.quietByDay = quietByDay;
+    this.metaThresholds = metaThresholds;
+    this.metaCooldownMs = metaCooldownMs;
+    this.adaptiveThresholds = adaptiveThresholds;
+    this.policyCount = policyCount;
+  }
+
+  /**
+   * Per-app policy for packageName on dayOfWeek (0 = Monday), or null for the built-ins
+   */
+  public Policy appPolicy(String packageName, int dayOfWeek) {
+    Policy[] byDay = appPolicies.get(packageName);
+    return byDay != null && byDay[dayOfWeek] != null ? byDay[dayOfWeek] : anyAppPolicies[dayOfWeek];
+  }
+
+  /**
+   * Budget packageName counts towards on dayOfWeek, or null
+   */
+  public Policy budgetPolicy(String packageName, int dayOfWeek) {
+    Policy[] byDay = budgetPolicies.get(packageName);
+    return byDay != null ? byDay[dayOfWeek] : null;
+  }
+
+  /**
+   * Global quiet hours, or the policy's own when given
+   */
+  public boolean isQuiet(Policy policy, int dayOfWeek, int minuteOfDay) {
+    long[] quiet = quietByDay[dayOfWeek];
+    if (quiet != null && isSet(quiet, minuteOfDay)) return true;
+    return policy != null && policy.isQuiet(minuteOfDay);
+  }
+
+  // Null: MonitoringEngine's defaults
+  public int[] getMetaThresholds() {
+    return metaThresholds;
+  }
+
+  // 0: MonitoringEngine's default gap
+  public long getMetaCooldownMs() {
+    return metaCooldownMs;
+  }
+
+  /**
+   * Apps without rule thresholds use their own session-length percentiles (SessionSketches)
+   * instead of AppThresholds once they have enough history
+   */
+  public boolean isAdaptive() {
+    return adaptiveThresholds;
+  }
+
+  public int getPolicyCount() {
+    return policyCount;
+  }
+
+  public int getBudgetCount() {
+    return budgets.length;
+  }
+
+  public Policy getBudget(int index) {
+    return budgets[index];
+  }
+
+  public int getRollingCount() {
+    return rolling.length;
+  }
+
+  public Policy getRolling(int index) {
+    return rolling[index];
+  }
+
+  /**
+   * Rolling budgets packageName feeds on dayOfWeek, ascending and without duplicates. Its
+   * category is the rule's psychState for the day or the built-in one. Meant to be cached.
+   */
+  public int[] rollingMembers(String packageName, int dayOfWeek) {
+    if (rolling.length == 0) return rollingForAll;
+    Policy policy = appPolicy(packageName, dayOfWeek);
+    String category = policy != null && policy.psychState != null
+      ? policy.psychState : AppThresholds.getAppConfig(packageName).psychState;
+    boolean[] member = new boolean[rolling.length];
+    int count = 0;
+    for (int[] source : new int[][] {
+      rollingByPackage.get(packageName), rollingByCategory.get(category), rollingForAll}) {
+      if (source == null) continue;
+      for (int index : source) {
+        if (!member[index]) {
+          member[index] = true;
+          count++;
+        }
+      }
+    }
+    int[] members = new int[count];
+    for (int i = 0, n = 0; i < member.length; i++) {
+      if (member[i]) members[n++] = i;
+    }
+    return members;
+  }
+
+  public int getPackageCount() {
+    Set<String> packages = new LinkedHashSet<>(appPolicies.keySet());
+    packages.addAll(budgetPolicies.keySet());
+    packages.addAll(rollingByPackage.keySet());
+    return packages.size();
+  }
+
+  /**
+   * One rule as written, before compilation
+   */
+  public static final class Rule {
+    final String id;
+    final List<String> packages = new ArrayList<>();
+    final List<String> groups = new ArrayList<>();
+    final List<String> categories = new ArrayList<>();
+    String label;
+    boolean sharedBudget;
+    int[] thresholds;
+    int[] debugThresholds;
+    String psychState;
+    long cooldownMs;
+    int days = ALL_DAYS;
+    int windowHours;
+    int quietStart = -1;
+    int quietEnd = -1;
+
+    Rule(String id) {
+      this.id = id;
+    }
+
+    public Rule apps(String... packageNames) {
+      packages.addAll(Arrays.asList(packageNames));
+      return this;
+    }
+
+    public Rule groups(String... names) {
+      groups.addAll(Arrays.asList(names));
+      return this;
+    }
+
+    // psychState categories; only for rolling rules
+    public Rule categories(String... psychStates) {
+      categories.addAll(Arrays.asList(psychStates));
+      return this;
+    }
+
+    /**
+     * Make this a rolling budget: thresholds apply to the rule's apps' combined time in the
+     * last windowHours hours (up to RollingUsage.MAX_WINDOW_HOURS), not the calendar day
+     */
+    public Rule windowHours(int hours) {
+      windowHours = hours;
+      return this;
+    }
+
+    /**
+     * Thresholds apply to the combined time of all the rule's apps (a category budget)
+     * instead of to each app on its own
+     */
+    public Rule sharedBudget(boolean shared) {
+      sharedBudget = shared;
+      return this;
+    }
+
+    public Rule label(String label) {
+      this.label = label;
+      return this;
+    }
+
+    // Seconds per nudge level, ascending, at most MAX_LEVELS
+    public Rule thresholds(int... seconds) {
+      thresholds = seconds;
+      return this;
+    }
+
+    public Rule debugThresholds(int... seconds) {
+      debugThresholds = seconds;
+      return this;
+    }
+
+    public Rule psychState(String psychState) {
+      this.psychState = psychState;
+      return this;
+    }
+
+    public Rule cooldownMs(long cooldownMs) {
+      this.cooldownMs = cooldownMs;
+      return this;
+    }
+
+    public Rule days(int dayMask) {
+      days = dayMask;
+      return this;
+    }
+
+    // Minutes of the day; end before start wraps past midnight
+    public Rule quietHours(int startMinute, int endMinute) {
+      quietStart = startMinute;
+      quietEnd = endMinute;
+      return this;
+    }
+  }
+
+  public static final class Builder {
+    private final Map<String, List<String>> groups = new HashMap<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private final List<int[]> quietHours = new ArrayList<>();
+    private int[] metaThresholds;
+    private long metaCooldownMs;
+    private boolean adaptiveThresholds;
+
+    public Builder group(String name, String... packageNames) {
+      groups.put(name, new ArrayList<>(Arrays.asList(packageNames)));
+      return this;
+    }
+
+    /**
+     * Add a rule (applied in the order added); without apps or groups it matches every app
+     */
+    public Rule rule(String id) {
+      Rule rule = new Rule(id);
+      rules.add(rule);
+      return rule;
+    }
+
+    public Builder quietHours(int startMinute, int endMinute, int dayMask) {
+      quietHours.add(new int[] {startMinute, endMinute, dayMask});
+      return this;
+    }
+
+    public Builder metaThresholds(int... seconds) {
+      metaThresholds = seconds;
+      return this;
+    }
+
+    public Builder metaCooldownMs(long cooldownMs) {
+      metaCooldownMs = cooldownMs;
+      return this;
+    }
+
+    public Builder adaptiveThresholds(boolean adaptive) {
+      adaptiveThresholds = adaptive;
+      return this;
+    }
+
+    /**
+     * Resolve every rule into the decision table; throws IllegalArgumentException naming the
+     * first invalid rule
+     */
+    public NudgeRules compile() {
+      Map<String, Policy[]> appPolicies = new HashMap<>();
+      Map<String, Policy[]> budgetPolicies = new HashMap<>();
+      Policy[] anyApp = new Policy[DAYS];
+      int policyCount = 0;
+      List<Policy> budgets = new ArrayList<>();
+      List<Policy> rolling = new ArrayList<>();
+      Map<String, List<Integer>> rollingByPackage = new HashMap<>();
+      Map<String, List<Integer>> rollingByCategory = new HashMap<>();
+      List<Integer> rollingForAll = new ArrayList<>();
+
+      // Lowest precedence first so later writes win: catch-all, group, app
+      List<Policy> policies = new ArrayList<>();
+      for (Rule rule : rules) {
+        validate(rule);
+        if (rule.label == null) {
+          rule.label = !rule.groups.isEmpty() ? rule.groups.get(0)
+            : !rule.categories.isEmpty() ? rule.categories.get(0) : rule.id;
+        }
+        boolean windowed = rule.windowHours > 0;
+        Policy policy = new Policy(policyCount++, rule,
+          rule.sharedBudget && !windowed ? budgets.size() : -1, windowed ? rolling.size() : -1);
+        policies.add(policy);
+        if (policy.budget >= 0) budgets.add(policy);
+        if (windowed) {
+          int index = rolling.size();
+          rolling.add(policy);
+          if (rule.packages.isEmpty() && rule.groups.isEmpty() && rule.categories.isEmpty()) {
+            rollingForAll.add(index);
+          }
+          for (String packageName : members(rule)) {
+            rollingByPackage.computeIfAbsent(packageName, k -> new ArrayList<>()).add(index);
+          }
+          for (String category : rule.categories) {
+            rollingByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(index);
+          }
+        }
+      }
+      for (int pass = 0; pass < 3; pass++) {
+        for (int i = 0; i < rules.size(); i++) {
+          Rule rule = rules.get(i);
+          Policy policy = policies.get(i);
+          boolean catchAll = rule.packages.isEmpty() && rule.groups.isEmpty();
+          if (policy.rolling >= 0) continue;
+          if (policy.budget >= 0) {
+            // Budgets have no precedence tiers: the last one matching an app wins
+            if (pass == 0) {
+              for (String packageName : members(rule)) {
+                assign(budgetPolicies, packageName, policy, rule.days);
+              }
+            }
+            continue;
+          }
+          if (pass == 0 && catchAll) {
+            for (int d = 0; d < DAYS; d++) {
+              if ((rule.days & (1 << d)) != 0) anyApp[d] = policy;
+            }
+          } else if (pass == 1) {
+            for (String name : rule.groups) {
+              for (String packageName : groups.get(name)) {
+                assign(appPolicies, packageName, policy, rule.days);
+              }
+            }
+          } else if (pass == 2) {
+            for (String packageName : rule.packages) {
+              assign(appPolicies, packageName, policy, rule.days);
+            }
+          }
+        }
+      }
+
+      long[][] quietByDay = new long[DAYS][];
+      for (int[] window : quietHours) {
+        checkMinute("quiet hours", window[0]);
+        checkMinute("quiet hours", window[1]);
+        long[] mask = minuteMask(window[0], window[1]);
+        for (int d = 0; d < DAYS; d++) {
+          if ((window[2] & (1 << d)) == 0) continue;
+          if (quietByDay[d] == null) quietByDay[d] = new long[MASK_WORDS];
+          for (int w = 0; w < MASK_WORDS; w++) quietByDay[d][w] |= mask[w];
+        }
+      }
+      if (metaThresholds != null) {
+        checkThresholds("meta", metaThresholds, Integer.MAX_VALUE);
+      }
+      return new NudgeRules(appPolicies, budgetPolicies, anyApp, budgets.toArray(new Policy[0]),
+        rolling.toArray(new Policy[0]), toArrays(rollingByPackage), toArrays(rollingByCategory),
+        toArray(rollingForAll), quietByDay, metaThresholds, metaCooldownMs, adaptiveThresholds, policyCount);
+    }
+
+    private Set<String> members(Rule rule) {
+      Set<String> members = new LinkedHashSet<>();
+      for (String name : rule.groups) members.addAll(groups.get(name));
+      members.addAll(rule.packages);
+      return members;
+    }
+
+    private void validate(Rule rule) {
+      String name = "rule " + (rule.id != null ? rule.id : "#" + rules.indexOf(rule));
+      for (String group : rule.groups) {
+        if (!groups.containsKey(group)) throw new IllegalArgumentException(name + ": unknown group " + group);
+      }
+      if ((rule.days & ALL_DAYS) == 0) throw new IllegalArgumentException(name + ": no days");
+      if (rule.windowHours < 0 || rule.windowHours > RollingUsage.MAX_WINDOW_HOURS) {
+        throw new IllegalArgumentException(name + ": window must be 1 to " + RollingUsage.MAX_WINDOW_HOURS + " hours");
+      }
+      if (rule.windowHours > 0 && rule.thresholds == null) {
+        throw new IllegalArgumentException(name + ": a rolling budget needs thresholds");
+      }
+      if (!rule.categories.isEmpty() && rule.windowHours == 0) {
+        throw new IllegalArgumentException(name + ": categories need a window");
+      }
+      if (rule.sharedBudget) {
+        if (rule.thresholds == null) throw new IllegalArgumentException(name + ": a budget needs thresholds");
+        if (rule.packages.isEmpty() && rule.groups.isEmpty()) {
+          throw new IllegalArgumentException(name + ": a budget needs apps or groups");
+        }
+      }
+      if (rule.thresholds != null) {
+        checkThresholds(name, rule.thresholds, MAX_LEVELS);
+        if (rule.debugThresholds == null) {
+          // Same shape as the built-ins: minutes become seconds-scale steps
+          rule.debugThresholds = new int[rule.thresholds.length];
+          for (int i = 0; i < rule.thresholds.length; i++) {
+            rule.debugThresholds[i] = Math.max(i + 1, rule.thresholds[i] / 30);
+          }
+        } else if (rule.debugThresholds.length != rule.thresholds.length) {
+          throw new IllegalArgumentException(name + ": debug thresholds need one per level");
+        } else {
+          checkThresholds(name, rule.debugThresholds, MAX_LEVELS);
+        }
+      } else if (rule.debugThresholds != null) {
+        throw new IllegalArgumentException(name + ": debug thresholds without thresholds");
+      }
+      if (rule.cooldownMs < 0) throw new IllegalArgumentException(name + ": negative cooldown");
+      if (rule.quietStart >= 0 || rule.quietEnd >= 0) {
+        checkMinute(name, rule.quietStart);
+        checkMinute(name, rule.quietEnd);
+      }
+    }
+  }
+
+  private static Map<String, int[]> toArrays(Map<String, List<Integer>> lists) {
+    Map<String, int[]> arrays = new HashMap<>();
+    for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+      arrays.put(entry.getKey(), toArray(entry.getValue()));
+    }
+    return arrays;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static void assign(Map<String, Policy[]> table, String packageName, Policy policy, int days) {
+    Policy[] byDay = table.get(packageName);
+    if (byDay == null) {
+      byDay = new Policy[DAYS];
+      table.put(packageName, byDay);
+    }
+    for (int d = 0; d < DAYS; d++) {
+      if ((days & (1 << d)) != 0) byDay[d] = policy;
+    }
+  }
+
+  private static void checkThresholds(String name, int[] seconds, int maxLevels) {
+    if (seconds.length == 0 || seconds.length > maxLevels) {
+      throw new IllegalArgumentException(name + ": 1 to " + maxLevels + " thresholds");
+    }
+    for (int i = 0; i < seconds.length; i++) {
+      if (seconds[i] <= 0 || (i > 0 && seconds[i] <= seconds[i - 1])) {
+        throw new IllegalArgumentException(name + ": thresholds must be positive and ascending");
+      }
+    }
+  }
+
+  private static void checkMinute(String name, int minute) {
+    if (minute < 0 || minute >= MINUTES_PER_DAY) {
+      throw new IllegalArgumentException(name + ": time of day out of range");
+    }
+  }
+
+  // Bit per minute in [start, end), wrapping past midnight when end <= start
+  private static long[] minuteMask(int start, int end) {
+    long[] mask = new long[MASK_WORDS];
+    int minute = start;
+    do {
+      mask[minute >>> 6] |= 1L << (minute & 63);
+      minute = (minute + 1) % MINUTES_PER_DAY;
+    } while (minute != end);
+    return mask;
+  }
+
+  private static boolean isSet(long[] mask, int minute) {
+    return (mask[minute >>> 6] & (1L << (minute & 63))) != 0;
+  }
+}
@@ -0,0 +1,123 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ordered queue of notification posts, drained on the scheduler's (worker) thread. Posts are
+ * keyed by notification id: a post for an id still waiting replaces it in place, since only the
+ * newest content would survive notify() anyway. Each channel can have a minimum interval
+ * between posts; a post that comes too soon waits, and keeps its channel's order.
+ *
+ * enqueue() may be called from any thread.
+ */
+public final class PostQueue {
+  private final Scheduler scheduler;
+  private final Clock clock;
+  private final Map<String, Long> minIntervalMs = new HashMap<>();
+  // Worker thread only
+  private final LinkedHashMap<Integer, Pending> pending = new LinkedHashMap<>();
+  private final Map<String, Long> lastPostAt = new HashMap<>();
+  private boolean drainScheduled;
+  private long drainAt;
+
+  private static final class Pending {
+    final String channel;
+    final Runnable post;
+    // Waited for its channel's min interval at least once
+    boolean held;
+
+    Pending(String channel, Runnable post) {
+      this.channel = channel;
+      this.post = post;
+    }
+  }
+
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drainScheduled = false;
+      drain();
+    }
+  };
+
+  public PostQueue(Scheduler scheduler, Clock clock) {
+    this.scheduler = scheduler;
+    this.clock = clock;
+  }
+
+  /** At most one post per intervalMs on channel (0, the default: no limit) */
+  public synchronized void setMinInterval(String channel, long intervalMs) {
+    minIntervalMs.put(channel, intervalMs);
+  }
+
+  /**
+   * Run post on the worker thread as soon as channel allows, replacing whatever is still waiting
+   * for id
+   */
+  public void enqueue(int id, String channel, Runnable post) {
+    scheduler.postDelayed(() -> {
+      Pending previous = pending.put(id, new Pending(channel, post));
+      if (previous != null) {
+        MonitoringMetrics.get().increment(MonitoringMetrics.NOTIFICATIONS_REPLACED);
+      }
+      drain();
+    }, 0);
+  }
+
+  private void drain() {
+    long now = clock.currentTimeMillis();
+    long nextAt = Long.MAX_VALUE;
+    Set<String> held = new HashSet<>();
+    for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+      Pending next = it.next();
+      if (held.contains(next.channel)) {
+        next.held = true;
+        continue;
+      }
+      long readyAt = readyAt(next.channel);
+      if (readyAt > now) {
+        // Later posts on this channel wait behind this one
+        next.held = true;
+        held.add(next.channel);
+        nextAt = Math.min(nextAt, readyAt);
+        continue;
+      }
+      it.remove();
+      lastPostAt.put(next.channel, now);
+      if (next.held) {
+        MonitoringMetrics.get().increment(MonitoringMetrics.NOTIFICATIONS_DEFERRED);
+      }
+      try {
+        next.post.run();
+      } catch (RuntimeException e) {
+        // One failed post must not leave the rest of the queue without a drain
+        TraceLog.w(TraceLog.NOTIFICATION_POST_FAILED, e.toString());
+      }
+      if (minInterval(next.channel) > 0) {
+        held.add(next.channel);
+        nextAt = Math.min(nextAt, now + minInterval(next.channel));
+      }
+    }
+    if (nextAt == Long.MAX_VALUE || pending.isEmpty()) return;
+    if (drainScheduled && drainAt <= nextAt) return;
+    scheduler.cancel(drainTask);
+    drainScheduled = true;
+    drainAt = nextAt;
+    scheduler.postDelayed(drainTask, nextAt - now);
+  }
+
+  private long readyAt(String channel) {
+    Long last = lastPostAt.get(channel);
+    return last == null ? Long.MIN_VALUE : last + minInterval(channel);
+  }
+
+  private synchronized long minInterval(String channel) {
+    Long interval = minIntervalMs.get(channel);
+    return interval != null ? interval : 0;
+  }
+}
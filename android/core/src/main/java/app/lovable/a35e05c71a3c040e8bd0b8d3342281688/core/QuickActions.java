@@ -0,0 +1,109 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * The nudge actions simple enough to run natively, without starting the WebView: timed
+ * routines (a sequence of steps repeated for some rounds) and tap-to-confirm ones. Timings
+ * match the web pages for the same routes.
+ */
+public final class QuickActions {
+  /** One phase of a timed routine */
+  public static final class Step {
+    public final String label;
+    public final int seconds;
+
+    Step(String label, int seconds) {
+      this.label = label;
+      this.seconds = seconds;
+    }
+  }
+
+  public static final class Routine {
+    public final String action;
+    public final String title;
+    public final String prompt;
+    public final Step[] steps;
+    public final int rounds;
+    // Confirmations a tap routine needs; 0 for timed ones
+    public final int taps;
+    public final String tapLabel;
+
+    Routine(String action, String title, String prompt, Step[] steps, int rounds, int taps, String tapLabel) {
+      this.action = action;
+      this.title = title;
+      this.prompt = prompt;
+      this.steps = steps;
+      this.rounds = rounds;
+      this.taps = taps;
+      this.tapLabel = tapLabel;
+    }
+
+    public boolean isTimed() {
+      return steps.length > 0;
+    }
+
+    public int totalSeconds() {
+      int round = 0;
+      for (Step step : steps) {
+        round += step.seconds;
+      }
+      return round * rounds;
+    }
+
+    /**
+     * Where a timed routine is elapsedMs after it started
+     */
+    public Progress progressAt(long elapsedMs) {
+      long remainingMs = Math.max(0, elapsedMs);
+      for (int round = 0; round < rounds; round++) {
+        for (int s = 0; s < steps.length; s++) {
+          long stepMs = steps[s].seconds * 1000L;
+          if (remainingMs < stepMs) {
+            int secondsLeft = (int) ((stepMs - remainingMs + 999) / 1000);
+            return new Progress(round, s, secondsLeft, false);
+          }
+          remainingMs -= stepMs;
+        }
+      }
+      return new Progress(rounds - 1, steps.length - 1, 0, true);
+    }
+  }
+
+  public static final class Progress {
+    public final int round;
+    public final int step;
+    public final int secondsLeft;
+    public final boolean done;
+
+    Progress(int round, int step, int secondsLeft, boolean done) {
+      this.round = round;
+      this.step = step;
+      this.secondsLeft = secondsLeft;
+      this.done = done;
+    }
+  }
+
+  private static final Routine[] ROUTINES = {
+    new Routine("breathing", "Breathing Exercise", "Three slow breaths",
+      new Step[] {new Step("Breathe in...", 4), new Step("Hold...", 4), new Step("Breathe out...", 6)}, 3, 0, null),
+    new Routine("box-breathing", "Box Breathing", "Four sides, four seconds each",
+      new Step[] {new Step("Breathe in", 4), new Step("Hold", 4), new Step("Breathe out", 4), new Step("Hold", 4)},
+      4, 0, null),
+    new Routine("eye-rest", "Eye Rest", "Look at something 20 feet away for 20 seconds",
+      new Step[] {new Step("Look far away", 20)}, 1, 0, null),
+    new Routine("hydration", "Hydration Break", "Take 3 sips of water", new Step[0], 0, 3, "Take a sip")
+  };
+
+  private QuickActions() {}
+
+  /** The routine for a nudge action's deep link name, or null if it needs the full app */
+  public static Routine get(String action) {
+    for (Routine routine : ROUTINES) {
+      if (routine.action.equals(action)) return routine;
+    }
+    return null;
+  }
+
+  public static boolean handles(String action) {
+    return get(action) != null;
+  }
+}
@@ -0,0 +1,128 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.IOException;
+
+/**
+ * Foreground seconds over rolling windows of up to a week, for any number of rings (one per
+ * rolling budget). Each ring holds running totals at the end of each of the last 169 hours in
+ * a circular array, so the time in any window of up to 168 hours is one subtraction however
+ * long the window is. Moving into a new hour copies the latest total forward once.
+ *
+ * Hours are absolute (epoch hours), so windows are unaffected by the local day boundary. Not
+ * thread-safe: the engine owns it, and history is built separately and merged in.
+ */
+public final class RollingUsage {
+  public static final int MAX_WINDOW_HOURS = 7 * 24;
+  private static final int SLOTS = MAX_WINDOW_HOURS + 1;
+  private static final long HOUR_MS = 60 * 60 * 1000;
+
+  // Running total through the end of each hour, per ring; wraps harmlessly since only
+  // differences inside a week are ever read
+  private final int[][] totals;
+  // Absolute hour of the newest slot
+  private long head = Long.MIN_VALUE;
+
+  public RollingUsage(int rings) {
+    totals = new int[rings][SLOTS];
+  }
+
+  public int getRingCount() {
+    return totals.length;
+  }
+
+  /**
+   * Add [startMillis, endMillis) to ring, split at hour boundaries
+   */
+  public void add(int ring, long startMillis, long endMillis) {
+    long from = startMillis;
+    while (from < endMillis) {
+      long hour = Math.floorDiv(from, HOUR_MS);
+      long hourEnd = Math.min(endMillis, (hour + 1) * HOUR_MS);
+      addHour(ring, hour, (int) (hourEnd / 1000 - from / 1000));
+      from = hourEnd;
+    }
+  }
+
+  /**
+   * Add a local day's hourly seconds (as in DailyAppUsage and UsageHistoryStore) starting at
+   * dayStartMillis; a DST day's hours are taken as consecutive
+   */
+  public void addDay(int ring, long dayStartMillis, int[] hourSeconds) {
+    long first = Math.floorDiv(dayStartMillis, HOUR_MS);
+    for (int h = 0; h < hourSeconds.length; h++) {
+      addHour(ring, first + h, hourSeconds[h]);
+    }
+  }
+
+  /**
+   * Add seconds to the bucket of an absolute hour; hours already out of every window are dropped
+   */
+  public void addHour(int ring, long hour, int seconds) {
+    if (seconds == 0) return;
+    advance(hour);
+    if (hour <= head - MAX_WINDOW_HOURS) return;
+    int[] ringTotals = totals[ring];
+    for (long h = hour; h <= head; h++) {
+      ringTotals[slot(h)] += seconds;
+    }
+  }
+
+  /**
+   * Seconds in ring over the windowHours hours ending with the one containing nowMillis
+   */
+  public int sum(int ring, long nowMillis, int windowHours) {
+    advance(Math.floorDiv(nowMillis, HOUR_MS));
+    int[] ringTotals = totals[ring];
+    return ringTotals[slot(head)] - ringTotals[slot(head - Math.min(windowHours, MAX_WINDOW_HOURS))];
+  }
+
+  /**
+   * Add everything other holds (e.g. past days read from history) into the same rings
+   */
+  public void merge(RollingUsage other) {
+    if (other.head == Long.MIN_VALUE) return;
+    for (int ring = 0; ring < Math.min(totals.length, other.totals.length); ring++) {
+      int[] otherTotals = other.totals[ring];
+      for (long h = other.head - MAX_WINDOW_HOURS + 1; h <= other.head; h++) {
+        addHour(ring, h, otherTotals[slot(h)] - otherTotals[slot(h - 1)]);
+      }
+    }
+  }
+
+  /**
+   * Past days from store, bucketed into rules' rolling budgets (run off the engine thread)
+   */
+  public static RollingUsage fromHistory(NudgeRules rules, UsageHistoryStore store, int today) throws IOException {
+    RollingUsage usage = new RollingUsage(rules.getRollingCount());
+    store.query(today - MAX_WINDOW_HOURS / 24, today - 1, (epochDay, packageName, hourSeconds) -> {
+      long dayStart = UsageHistoryStore.startMillis(epochDay);
+      // 1970-01-01 was a Thursday; 0 = Monday
+      int dayOfWeek = Math.floorMod(epochDay + 3, 7);
+      for (int ring : rules.rollingMembers(packageName, dayOfWeek)) {
+        usage.addDay(ring, dayStart, hourSeconds);
+      }
+    });
+    return usage;
+  }
+
+  // Move the newest slot up to hour, carrying the totals forward; never moves back
+  private void advance(long hour) {
+    if (head == Long.MIN_VALUE) {
+      head = hour;
+      return;
+    }
+    if (hour <= head) return;
+    long from = Math.max(head + 1, hour - MAX_WINDOW_HOURS);
+    for (int[] ringTotals : totals) {
+      int total = ringTotals[slot(head)];
+      for (long h = from; h <= hour; h++) {
+        ringTotals[slot(h)] = total;
+      }
+    }
+    head = hour;
+  }
+
+  private static int slot(long hour) {
+    return (int) Math.floorMod(hour, (long) SLOTS);
+  }
+}
@@ -0,0 +1,11 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Delayed task execution for the monitoring loop (an android.os.Handler on device).
+ * All tasks run on a single thread, so the engine needs no locking.
+ */
+public interface Scheduler {
+  void postDelayed(Runnable task, long delayMillis);
+
+  void cancel(Runnable task);
+}
@@ -0,0 +1,200 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Running screen-time aggregates for the progress screen, kept in constant space: the last 14
+ * days' totals in a ring (this week and last week, weeks starting on Sunday), the total of the
+ * first 7 days with any usage (the baseline) and the time reclaimed in weeks already closed.
+ * Sessions are added as they are committed; answering is a sum over at most 14 days however
+ * old the install is.
+ *
+ * Reclaimed time is counted per week against the baseline's daily average, for the days after
+ * the baseline only. A week that closes adds max(0, expected - actual); the current week counts
+ * its days before today the same way. Shared with the plugin, so synchronized.
+ */
+public final class ScreenTimeSummary {
+  public static final int BASELINE_DAYS = 7;
+  private static final int DAYS = 14;
+  private static final int MAGIC = 0x46465354; // "FFST"
+  private static final int VERSION = 1;
+
+  private final int[] daySeconds = new int[DAYS];
+  // Newest day the ring covers, and the first day that had any usage
+  private int lastDay = Integer.MIN_VALUE;
+  private int firstDay = Integer.MIN_VALUE;
+  private long baselineSeconds;
+  private long reclaimedSeconds;
+
+  /** The numbers the screen shows, in seconds */
+  public static final class Snapshot {
+    public final int thisWeekSeconds;
+    public final int lastWeekSeconds;
+    // Daily average over the first BASELINE_DAYS days (0 before any usage)
+    public final int baselineDailySeconds;
+    public final boolean baselineComplete;
+    // First day with usage, or Integer.MIN_VALUE
+    public final int firstDay;
+    public final long reclaimedSeconds;
+
+    Snapshot(int thisWeekSeconds, int lastWeekSeconds, int baselineDailySeconds, boolean baselineComplete,
+             int firstDay, long reclaimedSeconds) {
+      this.thisWeekSeconds = thisWeekSeconds;
+      this.lastWeekSeconds = lastWeekSeconds;
+      this.baselineDailySeconds = baselineDailySeconds;
+      this.baselineComplete = baselineComplete;
+      this.firstDay = firstDay;
+      this.reclaimedSeconds = reclaimedSeconds;
+    }
+  }
+
+  /**
+   * Add foreground seconds used on epochDay (a committed session, or a whole day when seeding
+   * from history in ascending order)
+   */
+  public synchronized void add(int epochDay, int seconds) {
+    if (seconds <= 0) return;
+    if (firstDay == Integer.MIN_VALUE) {
+      firstDay = epochDay;
+    }
+    advance(epochDay);
+    if (epochDay >= firstDay && epochDay < firstDay + BASELINE_DAYS) {
+      baselineSeconds += seconds;
+    }
+    if (epochDay > lastDay - DAYS) {
+      daySeconds[slot(epochDay)] += seconds;
+    }
+  }
+
+  /**
+   * Replace epochDay's total, e.g. today's after a backfill recounted it from UsageEvents
+   */
+  public synchronized void setDay(int epochDay, int seconds) {
+    advance(epochDay);
+    if (epochDay <= lastDay - DAYS) return;
+    int delta = seconds - daySeconds[slot(epochDay)];
+    if (firstDay == Integer.MIN_VALUE && seconds > 0) {
+      firstDay = epochDay;
+    }
+    daySeconds[slot(epochDay)] = seconds;
+    if (firstDay != Integer.MIN_VALUE && epochDay >= firstDay && epochDay < firstDay + BASELINE_DAYS) {
+      baselineSeconds = Math.max(0, baselineSeconds + delta);
+    }
+  }
+
+  public synchronized Snapshot snapshot(int today) {
+    advance(today);
+    int weekStart = weekStart(today);
+    boolean complete = firstDay != Integer.MIN_VALUE && today >= firstDay + BASELINE_DAYS;
+    long reclaimed = reclaimedSeconds + (complete ? reclaimed(weekStart, today) : 0);
+    return new Snapshot(sum(weekStart, today + 1), sum(weekStart - 7, weekStart),
+      (int) (baselineSeconds / BASELINE_DAYS), complete, firstDay, reclaimed);
+  }
+
+  /**
+   * Rebuild from every stored day before today, once, when there is no saved summary yet
+   * (an install that predates it); after that sessions keep it current
+   */
+  public static ScreenTimeSummary fromHistory(UsageHistoryStore store, int today) throws IOException {
+    ScreenTimeSummary summary = new ScreenTimeSummary();
+    int first = store.getFirstDay();
+    if (first == Integer.MIN_VALUE || first >= today) return summary;
+    int[] totals = new int[today - first];
+    store.query(first, today - 1, (epochDay, packageName, hourSeconds) -> {
+      for (int seconds : hourSeconds) {
+        totals[epochDay - first] += seconds;
+      }
+    });
+    for (int d = 0; d < totals.length; d++) {
+      summary.add(first + d, totals[d]);
+    }
+    return summary;
+  }
+
+  public synchronized void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeInt(lastDay);
+    out.writeInt(firstDay);
+    out.writeLong(baselineSeconds);
+    out.writeLong(reclaimedSeconds);
+    for (int seconds : daySeconds) {
+      out.writeInt(seconds);
+    }
+  }
+
+  public static ScreenTimeSummary read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) throw new IOException("Not a screen time summary");
+    int version = in.readUnsignedByte();
+    if (version != VERSION) throw new IOException("Unsupported screen time summary version " + version);
+    ScreenTimeSummary summary = new ScreenTimeSummary();
+    summary.lastDay = in.readInt();
+    summary.firstDay = in.readInt();
+    summary.baselineSeconds = in.readLong();
+    summary.reclaimedSeconds = in.readLong();
+    for (int i = 0; i < DAYS; i++) {
+      summary.daySeconds[i] = in.readInt();
+    }
+    return summary;
+  }
+
+  /** Sunday on or before epochDay (1970-01-01 was a Thursday) */
+  public static int weekStart(int epochDay) {
+    return epochDay - Math.floorMod(epochDay + 4, 7);
+  }
+
+  // Move the ring up to day, closing each week whose Sunday is passed and clearing reused slots
+  private void advance(int day) {
+    if (lastDay == Integer.MIN_VALUE) {
+      lastDay = day;
+      return;
+    }
+    if (day <= lastDay) return;
+    if (day - lastDay > DAYS) {
+      // A gap of over two weeks: only the week holding lastDay had any usage to close
+      closeWeek(weekStart(lastDay));
+      Arrays.fill(daySeconds, 0);
+      lastDay = day;
+      return;
+    }
+    // Weeks with no day recorded (the service was not running) close without counting
+    int previous = lastDay;
+    for (int d = lastDay + 1; d <= day; d++) {
+      if (weekStart(d) == d && previous >= d - 7) {
+        closeWeek(d - 7);
+      }
+      daySeconds[slot(d)] = 0;
+      lastDay = d;
+    }
+  }
+
+  private void closeWeek(int start) {
+    if (firstDay == Integer.MIN_VALUE) return;
+    reclaimedSeconds += reclaimed(start, start + 7);
+  }
+
+  // Expected minus actual over days [from, to) after the baseline, floored at 0
+  private long reclaimed(int from, int to) {
+    int baselineEnd = firstDay + BASELINE_DAYS;
+    int days = to - Math.max(from, baselineEnd);
+    if (days <= 0) return 0;
+    long expected = baselineSeconds / BASELINE_DAYS * days;
+    return Math.max(0, expected - sum(Math.max(from, baselineEnd), to));
+  }
+
+  // Total over days [from, to) still in the ring
+  private int sum(int from, int to) {
+    int total = 0;
+    for (int d = Math.max(from, lastDay - DAYS + 1); d < to && d <= lastDay; d++) {
+      total += daySeconds[slot(d)];
+    }
+    return total;
+  }
+
+  private static int slot(int epochDay) {
+    return Math.floorMod(epochDay, DAYS);
+  }
+}
@@ -0,0 +1,66 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * One app_usage_sessions row waiting for upload. A session is identified by its app and start
+ * time; a later commit of the same session replaces the earlier one (see merge).
+ */
+public final class SessionRow {
+  public final String packageName;
+  public final String appName;
+  public final String psychState;
+  public final long startMillis;
+  public final long endMillis;
+  public final boolean interventionTriggered;
+
+  public SessionRow(String packageName, String appName, String psychState, long startMillis, long endMillis,
+                    boolean interventionTriggered) {
+    this.packageName = packageName;
+    this.appName = appName;
+    this.psychState = psychState;
+    this.startMillis = startMillis;
+    this.endMillis = endMillis;
+    this.interventionTriggered = interventionTriggered;
+  }
+
+  public String key() {
+    return packageName + '@' + startMillis;
+  }
+
+  public int durationSeconds() {
+    return (int) ((endMillis - startMillis) / 1000);
+  }
+
+  // The same session committed again: it ran at least as long as either commit says
+  SessionRow merge(SessionRow later) {
+    return new SessionRow(packageName, later.appName != null ? later.appName : appName,
+      later.psychState != null ? later.psychState : psychState, startMillis,
+      Math.max(endMillis, later.endMillis), interventionTriggered || later.interventionTriggered);
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeUTF(packageName);
+    writeNullable(out, appName);
+    writeNullable(out, psychState);
+    out.writeLong(startMillis);
+    out.writeLong(endMillis);
+    out.writeBoolean(interventionTriggered);
+  }
+
+  static SessionRow read(DataInputStream in) throws IOException {
+    return new SessionRow(in.readUTF(), readNullable(in), readNullable(in), in.readLong(), in.readLong(),
+      in.readBoolean());
+  }
+
+  private static void writeNullable(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) out.writeUTF(value);
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -0,0 +1,127 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of a few quantiles of a stream of session lengths in constant space:
+ * the extended P² algorithm (Jain & Chlamtac, generalised by Raatikainen). Eleven markers
+ * track the minimum, the maximum, the tracked quantiles and the midpoints between them;
+ * each new value moves marker positions by at most one and adjusts heights with a
+ * piecewise-parabolic fit. Exact until the markers fill up.
+ */
+final class SessionSketch {
+  // Marker i aims at the fraction MARKERS[i] of the stream; QUANTILE_MARKERS index the
+  // tracked quantiles, the others only keep the fit stable
+  static final double[] MARKERS = {0, 0.375, 0.75, 0.825, 0.9, 0.925, 0.95, 0.97, 0.99, 0.995, 1};
+  static final int[] QUANTILE_MARKERS = {2, 4, 6, 8};
+  private static final int M = MARKERS.length;
+
+  private final float[] heights = new float[M];
+  // Marker ranks, 0-based; until count reaches M heights holds the raw values
+  private final int[] positions = new int[M];
+  private int count;
+
+  int count() {
+    return count;
+  }
+
+  void add(float value) {
+    if (count < M) {
+      heights[count++] = value;
+      if (count == M) {
+        Arrays.sort(heights);
+        for (int i = 0; i < M; i++) {
+          positions[i] = i;
+        }
+      }
+      return;
+    }
+
+    // Cell the value falls in, widening the ends when it is a new extreme
+    int k;
+    if (value < heights[0]) {
+      heights[0] = value;
+      k = 0;
+    } else if (value >= heights[M - 1]) {
+      heights[M - 1] = value;
+      k = M - 2;
+    } else {
+      k = 0;
+      while (value >= heights[k + 1]) k++;
+    }
+    for (int i = k + 1; i < M; i++) {
+      positions[i]++;
+    }
+    count++;
+
+    for (int i = 1; i < M - 1; i++) {
+      double delta = MARKERS[i] * (count - 1) - positions[i];
+      if ((delta >= 1 && positions[i + 1] - positions[i] > 1)
+          || (delta <= -1 && positions[i - 1] - positions[i] < -1)) {
+        int s = delta > 0 ? 1 : -1;
+        double h = parabolic(i, s);
+        if (h <= heights[i - 1] || h >= heights[i + 1]) {
+          h = heights[i] + s * (heights[i + s] - heights[i]) / (double) (positions[i + s] - positions[i]);
+        }
+        heights[i] = (float) h;
+        positions[i] += s;
+      }
+    }
+  }
+
+  /**
+   * Estimate of the q-th tracked quantile (an index into QUANTILE_MARKERS); 0 while empty
+   */
+  float quantile(int q) {
+    if (count == 0) return 0;
+    int marker = QUANTILE_MARKERS[q];
+    if (count >= M) return heights[marker];
+    float[] sorted = Arrays.copyOf(heights, count);
+    Arrays.sort(sorted);
+    // Nearest rank
+    int rank = (int) Math.ceil(MARKERS[marker] * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, rank))];
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(count);
+    for (int i = 0; i < Math.min(count, M); i++) {
+      out.writeFloat(heights[i]);
+    }
+    if (count >= M) {
+      // The end ranks are always 0 and count - 1
+      for (int i = 1; i < M - 1; i++) {
+        out.writeInt(positions[i]);
+      }
+    }
+  }
+
+  static SessionSketch read(DataInput in) throws IOException {
+    SessionSketch sketch = new SessionSketch();
+    sketch.count = in.readInt();
+    if (sketch.count < 0) throw new IOException("Bad sketch count " + sketch.count);
+    for (int i = 0; i < Math.min(sketch.count, M); i++) {
+      sketch.heights[i] = in.readFloat();
+    }
+    if (sketch.count >= M) {
+      sketch.positions[M - 1] = sketch.count - 1;
+      for (int i = 1; i < M - 1; i++) {
+        sketch.positions[i] = in.readInt();
+      }
+    }
+    return sketch;
+  }
+
+  // Piecewise-parabolic prediction of marker i's height after moving it by s
+  private double parabolic(int i, int s) {
+    double nPrev = positions[i - 1];
+    double n = positions[i];
+    double nNext = positions[i + 1];
+    return heights[i] + s / (nNext - nPrev)
+      * ((n - nPrev + s) * (heights[i + 1] - heights[i]) / (nNext - n)
+        + (nNext - n - s) * (heights[i] - heights[i - 1]) / (n - nPrev));
+  }
+}
@@ -0,0 +1,137 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Session-length percentiles per app and hour of day (the hour a session started), plus one
+ * over all hours, as fixed-size P² sketches: at most 25 per app whatever the number of
+ * sessions. The engine records each session as it ends; adaptive nudge levels come from the
+ * percentiles once an app has enough history. Shared with the plugin, so synchronized.
+ *
+ * Persisted as "FFSK", version, then per app: name, a bitmask of the hours present and those
+ * sketches (see SessionSketch.write).
+ */
+public final class SessionSketches {
+  /** Tracked percentiles; adaptive level n is the n-th */
+  public static final double[] QUANTILES = {0.75, 0.9, 0.95, 0.99};
+  public static final int ALL_HOURS = 24;
+  // Sessions an app (and hour) needs before its percentiles replace the built-in thresholds
+  public static final int MIN_SAMPLES = 20;
+  // Shorter sessions are glances (notification checks, app switcher) and skew the percentiles
+  static final int MIN_SESSION_SECONDS = 10;
+  // Adaptive levels never fire before 5 minutes and are at least a minute apart
+  static final int MIN_LEVEL_SECONDS = 5 * 60;
+  static final int MIN_LEVEL_STEP_SECONDS = 60;
+
+  private static final int MAGIC = 0x4646534b; // "FFSK"
+  private static final int VERSION = 1;
+
+  private final Map<String, SessionSketch[]> byPackage = new HashMap<>();
+
+  /**
+   * Add a finished session of packageName that started at hourOfDay (0..23)
+   */
+  public synchronized void record(String packageName, int hourOfDay, int seconds) {
+    if (seconds < MIN_SESSION_SECONDS) return;
+    SessionSketch[] sketches = byPackage.get(packageName);
+    if (sketches == null) {
+      sketches = new SessionSketch[ALL_HOURS + 1];
+      byPackage.put(packageName, sketches);
+    }
+    sketch(sketches, hourOfDay).add(seconds);
+    sketch(sketches, ALL_HOURS).add(seconds);
+  }
+
+  /**
+   * Adaptive nudge levels in seconds of the current session: the hour's percentiles when that
+   * hour has MIN_SAMPLES sessions, else the app's over all hours; null until the app has them
+   */
+  public synchronized int[] thresholds(String packageName, int hourOfDay) {
+    SessionSketch[] sketches = byPackage.get(packageName);
+    if (sketches == null) return null;
+    SessionSketch sketch = sketches[hourOfDay];
+    if (sketch == null || sketch.count() < MIN_SAMPLES) {
+      sketch = sketches[ALL_HOURS];
+      if (sketch == null || sketch.count() < MIN_SAMPLES) return null;
+    }
+    int[] levels = new int[QUANTILES.length];
+    int floor = MIN_LEVEL_SECONDS;
+    for (int q = 0; q < levels.length; q++) {
+      levels[q] = Math.max(Math.round(sketch.quantile(q)), floor);
+      floor = levels[q] + MIN_LEVEL_STEP_SECONDS;
+    }
+    return levels;
+  }
+
+  /**
+   * Percentile estimates in seconds (QUANTILES order) for an hour or ALL_HOURS; null with no
+   * sessions
+   */
+  public synchronized int[] quantiles(String packageName, int hourOfDay) {
+    SessionSketch[] sketches = byPackage.get(packageName);
+    SessionSketch sketch = sketches != null ? sketches[hourOfDay] : null;
+    if (sketch == null) return null;
+    int[] values = new int[QUANTILES.length];
+    for (int q = 0; q < values.length; q++) {
+      values[q] = Math.round(sketch.quantile(q));
+    }
+    return values;
+  }
+
+  public synchronized int count(String packageName, int hourOfDay) {
+    SessionSketch[] sketches = byPackage.get(packageName);
+    SessionSketch sketch = sketches != null ? sketches[hourOfDay] : null;
+    return sketch != null ? sketch.count() : 0;
+  }
+
+  public synchronized String[] getPackages() {
+    return byPackage.keySet().toArray(new String[0]);
+  }
+
+  public synchronized void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeInt(byPackage.size());
+    for (Map.Entry<String, SessionSketch[]> entry : byPackage.entrySet()) {
+      SessionSketch[] sketches = entry.getValue();
+      int present = 0;
+      for (int h = 0; h < sketches.length; h++) {
+        if (sketches[h] != null) present |= 1 << h;
+      }
+      out.writeUTF(entry.getKey());
+      out.writeInt(present);
+      for (SessionSketch sketch : sketches) {
+        if (sketch != null) sketch.write(out);
+      }
+    }
+  }
+
+  public static SessionSketches read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) throw new IOException("Not a session sketch file");
+    int version = in.readUnsignedByte();
+    if (version != VERSION) throw new IOException("Unsupported session sketch version " + version);
+    SessionSketches sketches = new SessionSketches();
+    int packages = in.readInt();
+    for (int p = 0; p < packages; p++) {
+      String packageName = in.readUTF();
+      int present = in.readInt();
+      SessionSketch[] byHour = new SessionSketch[ALL_HOURS + 1];
+      for (int h = 0; h < byHour.length; h++) {
+        if ((present & (1 << h)) != 0) byHour[h] = SessionSketch.read(in);
+      }
+      sketches.byPackage.put(packageName, byHour);
+    }
+    return sketches;
+  }
+
+  private static SessionSketch sketch(SessionSketch[] sketches, int index) {
+    if (sketches[index] == null) {
+      sketches[index] = new SessionSketch();
+    }
+    return sketches[index];
+  }
+}
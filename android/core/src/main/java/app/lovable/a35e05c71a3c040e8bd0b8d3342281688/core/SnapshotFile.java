@@ -0,0 +1,152 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A small blob rewritten often, e.g. the engine state on every transition: two slots in a
+ * memory-mapped file, written alternately, so saving is a copy into the page cache and a save
+ * cut short by a crash leaves the previous one readable. read() returns the newer intact slot.
+ *
+ * Layout: "FFSN", version, 3 reserved bytes, then two equal slots of [sequence][length][crc32]
+ * [payload]; the checksum covers sequence and payload. The file doubles when a payload does not
+ * fit a slot. Not thread-safe; the owner writes from one thread.
+ */
+public final class SnapshotFile {
+  static final int INITIAL_CAPACITY = 8 * 1024;
+  private static final byte[] MAGIC = {'F', 'F', 'S', 'N'};
+  private static final int VERSION = 1;
+  private static final int HEADER = 8;
+  private static final int SLOT_HEADER = 16;
+
+  private final File file;
+  private final CRC32 crc = new CRC32();
+  private MappedByteBuffer map;
+  private int slotSize;
+  private long sequence;
+  // Slot holding the newest snapshot, -1 when there is none
+  private int current = -1;
+
+  private SnapshotFile(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Open or create the file. One that is not a snapshot file (or from another version) is
+   * started over empty; a snapshot is only ever a shortcut.
+   */
+  public static SnapshotFile open(File file) throws IOException {
+    SnapshotFile snapshot = new SnapshotFile(file);
+    long length = file.exists() ? file.length() : 0;
+    if (length < HEADER + 2 * SLOT_HEADER || length > Integer.MAX_VALUE) {
+      snapshot.create(INITIAL_CAPACITY);
+      return snapshot;
+    }
+    snapshot.map((int) length);
+    byte[] magic = new byte[MAGIC.length];
+    snapshot.map.position(0);
+    snapshot.map.get(magic);
+    if (!Arrays.equals(magic, MAGIC) || snapshot.map.get() != VERSION) {
+      snapshot.create(INITIAL_CAPACITY);
+      return snapshot;
+    }
+    for (int slot = 0; slot < 2; slot++) {
+      long seq = snapshot.intactSequence(slot);
+      if (seq > snapshot.sequence) {
+        snapshot.sequence = seq;
+        snapshot.current = slot;
+      }
+    }
+    return snapshot;
+  }
+
+  /** The newest intact payload, or null */
+  public byte[] read() {
+    if (current < 0) return null;
+    int base = slotBase(current);
+    byte[] payload = new byte[map.getInt(base + 8)];
+    map.position(base + SLOT_HEADER);
+    map.get(payload);
+    return payload;
+  }
+
+  /** Replace the snapshot with bytes[0, length) */
+  public void write(byte[] bytes, int length) throws IOException {
+    if (length > slotSize - SLOT_HEADER) {
+      int capacity = map.capacity();
+      while ((capacity - HEADER) / 2 - SLOT_HEADER < length) {
+        capacity *= 2;
+      }
+      create(capacity);
+    }
+    int slot = current == 0 ? 1 : 0;
+    int base = slotBase(slot);
+    long seq = sequence + 1;
+    map.position(base + SLOT_HEADER);
+    map.put(bytes, 0, length);
+    map.putLong(base, seq);
+    map.putInt(base + 8, length);
+    map.putInt(base + 12, checksum(seq, bytes, 0, length));
+    sequence = seq;
+    current = slot;
+  }
+
+  /** Flush to disk; writes already survive process death through the page cache */
+  public void sync() {
+    map.force();
+  }
+
+  public int capacity() {
+    return map.capacity();
+  }
+
+  // Sequence of slot if its checksum holds, else 0
+  private long intactSequence(int slot) {
+    int base = slotBase(slot);
+    long seq = map.getLong(base);
+    int length = map.getInt(base + 8);
+    if (seq <= 0 || length < 0 || length > slotSize - SLOT_HEADER) return 0;
+    byte[] payload = new byte[length];
+    map.position(base + SLOT_HEADER);
+    map.get(payload);
+    return checksum(seq, payload, 0, length) == map.getInt(base + 12) ? seq : 0;
+  }
+
+  private int checksum(long seq, byte[] bytes, int offset, int length) {
+    crc.reset();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (seq >>> shift));
+    }
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+
+  // A fresh, empty file of capacity bytes
+  private void create(int capacity) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(0);
+      raf.setLength(capacity);
+    }
+    map(capacity);
+    map.position(0);
+    map.put(MAGIC).put((byte) VERSION);
+    current = -1;
+  }
+
+  private void map(int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      // The mapping stays valid after the channel closes
+      map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    slotSize = (size - HEADER) / 2;
+  }
+
+  private int slotBase(int slot) {
+    return HEADER + slot * slotSize;
+  }
+}
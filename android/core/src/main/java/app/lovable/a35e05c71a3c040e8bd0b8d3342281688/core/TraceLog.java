@@ -0,0 +1,339 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Structured trace log for the monitoring hot path.
+ *
+ * Each call stores a fixed-size record (timestamp, event id, level, three numeric args and up to
+ * two references to strings that already exist, such as package names) into a preallocated ring.
+ * Nothing is formatted until the buffer is dumped, so release builds produce no log strings per poll.
+ * Messages below the current level are dropped before anything is written.
+ */
+public final class TraceLog {
+  public static final int VERBOSE = 2;
+  public static final int DEBUG = 3;
+  public static final int INFO = 4;
+  public static final int WARN = 5;
+  public static final int ERROR = 6;
+
+  // Event ids - index into FORMATS. {s}/{t} are the string args, {a}/{b}/{c} the numeric args.
+  public static final int EXCLUDED_PACKAGE = 0;
+  public static final int DATE_CHANGED = 1;
+  public static final int SESSION_SAVED = 2;
+  public static final int NUDGE_LEVEL_RESTORED = 3;
+  public static final int APP_CHANGED = 4;
+  public static final int STABILIZATION_REJECTED = 5;
+  public static final int APP_NAME_FROM_MAP = 6;
+  public static final int APP_NAME_FROM_PM = 7;
+  public static final int APP_NAME_PM_FAILED = 8;
+  public static final int NUDGE_SKIPPED_SCREEN_OFF = 9;
+  public static final int NUDGE_CHECK = 10;
+  public static final int NUDGE_SHOWN = 11;
+  public static final int WAKE_LOCK_ACQUIRED = 12;
+  public static final int ACTION_BUTTON_ADDED = 13;
+  public static final int NUDGE_POSTED = 14;
+  public static final int META_NUDGE_POSTED = 15;
+  public static final int SCREEN_OFF_SESSION_SAVED = 16;
+  public static final int SCREEN_OFF = 17;
+  public static final int SCREEN_ON = 18;
+  public static final int RECENT_ACTIONS_LOADED = 19;
+  public static final int RECENT_ACTIONS_EMPTY = 20;
+  public static final int RECENT_ACTIONS_LOAD_FAILED = 21;
+  public static final int RECENT_ACTIONS_SAVED = 22;
+  public static final int RECENT_ACTIONS_SAVE_FAILED = 23;
+  public static final int PHYSICAL_ACTIONS_RESET = 24;
+  public static final int PHYSICAL_ACTIONS_READDED = 25;
+  public static final int DIGITAL_ACTIONS_READDED = 26;
+  public static final int ACTION_TRACKED = 27;
+  public static final int RECENT_ACTIONS_CLEARED = 28;
+  public static final int FOREGROUND_CLEARED = 29;
+  public static final int USAGE_QUERY_TIMEOUT = 30;
+  public static final int USAGE_QUERY_FAILED = 31;
+  public static final int QUERY_HEALTH_CHANGED = 32;
+  public static final int POLL_FAILED = 33;
+  public static final int BACKFILL_DONE = 34;
+  public static final int BACKFILL_APPLIED = 35;
+  public static final int NUDGE_QUIET = 36;
+  public static final int BUDGET_NUDGE = 37;
+  public static final int RULES_APPLIED = 38;
+  public static final int ROLLING_NUDGE = 39;
+  public static final int ADAPTIVE_NUDGE = 40;
+  public static final int UPLOAD_SENT = 41;
+  public static final int UPLOAD_FAILED = 42;
+  public static final int STORE_OPENED = 43;
+  public static final int STORE_FAILED = 44;
+  public static final int NOTIFICATION_HELD = 45;
+  public static final int STATE_RESTORED = 46;
+  public static final int STATE_FAILED = 47;
+  public static final int CACHES_TRIMMED = 48;
+  public static final int DURATION_TICK_FAILED = 49;
+  public static final int NOTIFICATION_POST_FAILED = 50;
+
+  private static final String[] FORMATS = {
+    "Excluding package from tracking: {s}",
+    "Date changed - clearing daily usage map and resetting meta-nudge tracking",
+    "Saved {s} session: {a}s, level: {b}",
+    "Restored nudge level {a} for {s} (total: {b}s)",
+    "App changed to (verified): {s} -> {t}",
+    "App change to {s} lasted {a}ms (dwell {b}ms) - unstable, ignoring",
+    "Got app name from map: {t} for package: {s}",
+    "Got app name from PM: {t} for package: {s}",
+    "Failed to get app name from PM for: {s}",
+    "Skipping nudge check - screen is off",
+    "Nudge check for {s} - session: {a}s, cumulative: {b}s, lastLevel: {c}",
+    "Showing level {a} nudge (cumulative: {b}s)",
+    "Acquired wake lock for {s}",
+    "Added action button: {s} -> flowfocus://action/{t}",
+    "Showed Level {a} nudge with {b} actions: {s} | User: {t}",
+    "Showed meta-nudge level {a} - Total screen time: {b}s",
+    "Screen OFF - saved session: {a}s",
+    "Screen OFF - session terminated",
+    "Screen ON - resuming tracking",
+    "Loaded {a} recent actions from storage: {s}",
+    "No recent actions in storage, starting fresh",
+    "Failed to load recent actions from storage: {s}",
+    "Saved {a} recent actions to storage",
+    "Failed to save recent actions to storage: {s}",
+    "All physical actions recently used, resetting for variety",
+    "All physical actions recently used, adding some back",
+    "All digital actions recently used, adding some back",
+    "Tracked action: {s}, recent list size: {a}",
+    "Cleared recent actions",
+    "Left {s} for launcher/no app - saved session: {a}s",
+    "Usage query exceeded {a}ms deadline - skipping this poll",
+    "Usage query failed: {s}",
+    "Usage service health {s} - poll backoff x{a}",
+    "Poll failed: {s}",
+    "Backfill: {a} apps, {b}s foreground since midnight in {c}ms, open: {s}",
+    "Applied backfill: {a} apps, {b}s screen time, meta level {c}",
+    "Holding nudge for {s} - quiet hours ({t})",
+    "Budget {s} reached level {a} ({b}s across its apps)",
+    "Nudge rules applied: {a} policies, {b} budgets, {c} named apps",
+    "Rolling budget {s} reached level {a} ({b}s in the last {c}h)",
+    "Adaptive nudge for {s}: level {a}, session {b}s past its usual {c}s",
+    "Uploaded {a} sessions, {b} still pending",
+    "Session upload failed: {s}",
+    "Opened store {s}: {a} keys from {b} log bytes in {c}us",
+    "Key-value store: {s}",
+    "Holding {s} notification - rate limit, {a}s until the next token",
+    "Restored engine state ({s}): {a} bytes in {b}us",
+    "Engine state: {s}",
+    "Trimmed caches at level {a}: {b} bytes freed, {c} bytes left",
+    "Duration tick failed: {s}",
+    "Notification post failed: {s}"
+  };
+
+  /**
+   * Optional mirror for formatted messages (logcat in debuggable builds)
+   */
+  public interface Sink {
+    void write(int level, String message);
+  }
+
+  private static final int CAPACITY = 1024; // must be a power of two
+  private static final int MASK = CAPACITY - 1;
+
+  private static final long[] times = new long[CAPACITY];
+  private static final int[] headers = new int[CAPACITY];
+  private static final long[] argsA = new long[CAPACITY];
+  private static final long[] argsB = new long[CAPACITY];
+  private static final long[] argsC = new long[CAPACITY];
+  private static final String[] argsS = new String[CAPACITY];
+  private static final String[] argsT = new String[CAPACITY];
+  private static long written = 0;
+
+  private static volatile int minLevel = DEBUG;
+  private static volatile Sink sink = null;
+
+  private TraceLog() {}
+
+  public static void setLevel(int level) {
+    minLevel = level;
+  }
+
+  public static void setSink(Sink newSink) {
+    sink = newSink;
+  }
+
+  public static boolean isLoggable(int level) {
+    return level >= minLevel;
+  }
+
+  public static void v(int event, String s) {
+    if (VERBOSE >= minLevel) record(VERBOSE, event, s, null, 0, 0, 0);
+  }
+
+  public static void d(int event) {
+    if (DEBUG >= minLevel) record(DEBUG, event, null, null, 0, 0, 0);
+  }
+
+  public static void d(int event, long a) {
+    if (DEBUG >= minLevel) record(DEBUG, event, null, null, a, 0, 0);
+  }
+
+  public static void d(int event, long a, long b) {
+    if (DEBUG >= minLevel) record(DEBUG, event, null, null, a, b, 0);
+  }
+
+  public static void d(int event, String s) {
+    if (DEBUG >= minLevel) record(DEBUG, event, s, null, 0, 0, 0);
+  }
+
+  public static void d(int event, String s, String t) {
+    if (DEBUG >= minLevel) record(DEBUG, event, s, t, 0, 0, 0);
+  }
+
+  public static void d(int event, String s, long a, long b) {
+    if (DEBUG >= minLevel) record(DEBUG, event, s, null, a, b, 0);
+  }
+
+  public static void d(int event, String s, long a, long b, long c) {
+    if (DEBUG >= minLevel) record(DEBUG, event, s, null, a, b, c);
+  }
+
+  public static void d(int event, String s, String t, long a, long b) {
+    if (DEBUG >= minLevel) record(DEBUG, event, s, t, a, b, 0);
+  }
+
+  public static void i(int event) {
+    if (INFO >= minLevel) record(INFO, event, null, null, 0, 0, 0);
+  }
+
+  public static void i(int event, String s, long a) {
+    if (INFO >= minLevel) record(INFO, event, s, null, a, 0, 0);
+  }
+
+  public static void i(int event, long a, long b, long c) {
+    if (INFO >= minLevel) record(INFO, event, null, null, a, b, c);
+  }
+
+  public static void i(int event, String s, long a, long b, long c) {
+    if (INFO >= minLevel) record(INFO, event, s, null, a, b, c);
+  }
+
+  public static void w(int event, String s) {
+    if (WARN >= minLevel) record(WARN, event, s, null, 0, 0, 0);
+  }
+
+  public static void w(int event, long a) {
+    if (WARN >= minLevel) record(WARN, event, null, null, a, 0, 0);
+  }
+
+  private static void record(int level, int event, String s, String t, long a, long b, long c) {
+    long now = System.currentTimeMillis();
+    synchronized (TraceLog.class) {
+      int slot = (int) (written & MASK);
+      times[slot] = now;
+      headers[slot] = (event << 8) | level;
+      argsA[slot] = a;
+      argsB[slot] = b;
+      argsC[slot] = c;
+      argsS[slot] = s;
+      argsT[slot] = t;
+      written++;
+    }
+    Sink mirror = sink;
+    if (mirror != null) {
+      mirror.write(level, format(event, s, t, a, b, c));
+    }
+  }
+
+  public static long getWrittenCount() {
+    synchronized (TraceLog.class) {
+      return written;
+    }
+  }
+
+  public static void clear() {
+    synchronized (TraceLog.class) {
+      for (int i = 0; i < CAPACITY; i++) {
+        argsS[i] = null;
+        argsT[i] = null;
+      }
+      written = 0;
+    }
+  }
+
+  /**
+   * Format the most recent records (oldest first). Only called for diagnostics.
+   */
+  public static List<String> dump(int limit) {
+    int count;
+    long first;
+    long[] snapTimes;
+    int[] snapHeaders;
+    long[] snapA, snapB, snapC;
+    String[] snapS, snapT;
+    synchronized (TraceLog.class) {
+      count = (int) Math.min(Math.min(written, CAPACITY), Math.max(limit, 0));
+      first = written - count;
+      snapTimes = new long[count];
+      snapHeaders = new int[count];
+      snapA = new long[count];
+      snapB = new long[count];
+      snapC = new long[count];
+      snapS = new String[count];
+      snapT = new String[count];
+      for (int i = 0; i < count; i++) {
+        int slot = (int) ((first + i) & MASK);
+        snapTimes[i] = times[slot];
+        snapHeaders[i] = headers[slot];
+        snapA[i] = argsA[slot];
+        snapB[i] = argsB[slot];
+        snapC[i] = argsC[slot];
+        snapS[i] = argsS[slot];
+        snapT[i] = argsT[slot];
+      }
+    }
+
+    List<String> lines = new ArrayList<>(count);
+    Calendar cal = Calendar.getInstance();
+    for (int i = 0; i < count; i++) {
+      cal.setTimeInMillis(snapTimes[i]);
+      int level = snapHeaders[i] & 0xFF;
+      int event = snapHeaders[i] >>> 8;
+      lines.add(String.format("%02d:%02d:%02d.%03d %c %s",
+        cal.get(Calendar.HOUR_OF_DAY),
+        cal.get(Calendar.MINUTE),
+        cal.get(Calendar.SECOND),
+        cal.get(Calendar.MILLISECOND),
+        levelChar(level),
+        format(event, snapS[i], snapT[i], snapA[i], snapB[i], snapC[i])));
+    }
+    return lines;
+  }
+
+  static String format(int event, String s, String t, long a, long b, long c) {
+    String template = event >= 0 && event < FORMATS.length ? FORMATS[event] : "event " + event;
+    StringBuilder sb = new StringBuilder(template.length() + 32);
+    for (int i = 0; i < template.length(); i++) {
+      char ch = template.charAt(i);
+      if (ch == '{' && i + 2 < template.length() && template.charAt(i + 2) == '}') {
+        switch (template.charAt(i + 1)) {
+          case 's': sb.append(s); i += 2; continue;
+          case 't': sb.append(t); i += 2; continue;
+          case 'a': sb.append(a); i += 2; continue;
+          case 'b': sb.append(b); i += 2; continue;
+          case 'c': sb.append(c); i += 2; continue;
+          default: break;
+        }
+      }
+      sb.append(ch);
+    }
+    return sb.toString();
+  }
+
+  private static char levelChar(int level) {
+    switch (level) {
+      case VERBOSE: return 'V';
+      case DEBUG: return 'D';
+      case INFO: return 'I';
+      case WARN: return 'W';
+      case ERROR: return 'E';
+      default: return '?';
+    }
+  }
+}
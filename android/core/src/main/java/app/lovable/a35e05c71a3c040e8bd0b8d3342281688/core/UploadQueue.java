@@ -0,0 +1,372 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Durable write-behind queue of session rows for the backend. Commits are appended to a journal
+ * and coalesced in memory by session; a flush window after the first pending row, everything
+ * pending goes out in batches of up to MAX_BATCH rows, one request each. Failures back off
+ * exponentially with jitter; the journal is compacted after every successful batch, so rows
+ * survive process death and are sent at least once (the sink makes that idempotent). While
+ * nothing goes out it is also compacted once re-commits outnumber pending rows COMPACT_FACTOR
+ * to one, and at most MAX_PENDING rows are kept, on load as on submit.
+ *
+ * A batch refused as unauthorized (an expired token) is not retried: rows are held and
+ * stats().needsToken is set until setSink() hands over fresh credentials.
+ *
+ * Runs on the scheduler's thread: submit() and setSink() post there, and the journal is only
+ * touched from it. Counters are read from other threads through stats().
+ */
+public final class UploadQueue {
+  public static final long FLUSH_WINDOW_MS = 15 * 60 * 1000;
+  public static final int MAX_BATCH = 200;
+  public static final int MAX_PENDING = 10_000;
+  static final long MIN_BACKOFF_MS = 60 * 1000;
+  static final long MAX_BACKOFF_MS = 60 * 60 * 1000;
+  // Rewrite the journal once it holds this many records per pending row (re-commits pile up
+  // while uploads are held)
+  static final int COMPACT_FACTOR = 4;
+  private static final int COMPACT_MIN_RECORDS = 64;
+
+  private static final byte[] MAGIC = {'F', 'F', 'U', 'Q'};
+  private static final int VERSION = 1;
+
+  /** Where batches go (an HTTP POST on device; anything in tests) */
+  public interface Sink {
+    void send(List<SessionRow> rows) throws IOException;
+  }
+
+  /** The sink got an answer that is not a success; retryable ones are sent again later */
+  public static final class RejectedException extends IOException {
+    public static final int UNAUTHORIZED = 401;
+    private static final long serialVersionUID = 1L;
+
+    public final int status;
+    public final boolean retryable;
+
+    public RejectedException(int status, boolean retryable, String message) {
+      super(message);
+      this.status = status;
+      this.retryable = retryable;
+    }
+  }
+
+  /** Counters for the plugin */
+  public static final class Stats {
+    public final int pending;
+    public final long sentRows;
+    public final long sentBatches;
+    public final long coalesced;
+    public final long dropped;
+    public final long failures;
+    public final long nextFlushAt;
+    public final String lastError;
+    // The sink's credentials were refused; nothing is sent until new ones arrive
+    public final boolean needsToken;
+
+    Stats(int pending, long sentRows, long sentBatches, long coalesced, long dropped, long failures,
+          long nextFlushAt, String lastError, boolean needsToken) {
+      this.pending = pending;
+      this.sentRows = sentRows;
+      this.sentBatches = sentBatches;
+      this.coalesced = coalesced;
+      this.dropped = dropped;
+      this.failures = failures;
+      this.nextFlushAt = nextFlushAt;
+      this.lastError = lastError;
+      this.needsToken = needsToken;
+    }
+  }
+
+  private final File journal;
+  private final Scheduler scheduler;
+  private final Clock clock;
+  private final Random jitter = new Random();
+  private final LinkedHashMap<String, SessionRow> pending = new LinkedHashMap<>();
+  private Sink sink;
+  private boolean loaded;
+  private boolean flushScheduled;
+  private int failureStreak;
+  // Records in the journal, superseded ones included
+  private int journalRecords;
+
+  // Written on the scheduler thread, read by stats(); pendingCount mirrors pending.size()
+  private int pendingCount;
+  private long sentRows;
+  private long sentBatches;
+  private long coalesced;
+  private long dropped;
+  private long failures;
+  private long nextFlushAt;
+  private String lastError;
+  private boolean needsToken;
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flushScheduled = false;
+      flush();
+    }
+  };
+
+  public UploadQueue(File journal, Scheduler scheduler, Clock clock) {
+    this.journal = journal;
+    this.scheduler = scheduler;
+    this.clock = clock;
+    scheduler.postDelayed(() -> {
+      load();
+      if (!pending.isEmpty()) scheduleFlush(FLUSH_WINDOW_MS);
+    }, 0);
+  }
+
+  public void submit(SessionRow row) {
+    scheduler.postDelayed(() -> enqueue(row), 0);
+  }
+
+  /**
+   * Start sending through sink (null: hold rows until one is set). A new sink is tried soon,
+   * without waiting out a backoff meant for the old one.
+   */
+  public void setSink(Sink sink) {
+    scheduler.postDelayed(() -> {
+      this.sink = sink;
+      failureStreak = 0;
+      synchronized (this) {
+        needsToken = false;
+      }
+      if (sink != null && !pending.isEmpty()) {
+        scheduler.cancel(flushTask);
+        flushScheduled = false;
+        scheduleFlush(0);
+      }
+    }, 0);
+  }
+
+  /** Drop everything pending (the user signed out; rows must not go out under someone else) */
+  public void clear() {
+    scheduler.postDelayed(() -> {
+      pending.clear();
+      synchronized (this) {
+        pendingCount = 0;
+      }
+      compact();
+    }, 0);
+  }
+
+  /** Send now instead of at the end of the window, e.g. before the process is likely to go */
+  public void flushSoon() {
+    scheduler.postDelayed(() -> {
+      if (!pending.isEmpty() && failureStreak == 0) {
+        scheduler.cancel(flushTask);
+        flushScheduled = false;
+        scheduleFlush(0);
+      }
+    }, 0);
+  }
+
+  public synchronized Stats stats() {
+    return new Stats(pendingCount, sentRows, sentBatches, coalesced, dropped, failures, nextFlushAt, lastError,
+      needsToken);
+  }
+
+  private void enqueue(SessionRow row) {
+    load();
+    SessionRow previous = pending.remove(row.key());
+    SessionRow merged = previous != null ? previous.merge(row) : row;
+    pending.put(merged.key(), merged);
+    boolean evicted = evictOverflow();
+    synchronized (this) {
+      if (previous != null) coalesced++;
+      pendingCount = pending.size();
+    }
+    if (evicted || journalRecords + 1 > Math.max(COMPACT_MIN_RECORDS, COMPACT_FACTOR * pending.size())) {
+      // Evicted rows must not come back on the next load, and superseded records only cost space
+      compact();
+    } else {
+      append(merged);
+    }
+    scheduleFlush(FLUSH_WINDOW_MS);
+  }
+
+  private void flush() {
+    if (pending.isEmpty()) return;
+    if (sink == null) return; // held until credentials arrive; setSink() reschedules
+    synchronized (this) {
+      if (needsToken) return; // the same credentials would be refused again
+    }
+    List<SessionRow> batch = new ArrayList<>(Math.min(pending.size(), MAX_BATCH));
+    for (SessionRow row : pending.values()) {
+      if (batch.size() == MAX_BATCH) break;
+      batch.add(row);
+    }
+    try {
+      sink.send(batch);
+    } catch (IOException e) {
+      boolean retryable = !(e instanceof RejectedException) || ((RejectedException) e).retryable;
+      synchronized (this) {
+        failures++;
+        lastError = e.getMessage();
+      }
+      TraceLog.w(TraceLog.UPLOAD_FAILED, e.getMessage());
+      if (e instanceof RejectedException && ((RejectedException) e).status == RejectedException.UNAUTHORIZED) {
+        // Retrying cannot help: hold the rows until setSink() brings a fresh token
+        synchronized (this) {
+          needsToken = true;
+        }
+        return;
+      }
+      if (retryable) {
+        failureStreak++;
+        scheduleFlush(backoffMs());
+        return;
+      }
+      // The backend refuses these rows as they are: drop them rather than block the queue
+      synchronized (this) {
+        dropped += batch.size();
+      }
+      remove(batch);
+      scheduleFlush(0);
+      return;
+    }
+    failureStreak = 0;
+    synchronized (this) {
+      sentRows += batch.size();
+      sentBatches++;
+      lastError = null;
+    }
+    remove(batch);
+    TraceLog.d(TraceLog.UPLOAD_SENT, batch.size(), pending.size());
+    // The rest of a backlog goes out in the same wakeup
+    if (!pending.isEmpty()) scheduleFlush(0);
+  }
+
+  // Over MAX_PENDING: drop the oldest tenth at once, so a full queue that is held rewrites the
+  // journal once per MAX_PENDING / 10 new sessions rather than on every one. True when any went.
+  private boolean evictOverflow() {
+    if (pending.size() <= MAX_PENDING) return false;
+    int overflow = pending.size() - (MAX_PENDING - MAX_PENDING / 10);
+    for (Iterator<SessionRow> it = pending.values().iterator(); overflow > 0 && it.hasNext(); overflow--) {
+      it.next();
+      it.remove();
+      synchronized (this) {
+        dropped++;
+      }
+    }
+    return true;
+  }
+
+  // Take out sent rows unless the session was committed again meanwhile
+  private void remove(List<SessionRow> batch) {
+    for (SessionRow row : batch) {
+      if (pending.get(row.key()) == row) pending.remove(row.key());
+    }
+    synchronized (this) {
+      pendingCount = pending.size();
+    }
+    compact();
+  }
+
+  private void scheduleFlush(long delayMs) {
+    if (flushScheduled) return;
+    flushScheduled = true;
+    synchronized (this) {
+      nextFlushAt = clock.currentTimeMillis() + delayMs;
+    }
+    scheduler.postDelayed(flushTask, delayMs);
+  }
+
+  private long backoffMs() {
+    long base = MIN_BACKOFF_MS << Math.min(failureStreak - 1, 6);
+    long capped = Math.min(base, MAX_BACKOFF_MS);
+    // +-20% so devices that failed together do not retry together
+    return capped + (long) (capped * 0.4 * (jitter.nextDouble() - 0.5));
+  }
+
+  // Replay the journal once: later records of a session replace earlier ones
+  private void load() {
+    if (loaded) return;
+    loaded = true;
+    if (!journal.exists()) return;
+    boolean torn = false;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) {
+        throw new IOException("Not an upload journal");
+      }
+      while (true) {
+        SessionRow row;
+        try {
+          row = SessionRow.read(in);
+        } catch (EOFException e) {
+          // Clean end, or a record cut short by process death
+          break;
+        }
+        // A later record of a session replaces it and moves it to the back, as enqueue does
+        pending.remove(row.key());
+        pending.put(row.key(), row);
+        journalRecords++;
+      }
+    } catch (IOException e) {
+      torn = true;
+      TraceLog.w(TraceLog.UPLOAD_FAILED, "journal: " + e.getMessage());
+    }
+    boolean evicted = evictOverflow();
+    synchronized (this) {
+      pendingCount = pending.size();
+    }
+    if (torn || evicted || journalRecords > Math.max(COMPACT_MIN_RECORDS, COMPACT_FACTOR * pending.size())) {
+      compact();
+    }
+  }
+
+  private void append(SessionRow row) {
+    boolean fresh = !journal.exists() || journal.length() == 0;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)))) {
+      if (fresh) writeHeader(out);
+      row.write(out);
+      journalRecords++;
+    } catch (IOException e) {
+      TraceLog.w(TraceLog.UPLOAD_FAILED, "journal: " + e.getMessage());
+    }
+  }
+
+  // Rewrite the journal with just the pending rows (temp file, then rename)
+  private void compact() {
+    File tmp = new File(journal.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      writeHeader(out);
+      for (Map.Entry<String, SessionRow> entry : pending.entrySet()) {
+        entry.getValue().write(out);
+      }
+    } catch (IOException e) {
+      TraceLog.w(TraceLog.UPLOAD_FAILED, "journal: " + e.getMessage());
+      return;
+    }
+    if (!tmp.renameTo(journal)) {
+      TraceLog.w(TraceLog.UPLOAD_FAILED, "journal: rename failed");
+      return;
+    }
+    journalRecords = pending.size();
+  }
+
+  private static void writeHeader(DataOutputStream out) throws IOException {
+    out.write(MAGIC);
+    out.writeByte(VERSION);
+  }
+}
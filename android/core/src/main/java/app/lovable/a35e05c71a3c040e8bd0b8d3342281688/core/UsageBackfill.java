@@ -0,0 +1,114 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds today's per-app foreground totals from the usage event stream when monitoring
+ * starts, so a restart does not forget the time already spent and re-fire nudges from level 1.
+ *
+ * Runs one streaming pass through a fresh ForegroundTracker (same debounce rules as live
+ * tracking) and only keeps a counter per app, so memory is bounded by the number of apps,
+ * not events. Meant for a background thread; the result is applied on the engine's thread.
+ */
+public final class UsageBackfill implements ForegroundTracker.Listener {
+
+  public static final class Result {
+    public final long fromMillis;
+    public final long untilMillis;
+    public final Map<String, Integer> secondsByPackage;
+    // Seconds per hour since fromMillis (midnight), same keys as secondsByPackage
+    public final Map<String, int[]> hourSecondsByPackage;
+    // The same intervals at minute resolution, plus the switches seen
+    public final UsageHeatmap minutes;
+    public final int totalSeconds;
+    // App still in front at untilMillis (already counted up to untilMillis), or null
+    public final String openPackage;
+
+    Result(long fromMillis, long untilMillis, Map<String, Integer> secondsByPackage,
+           Map<String, int[]> hourSecondsByPackage, UsageHeatmap minutes, int totalSeconds, String openPackage) {
+      this.fromMillis = fromMillis;
+      this.untilMillis = untilMillis;
+      this.secondsByPackage = secondsByPackage;
+      this.hourSecondsByPackage = hourSecondsByPackage;
+      this.minutes = minutes;
+      this.totalSeconds = totalSeconds;
+      this.openPackage = openPackage;
+    }
+  }
+
+  private static final int HOURS = 24;
+  private static final long HOUR_MS = 60 * 60 * 1000;
+
+  // Per app: foreground millis for each hour since fromMillis
+  private final Map<String, long[]> millisByPackage = new HashMap<>();
+  private final UsageHeatmap minutes = new UsageHeatmap();
+  private final long fromMillis;
+  private String current;
+  private long currentSince;
+
+  private UsageBackfill(long fromMillis, long untilMillis) {
+    this.fromMillis = fromMillis;
+    minutes.reset(fromMillis, untilMillis);
+  }
+
+  /**
+   * Foreground time per app in [fromMillis, untilMillis)
+   */
+  public static Result run(UsageEventSource source, String ownPackage, long dwellMs, long fromMillis, long untilMillis) {
+    long startNanos = System.nanoTime();
+    UsageBackfill pass = new UsageBackfill(fromMillis, untilMillis);
+    ForegroundTracker tracker = new ForegroundTracker(source, () -> untilMillis, ownPackage);
+    tracker.setDwellMs(dwellMs);
+    tracker.replay(fromMillis, untilMillis, pass);
+    String open = pass.current;
+    pass.close(untilMillis);
+
+    Map<String, Integer> seconds = new HashMap<>();
+    Map<String, int[]> hourSeconds = new HashMap<>();
+    long totalMillis = 0;
+    for (Map.Entry<String, long[]> entry : pass.millisByPackage.entrySet()) {
+      long[] hourMillis = entry.getValue();
+      int[] hours = new int[HOURS];
+      long millis = 0;
+      for (int h = 0; h < HOURS; h++) {
+        millis += hourMillis[h];
+        hours[h] = (int) (hourMillis[h] / 1000);
+      }
+      totalMillis += millis;
+      seconds.put(entry.getKey(), (int) (millis / 1000));
+      hourSeconds.put(entry.getKey(), hours);
+    }
+    TraceLog.i(TraceLog.BACKFILL_DONE, open, seconds.size(), totalMillis / 1000,
+      (System.nanoTime() - startNanos) / 1_000_000L);
+    return new Result(fromMillis, untilMillis, seconds, hourSeconds, pass.minutes, (int) (totalMillis / 1000), open);
+  }
+
+  @Override
+  public void onSwitch(String packageName, long atMillis) {
+    close(atMillis);
+    current = packageName;
+    currentSince = atMillis;
+    if (packageName != null) {
+      minutes.open(packageName, atMillis, true);
+    }
+  }
+
+  private void close(long atMillis) {
+    if (current == null) return;
+    long[] hourMillis = millisByPackage.get(current);
+    if (hourMillis == null) {
+      hourMillis = new long[HOURS];
+      millisByPackage.put(current, hourMillis);
+    }
+    long from = Math.max(currentSince, fromMillis);
+    while (from < atMillis) {
+      int hour = (int) Math.min((from - fromMillis) / HOUR_MS, HOURS - 1);
+      long hourEnd = hour == HOURS - 1 ? atMillis : Math.min(atMillis, fromMillis + (hour + 1) * HOUR_MS);
+      hourMillis[hour] += hourEnd - from;
+      from = hourEnd;
+    }
+    minutes.add(current, currentSince, atMillis);
+    current = null;
+  }
+}
@@ -0,0 +1,40 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+/**
+ * Source of raw usage events (UsageStatsManager.queryEvents on device).
+ * Event type values are identical to android.app.usage.UsageEvents.Event so adapters pass them through.
+ */
+public interface UsageEventSource {
+  int MOVE_TO_FOREGROUND = 1; // same value as ACTIVITY_RESUMED on API 29+
+  int MOVE_TO_BACKGROUND = 2; // same value as ACTIVITY_PAUSED on API 29+
+  int SCREEN_INTERACTIVE = 15;
+  int SCREEN_NON_INTERACTIVE = 16;
+  int ACTIVITY_STOPPED = 23;
+
+  interface Visitor {
+    void onEvent(String packageName, int eventType, long timestamp);
+  }
+
+  /**
+   * Stream all events in [begin, end) to the visitor in timestamp order.
+   * Returns the number of events decoded.
+   */
+  int queryEvents(long begin, long end, Visitor visitor);
+
+  /**
+   * A source that can also run a query off the caller's thread (BoundedEventSource on device)
+   */
+  interface Async extends UsageEventSource {
+    /**
+     * Start [begin, end) in the background. Once it completes, the events are streamed to the
+     * visitor and then done is called, both on scheduler's thread. Returns false, querying
+     * nothing, while an earlier query is still running.
+     */
+    boolean queryAsync(long begin, long end, Scheduler scheduler, Visitor visitor, Completion done);
+  }
+
+  interface Completion {
+    /** error is null on success; on failure nothing was streamed */
+    void onComplete(int decoded, RuntimeException error);
+  }
+}
@@ -0,0 +1,195 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Today's foreground seconds per minute of the day (1440 one-byte slots, 0..60), per app and
+ * overall, plus how many app switches started in each minute. Written incrementally as the
+ * engine closes foreground intervals; read from other threads as copies, with the interval
+ * still running counted up to the time of the read.
+ *
+ * A slot is a byte because a minute never holds more than 60 seconds of foreground, so a day
+ * costs 1440 bytes per app that was used.
+ */
+public final class UsageHeatmap {
+  public static final int SLOTS = 24 * 60;
+  private static final long MINUTE_MS = 60 * 1000;
+
+  private final Map<String, byte[]> byPackage = new HashMap<>();
+  private final byte[] global = new byte[SLOTS];
+  private final byte[] switches = new byte[SLOTS];
+  private long dayStartMillis;
+  private long dayEndMillis;
+
+  // Interval still running: counted on read, recorded when it closes
+  private String openPackage;
+  private long openSince;
+
+  /**
+   * Clear everything and start counting the day [dayStartMillis, dayEndMillis)
+   */
+  public synchronized void reset(long dayStartMillis, long dayEndMillis) {
+    byPackage.clear();
+    Arrays.fill(global, (byte) 0);
+    Arrays.fill(switches, (byte) 0);
+    this.dayStartMillis = dayStartMillis;
+    this.dayEndMillis = dayEndMillis;
+    openPackage = null;
+  }
+
+  public synchronized long getDayStartMillis() {
+    return dayStartMillis;
+  }
+
+  /**
+   * packageName is in the foreground since sinceMillis; switched counts it as an app switch
+   * (false when a running session only carries over into a new day)
+   */
+  public synchronized void open(String packageName, long sinceMillis, boolean switched) {
+    openPackage = packageName;
+    openSince = sinceMillis;
+    int slot = slotOf(sinceMillis);
+    if (switched && slot >= 0 && switches[slot] != Byte.MAX_VALUE) {
+      switches[slot]++;
+    }
+  }
+
+  /**
+   * Record a closed interval; parts outside today are dropped. Ends the open interval if it
+   * is this one.
+   */
+  public synchronized void add(String packageName, long startMillis, long endMillis) {
+    if (packageName.equals(openPackage) && startMillis == openSince) {
+      openPackage = null;
+    }
+    long from = Math.max(startMillis, dayStartMillis);
+    long to = Math.min(endMillis, dayEndMillis);
+    if (from >= to) return;
+    byte[] slots = byPackage.get(packageName);
+    if (slots == null) {
+      slots = new byte[SLOTS];
+      byPackage.put(packageName, slots);
+    }
+    spread(slots, from, to);
+    spread(global, from, to);
+  }
+
+  /**
+   * Add other's closed intervals and switches, e.g. a startup backfill of the same day
+   */
+  public void merge(UsageHeatmap other) {
+    Map<String, byte[]> slotsByPackage = new HashMap<>();
+    byte[] otherSwitches;
+    synchronized (other) {
+      for (Map.Entry<String, byte[]> entry : other.byPackage.entrySet()) {
+        slotsByPackage.put(entry.getKey(), entry.getValue().clone());
+      }
+      otherSwitches = other.switches.clone();
+    }
+    synchronized (this) {
+      for (Map.Entry<String, byte[]> entry : slotsByPackage.entrySet()) {
+        byte[] slots = byPackage.get(entry.getKey());
+        if (slots == null) {
+          slots = new byte[SLOTS];
+          byPackage.put(entry.getKey(), slots);
+        }
+        addSlots(slots, entry.getValue(), 60);
+        addSlots(global, entry.getValue(), 60);
+      }
+      addSlots(switches, otherSwitches, Byte.MAX_VALUE);
+    }
+  }
+
+  /**
+   * Apps with any time today
+   */
+  public synchronized String[] getPackages() {
+    boolean openCounts = openPackage != null && !byPackage.containsKey(openPackage);
+    String[] packages = byPackage.keySet().toArray(new String[byPackage.size() + (openCounts ? 1 : 0)]);
+    if (openCounts) {
+      packages[packages.length - 1] = openPackage;
+    }
+    return packages;
+  }
+
+  /**
+   * Copy of one app's slots (null: all apps) including the open interval up to nowMillis;
+   * all zeros for an app not used today
+   */
+  public synchronized byte[] snapshot(String packageName, long nowMillis) {
+    byte[] source = packageName == null ? global : byPackage.get(packageName);
+    byte[] copy = source != null ? source.clone() : new byte[SLOTS];
+    if (openPackage != null && (packageName == null || packageName.equals(openPackage))) {
+      long from = Math.max(openSince, dayStartMillis);
+      long to = Math.min(nowMillis, dayEndMillis);
+      if (from < to) spread(copy, from, to);
+    }
+    return copy;
+  }
+
+  /**
+   * Copy of the switch counts per minute
+   */
+  public synchronized byte[] snapshotSwitches() {
+    return switches.clone();
+  }
+
+  /**
+   * Sum of slots [fromMinute, toMinute) of a snapshot
+   */
+  public static int sum(byte[] slots, int fromMinute, int toMinute) {
+    int total = 0;
+    for (int i = Math.max(0, fromMinute); i < Math.min(toMinute, slots.length); i++) {
+      total += slots[i];
+    }
+    return total;
+  }
+
+  /**
+   * Largest sum over any windowMinutes consecutive slots of a snapshot, as {startMinute, sum}
+   */
+  public static int[] peakWindow(byte[] slots, int windowMinutes) {
+    int window = 0;
+    int best = 0;
+    int bestStart = 0;
+    for (int i = 0; i < slots.length; i++) {
+      window += slots[i];
+      if (i >= windowMinutes) {
+        window -= slots[i - windowMinutes];
+      }
+      if (window > best) {
+        best = window;
+        bestStart = Math.max(0, i - windowMinutes + 1);
+      }
+    }
+    return new int[] {bestStart, best};
+  }
+
+  private static void addSlots(byte[] into, byte[] from, int cap) {
+    for (int i = 0; i < SLOTS; i++) {
+      if (from[i] != 0) {
+        into[i] = (byte) Math.min(into[i] + from[i], cap);
+      }
+    }
+  }
+
+  private int slotOf(long millis) {
+    if (millis < dayStartMillis || millis >= dayEndMillis) return -1;
+    return (int) Math.min((millis - dayStartMillis) / MINUTE_MS, SLOTS - 1);
+  }
+
+  // Add [from, to) (already clamped to today) to the minute slots; whole seconds are taken at
+  // the boundaries so back-to-back intervals add up exactly. A DST day's extra hour folds into
+  // the last minute, capped at 60s like every slot.
+  private void spread(byte[] slots, long from, long to) {
+    while (from < to) {
+      int slot = slotOf(from);
+      long slotEnd = slot == SLOTS - 1 ? to : Math.min(to, dayStartMillis + (slot + 1) * MINUTE_MS);
+      int seconds = (int) (slotEnd / 1000 - from / 1000) + slots[slot];
+      slots[slot] = (byte) Math.min(seconds, 60);
+      from = slotEnd;
+    }
+  }
+}
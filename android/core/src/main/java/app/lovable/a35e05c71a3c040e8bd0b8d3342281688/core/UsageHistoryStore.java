@@ -0,0 +1,427 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Append-only history of completed days as per-app, per-hour foreground seconds.
+ *
+ * Three files in one directory:
+ *   usage_history.dat  magic "FFUH", version, then one record per day:
+ *                      app count, then per app (ascending package id): id delta, 24-bit
+ *                      mask of non-zero hours, seconds for each set hour (all varints)
+ *   usage_history.idx  magic "FFUI", version, then fixed 16-byte entries
+ *                      (int epochDay, long offset, int length) in ascending day order
+ *   usage_history.pkg  package names, one per line; the line number is the package id
+ *
+ * Names are written before the record and the index entry last, so a crash at any point
+ * leaves a readable store; open() trims whatever the index does not cover. Range queries
+ * binary-search the index on disk and decode only the requested days.
+ *
+ * The package table is the only part held in memory. It is a cache: TRIM_MODERATE and above
+ * drop it, and the next append or query reads it back from usage_history.pkg.
+ */
+public final class UsageHistoryStore implements CacheRegistry.Cache {
+  public static final int HOURS = 24;
+  private static final byte[] DATA_MAGIC = {'F', 'F', 'U', 'H'};
+  private static final byte[] INDEX_MAGIC = {'F', 'F', 'U', 'I'};
+  private static final int VERSION = 1;
+  private static final int HEADER = 5;
+  private static final int ENTRY = 16;
+  private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+  /** Receives one app-day at a time; hourSeconds is reused between calls */
+  public interface Visitor {
+    void onAppDay(int epochDay, String packageName, int[] hourSeconds);
+  }
+
+  private final File dataFile;
+  private final File indexFile;
+  private final File namesFile;
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> ids = new HashMap<>();
+  private boolean namesLoaded;
+  private long namesBytes;
+  private int entries;
+  private int lastDay = Integer.MIN_VALUE;
+
+  private UsageHistoryStore(File directory) {
+    this.dataFile = new File(directory, "usage_history.dat");
+    this.indexFile = new File(directory, "usage_history.idx");
+    this.namesFile = new File(directory, "usage_history.pkg");
+  }
+
+  /**
+   * Open (or create) the store in directory, repairing a torn tail from an interrupted append
+   */
+  public static UsageHistoryStore open(File directory) throws IOException {
+    UsageHistoryStore store = new UsageHistoryStore(directory);
+    store.load();
+    return store;
+  }
+
+  public synchronized int getDayCount() {
+    return entries;
+  }
+
+  /** Most recent stored day, or Integer.MIN_VALUE when empty */
+  public synchronized int getLastDay() {
+    return lastDay;
+  }
+
+  public synchronized int getFirstDay() throws IOException {
+    if (entries == 0) return Integer.MIN_VALUE;
+    try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+      return dayAt(index, 0);
+    }
+  }
+
+  public synchronized long getSizeBytes() {
+    return dataFile.length() + indexFile.length() + namesFile.length();
+  }
+
+  /**
+   * Append a completed day. Days must arrive in order; a day at or before the last stored
+   * one is ignored (e.g. the same rollover replayed after a crash).
+   */
+  public synchronized boolean append(int epochDay, Map<String, int[]> hourSecondsByPackage) throws IOException {
+    if (epochDay <= lastDay) return false;
+    ensureNames();
+
+    // New package names first, so the record never references an unwritten id
+    StringBuilder newNames = null;
+    int[] appIds = new int[hourSecondsByPackage.size()];
+    int[][] hours = new int[appIds.length][];
+    int count = 0;
+    for (Map.Entry<String, int[]> entry : hourSecondsByPackage.entrySet()) {
+      if (isEmpty(entry.getValue())) continue;
+      Integer id = ids.get(entry.getKey());
+      if (id == null) {
+        id = names.size();
+        addName(entry.getKey());
+        if (newNames == null) newNames = new StringBuilder();
+        newNames.append(entry.getKey()).append('\n');
+      }
+      appIds[count] = id;
+      hours[count] = entry.getValue();
+      count++;
+    }
+    if (newNames != null) {
+      try (FileOutputStream out = new FileOutputStream(namesFile, true)) {
+        out.write(newNames.toString().getBytes(StandardCharsets.UTF_8));
+        out.getFD().sync();
+      } catch (IOException e) {
+        // The new ids never reached disk: read the table back before handing out more
+        clearNames();
+        throw e;
+      }
+    }
+
+    // Record: apps in ascending id order so ids delta-encode to small varints
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) order[i] = i;
+    final int[] sortIds = appIds;
+    Arrays.sort(order, (a, b) -> Integer.compare(sortIds[a], sortIds[b]));
+    VarintBuffer record = new VarintBuffer(16 + count * 16);
+    record.put(count);
+    int previousId = 0;
+    for (int i = 0; i < count; i++) {
+      int app = order[i];
+      record.put(appIds[app] - previousId);
+      previousId = appIds[app];
+      int[] h = hours[app];
+      int mask = 0;
+      for (int hour = 0; hour < HOURS && hour < h.length; hour++) {
+        if (h[hour] > 0) mask |= 1 << hour;
+      }
+      record.put(mask);
+      for (int hour = 0; hour < HOURS && hour < h.length; hour++) {
+        if (h[hour] > 0) record.put(h[hour]);
+      }
+    }
+
+    long offset;
+    try (RandomAccessFile data = new RandomAccessFile(dataFile, "rw")) {
+      offset = data.length();
+      data.seek(offset);
+      data.write(record.bytes, 0, record.size);
+      data.getFD().sync();
+    }
+    try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+      index.seek(HEADER + (long) entries * ENTRY);
+      index.writeInt(epochDay);
+      index.writeLong(offset);
+      index.writeInt(record.size);
+      index.getFD().sync();
+    }
+    entries++;
+    lastDay = epochDay;
+    return true;
+  }
+
+  /**
+   * Stream every stored app-day with fromDay <= day <= toDay, oldest first
+   */
+  public synchronized int query(int fromDay, int toDay, Visitor visitor) throws IOException {
+    if (entries == 0 || fromDay > toDay) return 0;
+    ensureNames();
+    int visited = 0;
+    try (RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+         RandomAccessFile data = new RandomAccessFile(dataFile, "r")) {
+      // First entry with day >= fromDay
+      int lo = 0;
+      int hi = entries;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (dayAt(index, mid) < fromDay) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      int[] hourSeconds = new int[HOURS];
+      byte[] buffer = new byte[256];
+      for (int i = lo; i < entries; i++) {
+        index.seek(HEADER + (long) i * ENTRY);
+        int day = index.readInt();
+        if (day > toDay) break;
+        long offset = index.readLong();
+        int length = index.readInt();
+        if (buffer.length < length) buffer = new byte[Math.max(length, buffer.length * 2)];
+        data.seek(offset);
+        data.readFully(buffer, 0, length);
+        visited += decode(day, buffer, length, hourSeconds, visitor);
+      }
+    }
+    return visited;
+  }
+
+  @Override
+  public synchronized int entries() {
+    return names.size();
+  }
+
+  @Override
+  public synchronized long sizeBytes() {
+    return namesBytes;
+  }
+
+  @Override
+  public synchronized void trim(int level) {
+    if (level < CacheRegistry.TRIM_MODERATE) return;
+    clearNames();
+  }
+
+  private int decode(int day, byte[] bytes, int length, int[] hourSeconds, Visitor visitor) throws IOException {
+    VarintReader in = new VarintReader(bytes, length);
+    int count = in.next();
+    int id = 0;
+    for (int i = 0; i < count; i++) {
+      id += in.next();
+      int mask = in.next();
+      for (int hour = 0; hour < HOURS; hour++) {
+        hourSeconds[hour] = (mask & (1 << hour)) != 0 ? in.next() : 0;
+      }
+      if (id < 0 || id >= names.size()) throw new IOException("Bad package id " + id + " on day " + day);
+      visitor.onAppDay(day, names.get(id), hourSeconds);
+    }
+    return count;
+  }
+
+  private void load() throws IOException {
+    File directory = dataFile.getParentFile();
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    ensureHeader(dataFile, DATA_MAGIC);
+    ensureHeader(indexFile, INDEX_MAGIC);
+    loadNames();
+
+    try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+         RandomAccessFile data = new RandomAccessFile(dataFile, "rw")) {
+      int count = (int) ((index.length() - HEADER) / ENTRY);
+      long dataEnd = HEADER;
+      // Drop entries whose record did not make it to disk
+      while (count > 0) {
+        index.seek(HEADER + (long) (count - 1) * ENTRY + 4);
+        long end = index.readLong() + index.readInt();
+        if (end <= data.length()) {
+          dataEnd = end;
+          break;
+        }
+        count--;
+      }
+      index.setLength(HEADER + (long) count * ENTRY);
+      data.setLength(dataEnd);
+      entries = count;
+      lastDay = count == 0 ? Integer.MIN_VALUE : dayAt(index, count - 1);
+    }
+  }
+
+  private void ensureNames() throws IOException {
+    if (!namesLoaded) loadNames();
+  }
+
+  // Marked loaded only once the whole table is in; a failed read leaves it empty and unloaded,
+  // so no id already on disk can be handed out again
+  private void loadNames() throws IOException {
+    clearNames();
+    if (!namesFile.exists()) {
+      namesLoaded = true;
+      return;
+    }
+    try (RandomAccessFile file = new RandomAccessFile(namesFile, "rw")) {
+      byte[] bytes = new byte[(int) file.length()];
+      file.readFully(bytes);
+      // A name without its newline was cut off mid-write
+      int complete = bytes.length;
+      while (complete > 0 && bytes[complete - 1] != '\n') complete--;
+      if (complete != bytes.length) file.setLength(complete);
+      int start = 0;
+      for (int i = 0; i < complete; i++) {
+        if (bytes[i] == '\n') {
+          addName(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+          start = i + 1;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      clearNames();
+      throw e;
+    }
+    namesLoaded = true;
+  }
+
+  private void clearNames() {
+    names.clear();
+    ids.clear();
+    namesBytes = 0;
+    namesLoaded = false;
+  }
+
+
+  private void addName(String name) {
+    ids.put(name, names.size());
+    names.add(name);
+    // The string is shared; the map entry and boxed id are not
+    namesBytes += CacheRegistry.stringBytes(name) + 56;
+  }
+
+  private static void ensureHeader(File file, byte[] magic) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      if (raf.length() >= HEADER) {
+        byte[] header = new byte[HEADER];
+        raf.readFully(header);
+        for (int i = 0; i < magic.length; i++) {
+          if (header[i] != magic[i]) throw new IOException("Not a usage history file: " + file);
+        }
+        if (header[4] != VERSION) throw new IOException("Unsupported usage history version " + header[4]);
+        return;
+      }
+      raf.setLength(0);
+      raf.write(magic);
+      raf.write(VERSION);
+    }
+  }
+
+  private static int dayAt(RandomAccessFile index, int entry) throws IOException {
+    index.seek(HEADER + (long) entry * ENTRY);
+    return index.readInt();
+  }
+
+  private static boolean isEmpty(int[] hours) {
+    if (hours == null) return true;
+    for (int s : hours) {
+      if (s > 0) return false;
+    }
+    return true;
+  }
+
+  /** Days since 1970-01-01 of the local calendar date containing localMillis */
+  public static int epochDay(long localMillis) {
+    Calendar local = Calendar.getInstance();
+    local.setTimeInMillis(localMillis);
+    return epochDay(local.get(Calendar.YEAR), local.get(Calendar.MONTH) + 1, local.get(Calendar.DAY_OF_MONTH));
+  }
+
+  public static int epochDay(int year, int month, int dayOfMonth) {
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    utc.clear();
+    utc.set(year, month - 1, dayOfMonth);
+    return (int) Math.floorDiv(utc.getTimeInMillis(), DAY_MS);
+  }
+
+  /** Local midnight at the start of epochDay */
+  public static long startMillis(int epochDay) {
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    utc.setTimeInMillis(epochDay * DAY_MS);
+    Calendar local = Calendar.getInstance();
+    local.clear();
+    local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH));
+    return local.getTimeInMillis();
+  }
+
+  /** Parse "yyyy-MM-dd" */
+  public static int epochDay(String date) {
+    String[] parts = date.split("-");
+    if (parts.length != 3) throw new IllegalArgumentException("Expected yyyy-MM-dd: " + date);
+    return epochDay(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+  }
+
+  public static String formatDay(int epochDay) {
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    utc.setTimeInMillis(epochDay * DAY_MS);
+    return String.format("%04d-%02d-%02d",
+      utc.get(Calendar.YEAR), utc.get(Calendar.MONTH) + 1, utc.get(Calendar.DAY_OF_MONTH));
+  }
+
+  private static final class VarintBuffer {
+    byte[] bytes;
+    int size;
+
+    VarintBuffer(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    void put(int value) {
+      if (bytes.length - size < 5) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      while ((value & ~0x7f) != 0) {
+        bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+  }
+
+  private static final class VarintReader {
+    private final byte[] bytes;
+    private final int length;
+    private int position;
+
+    VarintReader(byte[] bytes, int length) {
+      this.bytes = bytes;
+      this.length = length;
+    }
+
+    int next() throws IOException {
+      int value = 0;
+      int shift = 0;
+      while (true) {
+        if (position >= length || shift > 28) throw new IOException("Truncated usage history record");
+        int b = bytes[position++];
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) return value;
+        shift += 7;
+      }
+    }
+  }
+}
@@ -0,0 +1,320 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A recorded UsageEvents stream held in parallel arrays, replayable as a UsageEventSource.
+ *
+ * File format (all integers are unsigned LEB128 varints, signed values zigzag-encoded):
+ *   magic "FFUT", version byte, start timestamp
+ *   then per event: package ref, event type, zigzag(timestamp - previous timestamp)
+ * A package ref of 0 means no package (screen events), 1..n refers to the n-th package seen,
+ * and n+1 introduces a new package followed by its UTF-8 length and bytes.
+ */
+public final class UsageTrace implements UsageEventSource {
+  private static final byte[] MAGIC = {'F', 'F', 'U', 'T'};
+  private static final int VERSION = 1;
+
+  private final long[] times;
+  private final int[] types;
+  private final int[] packageRefs;
+  private final String[] packages;
+  private final int size;
+
+  private UsageTrace(long[] times, int[] types, int[] packageRefs, String[] packages, int size) {
+    this.times = times;
+    this.types = types;
+    this.packageRefs = packageRefs;
+    this.packages = packages;
+    this.size = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long time(int index) {
+    return times[index];
+  }
+
+  public int type(int index) {
+    return types[index];
+  }
+
+  /** Package of the event, or null for events without one */
+  public String packageName(int index) {
+    int ref = packageRefs[index];
+    return ref == 0 ? null : packages[ref - 1];
+  }
+
+  public int packageCount() {
+    return packages.length;
+  }
+
+  public long startTime() {
+    return size == 0 ? 0 : times[0];
+  }
+
+  public long endTime() {
+    return size == 0 ? 0 : times[size - 1];
+  }
+
+  @Override
+  public int queryEvents(long begin, long end, Visitor visitor) {
+    int i = firstIndexAtOrAfter(begin);
+    int decoded = 0;
+    for (; i < size && times[i] < end; i++) {
+      visitor.onEvent(packageName(i), types[i], times[i]);
+      decoded++;
+    }
+    return decoded;
+  }
+
+  public int firstIndexAtOrAfter(long timestamp) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (times[mid] < timestamp) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    Writer writer = new Writer(out);
+    for (int i = 0; i < size; i++) {
+      writer.write(packageName(i), types[i], times[i]);
+    }
+    writer.flush();
+  }
+
+  public static UsageTrace read(InputStream raw) throws IOException {
+    InputStream in = raw instanceof BufferedInputStream ? raw : new BufferedInputStream(raw);
+    for (byte b : MAGIC) {
+      if (in.read() != b) throw new IOException("Not a usage trace");
+    }
+    int version = in.read();
+    if (version != VERSION) throw new IOException("Unsupported usage trace version " + version);
+
+    Builder builder = new Builder();
+    String[] table = new String[16];
+    int tableSize = 0;
+    long time = readVarLong(in);
+    while (true) {
+      int first = in.read();
+      if (first < 0) break;
+      int ref = (int) readVarLong(in, first);
+      String pkg = null;
+      if (ref == tableSize + 1) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        readFully(in, bytes);
+        if (tableSize == table.length) table = Arrays.copyOf(table, tableSize * 2);
+        table[tableSize++] = new String(bytes, StandardCharsets.UTF_8);
+        pkg = table[ref - 1];
+      } else if (ref > 0) {
+        if (ref > tableSize) throw new IOException("Bad package ref " + ref);
+        pkg = table[ref - 1];
+      }
+      int type = (int) readVarLong(in);
+      long zigzag = readVarLong(in);
+      time += (zigzag >>> 1) ^ -(zigzag & 1);
+      builder.add(pkg, type, time);
+    }
+    return builder.build();
+  }
+
+  private static long readVarLong(InputStream in) throws IOException {
+    int first = in.read();
+    if (first < 0) throw new EOFException("Truncated usage trace");
+    return readVarLong(in, first);
+  }
+
+  private static long readVarLong(InputStream in, int first) throws IOException {
+    long value = first & 0x7f;
+    int shift = 7;
+    int b = first;
+    while ((b & 0x80) != 0) {
+      b = in.read();
+      if (b < 0) throw new EOFException("Truncated usage trace");
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    }
+    return value;
+  }
+
+  private static void readFully(InputStream in, byte[] bytes) throws IOException {
+    int off = 0;
+    while (off < bytes.length) {
+      int n = in.read(bytes, off, bytes.length - off);
+      if (n < 0) throw new EOFException("Truncated usage trace");
+      off += n;
+    }
+  }
+
+  /**
+   * Streams events to an OutputStream in the trace format; also usable directly as a
+   * visitor over a live UsageEventSource. Call flush() when done.
+   */
+  public static final class Writer implements Visitor {
+    private final OutputStream out;
+    private final Map<String, Integer> refs = new HashMap<>();
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private boolean started;
+    private long lastTime;
+    private int count;
+
+    public Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public void write(String packageName, int eventType, long timestamp) throws IOException {
+      if (!started) {
+        ensure(MAGIC.length + 1 + 10);
+        for (byte b : MAGIC) buffer[position++] = b;
+        buffer[position++] = VERSION;
+        putVarLong(timestamp);
+        lastTime = timestamp;
+        started = true;
+      }
+      if (packageName == null) {
+        ensure(30);
+        putVarLong(0);
+      } else {
+        Integer ref = refs.get(packageName);
+        if (ref != null) {
+          ensure(30);
+          putVarLong(ref);
+        } else {
+          int newRef = refs.size() + 1;
+          refs.put(packageName, newRef);
+          byte[] bytes = packageName.getBytes(StandardCharsets.UTF_8);
+          ensure(40 + bytes.length);
+          putVarLong(newRef);
+          putVarLong(bytes.length);
+          if (bytes.length > buffer.length - position) {
+            drain();
+            out.write(bytes);
+          } else {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+          }
+        }
+      }
+      long delta = timestamp - lastTime;
+      putVarLong(eventType);
+      putVarLong((delta << 1) ^ (delta >> 63));
+      lastTime = timestamp;
+      count++;
+    }
+
+    @Override
+    public void onEvent(String packageName, int eventType, long timestamp) {
+      try {
+        write(packageName, eventType, timestamp);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public void flush() throws IOException {
+      drain();
+      out.flush();
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.length - position < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+
+    private void putVarLong(long value) {
+      while ((value & ~0x7fL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+  }
+
+  /**
+   * Accumulates events (e.g. from a synthetic generator); build() orders them by timestamp
+   */
+  public static final class Builder {
+    private long[] times = new long[1024];
+    private int[] types = new int[1024];
+    private int[] refs = new int[1024];
+    private final Map<String, Integer> packageRefs = new HashMap<>();
+    private String[] packages = new String[16];
+    private int size;
+
+    public Builder add(String packageName, int eventType, long timestamp) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        types = Arrays.copyOf(types, size * 2);
+        refs = Arrays.copyOf(refs, size * 2);
+      }
+      int ref = 0;
+      if (packageName != null) {
+        Integer existing = packageRefs.get(packageName);
+        if (existing == null) {
+          ref = packageRefs.size() + 1;
+          packageRefs.put(packageName, ref);
+          if (ref > packages.length) packages = Arrays.copyOf(packages, packages.length * 2);
+          packages[ref - 1] = packageName;
+        } else {
+          ref = existing;
+        }
+      }
+      times[size] = timestamp;
+      types[size] = eventType;
+      refs[size] = ref;
+      size++;
+      return this;
+    }
+
+    public UsageTrace build() {
+      long[] sortedTimes = Arrays.copyOf(times, size);
+      int[] sortedTypes = Arrays.copyOf(types, size);
+      int[] sortedRefs = Arrays.copyOf(refs, size);
+      // UsageStatsManager occasionally reports a few events out of order; queries need them sorted
+      for (int i = 1; i < size; i++) {
+        long t = sortedTimes[i];
+        if (t >= sortedTimes[i - 1]) continue;
+        int type = sortedTypes[i];
+        int ref = sortedRefs[i];
+        int j = i - 1;
+        while (j >= 0 && sortedTimes[j] > t) {
+          sortedTimes[j + 1] = sortedTimes[j];
+          sortedTypes[j + 1] = sortedTypes[j];
+          sortedRefs[j + 1] = sortedRefs[j];
+          j--;
+        }
+        sortedTimes[j + 1] = t;
+        sortedTypes[j + 1] = type;
+        sortedRefs[j + 1] = ref;
+      }
+      return new UsageTrace(sortedTimes, sortedTypes, sortedRefs, Arrays.copyOf(packages, packageRefs.size()), size);
+    }
+  }
+}
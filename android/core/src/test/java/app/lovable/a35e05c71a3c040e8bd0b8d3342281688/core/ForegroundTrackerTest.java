@@ -0,0 +1,120 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ForegroundTrackerTest {
+  private static final long T0 = 1_700_000_000_000L;
+  private static final String OWN = "app.own";
+
+  private final List<String> switches = new ArrayList<>();
+  private final ForegroundTracker.Listener listener =
+    (packageName, atMillis) -> switches.add(packageName + "@" + (atMillis - T0));
+
+  private ManualScheduler clock;
+  private ForegroundTracker tracker;
+
+  // Events at offsets from T0; the tracker only sees those before the clock
+  private void events(Object... entries) {
+    UsageTrace.Builder trace = new UsageTrace.Builder();
+    for (int i = 0; i < entries.length; i += 3) {
+      trace.add((String) entries[i], (Integer) entries[i + 1], T0 + (Integer) entries[i + 2]);
+    }
+    clock = new ManualScheduler(T0);
+    tracker = new ForegroundTracker(trace.build(), clock, OWN);
+  }
+
+  private void pollAt(long offset) {
+    clock.advance(T0 + offset - clock.currentTimeMillis());
+    tracker.poll(listener);
+  }
+
+  @Test
+  public void commitsOnlyOnceTheDwellHasPassed() {
+    events("insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    pollAt(1500);
+    assertTrue(switches.isEmpty());
+    assertNull(tracker.getCommitted());
+
+    pollAt(1000 + ForegroundTracker.DEFAULT_DWELL_MS);
+    assertEquals("[insta@1000]", switches.toString());
+    assertEquals("insta", tracker.getCommitted());
+  }
+
+  @Test
+  public void reportsSwitchesAtTheirEventTime() {
+    events(
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      "tiktok", UsageEventSource.MOVE_TO_FOREGROUND, 4000,
+      "insta", UsageEventSource.ACTIVITY_STOPPED, 4100);
+    pollAt(10_000);
+    assertEquals("[insta@1000, tiktok@4000]", switches.toString());
+  }
+
+  @Test
+  public void dropsFlipsShorterThanTheDwell() {
+    events(
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      "tiktok", UsageEventSource.MOVE_TO_FOREGROUND, 3000,
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 3300);
+    long rejected = MonitoringMetrics.get().count(MonitoringMetrics.STABILIZATION_REJECTED);
+    pollAt(10_000);
+    assertEquals("[insta@1000]", switches.toString());
+    assertEquals(rejected + 1, MonitoringMetrics.get().count(MonitoringMetrics.STABILIZATION_REJECTED));
+  }
+
+  @Test
+  public void customDwellApplies() {
+    events(
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      "tiktok", UsageEventSource.MOVE_TO_FOREGROUND, 3000,
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 3300);
+    tracker.setDwellMs(200);
+    pollAt(10_000);
+    assertEquals("[insta@1000, tiktok@3000, insta@3300]", switches.toString());
+  }
+
+  @Test
+  public void launcherScreenOffAndBackgroundMeanNoApp() {
+    events(
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      "com.android.launcher3", UsageEventSource.MOVE_TO_FOREGROUND, 3000,
+      "tiktok", UsageEventSource.MOVE_TO_FOREGROUND, 5000,
+      null, UsageEventSource.SCREEN_NON_INTERACTIVE, 7000,
+      OWN, UsageEventSource.MOVE_TO_FOREGROUND, 9000,
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 11_000,
+      "insta", UsageEventSource.MOVE_TO_BACKGROUND, 13_000);
+    // The first poll only looks back INITIAL_WINDOW_MS; later ones continue from the cursor
+    pollAt(500);
+    pollAt(20_000);
+    assertEquals("[insta@1000, null@3000, tiktok@5000, null@7000, insta@11000, null@13000]",
+      switches.toString());
+  }
+
+  @Test
+  public void overlappingPollsDoNotReplayEvents() {
+    events(
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      "tiktok", UsageEventSource.MOVE_TO_FOREGROUND, 2000,
+      "insta", UsageEventSource.MOVE_TO_FOREGROUND, 2000);
+    pollAt(2001);
+    long rejected = MonitoringMetrics.get().count(MonitoringMetrics.STABILIZATION_REJECTED);
+    // Both events at 2000 are re-read by the next poll's overlap and must be skipped
+    pollAt(5000);
+    pollAt(8000);
+    assertEquals("[insta@1000]", switches.toString());
+    assertEquals(rejected, MonitoringMetrics.get().count(MonitoringMetrics.STABILIZATION_REJECTED));
+  }
+
+  @Test
+  public void screenOffBroadcastClearsTheForeground() {
+    events("insta", UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    pollAt(5000);
+    tracker.onScreenOff();
+    assertNull(tracker.getCommitted());
+  }
+}
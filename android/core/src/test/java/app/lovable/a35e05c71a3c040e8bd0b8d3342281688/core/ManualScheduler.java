@@ -0,0 +1,70 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler and clock for tests: time only moves through advance(), which runs every task that
+ * falls due on the way, in order, on the calling thread.
+ */
+final class ManualScheduler implements Scheduler, Clock {
+  private static final class Task {
+    final long when;
+    final Runnable runnable;
+
+    Task(long when, Runnable runnable) {
+      this.when = when;
+      this.runnable = runnable;
+    }
+  }
+
+  private final List<Task> tasks = new ArrayList<>();
+  private long now;
+
+  ManualScheduler(long startMillis) {
+    this.now = startMillis;
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return now;
+  }
+
+  @Override
+  public void postDelayed(Runnable task, long delayMillis) {
+    tasks.add(new Task(now + Math.max(0, delayMillis), task));
+  }
+
+  @Override
+  public void cancel(Runnable task) {
+    tasks.removeIf(t -> t.runnable == task);
+  }
+
+  /** Run what is due now (tasks posted with no delay) */
+  void runDue() {
+    advance(0);
+  }
+
+  /** Move the clock forward by millis, running tasks as they fall due */
+  void advance(long millis) {
+    long target = now + millis;
+    while (true) {
+      Task next = null;
+      for (Task t : tasks) {
+        if (t.when <= target && (next == null || t.when < next.when)) next = t;
+      }
+      if (next == null) break;
+      tasks.remove(next);
+      now = Math.max(now, next.when);
+      next.runnable.run();
+    }
+    now = target;
+  }
+
+  /** Delay until the earliest pending task, or -1 if none */
+  long nextDelay() {
+    long earliest = Long.MAX_VALUE;
+    for (Task t : tasks) earliest = Math.min(earliest, t.when);
+    return earliest == Long.MAX_VALUE ? -1 : earliest - now;
+  }
+}
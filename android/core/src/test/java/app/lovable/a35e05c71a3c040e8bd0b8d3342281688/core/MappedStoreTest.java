@@ -0,0 +1,123 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedStoreTest {
+  private File dir;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("store").toFile();
+    file = new File(dir, "state.kv");
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  @Test
+  public void valuesSurviveReopening() throws IOException {
+    MappedStore store = MappedStore.open(file);
+    KeyValueStore prefs = store.namespace("prefs");
+    prefs.putInt("count", 3);
+    prefs.putString("name", "Flow \u00e9");
+    prefs.putString("gone", "x");
+    prefs.remove("gone");
+    store.namespace("other").putInt("count", 7);
+
+    MappedStore reopened = MappedStore.open(file);
+    KeyValueStore again = reopened.namespace("prefs");
+    assertEquals(3, again.getInt("count", -1));
+    assertEquals("Flow \u00e9", again.getString("name", null));
+    assertNull(again.getString("gone", null));
+    assertEquals(7, reopened.namespace("other").getInt("count", -1));
+    assertEquals(3, reopened.size());
+  }
+
+  @Test
+  public void typesDoNotLeakAcrossGetters() throws IOException {
+    KeyValueStore prefs = MappedStore.open(file).namespace("prefs");
+    prefs.putString("n", "5");
+    assertEquals(-1, prefs.getInt("n", -1));
+    prefs.putInt("s", 5);
+    assertEquals("d", prefs.getString("s", "d"));
+  }
+
+  @Test
+  public void tornTailDropsOnlyTheLastCommit() throws IOException {
+    MappedStore store = MappedStore.open(file);
+    KeyValueStore prefs = store.namespace("prefs");
+    prefs.putInt("a", 1);
+    store.namespace("prefs").edit().putInt("b", 2).putInt("c", 3).commit();
+    int end = store.logBytes();
+
+    // Flip the last byte of the second record, as if the process died while writing it
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(end - 1);
+      int last = raf.read();
+      raf.seek(end - 1);
+      raf.write(last ^ 0xff);
+    }
+
+    MappedStore reopened = MappedStore.open(file);
+    KeyValueStore again = reopened.namespace("prefs");
+    assertEquals(1, again.getInt("a", -1));
+    // The batch is all or nothing
+    assertEquals(-1, again.getInt("b", -1));
+    assertEquals(-1, again.getInt("c", -1));
+
+    // Later commits land after the intact records and are read back
+    again.putInt("d", 4);
+    KeyValueStore third = MappedStore.open(file).namespace("prefs");
+    assertEquals(1, third.getInt("a", -1));
+    assertEquals(4, third.getInt("d", -1));
+  }
+
+  @Test
+  public void compactsWhenTheLogFills() throws IOException {
+    MappedStore store = MappedStore.open(file);
+    KeyValueStore prefs = store.namespace("prefs");
+    int writes = MappedStore.INITIAL_CAPACITY / 16;
+    for (int i = 0; i < writes; i++) prefs.putInt("k" + (i % 10), i);
+    assertTrue(store.compactions() > 0);
+    assertEquals(MappedStore.INITIAL_CAPACITY, store.capacity());
+
+    KeyValueStore again = MappedStore.open(file).namespace("prefs");
+    for (int k = 0; k < 10; k++) {
+      int lastWrite = writes - 1 - ((writes - 1 - k) % 10);
+      assertEquals(lastWrite, again.getInt("k" + k, -1));
+    }
+  }
+
+  @Test
+  public void growsForLargeValues() throws IOException {
+    MappedStore store = MappedStore.open(file);
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < MappedStore.INITIAL_CAPACITY; i++) big.append('x');
+    store.namespace("prefs").putString("big", big.toString());
+    assertTrue(store.capacity() > MappedStore.INITIAL_CAPACITY);
+    assertEquals(big.toString(), MappedStore.open(file).namespace("prefs").getString("big", null));
+  }
+
+  @Test
+  public void unreadableFileIsSetAside() throws IOException {
+    Files.write(file.toPath(), "not a store at all".getBytes("UTF-8"));
+    MappedStore store = MappedStore.open(file);
+    assertEquals(0, store.size());
+    assertTrue(new File(dir, "state.kv.corrupt").exists());
+    store.namespace("prefs").putInt("a", 1);
+    assertEquals(1, MappedStore.open(file).namespace("prefs").getInt("a", -1));
+  }
+}
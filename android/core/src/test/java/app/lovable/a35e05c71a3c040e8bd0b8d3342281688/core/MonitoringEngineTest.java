@@ -0,0 +1,242 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MonitoringEngineTest {
+  private static final String OWN = "app.own";
+  private static final String INSTA = "com.instagram.android";
+  private static final String TIKTOK = "com.zhiliaoapp.musically";
+  private static final long SECOND = 1000;
+  private static final long MINUTE = 60 * SECOND;
+
+  // What the engine told the platform, as "kind package level @seconds-since-start"
+  private final List<String> nudges = new ArrayList<>();
+  private final List<String> sessions = new ArrayList<>();
+  private final Map<Integer, Map<String, int[]>> archived = new HashMap<>();
+
+  private ManualScheduler scheduler;
+  private MonitoringEngine engine;
+  private long start;
+
+  // Local wall-clock time on a Monday without a DST change
+  private static long at(int hour, int minute) {
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(2024, Calendar.MARCH, 4, hour, minute);
+    return cal.getTimeInMillis();
+  }
+
+  // Engine at startMillis over events given as (package, type, millis after startMillis)
+  private void engine(long startMillis, NudgeRules rules, Object... events) {
+    start = startMillis;
+    UsageTrace.Builder trace = new UsageTrace.Builder();
+    for (int i = 0; i < events.length; i += 3) {
+      trace.add((String) events[i], (Integer) events[i + 1], startMillis + (Integer) events[i + 2]);
+    }
+    scheduler = new ManualScheduler(startMillis);
+    ForegroundTracker tracker = new ForegroundTracker(trace.build(), scheduler, OWN);
+    engine = new MonitoringEngine(scheduler, scheduler, tracker, new AppNameResolver(pkg -> null),
+      new NudgeComposer(new InMemoryKeyValueStore(), new InMemoryKeyValueStore()),
+      new MonitoringEngine.Listener() {
+        @Override
+        public void onAppChanged(String packageName, String appName) {}
+
+        @Override
+        public void onSessionEnded(String packageName, long startMillis, long endMillis) {
+          sessions.add(packageName + " " + (endMillis - startMillis) / SECOND);
+        }
+
+        @Override
+        public void onDurationUpdate(String packageName, String appName, int durationSeconds) {}
+
+        @Override
+        public void onNudge(String packageName, String appName, Nudge nudge, long crossedAtMillis) {
+          nudges.add("nudge " + appName + " " + nudge.level + " @" + elapsed());
+        }
+
+        @Override
+        public void onMetaNudge(Nudge nudge, int totalSeconds, long crossedAtMillis) {
+          nudges.add("meta " + nudge.level + " @" + elapsed());
+        }
+      });
+    engine.setDayArchive((epochDay, hours) -> archived.put(epochDay, hours));
+    if (rules != null) engine.setRules(rules);
+  }
+
+  private long elapsed() {
+    return (scheduler.currentTimeMillis() - start) / SECOND;
+  }
+
+  private static NudgeRules instaRule(long cooldownMs, int... thresholds) {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.rule("insta").apps(INSTA).thresholds(thresholds).psychState("social").cooldownMs(cooldownMs);
+    return builder.compile();
+  }
+
+  @Test
+  public void nudgesEscalateOncePerLevelAfterTheCooldown() {
+    engine(at(10, 0), instaRule(0, 60, 120, 180), INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    engine.start();
+    scheduler.advance(10 * MINUTE);
+
+    // Level 1 on the first tick past 60s; levels 2 and 3 wait out the 5 minute cooldown,
+    // which lets the session reach level 3 directly
+    assertEquals("[nudge Instagram 1 @90, nudge Instagram 3 @390]", nudges.toString());
+  }
+
+  @Test
+  public void dismissalsShortenTheCooldown() {
+    engine(at(10, 0), instaRule(0, 60, 120, 600, 700), INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    engine.start();
+    scheduler.advance(90 * SECOND);
+    for (int i = 0; i < 4; i++) engine.onNudgeDismissed();
+    scheduler.advance(11 * MINUTE);
+
+    // The first cooldown was set before the dismissals (300s); later ones are 300s / (4 + 1)
+    assertEquals("[nudge Instagram 1 @90, nudge Instagram 2 @390, nudge Instagram 3 @630, nudge Instagram 4 @720]",
+      nudges.toString());
+  }
+
+  @Test
+  public void snoozeHoldsTheNextLevel() {
+    engine(at(10, 0), instaRule(0, 60, 120), INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    engine.start();
+    scheduler.advance(45 * SECOND);
+    // Enough dismissals for the shortest cooldown (60s), so only the snooze holds level 2
+    for (int i = 0; i < 10; i++) engine.onNudgeDismissed();
+    scheduler.advance(55 * SECOND);
+    engine.onNudgeSnoozed();
+    scheduler.advance(10 * MINUTE);
+
+    assertEquals("[nudge Instagram 1 @90, nudge Instagram 2 @420]", nudges.toString());
+  }
+
+  @Test
+  public void ruleCooldownOutlastsTheSessionCooldown() {
+    engine(at(10, 0), instaRule(8 * MINUTE, 60, 120), INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    engine.start();
+    scheduler.advance(20 * MINUTE);
+
+    assertEquals("[nudge Instagram 1 @90, nudge Instagram 2 @570]", nudges.toString());
+  }
+
+  @Test
+  public void levelsShownTodaySurviveAnAppSwitch() {
+    engine(at(10, 0), instaRule(0, 60, 600),
+      INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      TIKTOK, UsageEventSource.MOVE_TO_FOREGROUND, 121_000,
+      INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 181_000);
+    engine.start();
+    scheduler.advance(15 * MINUTE);
+
+    // Back on Instagram the daily total carries on from 120s; level 1 is not shown again
+    assertEquals("[nudge Instagram 1 @90, nudge Instagram 2 @690]", nudges.toString());
+  }
+
+  @Test
+  public void quietHoursHoldTheAppNudgeButNotItsBudget() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().group("social", INSTA, TIKTOK);
+    builder.rule("social").groups("social").sharedBudget(true).thresholds(120);
+    builder.rule("insta").apps(INSTA).thresholds(600).quietHours(10 * 60, 10 * 60 + 30);
+    engine(at(10, 0), builder.compile(), INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000);
+    engine.start();
+    scheduler.advance(35 * MINUTE);
+
+    // The budget is counted and nudges inside the app's quiet hours; level 1 for the app
+    // crossed at 600s and is posted on the first tick after 10:30
+    assertEquals("[nudge social 1 @150, nudge Instagram 1 @1800]", nudges.toString());
+  }
+
+  @Test
+  public void metaNudgesFollowTotalScreenTime() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().metaThresholds(120, 240).metaCooldownMs(3 * MINUTE);
+    engine(at(10, 0), builder.compile(),
+      INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      TIKTOK, UsageEventSource.MOVE_TO_FOREGROUND, 61_000);
+    engine.start();
+    scheduler.advance(10 * MINUTE);
+
+    // 30s of screen time per tick in any app: 120s at the 4th tick, 240s held by the cooldown
+    List<String> meta = new ArrayList<>();
+    for (String nudge : nudges) {
+      if (nudge.startsWith("meta")) meta.add(nudge);
+    }
+    assertEquals("[meta 1 @120, meta 2 @300]", meta.toString());
+  }
+
+  @Test
+  public void rolloverArchivesYesterdayAndStartsAfresh() {
+    long midnight = at(24, 0);
+    engine(midnight - 2 * MINUTE, null,
+      INSTA, UsageEventSource.MOVE_TO_FOREGROUND, 1000,
+      INSTA, UsageEventSource.MOVE_TO_BACKGROUND, 180_000);
+    engine.start();
+    scheduler.advance(MINUTE + 30 * SECOND);
+    assertTrue(archived.isEmpty());
+
+    scheduler.advance(2 * MINUTE);
+    // The session is split at midnight: 119s before it, 60s after
+    int yesterday = UsageHistoryStore.epochDay(at(10, 0));
+    assertEquals(1, archived.size());
+    int[] hours = archived.get(yesterday).get(INSTA);
+    assertEquals(119, hours[23]);
+    assertEquals("[" + INSTA + " 119, " + INSTA + " 60]", sessions.toString());
+    assertEquals(60, engine.getTodaySeconds());
+    assertEquals(midnight, engine.getBackfillFromMillis());
+  }
+
+  @Test
+  public void backfillMergesEarlierUsageAndMarksLevelsShown() {
+    long started = at(10, 0);
+    // 30 min of Instagram and 1 min of TikTok this morning, then Instagram still open at start
+    // The live tracker starts with nothing new: everything happened before its first window
+    engine(started, instaRule(0, 600, 1200, 3600));
+    engine.start();
+    UsageBackfill.Result result = UsageBackfill.run(new UsageTrace.Builder()
+        .add(INSTA, UsageEventSource.MOVE_TO_FOREGROUND, started - 60 * MINUTE)
+        .add(INSTA, UsageEventSource.ACTIVITY_STOPPED, started - 30 * MINUTE)
+        .add(TIKTOK, UsageEventSource.MOVE_TO_FOREGROUND, started - 20 * MINUTE)
+        .add(TIKTOK, UsageEventSource.MOVE_TO_BACKGROUND, started - 19 * MINUTE)
+        .add(INSTA, UsageEventSource.MOVE_TO_FOREGROUND, started - 15 * MINUTE)
+        .build(),
+      OWN, ForegroundTracker.DEFAULT_DWELL_MS, engine.getBackfillFromMillis(), engine.getBackfillUntilMillis());
+    engine.applyBackfill(result);
+
+    // Backfill stops where the live tracker's first window begins
+    assertEquals(started - ForegroundTracker.INITIAL_WINDOW_MS, result.untilMillis);
+    assertEquals(INSTA, result.openPackage);
+    assertEquals(2, engine.getTrackedAppCount());
+    int insta = 30 * 60 + (int) ((15 * MINUTE - ForegroundTracker.INITIAL_WINDOW_MS) / SECOND);
+    assertEquals(insta + 60, engine.getTodaySeconds());
+
+    // Instagram is adopted as the open app from where the backfill stopped; levels 1 and 2 were
+    // crossed before the restart, so the first nudge is level 3 once the day reaches 3600s
+    scheduler.advance(20 * MINUTE);
+    List<String> app = new ArrayList<>();
+    for (String nudge : nudges) {
+      if (nudge.startsWith("nudge")) app.add(nudge);
+    }
+    long due = 3600 - insta - ForegroundTracker.INITIAL_WINDOW_MS / SECOND;
+    assertEquals("[nudge Instagram 3 @" + due + "]", app.toString());
+  }
+
+  @Test
+  public void backfillFromBeforeARolloverIsDropped() {
+    engine(at(10, 0), null);
+    engine.start();
+    long yesterday = engine.getBackfillFromMillis() - 24 * 60 * MINUTE;
+    engine.applyBackfill(UsageBackfill.run(new UsageTrace.Builder()
+        .add(INSTA, UsageEventSource.MOVE_TO_FOREGROUND, yesterday + MINUTE)
+        .build(),
+      OWN, ForegroundTracker.DEFAULT_DWELL_MS, yesterday, yesterday + 60 * MINUTE));
+    assertEquals(0, engine.getTrackedAppCount());
+  }
+}
@@ -0,0 +1,168 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class NudgeRulesTest {
+  private static final int MONDAY = 0;
+  private static final int SATURDAY = 5;
+
+  @Test
+  public void appRuleBeatsGroupRuleBeatsCatchAll() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().group("social", "insta", "tiktok");
+    // Added in reverse precedence order to show tiers, not order, decide
+    builder.rule("app").apps("insta").thresholds(60);
+    builder.rule("group").groups("social").thresholds(120);
+    builder.rule("all").thresholds(300);
+    NudgeRules rules = builder.compile();
+
+    assertEquals("app", rules.appPolicy("insta", MONDAY).ruleId);
+    assertEquals("group", rules.appPolicy("tiktok", MONDAY).ruleId);
+    assertEquals("all", rules.appPolicy("other", MONDAY).ruleId);
+  }
+
+  @Test
+  public void laterRuleWinsWithinATier() {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.rule("first").apps("insta").thresholds(60);
+    builder.rule("second").apps("insta").thresholds(90);
+    assertEquals("second", builder.compile().appPolicy("insta", MONDAY).ruleId);
+  }
+
+  @Test
+  public void rulesOnlyApplyOnTheirDays() {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.rule("weekday").apps("insta").thresholds(60).days(NudgeRules.WEEKDAYS);
+    builder.rule("weekend").thresholds(600).days(NudgeRules.WEEKEND);
+    NudgeRules rules = builder.compile();
+
+    assertEquals("weekday", rules.appPolicy("insta", MONDAY).ruleId);
+    // No app rule on Saturday: the catch-all for the day
+    assertEquals("weekend", rules.appPolicy("insta", SATURDAY).ruleId);
+    assertNull(rules.appPolicy("other", MONDAY));
+  }
+
+  @Test
+  public void lastMatchingBudgetWins() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().group("social", "insta", "tiktok");
+    builder.rule("social").groups("social").sharedBudget(true).thresholds(1800);
+    builder.rule("insta").apps("insta").sharedBudget(true).thresholds(600);
+    NudgeRules rules = builder.compile();
+
+    assertEquals(2, rules.getBudgetCount());
+    assertEquals("insta", rules.budgetPolicy("insta", MONDAY).ruleId);
+    assertEquals("social", rules.budgetPolicy("tiktok", MONDAY).ruleId);
+    assertEquals("social", rules.budgetPolicy("tiktok", MONDAY).label);
+    assertNull(rules.budgetPolicy("other", MONDAY));
+    // A budget is not a per-app rule
+    assertNull(rules.appPolicy("insta", MONDAY));
+  }
+
+  @Test
+  public void rollingBudgetsCollectAppsGroupsAndCatchAlls() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().group("social", "insta", "tiktok");
+    builder.rule("insta").apps("insta").windowHours(24).thresholds(3600);
+    builder.rule("social").groups("social").apps("insta").windowHours(48).thresholds(7200);
+    builder.rule("all").windowHours(168).thresholds(36000);
+    builder.rule("daily").apps("insta").thresholds(60);
+    NudgeRules rules = builder.compile();
+
+    assertEquals(3, rules.getRollingCount());
+    assertArrayEquals(new int[] {0, 1, 2}, rules.rollingMembers("insta", MONDAY));
+    assertArrayEquals(new int[] {1, 2}, rules.rollingMembers("tiktok", MONDAY));
+    // Rolling rules never become the per-app rule
+    assertEquals("daily", rules.appPolicy("insta", MONDAY).ruleId);
+  }
+
+  @Test
+  public void quietHoursWrapPastMidnight() {
+    NudgeRules.Builder builder = new NudgeRules.Builder().quietHours(22 * 60, 7 * 60, NudgeRules.WEEKDAYS);
+    builder.rule("lunch").apps("insta").thresholds(60).quietHours(12 * 60, 13 * 60);
+    NudgeRules rules = builder.compile();
+    NudgeRules.Policy lunch = rules.appPolicy("insta", MONDAY);
+
+    assertTrue(rules.isQuiet(null, MONDAY, 23 * 60));
+    assertTrue(rules.isQuiet(null, MONDAY, 6 * 60 + 59));
+    assertFalse(rules.isQuiet(null, MONDAY, 7 * 60));
+    assertFalse(rules.isQuiet(null, SATURDAY, 23 * 60));
+    assertTrue(rules.isQuiet(lunch, SATURDAY, 12 * 60 + 30));
+    assertFalse(rules.isQuiet(lunch, SATURDAY, 13 * 60));
+  }
+
+  @Test
+  public void debugThresholdsDefaultToTheSameShape() {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.rule("r").apps("insta").thresholds(30, 600, 1200);
+    NudgeRules.Policy policy = builder.compile().appPolicy("insta", MONDAY);
+    assertArrayEquals(new int[] {30, 600, 1200}, policy.thresholds(false));
+    assertArrayEquals(new int[] {1, 20, 40}, policy.thresholds(true));
+  }
+
+  private static void assertRejected(NudgeRules.Builder builder, String message) {
+    try {
+      builder.compile();
+      fail("compiled: " + message);
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(message));
+    }
+  }
+
+  @Test
+  public void rejectsInvalidRules() {
+    NudgeRules.Builder builder = new NudgeRules.Builder();
+    builder.rule("g").groups("missing");
+    assertRejected(builder, "rule g: unknown group missing");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("d").days(0);
+    assertRejected(builder, "no days");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("w").windowHours(RollingUsage.MAX_WINDOW_HOURS + 1).thresholds(60);
+    assertRejected(builder, "window must be");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("w").windowHours(24);
+    assertRejected(builder, "a rolling budget needs thresholds");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("c").categories("social").thresholds(60);
+    assertRejected(builder, "categories need a window");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("b").sharedBudget(true).thresholds(60);
+    assertRejected(builder, "a budget needs apps or groups");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("b").apps("insta").sharedBudget(true);
+    assertRejected(builder, "a budget needs thresholds");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("t").thresholds(60, 60);
+    assertRejected(builder, "positive and ascending");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("t").thresholds(1, 2, 3, 4, 5);
+    assertRejected(builder, "1 to " + NudgeRules.MAX_LEVELS + " thresholds");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("t").thresholds(60, 120).debugThresholds(1);
+    assertRejected(builder, "debug thresholds need one per level");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("t").debugThresholds(1);
+    assertRejected(builder, "debug thresholds without thresholds");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("t").cooldownMs(-1);
+    assertRejected(builder, "negative cooldown");
+
+    builder = new NudgeRules.Builder();
+    builder.rule("q").quietHours(0, 24 * 60);
+    assertRejected(builder, "time of day out of range");
+
+    assertRejected(new NudgeRules.Builder().quietHours(-1, 60, NudgeRules.ALL_DAYS), "quiet hours");
+    assertRejected(new NudgeRules.Builder().metaThresholds(600, 300), "meta");
+  }
+}
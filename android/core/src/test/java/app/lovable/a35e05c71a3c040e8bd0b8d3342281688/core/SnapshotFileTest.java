@@ -0,0 +1,96 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotFileTest {
+  private File dir;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("snapshot").toFile();
+    file = new File(dir, "engine.snap");
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  private static void write(SnapshotFile snapshot, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    snapshot.write(bytes, bytes.length);
+  }
+
+  private static String read(SnapshotFile snapshot) {
+    byte[] bytes = snapshot.read();
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void emptyUntilWritten() throws IOException {
+    assertNull(SnapshotFile.open(file).read());
+    assertNull(SnapshotFile.open(file).read());
+  }
+
+  @Test
+  public void newestWriteSurvivesReopening() throws IOException {
+    SnapshotFile snapshot = SnapshotFile.open(file);
+    write(snapshot, "first");
+    write(snapshot, "second");
+    write(snapshot, "third");
+    assertEquals("third", read(snapshot));
+    assertEquals("third", read(SnapshotFile.open(file)));
+  }
+
+  @Test
+  public void tornWriteFallsBackToThePreviousSnapshot() throws IOException {
+    SnapshotFile snapshot = SnapshotFile.open(file);
+    write(snapshot, "first");
+    write(snapshot, "second");
+
+    // "second" went to slot 1; damage its payload as a crash mid-copy would
+    int slotSize = (SnapshotFile.INITIAL_CAPACITY - 8) / 2;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(8 + slotSize + 16);
+      raf.write('X');
+    }
+
+    SnapshotFile reopened = SnapshotFile.open(file);
+    assertEquals("first", read(reopened));
+    // The next write goes to the damaged slot and wins again
+    write(reopened, "third");
+    assertEquals("third", read(SnapshotFile.open(file)));
+  }
+
+  @Test
+  public void growsForALargePayload() throws IOException {
+    SnapshotFile snapshot = SnapshotFile.open(file);
+    write(snapshot, "small");
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < SnapshotFile.INITIAL_CAPACITY; i++) big.append((char) ('a' + i % 26));
+    write(snapshot, big.toString());
+    assertTrue(snapshot.capacity() > SnapshotFile.INITIAL_CAPACITY);
+    assertEquals(big.toString(), read(SnapshotFile.open(file)));
+  }
+
+  @Test
+  public void foreignFileStartsOver() throws IOException {
+    Files.write(file.toPath(), new byte[SnapshotFile.INITIAL_CAPACITY]);
+    SnapshotFile snapshot = SnapshotFile.open(file);
+    assertNull(snapshot.read());
+    write(snapshot, "fresh");
+    assertEquals("fresh", read(SnapshotFile.open(file)));
+  }
+}
@@ -0,0 +1,260 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UploadQueueTest {
+  private static final long START = 1_700_000_000_000L;
+
+  // Records every batch; throws the queued failures first, one per send
+  private static final class StubSink implements UploadQueue.Sink {
+    final List<List<SessionRow>> batches = new ArrayList<>();
+    final List<IOException> failures = new ArrayList<>();
+
+    @Override
+    public void send(List<SessionRow> rows) throws IOException {
+      if (!failures.isEmpty()) throw failures.remove(0);
+      batches.add(new ArrayList<>(rows));
+    }
+
+    int rowsSent() {
+      int n = 0;
+      for (List<SessionRow> batch : batches) n += batch.size();
+      return n;
+    }
+  }
+
+  private File dir;
+  private File journal;
+  private ManualScheduler scheduler;
+  private StubSink sink;
+  private UploadQueue queue;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("upload").toFile();
+    journal = new File(dir, "upload.journal");
+    scheduler = new ManualScheduler(START);
+    sink = new StubSink();
+    queue = new UploadQueue(journal, scheduler, scheduler);
+    queue.setSink(sink);
+    scheduler.runDue();
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  private static SessionRow row(String pkg, long start, long end) {
+    return new SessionRow(pkg, null, null, start, end, false);
+  }
+
+  @Test
+  public void coalescesCommitsOfOneSessionIntoOneRow() {
+    queue.submit(row("a", START, START + 1000));
+    queue.submit(new SessionRow("a", "App", null, START, START + 5000, true));
+    queue.submit(row("b", START, START + 2000));
+    scheduler.runDue();
+
+    UploadQueue.Stats stats = queue.stats();
+    assertEquals(2, stats.pending);
+    assertEquals(1, stats.coalesced);
+    assertTrue(sink.batches.isEmpty());
+
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+    assertEquals(1, sink.batches.size());
+    SessionRow a = sink.batches.get(0).get(0);
+    assertEquals("App", a.appName);
+    assertEquals(START + 5000, a.endMillis);
+    assertTrue(a.interventionTriggered);
+    assertEquals(0, queue.stats().pending);
+    assertEquals(2, queue.stats().sentRows);
+  }
+
+  @Test
+  public void sendsABacklogInBatchesOfMaxBatch() {
+    int rows = UploadQueue.MAX_BATCH * 2 + 7;
+    for (int i = 0; i < rows; i++) queue.submit(row("p" + i, START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+
+    assertEquals(3, sink.batches.size());
+    assertEquals(UploadQueue.MAX_BATCH, sink.batches.get(0).size());
+    assertEquals(UploadQueue.MAX_BATCH, sink.batches.get(1).size());
+    assertEquals(7, sink.batches.get(2).size());
+    assertEquals(3, queue.stats().sentBatches);
+    assertEquals(0, queue.stats().pending);
+  }
+
+  @Test
+  public void dropsABatchTheBackendRejects() {
+    sink.failures.add(new UploadQueue.RejectedException(400, false, "400"));
+    queue.submit(row("a", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+
+    UploadQueue.Stats stats = queue.stats();
+    assertEquals(0, stats.pending);
+    assertEquals(1, stats.dropped);
+    assertEquals(1, stats.failures);
+    assertEquals("400", stats.lastError);
+    assertTrue(sink.batches.isEmpty());
+  }
+
+  @Test
+  public void retriesServerErrorsWithGrowingBackoff() {
+    sink.failures.add(new UploadQueue.RejectedException(503, true, "503"));
+    sink.failures.add(new UploadQueue.RejectedException(500, true, "500"));
+    sink.failures.add(new IOException("offline"));
+    queue.submit(row("a", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+
+    // 60 s, then 120 s, then 240 s, each within the +-20% jitter
+    long[] base = {UploadQueue.MIN_BACKOFF_MS, 2 * UploadQueue.MIN_BACKOFF_MS, 4 * UploadQueue.MIN_BACKOFF_MS};
+    for (long expected : base) {
+      long delay = scheduler.nextDelay();
+      assertTrue("backoff " + delay, delay >= expected * 8 / 10 && delay <= expected * 12 / 10);
+      assertEquals(1, queue.stats().pending);
+      scheduler.advance(delay);
+    }
+    assertEquals(1, sink.rowsSent());
+    assertEquals(3, queue.stats().failures);
+    assertNull(queue.stats().lastError);
+  }
+
+  @Test
+  public void backoffIsCappedAtMaxBackoff() {
+    for (int i = 0; i < 12; i++) sink.failures.add(new IOException("offline"));
+    queue.submit(row("a", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+    for (int i = 0; i < 11; i++) {
+      long delay = scheduler.nextDelay();
+      assertTrue("backoff " + delay, delay <= UploadQueue.MAX_BACKOFF_MS * 12 / 10);
+      scheduler.advance(delay);
+    }
+    assertTrue(scheduler.nextDelay() >= UploadQueue.MAX_BACKOFF_MS * 8 / 10);
+  }
+
+  @Test
+  public void unauthorizedHoldsRowsUntilANewSink() {
+    sink.failures.add(new UploadQueue.RejectedException(401, false, "401"));
+    queue.submit(row("a", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+
+    UploadQueue.Stats stats = queue.stats();
+    assertTrue(stats.needsToken);
+    assertEquals(1, stats.pending);
+    assertEquals(0, stats.dropped);
+    assertEquals(-1, scheduler.nextDelay());
+
+    // New rows wait too instead of hitting the backend with the refused token
+    queue.submit(row("b", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+    assertTrue(sink.batches.isEmpty());
+
+    StubSink fresh = new StubSink();
+    queue.setSink(fresh);
+    scheduler.runDue();
+    assertFalse(queue.stats().needsToken);
+    assertEquals(2, fresh.rowsSent());
+  }
+
+  @Test
+  public void newSinkSkipsTheOldBackoff() {
+    sink.failures.add(new IOException("offline"));
+    queue.submit(row("a", START, START + 1000));
+    scheduler.advance(UploadQueue.FLUSH_WINDOW_MS);
+    assertTrue(scheduler.nextDelay() > 0);
+
+    StubSink fresh = new StubSink();
+    queue.setSink(fresh);
+    scheduler.runDue();
+    assertEquals(1, fresh.rowsSent());
+  }
+
+  @Test
+  public void rowsSurviveARestartThroughTheJournal() {
+    queue.setSink(null);
+    queue.submit(row("a", START, START + 1000));
+    queue.submit(row("a", START, START + 3000));
+    queue.submit(row("b", START, START + 2000));
+    scheduler.runDue();
+
+    ManualScheduler restarted = new ManualScheduler(START);
+    UploadQueue reopened = new UploadQueue(journal, restarted, restarted);
+    restarted.runDue();
+    assertEquals(2, reopened.stats().pending);
+
+    StubSink after = new StubSink();
+    reopened.setSink(after);
+    restarted.runDue();
+    assertEquals(2, after.rowsSent());
+    assertEquals(START + 3000, after.batches.get(0).get(0).endMillis);
+  }
+
+  @Test
+  public void journalStaysBoundedWhileUploadsAreHeld() {
+    queue.setSink(null);
+    for (int i = 0; i < 1000; i++) queue.submit(row("a", START, START + i * 1000L));
+    scheduler.runDue();
+
+    // One session re-committed a thousand times: at most a few dozen 22-byte records, not a thousand
+    assertTrue("journal " + journal.length(), journal.length() < 5 + 100 * 22);
+    assertEquals(1, queue.stats().pending);
+    assertEquals(999, queue.stats().coalesced);
+  }
+
+  @Test
+  public void pendingRowsAreCappedOnSubmitAndOnLoad() {
+    queue.setSink(null);
+    int rows = UploadQueue.MAX_PENDING + 1;
+    for (int i = 0; i < rows; i++) queue.submit(row("p" + i, START, START + 1000));
+    scheduler.runDue();
+    UploadQueue.Stats stats = queue.stats();
+    assertTrue(stats.pending <= UploadQueue.MAX_PENDING);
+    assertEquals(rows, stats.pending + stats.dropped);
+
+    // Evicted rows do not come back from the journal
+    ManualScheduler restarted = new ManualScheduler(START);
+    UploadQueue reopened = new UploadQueue(journal, restarted, restarted);
+    restarted.runDue();
+    assertEquals(stats.pending, reopened.stats().pending);
+  }
+
+  @Test
+  public void loadAppliesTheCapToAnOversizedJournal() throws IOException {
+    // As an older build, which never compacted while held, could leave it
+    int rows = UploadQueue.MAX_PENDING + 500;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal)))) {
+      out.write(new byte[] {'F', 'F', 'U', 'Q'});
+      out.writeByte(1);
+      for (int i = 0; i < rows; i++) row("p" + i, START, START + 1000).write(out);
+    }
+    ManualScheduler restarted = new ManualScheduler(START);
+    UploadQueue reopened = new UploadQueue(journal, restarted, restarted);
+    restarted.runDue();
+
+    UploadQueue.Stats stats = reopened.stats();
+    assertTrue(stats.pending <= UploadQueue.MAX_PENDING);
+    assertEquals(rows, stats.pending + stats.dropped);
+    long before = journal.length();
+    ManualScheduler again = new ManualScheduler(START);
+    UploadQueue third = new UploadQueue(journal, again, again);
+    again.runDue();
+    assertEquals(stats.pending, third.stats().pending);
+    assertEquals(0, third.stats().dropped);
+    assertEquals(before, journal.length());
+  }
+}
@@ -0,0 +1,157 @@
+package app.lovable.a35e05c71a3c040e8bd0b8d3342281688.core;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UsageHistoryStoreTest {
+  private static final int DAY = UsageHistoryStore.epochDay(2024, 3, 1);
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("history").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  private static int[] hours(int... pairs) {
+    int[] h = new int[UsageHistoryStore.HOURS];
+    for (int i = 0; i < pairs.length; i += 2) h[pairs[i]] = pairs[i + 1];
+    return h;
+  }
+
+  private static Map<String, int[]> day(Object... entries) {
+    Map<String, int[]> map = new LinkedHashMap<>();
+    for (int i = 0; i < entries.length; i += 2) map.put((String) entries[i], (int[]) entries[i + 1]);
+    return map;
+  }
+
+  // "day package hour=seconds ..." per app-day, oldest first
+  private static List<String> dump(UsageHistoryStore store, int from, int to) throws IOException {
+    List<String> lines = new ArrayList<>();
+    store.query(from, to, (epochDay, packageName, hourSeconds) -> {
+      StringBuilder line = new StringBuilder().append(epochDay - DAY).append(' ').append(packageName);
+      for (int hour = 0; hour < hourSeconds.length; hour++) {
+        if (hourSeconds[hour] > 0) line.append(' ').append(hour).append('=').append(hourSeconds[hour]);
+      }
+      lines.add(line.toString());
+    });
+    return lines;
+  }
+
+  @Test
+  public void roundTripsDaysAcrossReopening() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    assertTrue(store.append(DAY, day("b.app", hours(9, 600, 23, 59), "a.app", hours(0, 100000))));
+    assertTrue(store.append(DAY + 1, day("a.app", hours(12, 30), "idle.app", hours())));
+    assertTrue(store.append(DAY + 3, day("c.app", hours(1, 1))));
+
+    UsageHistoryStore reopened = UsageHistoryStore.open(dir);
+    assertEquals(3, reopened.getDayCount());
+    assertEquals(DAY, reopened.getFirstDay());
+    assertEquals(DAY + 3, reopened.getLastDay());
+    List<String> all = dump(reopened, DAY, DAY + 3);
+    assertEquals(4, all.size());
+    assertTrue(all.contains("0 a.app 0=100000"));
+    assertTrue(all.contains("0 b.app 9=600 23=59"));
+    assertEquals("1 a.app 12=30", all.get(2));
+    assertEquals("3 c.app 1=1", all.get(3));
+  }
+
+  @Test
+  public void queriesOnlyTheRequestedDays() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    for (int d = 0; d < 10; d++) store.append(DAY + d, day("a.app", hours(d, d + 1)));
+    List<String> lines = dump(store, DAY + 4, DAY + 6);
+    assertEquals(3, lines.size());
+    assertEquals("4 a.app 4=5", lines.get(0));
+    assertEquals("6 a.app 6=7", lines.get(2));
+    assertTrue(dump(store, DAY + 20, DAY + 30).isEmpty());
+  }
+
+  @Test
+  public void ignoresDaysOutOfOrder() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    assertTrue(store.append(DAY + 1, day("a.app", hours(1, 1))));
+    assertFalse(store.append(DAY + 1, day("a.app", hours(2, 2))));
+    assertFalse(store.append(DAY, day("a.app", hours(3, 3))));
+    assertEquals(1, store.getDayCount());
+  }
+
+  @Test
+  public void tornRecordIsTrimmedOnOpen() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    store.append(DAY, day("a.app", hours(1, 10)));
+    store.append(DAY + 1, day("b.app", hours(2, 20)));
+
+    // The second record lost its last bytes: its index entry points past the data
+    File data = new File(dir, "usage_history.dat");
+    try (RandomAccessFile raf = new RandomAccessFile(data, "rw")) {
+      raf.setLength(raf.length() - 1);
+    }
+
+    UsageHistoryStore reopened = UsageHistoryStore.open(dir);
+    assertEquals(1, reopened.getDayCount());
+    assertEquals(DAY, reopened.getLastDay());
+    assertTrue(reopened.append(DAY + 1, day("b.app", hours(2, 20))));
+    assertEquals("1 b.app 2=20", dump(UsageHistoryStore.open(dir), DAY + 1, DAY + 1).get(0));
+  }
+
+  @Test
+  public void tornPackageNameIsTrimmedOnOpen() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    store.append(DAY, day("a.app", hours(1, 10)));
+    try (FileOutputStream out = new FileOutputStream(new File(dir, "usage_history.pkg"), true)) {
+      out.write("half.a.na".getBytes(StandardCharsets.UTF_8));
+    }
+
+    UsageHistoryStore reopened = UsageHistoryStore.open(dir);
+    assertTrue(reopened.append(DAY + 1, day("b.app", hours(2, 20))));
+    List<String> lines = dump(UsageHistoryStore.open(dir), DAY, DAY + 1);
+    assertEquals("0 a.app 1=10", lines.get(0));
+    assertEquals("1 b.app 2=20", lines.get(1));
+  }
+
+  @Test
+  public void trimmedNameTableIsReadBack() throws IOException {
+    UsageHistoryStore store = UsageHistoryStore.open(dir);
+    store.append(DAY, day("a.app", hours(1, 10)));
+    assertEquals(1, store.entries());
+    store.trim(CacheRegistry.TRIM_MODERATE);
+    assertEquals(0, store.entries());
+    assertEquals(0, store.sizeBytes());
+
+    // Ids must continue after the ones on disk, not restart at zero
+    store.append(DAY + 1, day("b.app", hours(2, 20), "a.app", hours(3, 30)));
+    List<String> lines = dump(store, DAY, DAY + 1);
+    assertEquals("0 a.app 1=10", lines.get(0));
+    assertTrue(lines.contains("1 a.app 3=30"));
+    assertTrue(lines.contains("1 b.app 2=20"));
+  }
+
+  @Test
+  public void formatsAndParsesDays() {
+    assertEquals("2024-03-01", UsageHistoryStore.formatDay(DAY));
+    assertEquals(DAY + 1, UsageHistoryStore.epochDay("2024-03-02"));
+    assertEquals(0, UsageHistoryStore.epochDay(1970, 1, 1));
+  }
+}
@@ -2,6 +2,8 @@
 import React, { createContext, useContext, useEffect, useState } from 'react';
 import { User, Session } from '@supabase/supabase-js';
 import { supabase } from '@/integrations/supabase/client';
+import { syncSessionUpload } from '@/utils/sessionUpload';
+import { syncQuickActionCompletions } from '@/utils/quickActionSync';
 
 type AuthContextType = {
   user: User | null;
@@ -45,6 +47,8 @@ export const AuthProvider = ({ children }: { children: React.ReactNode }) => {
         setSession(session);
         setUser(session?.user ?? null);
         setLoading(false);
+        syncSessionUpload(session);
+        syncQuickActionCompletions(session);
         
         // Force storage update on mobile
         if (session && /Android|webOS|iPhone|iPad|iPod|BlackBerry|IEMobile|Opera Mini/i.test(navigator.userAgent)) {
@@ -65,6 +69,8 @@ export const AuthProvider = ({ children }: { children: React.ReactNode }) => {
       setSession(session);
       setUser(session?.user ?? null);
       setLoading(false);
+      syncSessionUpload(session);
+      syncQuickActionCompletions(session);
     });
 
     return () => subscription.unsubscribe();
@@ -1,5 +1,7 @@
 import { useState, useEffect, useCallback } from 'react';
+import { Capacitor } from '@capacitor/core';
 import { useToast } from '@/hooks/use-toast';
+import { SystemMonitoring } from '@/plugins/system-monitoring';
 import { useSystemWideMonitoring } from './useSystemWideMonitoring';
 import { detectBehavioralPattern, updateBehavioralPattern } from '@/utils/systemWideInterventionUtils';
 
@@ -132,7 +134,10 @@ export const useDoomScrollingDetection = (): DoomScrollingDetectionResult => {
         
         // Get recent behavioral data from system-wide monitoring
         const result = await getBehavioralInsights();
-        const detectedPattern = detectBehavioralPattern(result || []);
+        const heatmap = Capacitor.isNativePlatform()
+          ? await SystemMonitoring.getUsageHeatmap({ apps: false }).catch(() => undefined)
+          : undefined;
+        const detectedPattern = detectBehavioralPattern(result || [], undefined, heatmap);
         
         // Update behavioral pattern if detected
         if (detectedPattern) {
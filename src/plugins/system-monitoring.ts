@@ -12,6 +12,195 @@ export interface DurationUpdateEvent {
   durationSeconds: number;
 }
 
+export interface LatencySummary {
+  count: number;
+  meanUs: number;
+  p50Us: number;
+  p90Us: number;
+  p99Us: number;
+  maxUs: number;
+}
+
+export interface MonitoringMetrics {
+  serviceRunning: boolean;
+  windowMs: number;
+  counters: Record<string, number>;
+  latencies: Record<string, LatencySummary>;
+  dump?: string;
+}
+
+export interface UsageTraceExport {
+  path: string;
+  events: number;
+  bytes: number;
+  fromMs: number;
+  toMs: number;
+}
+
+export interface UsageServiceHealth {
+  state: 'closed' | 'open' | 'halfOpen';
+  pollIntervalMs: number;
+  consecutiveFailures: number;
+  lastLatencyMs: number;
+  degradedSince: number; // epoch ms, 0 while healthy
+}
+
+export interface UsageHistoryApp {
+  package: string;
+  seconds: number;
+  hours?: number[]; // 24 entries, seconds per local hour (only with hourly: true)
+}
+
+export interface UsageHistoryDay {
+  date: string; // yyyy-MM-dd
+  totalSeconds: number;
+  apps: UsageHistoryApp[];
+}
+
+export interface UsageHistory {
+  from: string;
+  to: string;
+  days: UsageHistoryDay[]; // only days with recorded usage, oldest first
+  storedDays: number;
+  bytes: number;
+}
+
+export interface UsageHeatmapApp {
+  package: string;
+  seconds: number;
+  minutes: string; // base64, 1440 bytes: foreground seconds in each minute of today
+}
+
+export interface UsageHeatmap {
+  date: string; // yyyy-MM-dd
+  slots: number; // 1440
+  global: string; // base64, all apps together
+  switches: string; // base64, app switches started in each minute
+  totalSeconds: number;
+  lateNightSeconds: number; // 23:00-06:00
+  peakSwitches: { startMinute: number; windowMinutes: number; count: number };
+  apps?: UsageHeatmapApp[];
+}
+
+export type NudgeRuleDays = 'all' | 'weekdays' | 'weekend' | string[]; // day names: 'mon'..'sun'
+
+export interface NudgeRule {
+  id?: string;
+  apps?: string[];
+  groups?: string[]; // names from NudgeRulesDocument.groups; no apps or groups = every app
+  budget?: boolean; // thresholds apply to the combined time of all the rule's apps
+  label?: string; // shown as the app name in budget nudges
+  thresholdsMinutes?: number[]; // up to 4 ascending levels; omitted = built-in thresholds
+  debugThresholdsSeconds?: number[];
+  psychState?: string;
+  cooldownMinutes?: number;
+  days?: NudgeRuleDays;
+  quietHours?: { start: string; end: string }; // HH:mm, may wrap past midnight
+  // Rolling budget over the last 1-168 hours (needs thresholdsMinutes); apps, groups and
+  // categories are combined, none of them = all apps
+  windowHours?: number;
+  categories?: string[]; // psychState categories, e.g. 'avoidance'
+}
+
+// Later rules win; an app rule beats a group rule beats a catch-all
+export interface NudgeRulesDocument {
+  groups?: Record<string, string[]>;
+  rules?: NudgeRule[];
+  quietHours?: { start: string; end: string; days?: NudgeRuleDays }[];
+  meta?: { thresholdsMinutes?: number[]; cooldownMinutes?: number };
+  // Apps without rule thresholds nudge when a session outlasts their usual ones (see getSessionLengths)
+  adaptiveThresholds?: boolean;
+}
+
+export interface NudgeRulesStatus {
+  active: boolean;
+  policies: number;
+  budgets: number;
+  rolling: number;
+  packages: number;
+  adaptive: boolean;
+}
+
+export interface ScreenTimeSummary {
+  weekStart: string; // yyyy-MM-dd, a Sunday
+  thisWeekMinutes: number;
+  lastWeekMinutes: number;
+  baselineMinutes: number; // daily average over the first 7 days with usage
+  baselineComplete: boolean;
+  firstDay?: string; // yyyy-MM-dd of the first usage, absent before any
+  totalReclaimedMinutes: number;
+}
+
+export interface UploadCredentials {
+  url?: string; // project URL; all four set to upload, none to stop and drop pending rows
+  apiKey?: string;
+  accessToken?: string;
+  userId?: string;
+}
+
+export interface UploadStatus {
+  enabled: boolean;
+  pending: number;
+  sentRows: number;
+  sentBatches: number;
+  coalesced: number; // re-commits of a pending session merged into its row
+  dropped: number;
+  failures: number;
+  nextFlushInMs: number | null;
+  lastError: string | null;
+  // The access token was refused (expired); rows are held until setUploadCredentials runs again
+  needsToken: boolean;
+}
+
+export interface QuickActionCompletion {
+  id: number; // increasing; acknowledge up to the last one stored
+  action: string; // deep link name, e.g. 'breathing', 'eye-rest', 'hydration'
+  startedAt: number;
+  completedAt: number;
+  durationSeconds: number;
+}
+
+export interface CacheFootprintEntry {
+  name: string; // 'labels', 'config', 'history', 'recentActions'
+  entries: number;
+  bytes: number; // estimated heap bytes
+  trims: number; // memory-pressure trims that freed something
+}
+
+export interface CacheFootprint {
+  caches: CacheFootprintEntry[];
+  totalBytes: number;
+  lastTrimLevel: number; // 0 none, 1 light, 2 moderate, 3 complete
+  lastTrimAt: number; // epoch ms, 0 before the first trim
+}
+
+export interface SessionLengthsApp {
+  package: string;
+  sessions: number;
+  seconds: number[] | null; // one per SessionLengths.quantiles, all hours
+  hourSessions: number;
+  hourSeconds: number[] | null; // sessions started in the current hour
+  thresholdSeconds: number[] | null; // adaptive levels for a session starting now; null until minSessions
+}
+
+export interface SessionLengths {
+  adaptive: boolean;
+  minSessions: number;
+  hour: number;
+  quantiles: number[]; // e.g. 0.75 = 3 in 4 sessions are shorter
+  apps: SessionLengthsApp[];
+}
+
+// Unpack a base64 heatmap array into one value per minute of the day
+export const decodeMinuteSlots = (packed: string): Uint8Array => {
+  const raw = atob(packed);
+  const slots = new Uint8Array(raw.length);
+  for (let i = 0; i < raw.length; i++) {
+    slots[i] = raw.charCodeAt(i);
+  }
+  return slots;
+};
+
 export interface SystemMonitoringPlugin {
   requestPermissions(): Promise<{ granted: boolean }>;
   checkPermissions(): Promise<{ usageAccess: boolean }>;
@@ -24,6 +213,9 @@ export interface SystemMonitoringPlugin {
     usageAccess: boolean; 
     notificationsEnabled: boolean; 
     serviceRunning: boolean;
+    // True while usage queries are slow or failing and the native poll rate is backed off
+    degraded?: boolean;
+    usageService?: UsageServiceHealth;
   }>;
   restartMonitoring(options?: { debug?: boolean; userName?: string }): Promise<{ restarted: boolean }>;
   scheduleMidnightReschedule(): Promise<void>;
@@ -40,6 +232,41 @@ export interface SystemMonitoringPlugin {
   cancelDailyReminders(): Promise<void>;
   scheduleDailyReminders(): Promise<void>;
   
+  // Native runtime metrics (counters + latency histograms)
+  getMetrics(options?: { includeDump?: boolean; reset?: boolean }): Promise<MonitoringMetrics>;
+  getTraceLog(options?: { limit?: number; clear?: boolean }): Promise<{ written: number; lines: string[] }>;
+  // In-process caches that shrink under memory pressure
+  getCacheFootprint(): Promise<CacheFootprint>;
+  // Record raw UsageEvents to a binary trace in the app's files dir for offline replay
+  exportUsageTrace(options?: { hours?: number }): Promise<UsageTraceExport>;
+  // Completed days from the on-device hourly history (today is archived at the next rollover)
+  getUsageHistory(options?: {
+    from?: string; // yyyy-MM-dd, defaults to `days` before `to`
+    to?: string; // yyyy-MM-dd, defaults to yesterday
+    days?: number;
+    hourly?: boolean;
+    packages?: string[];
+  }): Promise<UsageHistory>;
+  // Today so far, per minute; apps: false skips the per-app arrays
+  getUsageHeatmap(options?: {
+    packages?: string[];
+    apps?: boolean;
+    windowMinutes?: number; // window for peakSwitches, default 30
+  }): Promise<UsageHeatmap>;
+  // Compiled natively into a decision table; rejects with the first invalid rule. null restores the built-ins
+  setNudgeRules(options: { rules: NudgeRulesDocument | null }): Promise<NudgeRulesStatus>;
+  getNudgeRules(): Promise<NudgeRulesStatus & { rules: NudgeRulesDocument | null }>;
+  // Running weekly and baseline totals; constant cost however old the install is
+  getScreenTimeSummary(): Promise<ScreenTimeSummary>;
+  // Streaming percentiles of each app's session lengths, kept natively
+  getSessionLengths(options?: { packages?: string[] }): Promise<SessionLengths>;
+  // Sessions are uploaded natively in batches; JS hands over the signed-in user's token
+  setUploadCredentials(options: UploadCredentials): Promise<void>;
+  getUploadStatus(): Promise<UploadStatus>;
+  // Actions completed in the native quick-action screen, kept until acknowledged
+  getQuickActionCompletions(): Promise<{ completions: QuickActionCompletion[] }>;
+  acknowledgeQuickActionCompletions(options: { upToId: number }): Promise<void>;
+  
   addListener(
     eventName: 'appChanged',
     listenerFunc: (event: AppChangedEvent) => void
@@ -1,6 +1,19 @@
 // src/plugins/web.ts
 import { WebPlugin } from '@capacitor/core';
-import type { SystemMonitoringPlugin } from './system-monitoring';
+import type {
+  CacheFootprint,
+  MonitoringMetrics,
+  NudgeRulesDocument,
+  NudgeRulesStatus,
+  QuickActionCompletion,
+  ScreenTimeSummary,
+  SessionLengths,
+  SystemMonitoringPlugin,
+  UploadStatus,
+  UsageHeatmap,
+  UsageHistory,
+  UsageTraceExport,
+} from './system-monitoring';
 
 export class SystemMonitoringWeb extends WebPlugin implements SystemMonitoringPlugin {
   async requestPermissions(): Promise<{ granted: boolean }> {
@@ -34,9 +47,9 @@ export class SystemMonitoringWeb extends WebPlugin implements SystemMonitoringPl
     console.warn('SystemMonitoring is not supported on web.');
   }
 
-  async getStatus(): Promise<{ usageAccess: boolean; notificationsEnabled: boolean; serviceRunning: boolean }> {
+  async getStatus(): Promise<{ usageAccess: boolean; notificationsEnabled: boolean; serviceRunning: boolean; degraded?: boolean }> {
     console.warn('SystemMonitoring is not supported on web.');
-    return { usageAccess: false, notificationsEnabled: false, serviceRunning: false };
+    return { usageAccess: false, notificationsEnabled: false, serviceRunning: false, degraded: false };
   }
 
   async restartMonitoring(): Promise<{ restarted: boolean }> {
@@ -69,4 +82,98 @@ export class SystemMonitoringWeb extends WebPlugin implements SystemMonitoringPl
   async scheduleDailyReminders(): Promise<void> {
     console.warn('SystemMonitoring is not supported on web.');
   }
+
+  async getMetrics(): Promise<MonitoringMetrics> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { serviceRunning: false, windowMs: 0, counters: {}, latencies: {} };
+  }
+
+  async getTraceLog(): Promise<{ written: number; lines: string[] }> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { written: 0, lines: [] };
+  }
+
+  async getCacheFootprint(): Promise<CacheFootprint> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { caches: [], totalBytes: 0, lastTrimLevel: 0, lastTrimAt: 0 };
+  }
+
+  async exportUsageTrace(): Promise<UsageTraceExport> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { path: '', events: 0, bytes: 0, fromMs: 0, toMs: 0 };
+  }
+
+  async getUsageHistory(): Promise<UsageHistory> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { from: '', to: '', days: [], storedDays: 0, bytes: 0 };
+  }
+
+  async getUsageHeatmap(): Promise<UsageHeatmap> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return {
+      date: '',
+      slots: 0,
+      global: '',
+      switches: '',
+      totalSeconds: 0,
+      lateNightSeconds: 0,
+      peakSwitches: { startMinute: 0, windowMinutes: 0, count: 0 },
+    };
+  }
+
+  async setNudgeRules(): Promise<NudgeRulesStatus> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { active: false, policies: 0, budgets: 0, rolling: 0, packages: 0, adaptive: false };
+  }
+
+  async getNudgeRules(): Promise<NudgeRulesStatus & { rules: NudgeRulesDocument | null }> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { active: false, policies: 0, budgets: 0, rolling: 0, packages: 0, adaptive: false, rules: null };
+  }
+
+  async getScreenTimeSummary(): Promise<ScreenTimeSummary> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return {
+      weekStart: '',
+      thisWeekMinutes: 0,
+      lastWeekMinutes: 0,
+      baselineMinutes: 0,
+      baselineComplete: false,
+      totalReclaimedMinutes: 0,
+    };
+  }
+
+  async getSessionLengths(): Promise<SessionLengths> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { adaptive: false, minSessions: 0, hour: 0, quantiles: [], apps: [] };
+  }
+
+  async setUploadCredentials(): Promise<void> {
+    console.warn('SystemMonitoring is not supported on web.');
+  }
+
+  async getUploadStatus(): Promise<UploadStatus> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return {
+      enabled: false,
+      pending: 0,
+      sentRows: 0,
+      sentBatches: 0,
+      coalesced: 0,
+      dropped: 0,
+      failures: 0,
+      nextFlushInMs: null,
+      lastError: null,
+      needsToken: false,
+    };
+  }
+
+  async getQuickActionCompletions(): Promise<{ completions: QuickActionCompletion[] }> {
+    console.warn('SystemMonitoring is not supported on web.');
+    return { completions: [] };
+  }
+
+  async acknowledgeQuickActionCompletions(): Promise<void> {
+    console.warn('SystemMonitoring is not supported on web.');
+  }
 }
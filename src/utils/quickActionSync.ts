@@ -0,0 +1,35 @@
+import { Capacitor } from '@capacitor/core';
+import type { Session } from '@supabase/supabase-js';
+import { supabase } from '@/integrations/supabase/client';
+import { SystemMonitoring } from '@/plugins/system-monitoring';
+
+/**
+ * Store actions finished in the native quick-action screen (breathing, eye rest, hydration)
+ * as nudge responses, like the web pages do, then let the native side forget them. Runs when
+ * a signed-in session is available; completions wait natively until then.
+ */
+export const syncQuickActionCompletions = async (session: Session | null): Promise<void> => {
+  if (!session?.user || !Capacitor.isNativePlatform() || Capacitor.getPlatform() !== 'android') return;
+  try {
+    const { completions } = await SystemMonitoring.getQuickActionCompletions();
+    if (completions.length === 0) return;
+
+    const { error } = await supabase.from('nudge_responses').insert(
+      completions.map((completion) => ({
+        user_id: session.user.id,
+        reminder_type: 'nudge',
+        response_type: completion.action,
+        completed_duration: completion.durationSeconds,
+        created_at: new Date(completion.completedAt).toISOString(),
+        response_data: { source: 'native', started_at: new Date(completion.startedAt).toISOString() },
+      }))
+    );
+    if (error) throw error;
+
+    await SystemMonitoring.acknowledgeQuickActionCompletions({
+      upToId: Math.max(...completions.map((completion) => completion.id)),
+    });
+  } catch (error) {
+    console.error('Failed to sync quick action completions:', error);
+  }
+};
@@ -1,4 +1,6 @@
+import { Capacitor } from '@capacitor/core';
 import { supabase } from '@/integrations/supabase/client';
+import { SystemMonitoring } from '@/plugins/system-monitoring';
 
 interface ScreenTimeData {
   thisWeekMinutes: number;
@@ -10,6 +12,11 @@ interface ScreenTimeData {
   intentionalActionsThisWeek: number;
 }
 
+type UsageTotals = Pick<
+  ScreenTimeData,
+  'thisWeekMinutes' | 'lastWeekMinutes' | 'baselineMinutes' | 'totalReclaimedMinutes'
+>;
+
 export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
   const { data: { user } } = await supabase.auth.getUser();
   
@@ -33,13 +40,60 @@ export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
   const lastWeekStart = new Date(weekStart);
   lastWeekStart.setDate(weekStart.getDate() - 7);
 
+  // Android keeps these totals natively, updated as sessions end; elsewhere (or if the
+  // plugin fails) they are recomputed from the synced sessions
+  let totals: UsageTotals | null = null;
+  if (Capacitor.getPlatform() === 'android') {
+    try {
+      totals = await SystemMonitoring.getScreenTimeSummary();
+    } catch (error) {
+      console.warn('Native screen time summary unavailable, falling back to synced sessions', error);
+    }
+  }
+  if (!totals) {
+    totals = await getUsageTotalsFromSessions(user.id, weekStart, lastWeekStart);
+  }
+  const { thisWeekMinutes, lastWeekMinutes, baselineMinutes, totalReclaimedMinutes } = totals;
+
+  // Calculate reduction
+  const reductionMinutes = lastWeekMinutes - thisWeekMinutes;
+  const reductionPercent = lastWeekMinutes > 0 
+    ? Math.round((reductionMinutes / lastWeekMinutes) * 100)
+    : 0;
+
+  // Get intentional actions this week
+  const { data: actionsData } = await supabase
+    .from('action_completions')
+    .select('id')
+    .eq('user_id', user.id)
+    .gte('completed_at', weekStart.toISOString());
+
+  const intentionalActionsThisWeek = actionsData?.length || 0;
+
+  return {
+    thisWeekMinutes,
+    lastWeekMinutes,
+    reductionMinutes,
+    reductionPercent,
+    baselineMinutes,
+    totalReclaimedMinutes: Math.round(totalReclaimedMinutes),
+    intentionalActionsThisWeek
+  };
+};
+
+// Web and iOS: the same totals from the synced sessions (grows with the account's history)
+const getUsageTotalsFromSessions = async (
+  userId: string,
+  weekStart: Date,
+  lastWeekStart: Date
+): Promise<UsageTotals> => {
   const lastWeekEnd = new Date(weekStart);
 
   // Get this week's screen time
   const { data: thisWeekData } = await supabase
     .from('app_usage_sessions')
     .select('duration_seconds')
-    .eq('user_id', user.id)
+    .eq('user_id', userId)
     .gte('session_start', weekStart.toISOString());
 
   const thisWeekMinutes = Math.round(
@@ -50,7 +104,7 @@ export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
   const { data: lastWeekData } = await supabase
     .from('app_usage_sessions')
     .select('duration_seconds')
-    .eq('user_id', user.id)
+    .eq('user_id', userId)
     .gte('session_start', lastWeekStart.toISOString())
     .lt('session_start', lastWeekEnd.toISOString());
 
@@ -58,17 +112,11 @@ export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
     (lastWeekData?.reduce((sum, session) => sum + (session.duration_seconds || 0), 0) || 0) / 60
   );
 
-  // Calculate reduction
-  const reductionMinutes = lastWeekMinutes - thisWeekMinutes;
-  const reductionPercent = lastWeekMinutes > 0 
-    ? Math.round((reductionMinutes / lastWeekMinutes) * 100)
-    : 0;
-
   // Get baseline (first 7 days of usage)
   const { data: allSessions } = await supabase
     .from('app_usage_sessions')
     .select('session_start, duration_seconds')
-    .eq('user_id', user.id)
+    .eq('user_id', userId)
     .order('session_start', { ascending: true });
 
   let baselineMinutes = 0;
@@ -92,7 +140,7 @@ export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
   const { data: recentWeeks } = await supabase
     .from('app_usage_sessions')
     .select('session_start, duration_seconds')
-    .eq('user_id', user.id)
+    .eq('user_id', userId)
     .gte('session_start', lastWeekStart.toISOString());
 
   let totalReclaimedMinutes = 0;
@@ -114,24 +162,7 @@ export const getScreenTimeData = async (): Promise<ScreenTimeData> => {
     });
   }
 
-  // Get intentional actions this week
-  const { data: actionsData } = await supabase
-    .from('action_completions')
-    .select('id')
-    .eq('user_id', user.id)
-    .gte('completed_at', weekStart.toISOString());
-
-  const intentionalActionsThisWeek = actionsData?.length || 0;
-
-  return {
-    thisWeekMinutes,
-    lastWeekMinutes,
-    reductionMinutes,
-    reductionPercent,
-    baselineMinutes,
-    totalReclaimedMinutes: Math.round(totalReclaimedMinutes),
-    intentionalActionsThisWeek
-  };
+  return { thisWeekMinutes, lastWeekMinutes, baselineMinutes, totalReclaimedMinutes };
 };
 
 export const formatScreenTime = (minutes: number): string => {
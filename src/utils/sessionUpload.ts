@@ -0,0 +1,27 @@
+import { Capacitor } from '@capacitor/core';
+import type { Session } from '@supabase/supabase-js';
+import { SystemMonitoring } from '@/plugins/system-monitoring';
+import { SUPABASE_URL, SUPABASE_PUBLISHABLE_KEY } from '@/integrations/supabase/config';
+
+/**
+ * Hand the signed-in session to the native upload queue, which writes app_usage_sessions
+ * from the monitoring service. Called on every auth change so refreshed tokens reach it too;
+ * signing out clears the queue.
+ */
+export const syncSessionUpload = async (session: Session | null): Promise<void> => {
+  if (!Capacitor.isNativePlatform() || Capacitor.getPlatform() !== 'android') return;
+  try {
+    if (session?.user) {
+      await SystemMonitoring.setUploadCredentials({
+        url: SUPABASE_URL,
+        apiKey: SUPABASE_PUBLISHABLE_KEY,
+        accessToken: session.access_token,
+        userId: session.user.id,
+      });
+    } else {
+      await SystemMonitoring.setUploadCredentials({});
+    }
+  } catch (error) {
+    console.error('Failed to update session upload credentials:', error);
+  }
+};
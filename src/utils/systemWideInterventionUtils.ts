@@ -1,4 +1,5 @@
 import { supabase } from '@/integrations/supabase/client';
+import { decodeMinuteSlots, type UsageHeatmap } from '@/plugins/system-monitoring';
 
 export type PsychologicalState = 'seeking_stimulation' | 'avoidance' | 'emotional_regulation' | 'impulse_driven';
 export type InterventionType = 'gentle_nudge' | 'alternative_offer' | 'reflection_prompt';
@@ -214,12 +215,29 @@ export const getInterventionInsights = async (days: number = 30) => {
   return data;
 };
 
-// Detect behavioral patterns
+// Switches started in the last `minutes` minutes of today's native heatmap
+const recentHeatmapSwitches = (heatmap: UsageHeatmap, minutes: number): number => {
+  const switches = decodeMinuteSlots(heatmap.switches);
+  const date = new Date();
+  const minute = date.getHours() * 60 + date.getMinutes();
+  let count = 0;
+  for (let i = Math.max(0, minute - minutes + 1); i <= minute && i < switches.length; i++) {
+    count += switches[i];
+  }
+  return count;
+};
+
+// Late-night time below this is treated as a glance, not a pattern
+const LATE_NIGHT_MIN_SECONDS = 5 * 60;
+
+// Detect behavioral patterns; with the native heatmap, rapid switching and late-night usage
+// are read from its per-minute slots instead of scanning sessions
 export const detectBehavioralPattern = (
   sessions: any[],
-  timeWindow: number = 24 * 60 * 60 * 1000 // 24 hours
+  timeWindow: number = 24 * 60 * 60 * 1000, // 24 hours
+  heatmap?: UsageHeatmap
 ): 'rapid_switching' | 'endless_scrolling' | 'late_night_usage' | 'impulse_shopping' | null => {
-  if (!sessions.length) return null;
+  if (!sessions.length && !heatmap) return null;
 
   const now = Date.now();
   const recentSessions = sessions.filter(s => 
@@ -227,14 +245,18 @@ export const detectBehavioralPattern = (
   );
 
   // Detect rapid app switching (3+ different apps in 30 minutes)
-  const thirtyMinutesAgo = now - (30 * 60 * 1000);
-  const recentApps = new Set(
-    recentSessions
-      .filter(s => new Date(s.created_at).getTime() > thirtyMinutesAgo)
-      .map(s => s.app_package_name)
-  );
-
-  if (recentApps.size >= 3) return 'rapid_switching';
+  if (heatmap) {
+    if (recentHeatmapSwitches(heatmap, 30) >= 3) return 'rapid_switching';
+  } else {
+    const thirtyMinutesAgo = now - (30 * 60 * 1000);
+    const recentApps = new Set(
+      recentSessions
+        .filter(s => new Date(s.created_at).getTime() > thirtyMinutesAgo)
+        .map(s => s.app_package_name)
+    );
+
+    if (recentApps.size >= 3) return 'rapid_switching';
+  }
 
   // Detect endless scrolling (single app usage > 45 minutes)
   const longSession = recentSessions.find(s => 
@@ -245,12 +267,16 @@ export const detectBehavioralPattern = (
   if (longSession) return 'endless_scrolling';
 
   // Detect late night usage (after 11 PM)
-  const lateNightSession = recentSessions.find(s => {
-    const hour = new Date(s.session_start).getHours();
-    return hour >= 23 || hour < 6;
-  });
+  if (heatmap) {
+    if (heatmap.lateNightSeconds >= LATE_NIGHT_MIN_SECONDS) return 'late_night_usage';
+  } else {
+    const lateNightSession = recentSessions.find(s => {
+      const hour = new Date(s.session_start).getHours();
+      return hour >= 23 || hour < 6;
+    });
 
-  if (lateNightSession) return 'late_night_usage';
+    if (lateNightSession) return 'late_night_usage';
+  }
 
   // Detect impulse shopping (multiple shopping apps in short time)
   const shoppingSessions = recentSessions.filter(s => 